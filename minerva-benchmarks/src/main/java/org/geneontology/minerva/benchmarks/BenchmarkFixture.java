@@ -0,0 +1,201 @@
+package org.geneontology.minerva.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.jena.system.JenaSystem;
+import org.geneontology.minerva.BlazegraphOntologyManager;
+import org.geneontology.minerva.BulkModelImporter;
+import org.geneontology.minerva.BulkModelImporter.Report;
+import org.geneontology.minerva.ModelContainer;
+import org.geneontology.minerva.UndoAwareMolecularModelManager;
+import org.geneontology.minerva.curie.CurieHandler;
+import org.geneontology.minerva.curie.CurieMappings;
+import org.geneontology.minerva.curie.DefaultCurieHandler;
+import org.geneontology.minerva.curie.MappedCurieHandler;
+import org.geneontology.minerva.server.validation.MinervaShexValidator;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.formats.RDFXMLDocumentFormat;
+import org.semanticweb.owlapi.io.StreamDocumentSource;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyLoaderConfiguration;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+
+import com.bigdata.journal.Options;
+import com.bigdata.rdf.sail.BigdataSail;
+import com.bigdata.rdf.sail.BigdataSailRepository;
+
+/**
+ * Model manager, ontology journal and ShEx validator for the benchmarks,
+ * built in a temporary folder from the test resources of the other modules.
+ * <p>
+ * The tbox is go-lego-minimal.owl, with its remote imports ignored and
+ * extended with the go-lego module of the converter tests, which covers
+ * the classes and relations used by the sample GO-CAMs.
+ */
+public class BenchmarkFixture {
+
+	public static final String MODEL_ID_PREFIX = "http://model.geneontology.org/";
+
+	/**
+	 * Sample GO-CAMs: 45 and 12 individuals.
+	 */
+	public static final String LARGE_MODEL = "581e072c00000473";
+	public static final String SMALL_MODEL = "59d1072300000074";
+
+	private static final String GO_LEGO_GRAPH = "http://geneontology.org/go-lego-graph";
+
+	private final File folder;
+	private final CurieHandler curieHandler;
+	private final UndoAwareMolecularModelManager models;
+	private final MinervaShexValidator shex;
+
+	public BenchmarkFixture() throws Exception {
+		JenaSystem.init();
+		folder = Files.createTempDirectory("minerva-benchmarks").toFile();
+
+		OWLOntology tbox = loadTbox();
+		String ontologyJournal = createOntologyJournal(tbox);
+
+		CurieMappings localMappings = new CurieMappings.SimpleCurieMappings(Collections.singletonMap("gomodel", MODEL_ID_PREFIX));
+		curieHandler = new MappedCurieHandler(DefaultCurieHandler.loadDefaultMappings(), localMappings);
+		models = new UndoAwareMolecularModelManager(tbox, curieHandler, MODEL_ID_PREFIX,
+				new File(folder, "models.jnl").getAbsolutePath(), null, ontologyJournal);
+		// the bulk importer drops the go-lego imports without resolving them
+		List<File> files = new ArrayList<File>();
+		for (String model : new String[]{LARGE_MODEL, SMALL_MODEL}) {
+			files.add(extract(model + ".ttl"));
+		}
+		Report report = new BulkModelImporter(models.getWriteQueue(), models.getModelIdRegistry(), 1).importFiles(files, false, new HashSet<IRI>());
+		if (report.getImported() != files.size()) {
+			throw new IOException("Could not import the sample models: " + report);
+		}
+		shex = new MinervaShexValidator(extract(MinervaShexValidator.class, "/go-cam-shapes.shex", "go-cam-shapes.shex"),
+				extract(MinervaShexValidator.class, "/go-cam-shapes.shapeMap", "go-cam-shapes.shapeMap"),
+				curieHandler, models.getGolego_repo());
+		shex.setActive(false);
+	}
+
+	private static InputStream open(String fixture) throws IOException {
+		InputStream in = BenchmarkFixture.class.getResourceAsStream("/fixtures/" + fixture);
+		if (in == null) {
+			throw new IOException("Missing benchmark fixture: " + fixture);
+		}
+		return in;
+	}
+
+	private File extract(String fixture) throws IOException {
+		return extract(BenchmarkFixture.class, "/fixtures/" + fixture, fixture);
+	}
+
+	private File extract(Class<?> c, String resource, String name) throws IOException {
+		File file = new File(folder, name);
+		InputStream in = c.getResourceAsStream(resource);
+		if (in == null) {
+			throw new IOException("Missing benchmark resource: " + resource);
+		}
+		try {
+			FileUtils.copyInputStreamToFile(in, file);
+		} finally {
+			in.close();
+		}
+		return file;
+	}
+
+	private static OWLOntology loadTbox() throws Exception {
+		OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+		OWLOntologyLoaderConfiguration config = new OWLOntologyLoaderConfiguration()
+				.addIgnoredImport(IRI.create("http://purl.obolibrary.org/obo/go/extensions/legorel.owl"))
+				.addIgnoredImport(IRI.create("http://purl.obolibrary.org/obo/eco.owl"));
+		OWLOntology tbox;
+		InputStream in = open("go-lego-minimal.owl");
+		try {
+			tbox = manager.loadOntologyFromOntologyDocument(new StreamDocumentSource(in), config);
+		} finally {
+			in.close();
+		}
+		// same ontology IRI, load with a separate manager
+		in = open("go-lego-module.omn");
+		try {
+			OWLOntology module = OWLManager.createOWLOntologyManager().loadOntologyFromOntologyDocument(in);
+			manager.addAxioms(tbox, module.getAxioms());
+		} finally {
+			in.close();
+		}
+		return tbox;
+	}
+
+	/**
+	 * Create the ontology journal with the tbox, instead of downloading the
+	 * full go-lego journal.
+	 */
+	private String createOntologyJournal(OWLOntology tbox) throws Exception {
+		File journal = new File(folder, "go-lego.jnl");
+		Properties properties = new Properties();
+		InputStream in = BlazegraphOntologyManager.class.getResourceAsStream("onto-blazegraph.properties");
+		try {
+			properties.load(in);
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+		properties.setProperty(Options.FILE, journal.getAbsolutePath());
+		BigdataSailRepository repository = new BigdataSailRepository(new BigdataSail(properties));
+		repository.initialize();
+		repository.shutDown();
+
+		File tboxFile = new File(folder, "go-lego.owl");
+		OutputStream out = new FileOutputStream(tboxFile);
+		try {
+			tbox.getOWLOntologyManager().saveOntology(tbox, new RDFXMLDocumentFormat(), out);
+		} finally {
+			out.close();
+		}
+		BlazegraphOntologyManager ontologyManager = new BlazegraphOntologyManager(journal.getAbsolutePath());
+		try {
+			ontologyManager.loadRepositoryFromOWLFile(tboxFile, GO_LEGO_GRAPH, false);
+		} finally {
+			ontologyManager.dispose();
+		}
+		return journal.getAbsolutePath();
+	}
+
+	public CurieHandler getCurieHandler() {
+		return curieHandler;
+	}
+
+	public UndoAwareMolecularModelManager getModels() {
+		return models;
+	}
+
+	/**
+	 * @return validator, inactive unless enabled by the benchmark
+	 */
+	public MinervaShexValidator getShex() {
+		return shex;
+	}
+
+	public static IRI getModelIRI(String model) {
+		return IRI.create(MODEL_ID_PREFIX + model);
+	}
+
+	public ModelContainer getModel(String model) {
+		return models.getModel(getModelIRI(model));
+	}
+
+	public void dispose() throws IOException {
+		models.dispose();
+		FileUtils.deleteDirectory(folder);
+	}
+}
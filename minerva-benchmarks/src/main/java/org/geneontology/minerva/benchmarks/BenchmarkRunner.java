@@ -0,0 +1,49 @@
+package org.geneontology.minerva.benchmarks;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmark jar, with the JMH command line. Unless a
+ * result format is given, the results are written as JSON to
+ * {@value #DEFAULT_RESULT_FILE} (or the file given with -rff), for the
+ * comparison of two versions with {@link CompareResults}. The forked JVMs
+ * only log warnings, unless other JVM arguments are appended.
+ */
+public class BenchmarkRunner {
+
+	public static final String DEFAULT_RESULT_FILE = "minerva-benchmarks.json";
+
+	// keeps the per model INFO messages out of the measurements
+	private static final String LOG4J_CONFIGURATION = "-Dlog4j.configuration=benchmarks-log4j.properties";
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions cmdOptions;
+		try {
+			cmdOptions = new CommandLineOptions(args);
+		} catch (CommandLineOptionException e) {
+			System.err.println("Error parsing command line: " + e.getMessage());
+			System.exit(1);
+			return;
+		}
+		if (cmdOptions.shouldHelp() || cmdOptions.shouldList() || cmdOptions.shouldListWithParams()
+				|| cmdOptions.shouldListProfilers() || cmdOptions.shouldListResultFormats()
+				|| cmdOptions.getResultFormat().hasValue()) {
+			Main.main(args);
+			return;
+		}
+		ChainedOptionsBuilder builder = new OptionsBuilder().parent(cmdOptions).resultFormat(ResultFormatType.JSON);
+		if (!cmdOptions.getResult().hasValue()) {
+			builder.result(DEFAULT_RESULT_FILE);
+		}
+		if (!cmdOptions.getJvmArgsAppend().hasValue()) {
+			builder.jvmArgsAppend(LOG4J_CONFIGURATION);
+		}
+		new Runner(builder.build()).run();
+	}
+}
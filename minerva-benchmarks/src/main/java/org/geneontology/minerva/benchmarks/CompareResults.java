@@ -0,0 +1,95 @@
+package org.geneontology.minerva.benchmarks;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Compare two JSON result files of the benchmarks, e.g. of the previous
+ * and the current release:
+ * <p>
+ * <code>java -cp benchmarks.jar org.geneontology.minerva.benchmarks.CompareResults old.json new.json</code>
+ * <p>
+ * Prints the scores of both files and the relative change, for each
+ * benchmark and parameter combination.
+ */
+public class CompareResults {
+
+	private static class Score {
+		final double score;
+		final double error;
+		final String unit;
+
+		Score(double score, double error, String unit) {
+			this.score = score;
+			this.error = error;
+			this.unit = unit;
+		}
+	}
+
+	static Map<String, Score> load(File file) throws IOException {
+		Map<String, Score> scores = new LinkedHashMap<String, Score>();
+		Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8);
+		try {
+			JsonArray results = new JsonParser().parse(reader).getAsJsonArray();
+			for (JsonElement element : results) {
+				JsonObject result = element.getAsJsonObject();
+				StringBuilder key = new StringBuilder(result.get("benchmark").getAsString());
+				if (result.has("params")) {
+					// sorted, independent of the order in the file
+					Map<String, String> params = new TreeMap<String, String>();
+					for (Entry<String, JsonElement> param : result.getAsJsonObject("params").entrySet()) {
+						params.put(param.getKey(), param.getValue().getAsString());
+					}
+					key.append(' ').append(params);
+				}
+				JsonObject metric = result.getAsJsonObject("primaryMetric");
+				double error = metric.get("scoreError").isJsonPrimitive() && metric.get("scoreError").getAsJsonPrimitive().isNumber()
+						? metric.get("scoreError").getAsDouble() : Double.NaN;
+				scores.put(key.toString(), new Score(metric.get("score").getAsDouble(), error, metric.get("scoreUnit").getAsString()));
+			}
+		} finally {
+			reader.close();
+		}
+		return scores;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("Usage: CompareResults <old.json> <new.json>");
+			System.exit(1);
+			return;
+		}
+		Map<String, Score> before = load(new File(args[0]));
+		Map<String, Score> after = load(new File(args[1]));
+		for (Entry<String, Score> e : after.entrySet()) {
+			Score current = e.getValue();
+			Score previous = before.get(e.getKey());
+			if (previous == null || !previous.unit.equals(current.unit)) {
+				System.out.println(String.format("%-80s %12s %12.3f +- %.3f %s", e.getKey(), "-", current.score, current.error, current.unit));
+			}
+			else {
+				double change = (current.score - previous.score) / previous.score * 100;
+				System.out.println(String.format("%-80s %12.3f %12.3f +- %.3f %s %+7.1f%%", e.getKey(),
+						previous.score, current.score, current.error, current.unit, change));
+			}
+		}
+		for (String key : before.keySet()) {
+			if (!after.containsKey(key)) {
+				System.out.println(String.format("%-80s %12.3f %12s", key, before.get(key).score, "-"));
+			}
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package org.geneontology.minerva.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.geneontology.minerva.curie.CurieHandler;
+import org.geneontology.minerva.curie.DefaultCurieHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.semanticweb.owlapi.model.IRI;
+
+import com.google.common.collect.BiMap;
+import com.google.common.collect.HashBiMap;
+
+/**
+ * IRI to CURIE conversion with the default mappings, for the IRIs of a
+ * rendered model: individuals, classes, properties and evidence.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CurieHandlerBenchmark {
+
+	private static final String[] TERM_PREFIXES = {
+		"http://purl.obolibrary.org/obo/GO_",
+		"http://purl.obolibrary.org/obo/ECO_",
+		"http://purl.obolibrary.org/obo/RO_",
+		"http://purl.obolibrary.org/obo/BFO_",
+		"http://purl.obolibrary.org/obo/CHEBI_",
+		"http://identifiers.org/uniprot/",
+		"http://identifiers.org/mgi/MGI:",
+		"http://identifiers.org/zfin/",
+		"http://purl.org/dc/elements/1.1/",
+		"http://www.w3.org/2000/01/rdf-schema#",
+	};
+
+	private CurieHandler handler;
+	private BiMap<String, String> curieMap;
+	// a typical response, repeated IRIs
+	private IRI[] response;
+	// more distinct IRIs than the recent results cache holds
+	private IRI[] distinct;
+	private int next = 0;
+
+	@Setup
+	public void setup() {
+		handler = DefaultCurieHandler.getDefaultHandler();
+		curieMap = HashBiMap.create(handler.getMappings());
+		response = createIRIs(new Random(42), 20, 500).toArray(new IRI[0]);
+		distinct = createIRIs(new Random(7), 2000, 50000).toArray(new IRI[0]);
+	}
+
+	private static List<IRI> createIRIs(Random random, int models, int count) {
+		List<IRI> iris = new ArrayList<IRI>(count);
+		for (int i = 0; i < count; i++) {
+			if (i % 2 == 0) {
+				// model individual
+				String model = String.format("%016x", random.nextInt(models));
+				iris.add(IRI.create("http://model.geneontology.org/" + model + "/" + String.format("%016x", random.nextLong())));
+			}
+			else {
+				String prefix = TERM_PREFIXES[random.nextInt(TERM_PREFIXES.length)];
+				iris.add(IRI.create(prefix + String.format("%07d", random.nextInt(100000))));
+			}
+		}
+		return iris;
+	}
+
+	/**
+	 * The former implementation: scan all mappings for the longest prefix.
+	 */
+	private static String scan(BiMap<String, String> curieMap, IRI iri) {
+		String iriString = iri.toString();
+		String longPrefix = null;
+		String shortPrefix = null;
+		for (Entry<String, String> e : curieMap.inverse().entrySet()) {
+			String currentLongPrefix = e.getKey();
+			int currentLongprefixLength = currentLongPrefix.length();
+			if (iriString.startsWith(currentLongPrefix) &&
+					iriString.length() > currentLongprefixLength) {
+				if (longPrefix == null || currentLongprefixLength > longPrefix.length()) {
+					longPrefix = currentLongPrefix;
+					shortPrefix = e.getValue();
+				}
+			}
+		}
+		if (longPrefix != null) {
+			return shortPrefix + ":" + iriString.substring(longPrefix.length());
+		}
+		return iriString;
+	}
+
+	@Benchmark
+	public void linearScan(Blackhole bh) {
+		for (IRI iri : response) {
+			bh.consume(scan(curieMap, iri));
+		}
+	}
+
+	@Benchmark
+	public void mappedHandler(Blackhole bh) {
+		for (IRI iri : response) {
+			bh.consume(handler.getCuri(iri));
+		}
+	}
+
+	@Benchmark
+	public void linearScanDistinct(Blackhole bh) {
+		for (int i = 0; i < response.length; i++) {
+			bh.consume(scan(curieMap, nextDistinct()));
+		}
+	}
+
+	@Benchmark
+	public void mappedHandlerDistinct(Blackhole bh) {
+		for (int i = 0; i < response.length; i++) {
+			bh.consume(handler.getCuri(nextDistinct()));
+		}
+	}
+
+	private IRI nextDistinct() {
+		IRI iri = distinct[next];
+		next = (next + 1) % distinct.length;
+		return iri;
+	}
+}
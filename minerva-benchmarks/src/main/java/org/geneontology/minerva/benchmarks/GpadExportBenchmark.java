@@ -0,0 +1,64 @@
+package org.geneontology.minerva.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.geneontology.minerva.UndoAwareMolecularModelManager;
+import org.geneontology.minerva.legacy.sparql.GPADSPARQLExport;
+import org.geneontology.rules.engine.WorkingMemory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.semanticweb.owlapi.model.IRI;
+
+/**
+ * GPAD export of a model, like the export-legacy operation. The inferred
+ * model is created by Arachne once, the measurement covers the SPARQL
+ * queries and the GPAD rendering.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class GpadExportBenchmark {
+
+	@Param({BenchmarkFixture.LARGE_MODEL, BenchmarkFixture.SMALL_MODEL})
+	public String model;
+
+	private BenchmarkFixture fixture;
+	private GPADSPARQLExport exporter;
+	private IRI modelIRI;
+	private WorkingMemory inferred;
+
+	@Setup
+	public void setup() throws Exception {
+		fixture = new BenchmarkFixture();
+		UndoAwareMolecularModelManager m3 = fixture.getModels();
+		exporter = new GPADSPARQLExport(fixture.getCurieHandler(), m3.getLegacyRelationShorthandIndex(),
+				m3.getTboxShorthandIndex(), m3.getDoNotAnnotateSubset());
+		modelIRI = BenchmarkFixture.getModelIRI(model);
+		// loads the model
+		fixture.getModel(model);
+		inferred = m3.createCanonicalInferredModel(modelIRI);
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		fixture.dispose();
+	}
+
+	@Benchmark
+	public String exportGPAD() throws Exception {
+		return exporter.exportGPAD(inferred, modelIRI);
+	}
+}
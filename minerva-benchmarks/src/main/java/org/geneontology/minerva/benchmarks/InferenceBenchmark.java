@@ -0,0 +1,66 @@
+package org.geneontology.minerva.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.geneontology.minerva.ModelContainer;
+import org.geneontology.minerva.json.InferenceProvider;
+import org.geneontology.minerva.server.inferences.InferenceProviderCreator;
+import org.geneontology.minerva.server.inferences.InferenceProviderCreatorImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reasoning over a model, without the cache of the server, so every call
+ * runs the reasoner. ShEx validation is measured separately, see
+ * {@link ShexValidationBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class InferenceBenchmark {
+
+	@Param({BenchmarkFixture.LARGE_MODEL, BenchmarkFixture.SMALL_MODEL})
+	public String model;
+
+	@Param({"elk", "arachne"})
+	public String reasoner;
+
+	private BenchmarkFixture fixture;
+	private InferenceProviderCreator ipc;
+	private ModelContainer container;
+
+	@Setup
+	public void setup() throws Exception {
+		fixture = new BenchmarkFixture();
+		if ("elk".equals(reasoner)) {
+			ipc = InferenceProviderCreatorImpl.createElk(false, fixture.getShex());
+		}
+		else {
+			ipc = InferenceProviderCreatorImpl.createArachne(fixture.getModels().getRuleEngine(), fixture.getShex());
+		}
+		container = fixture.getModel(model);
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		fixture.dispose();
+	}
+
+	@Benchmark
+	public InferenceProvider create() throws Exception {
+		return ipc.create(container);
+	}
+}
@@ -0,0 +1,121 @@
+package org.geneontology.minerva.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.geneontology.minerva.ModelContainer;
+import org.geneontology.minerva.UndoAwareMolecularModelManager;
+import org.geneontology.rules.engine.WorkingMemory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.semanticweb.owlapi.model.AddAxiom;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAnnotation;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLNamedIndividual;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyChange;
+import org.semanticweb.owlapi.model.RemoveAxiom;
+
+/**
+ * The Arachne working memory of a model after a one edge edit, as used by
+ * the GPAD export and the explanations. With <code>incremental</code> the
+ * edit is applied to the working memory of the previous request, with
+ * <code>rebuild</code> the working memory is created from scratch. The edit
+ * is applied and reverted outside of the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class InferredModelBenchmark {
+
+	private static final IRI ENABLED_BY = IRI.create("http://purl.obolibrary.org/obo/RO_0002333");
+	private static final IRI MOLECULAR_FUNCTION = IRI.create("http://purl.obolibrary.org/obo/GO_0003674");
+	private static final IRI CONTRIBUTOR = IRI.create("http://purl.org/dc/elements/1.1/contributor");
+
+	@Param({BenchmarkFixture.LARGE_MODEL, BenchmarkFixture.SMALL_MODEL})
+	public String model;
+
+	@Param({"incremental", "rebuild"})
+	public String mode;
+
+	private BenchmarkFixture fixture;
+	private UndoAwareMolecularModelManager m3;
+	private ModelContainer container;
+	private IRI modelIRI;
+	private List<OWLAxiom> edit;
+	private boolean applied = false;
+
+	@Setup
+	public void setup() throws Exception {
+		fixture = new BenchmarkFixture();
+		m3 = fixture.getModels();
+		modelIRI = BenchmarkFixture.getModelIRI(model);
+		container = fixture.getModel(model);
+		OWLOntology abox = container.getAboxOntology();
+		OWLDataFactory f = container.getOWLDataFactory();
+		// new activity enabled by an existing individual
+		OWLNamedIndividual target = abox.getIndividualsInSignature().iterator().next();
+		OWLNamedIndividual activity = f.getOWLNamedIndividual(IRI.create(modelIRI + "/benchmark-mf"));
+		OWLAnnotation contributor = f.getOWLAnnotation(f.getOWLAnnotationProperty(CONTRIBUTOR), f.getOWLLiteral("benchmark"));
+		edit = new ArrayList<OWLAxiom>();
+		edit.add(f.getOWLDeclarationAxiom(activity));
+		edit.add(f.getOWLClassAssertionAxiom(f.getOWLClass(MOLECULAR_FUNCTION), activity));
+		edit.add(f.getOWLObjectPropertyAssertionAxiom(f.getOWLObjectProperty(ENABLED_BY), activity, target, Collections.singleton(contributor)));
+		m3.createInferredModel(modelIRI);
+	}
+
+	@Setup(Level.Invocation)
+	public void edit() {
+		if (applied) {
+			container.applyChanges(changes(false));
+			// re-derived without the edit
+			m3.createInferredModel(modelIRI);
+		}
+		container.applyChanges(changes(true));
+		applied = true;
+	}
+
+	private List<OWLOntologyChange> changes(boolean add) {
+		List<OWLOntologyChange> changes = new ArrayList<OWLOntologyChange>();
+		for (OWLAxiom ax : edit) {
+			if (add) {
+				changes.add(new AddAxiom(container.getAboxOntology(), ax));
+			}
+			else {
+				changes.add(new RemoveAxiom(container.getAboxOntology(), ax));
+			}
+		}
+		return changes;
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		fixture.dispose();
+	}
+
+	@Benchmark
+	public WorkingMemory createInferredModel() {
+		if ("incremental".equals(mode)) {
+			return m3.createInferredModel(modelIRI);
+		}
+		return m3.createInferredModel(container.getAboxOntology(), modelIRI);
+	}
+}
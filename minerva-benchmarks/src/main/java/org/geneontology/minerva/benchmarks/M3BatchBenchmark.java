@@ -0,0 +1,125 @@
+package org.geneontology.minerva.benchmarks;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.geneontology.minerva.ModelContainer;
+import org.geneontology.minerva.json.MolecularModelJsonRenderer;
+import org.geneontology.minerva.lookup.ExternalLookupService;
+import org.geneontology.minerva.server.StartUpTool;
+import org.geneontology.minerva.server.handler.JsonOrJsonpBatchHandler;
+import org.geneontology.minerva.server.handler.M3BatchHandler.M3BatchResponse;
+import org.geneontology.minerva.server.handler.M3BatchHandler.M3Request;
+import org.geneontology.minerva.server.inferences.InferenceProviderCreator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLObjectProperty;
+
+/**
+ * A typical edit from the client, as two batches: add an activity with its
+ * gene product, then remove both again. The model is unchanged afterwards.
+ * The requests are parsed from JSON in the setup, the measurement starts
+ * at the batch handler.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class M3BatchBenchmark {
+
+	private static final String USER = "http://orcid.org/0000-0000-0000-0000";
+	private static final Set<String> GROUPS = Collections.singleton("http://geneontology.org");
+
+	@Param({BenchmarkFixture.LARGE_MODEL, BenchmarkFixture.SMALL_MODEL})
+	public String model;
+
+	/**
+	 * Reasoner option of the server, none for edits without the reasoner.
+	 */
+	@Param({"none", "elk", "arachne"})
+	public String reasoner;
+
+	private BenchmarkFixture fixture;
+	private JsonOrJsonpBatchHandler handler;
+	private boolean useReasoner;
+	private String modelCurie;
+	private ModelContainer container;
+	private IRI activity;
+	private M3Request[] addRequests;
+	private M3Request[] removeRequests;
+
+	@Setup
+	public void setup() throws Exception {
+		fixture = new BenchmarkFixture();
+		InferenceProviderCreator ipc = null;
+		useReasoner = !"none".equals(reasoner);
+		if (useReasoner) {
+			ipc = StartUpTool.createInferenceProviderCreator(reasoner, fixture.getModels(), fixture.getShex());
+		}
+		handler = new JsonOrJsonpBatchHandler(fixture.getModels(), "development", ipc,
+				Collections.<OWLObjectProperty>emptySet(), (ExternalLookupService) null);
+		container = fixture.getModel(model);
+		modelCurie = fixture.getCurieHandler().getCuri(container.getModelId());
+		// fixed IRIs, so the second batch can remove the new individuals
+		String mf = modelCurie + "/benchmark-mf";
+		String gp = modelCurie + "/benchmark-gp";
+		activity = fixture.getCurieHandler().getIRI(mf);
+		addRequests = parse("["
+				+ addIndividual(mf, "GO:0004672") + ","
+				+ addIndividual(gp, "UniProtKB:P04637") + ","
+				+ "{\"entity\":\"edge\",\"operation\":\"add\",\"arguments\":{\"model-id\":\"" + modelCurie + "\","
+				+ "\"subject\":\"" + mf + "\",\"object\":\"" + gp + "\",\"predicate\":\"RO:0002333\"}}"
+				+ "]");
+		removeRequests = parse("["
+				+ removeIndividual(mf) + ","
+				+ removeIndividual(gp)
+				+ "]");
+	}
+
+	private String addIndividual(String individual, String cls) {
+		return "{\"entity\":\"individual\",\"operation\":\"add\",\"arguments\":{\"model-id\":\"" + modelCurie + "\","
+				+ "\"individual-iri\":\"" + individual + "\","
+				+ "\"expressions\":[{\"type\":\"class\",\"id\":\"" + cls + "\"}]}}";
+	}
+
+	private String removeIndividual(String individual) {
+		return "{\"entity\":\"individual\",\"operation\":\"remove\",\"arguments\":{\"model-id\":\"" + modelCurie + "\","
+				+ "\"individual\":\"" + individual + "\"}}";
+	}
+
+	private static M3Request[] parse(String json) {
+		return MolecularModelJsonRenderer.parseFromJson(json, M3Request[].class);
+	}
+
+	private M3BatchResponse check(M3BatchResponse response, boolean added) {
+		if (container.getAboxOntology().containsIndividualInSignature(activity) != added) {
+			throw new IllegalStateException(MolecularModelJsonRenderer.renderToJson(response, false));
+		}
+		return response;
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		fixture.dispose();
+	}
+
+	@Benchmark
+	public M3BatchResponse addAndRemove() {
+		check(handler.m3Batch(USER, GROUPS, "action", null, addRequests, useReasoner, true), true);
+		return check(handler.m3Batch(USER, GROUPS, "action", null, removeRequests, useReasoner, true), false);
+	}
+}
@@ -0,0 +1,67 @@
+package org.geneontology.minerva.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.geneontology.minerva.ModelContainer;
+import org.geneontology.minerva.json.InferenceProvider;
+import org.geneontology.minerva.json.JsonModel;
+import org.geneontology.minerva.json.MolecularModelJsonRenderer;
+import org.geneontology.minerva.server.inferences.InferenceProviderCreatorImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rendering a model for the client, with the ontology journal for labels,
+ * like the batch handler. Optionally with the inferred types from ELK.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RenderBenchmark {
+
+	@Param({BenchmarkFixture.LARGE_MODEL, BenchmarkFixture.SMALL_MODEL})
+	public String model;
+
+	@Param({"false", "true"})
+	public boolean inferences;
+
+	private BenchmarkFixture fixture;
+	private ModelContainer container;
+	private String modelCurie;
+	private InferenceProvider inferenceProvider;
+
+	@Setup
+	public void setup() throws Exception {
+		fixture = new BenchmarkFixture();
+		container = fixture.getModel(model);
+		modelCurie = fixture.getCurieHandler().getCuri(container.getModelId());
+		if (inferences) {
+			inferenceProvider = InferenceProviderCreatorImpl.createElk(false, fixture.getShex()).create(container);
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		fixture.dispose();
+	}
+
+	@Benchmark
+	public JsonModel renderModel() {
+		MolecularModelJsonRenderer renderer = new MolecularModelJsonRenderer(modelCurie, container.getAboxOntology(),
+				fixture.getModels().getGolego_repo(), inferenceProvider, fixture.getCurieHandler());
+		return renderer.renderModel();
+	}
+}
@@ -0,0 +1,73 @@
+package org.geneontology.minerva.benchmarks;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.apache.jena.rdf.model.Statement;
+import org.geneontology.jena.SesameJena;
+import org.geneontology.minerva.UndoAwareMolecularModelManager;
+import org.geneontology.rules.engine.Triple;
+import org.geneontology.rules.util.Bridge;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.semanticweb.owlapi.model.parameters.Imports;
+
+import scala.collection.JavaConverters;
+
+/**
+ * The RBox triples added to the input of each inferred model.
+ * <code>createSchemaTriples</code> translates the RBox like each
+ * <code>createInferredModel</code> call did before, with a temporary
+ * ontology; <code>getSchemaTriples</code> is the shared set of the model
+ * manager. The difference is the saving per inferred model.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SchemaTriplesBenchmark {
+
+	private BenchmarkFixture fixture;
+	private UndoAwareMolecularModelManager m3;
+
+	@Setup
+	public void setup() throws Exception {
+		fixture = new BenchmarkFixture();
+		m3 = fixture.getModels();
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		fixture.dispose();
+	}
+
+	@Benchmark
+	public Set<Triple> createSchemaTriples() throws Exception {
+		OWLOntologyManager m = OWLManager.createOWLOntologyManager();
+		OWLOntology schemaOntology = m.createOntology(IRI.create("http://therules.org"));
+		m.addAxioms(schemaOntology, m3.getOntology().getRBoxAxioms(Imports.INCLUDED));
+		Set<Statement> statements = JavaConverters.setAsJavaSetConverter(SesameJena.ontologyAsTriples(schemaOntology)).asJava();
+		return statements.stream().map(s -> Bridge.tripleFromJena(s.asTriple())).collect(Collectors.toSet());
+	}
+
+	@Benchmark
+	public Set<Triple> getSchemaTriples() {
+		return m3.getSchemaTriples();
+	}
+}
@@ -0,0 +1,71 @@
+package org.geneontology.minerva.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.geneontology.minerva.ModelContainer;
+import org.geneontology.minerva.util.JenaOwlTool;
+import org.geneontology.minerva.validation.ShexValidationReport;
+import org.geneontology.minerva.validation.ShexValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Shape map validation of a model with the GO-CAM shapes. The model is
+ * converted to Jena and enriched with the superclasses once, as the
+ * inference provider does before each validation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ShexValidationBenchmark {
+
+	@Param({BenchmarkFixture.LARGE_MODEL, BenchmarkFixture.SMALL_MODEL})
+	public String model;
+
+	private BenchmarkFixture fixture;
+	private ShexValidator shex;
+	private Model enriched;
+	private Model jenaModel;
+
+	@Setup
+	public void setup() throws Exception {
+		fixture = new BenchmarkFixture();
+		shex = fixture.getShex();
+		ModelContainer container = fixture.getModel(model);
+		enriched = shex.enrichSuperClasses(JenaOwlTool.getJenaModel(container.getAboxOntology()));
+	}
+
+	/**
+	 * The validation closes the model, validate a fresh copy each time.
+	 */
+	@Setup(Level.Invocation)
+	public void copyModel() {
+		jenaModel = ModelFactory.createDefaultModel().add(enriched);
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		fixture.dispose();
+	}
+
+	@Benchmark
+	public ShexValidationReport runShapeMapValidation() {
+		return shex.runShapeMapValidation(jenaModel);
+	}
+}
@@ -1,6 +1,7 @@
 package org.geneontology.minerva.cli;
 
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
@@ -13,15 +14,22 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -38,8 +46,10 @@ import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 import org.geneontology.minerva.BlazegraphMolecularModelManager;
 import org.geneontology.minerva.BlazegraphOntologyManager;
+import org.geneontology.minerva.BulkModelImporter;
 import org.geneontology.minerva.CoreMolecularModelManager;
 import org.geneontology.minerva.ModelContainer;
+import org.geneontology.minerva.RuleSnapshot;
 import org.geneontology.minerva.UndoAwareMolecularModelManager;
 import org.geneontology.minerva.curie.CurieHandler;
 import org.geneontology.minerva.curie.CurieMappings;
@@ -56,7 +66,7 @@ import org.geneontology.minerva.lookup.ExternalLookupService.LookupEntry;
 import org.geneontology.minerva.model.ActivityUnit;
 import org.geneontology.minerva.model.GoCamModel;
 import org.geneontology.minerva.model.GoCamModelStats;
-import org.geneontology.minerva.server.StartUpTool;
+import org.geneontology.minerva.server.inferences.CachingInferenceProviderCreatorImpl;
 import org.geneontology.minerva.server.inferences.InferenceProviderCreator;
 import org.geneontology.minerva.server.validation.MinervaShexValidator;
 import org.geneontology.minerva.util.BlazegraphMutationCounter;
@@ -74,6 +84,7 @@ import org.openrdf.query.MalformedQueryException;
 import org.openrdf.query.QueryLanguage;
 import org.openrdf.query.UpdateExecutionException;
 import org.openrdf.repository.RepositoryException;
+import org.openrdf.rio.RDFFormat;
 import org.openrdf.rio.RDFHandlerException;
 import org.openrdf.rio.RDFParseException;
 import org.semanticweb.elk.owlapi.ElkReasonerFactory;
@@ -199,6 +210,12 @@ public class CommandLineInterface {
 				.hasArg(false)
 				.build();
 		methods.addOption(validate);
+		Option rule_snapshot = Option.builder()
+				.longOpt("build-rule-snapshot")
+				.desc("Translate the tbox ontology into Arachne rules and write them to a snapshot file for the server start up.")
+				.hasArg(false)
+				.build();
+		methods.addOption(rule_snapshot);
 
 		main_options.addOptionGroup(methods);
 
@@ -211,10 +228,17 @@ public class CommandLineInterface {
 				add_taxon_options.addOption(add_taxon_metadata);
 				add_taxon_options.addOption("j", "journal", true, "This is the go-cam journal that will be updated with taxon annotations.");
 				add_taxon_options.addOption("ontojournal", "ontojournal", true, "Specify a blazegraph journal file containing the merged, pre-reasoned tbox aka go-lego.owl");
+				add_taxon_options.addOption("b", "bulk", false, "Compute all model taxa in memory and write them in large batched transactions");
+				add_taxon_options.addOption("s", "batch-size", true, "Number of taxon annotations per transaction for the bulk mode");
 				cmd = parser.parse( add_taxon_options, args, false);
 				String journalFilePath = cmd.getOptionValue("j"); //--journal
 				String ontojournal = cmd.getOptionValue("ontojournal"); //--folder
-				addTaxonMetaData(journalFilePath, ontojournal);
+				if(cmd.hasOption("b")) {
+					int batchSize = Integer.parseInt(cmd.getOptionValue("s", String.valueOf(BlazegraphMolecularModelManager.DEFAULT_TAXON_BATCH_SIZE)));
+					addTaxonMetaDataBulk(journalFilePath, ontojournal, batchSize);
+				}else {
+					addTaxonMetaData(journalFilePath, ontojournal);
+				}
 			}
 
 			if(cmd.hasOption("clean-gocams")) {
@@ -254,20 +278,39 @@ public class CommandLineInterface {
 				dump_options.addOption("j", "journal", true, "Sets the Blazegraph journal file for the database");
 				dump_options.addOption("f", "folder", true, "Sets the output folder the GO-CAM model files");
 				dump_options.addOption("p", "model-id-prefix", true, "prefix for GO-CAM model ids");
+				dump_options.addOption("t", "threads", true, "Number of models exported concurrently, default: number of processors");
+				dump_options.addOption("z", "gzip", false, "Compress the output files with gzip");
+				dump_options.addOption("s", "single-file", true, "Write all models into this file, one named graph per model, instead of a folder");
+				dump_options.addOption("r", "format", true, "Format of the single file: nquads (default) or trig");
 				cmd = parser.parse( dump_options, args, false);
 				String journalFilePath = cmd.getOptionValue("j"); //--journal
 				String outputFolder = cmd.getOptionValue("f"); //--folder
 				String modelIdPrefix = cmd.getOptionValue("p"); //--prefix
-				modelsToOWL(journalFilePath, outputFolder, modelIdPrefix);
+				int threads = Integer.parseInt(cmd.getOptionValue("t", String.valueOf(Runtime.getRuntime().availableProcessors())));
+				if(cmd.hasOption("s")) {
+					RDFFormat format = "trig".equalsIgnoreCase(cmd.getOptionValue("r")) ? RDFFormat.TRIG : RDFFormat.NQUADS;
+					modelsToSingleFile(journalFilePath, cmd.getOptionValue("s"), modelIdPrefix, format, threads, cmd.hasOption("z"));
+				}else {
+					modelsToOWL(journalFilePath, outputFolder, modelIdPrefix, threads, cmd.hasOption("z"));
+				}
 			}else if(cmd.hasOption("import-owl-models")) {
 				Options import_options = new Options();
 				import_options.addOption(import_owl);
 				import_options.addOption("j", "journal", true, "Sets the Blazegraph journal file for the database");
 				import_options.addOption("f", "folder", true, "Sets the input folder the GO-CAM model files");
+				import_options.addOption("b", "bulk", false, "Parse each file once on a pool of threads and load the models in batched transactions");
+				import_options.addOption("t", "threads", true, "Number of parser threads for the bulk import");
+				import_options.addOption("s", "batch-size", true, "Minimum number of triples per transaction for the bulk import");
 				cmd = parser.parse( import_options, args, false);
 				String journalFilePath = cmd.getOptionValue("j"); //--journal
 				String outputFolder = cmd.getOptionValue("f"); //--folder
-				importOWLModels(journalFilePath, outputFolder);
+				if(cmd.hasOption("b")) {
+					int threads = Integer.parseInt(cmd.getOptionValue("t", String.valueOf(Runtime.getRuntime().availableProcessors())));
+					int batchSize = Integer.parseInt(cmd.getOptionValue("s", String.valueOf(BulkModelImporter.DEFAULT_BATCH_STATEMENTS)));
+					importOWLModelsBulk(journalFilePath, outputFolder, threads, batchSize);
+				}else {
+					importOWLModels(journalFilePath, outputFolder);
+				}
 			}else if(cmd.hasOption("sparql-update")) {
 				Options sparql_options = new Options();
 				sparql_options.addOption(sparql);
@@ -315,6 +358,7 @@ public class CommandLineInterface {
 				gpad_options.addOption("cat", "catalog", true, "Catalog file for tbox ontology. " + 
 						"Use this to specify local copies of the ontology and or its imports to " + 
 						"speed and control the process. If not used, will download the tbox and all its imports.");
+				gpad_options.addOption("rules", "rule-snapshot", true, "Rule snapshot file for the tbox, see --build-rule-snapshot. Created if missing or outdated.");
 				cmd = parser.parse(gpad_options, args, false);
 				String inputDB = cmd.getOptionValue("input");
 				String gpadOutputFolder = cmd.getOptionValue("gpad-output");
@@ -322,7 +366,18 @@ public class CommandLineInterface {
 				String modelIdcurie = cmd.getOptionValue("model-id-curie");
 				String ontologyIRI = cmd.getOptionValue("ontology");
 				String catalog = cmd.getOptionValue("catalog");
-				legoToAnnotationsSPARQL(modelIdPrefix, modelIdcurie, inputDB, gpadOutputFolder, ontologyIRI, catalog);
+				String ruleSnapshot = cmd.getOptionValue("rule-snapshot");
+				legoToAnnotationsSPARQL(modelIdPrefix, modelIdcurie, inputDB, gpadOutputFolder, ontologyIRI, catalog, ruleSnapshot);
+			}else if(cmd.hasOption("build-rule-snapshot")) {
+				Options rule_options = new Options();
+				rule_options.addOption(rule_snapshot);
+				rule_options.addOption("ont", "ontology", true, "IRI of tbox ontology - usually default go-lego.owl");
+				rule_options.addOption("cat", "catalog", true, "Catalog file for tbox ontology. " + 
+						"Use this to specify local copies of the ontology and or its imports to " + 
+						"speed and control the process. If not used, will download the tbox and all its imports.");
+				rule_options.addOption("o", "output", true, "The snapshot file to write, use it with --rule-snapshot for the server");
+				cmd = parser.parse(rule_options, args, false);
+				buildRuleSnapshot(cmd.getOptionValue("ontology"), cmd.getOptionValue("catalog"), cmd.getOptionValue("output"));
 			}else if(cmd.hasOption("version")) {
 				printVersion();
 			}else if(cmd.hasOption("validate-go-cams")) {
@@ -346,6 +401,8 @@ public class CommandLineInterface {
 				validate_options.addOption("s", "shexpath", true, "Specify a shex schema file.  Otherwise will download from go_shapes repo.");
 				validate_options.addOption("ontojournal", "ontojournal", true, "Specify a blazegraph journal file containing the merged, pre-reasoned tbox aka go-lego.owl");
 				validate_options.addOption("reasoner_report", "reasoner_report", false, "Add a report with reasoning results to the output of the validation. ");
+				validate_options.addOption("th", "threads", true, "Number of models validated concurrently, default: number of processors");
+				validate_options.addOption("mt", "model-timeout", true, "Seconds for the validation of one model, after that the model is reported as failed. Default: no timeout");
 
 
 				cmd = parser.parse(validate_options, args, false);
@@ -391,11 +448,13 @@ public class CommandLineInterface {
 				if(cmd.hasOption("reasoner_report")) {
 					run_reasoner_report = true;
 				}
-				validateGoCams(input, outputFolder, ontologyIRI, catalog, modelIdPrefix, modelIdcurie, shexpath, shapemappath, travisMode, shouldFail, checkShex, go_lego_journal_file, run_reasoner_report);
+				int threads = Integer.parseInt(cmd.getOptionValue("threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+				long modelTimeout = Long.parseLong(cmd.getOptionValue("model-timeout", "0"));
+				validateGoCams(input, outputFolder, ontologyIRI, catalog, modelIdPrefix, modelIdcurie, shexpath, shapemappath, travisMode, shouldFail, checkShex, go_lego_journal_file, run_reasoner_report, threads, modelTimeout);
 			}
 		}catch( ParseException exp ) {
 			System.out.println( "Parameter parse exception.  Note that the first parameter must be one of: "
-					+ "[--validate-go-cams, --dump-owl-models, --import-owl-models, --sparql-update, --owl-lego-to-json, --lego-to-gpad-sparql, --version, --update-gene-product-types]"
+					+ "[--validate-go-cams, --dump-owl-models, --import-owl-models, --sparql-update, --owl-lego-to-json, --lego-to-gpad-sparql, --build-rule-snapshot, --version, --update-gene-product-types]"
 					+ "\nSubsequent parameters are specific to each top level command. "
 					+ "\nError message: " + exp.getMessage() );
 			System.exit(-1);
@@ -415,6 +474,21 @@ public class CommandLineInterface {
 	 * @throws Exception
 	 */
 	public static void modelsToOWL(String journalFilePath, String outputFolder, String modelIdPrefix) throws Exception {
+		modelsToOWL(journalFilePath, outputFolder, modelIdPrefix, Runtime.getRuntime().availableProcessors(), false);
+	}
+
+	/**
+	 * Given a blazegraph journal with go-cams in it, write them all out as OWL files,
+	 * exporting several models concurrently.
+	 * cli --dump-owl-models
+	 * @param journalFilePath
+	 * @param outputFolder
+	 * @param modelIdPrefix
+	 * @param threads
+	 * @param gzip
+	 * @throws Exception
+	 */
+	public static void modelsToOWL(String journalFilePath, String outputFolder, String modelIdPrefix, int threads, boolean gzip) throws Exception {
 		if(modelIdPrefix==null) {
 			modelIdPrefix = "http://model.geneontology.org/";
 		}
@@ -434,7 +508,36 @@ public class CommandLineInterface {
 		OWLOntology dummy = OWLManager.createOWLOntologyManager().createOntology(IRI.create("http://example.org/dummy"));
 		CurieHandler curieHandler = new MappedCurieHandler();
 		BlazegraphMolecularModelManager<Void> m3 = new BlazegraphMolecularModelManager<>(dummy, curieHandler, modelIdPrefix, journalFilePath, outputFolder, null);
-		m3.dumpAllStoredModels();
+		m3.dumpAllStoredModels(new File(outputFolder), threads, gzip);
+		m3.dispose();
+	}
+
+	/**
+	 * Given a blazegraph journal with go-cams in it, write them all into a
+	 * single N-Quads or TriG file, one named graph per model.
+	 * cli --dump-owl-models --single-file
+	 * @param journalFilePath
+	 * @param outputFile
+	 * @param modelIdPrefix
+	 * @param format
+	 * @param threads
+	 * @param gzip
+	 * @throws Exception
+	 */
+	public static void modelsToSingleFile(String journalFilePath, String outputFile, String modelIdPrefix, RDFFormat format, int threads, boolean gzip) throws Exception {
+		if(modelIdPrefix==null) {
+			modelIdPrefix = "http://model.geneontology.org/";
+		}
+		if (journalFilePath == null) {
+			System.err.println("No journal file was configured.");
+			System.exit(-1);
+			return;
+		}
+
+		OWLOntology dummy = OWLManager.createOWLOntologyManager().createOntology(IRI.create("http://example.org/dummy"));
+		CurieHandler curieHandler = new MappedCurieHandler();
+		BlazegraphMolecularModelManager<Void> m3 = new BlazegraphMolecularModelManager<>(dummy, curieHandler, modelIdPrefix, journalFilePath, null, null);
+		m3.dumpAllStoredModels(new File(outputFile), format, threads, gzip);
 		m3.dispose();
 	}
 
@@ -491,6 +594,51 @@ public class CommandLineInterface {
 		LOGGER.info("done loading gocams");
 	}
 
+	/**
+	 * Load the go-cam files in the input folder into the journal, parsing
+	 * each file once on a pool of threads and writing batched transactions.
+	 * cli import-owl-models --bulk
+	 * @param journalFilePath
+	 * @param inputFolder
+	 * @param threads
+	 * @param batchSize minimum number of triples per transaction
+	 * @throws Exception
+	 */
+	public static void importOWLModelsBulk(String journalFilePath, String inputFolder, int threads, int batchSize) throws Exception {
+		// minimal inputs
+		if (journalFilePath == null) {
+			System.err.println("No journal file was configured.");
+			System.exit(-1);
+			return;
+		}
+		if (inputFolder == null) {
+			System.err.println("No input folder was configured.");
+			System.exit(-1);
+			return;
+		}
+
+		OWLOntology dummy = OWLManager.createOWLOntologyManager().createOntology(IRI.create("http://example.org/dummy"));
+		String modelIdPrefix = "http://model.geneontology.org/"; // this will not be used for anything
+		CurieHandler curieHandler = new MappedCurieHandler();
+		BlazegraphMolecularModelManager<Void> m3 = new BlazegraphMolecularModelManager<>(dummy, curieHandler, modelIdPrefix, journalFilePath, null, null);
+		//in case of update rather than whole new journal
+		Set<IRI> stored = new HashSet<IRI>(m3.getStoredModelIds());
+		List<File> files = new ArrayList<File>();
+		for (File file : FileUtils.listFiles(new File(inputFolder), null, true)) {
+			if(!file.getName().endsWith("ttl")){
+				LOGGER.info("Ignored for not ending with .ttl" + file);
+				continue;
+			}
+			files.add(file);
+		}
+		LOGGER.info("bulk loading "+files.size()+" gocams from "+inputFolder+" with "+threads+" threads");
+		BulkModelImporter importer = new BulkModelImporter(m3.getWriteQueue(), m3.getModelIdRegistry(), threads);
+		importer.setBatchStatements(batchSize);
+		importer.importFiles(files, true, stored);
+		m3.dispose();
+		LOGGER.info("done loading gocams");
+	}
+
 	/**
 	 * 
 	 * @param journalFilePath
@@ -695,9 +843,11 @@ public class CommandLineInterface {
 	 * @param inputDB
 	 * @param gpadOutputFolder
 	 * @param ontologyIRI
+	 * @param catalog
+	 * @param ruleSnapshot rule snapshot file or null
 	 * @throws Exception
 	 */
-	public static void legoToAnnotationsSPARQL(String modelIdPrefix, String modelIdcurie, String inputDB, String gpadOutputFolder, String ontologyIRI, String catalog) throws Exception {
+	public static void legoToAnnotationsSPARQL(String modelIdPrefix, String modelIdcurie, String inputDB, String gpadOutputFolder, String ontologyIRI, String catalog, String ruleSnapshot) throws Exception {
 		if(modelIdPrefix==null) {
 			modelIdPrefix = "http://model.geneontology.org/";
 		}
@@ -725,6 +875,9 @@ public class CommandLineInterface {
 		CurieMappings localMappings = new CurieMappings.SimpleCurieMappings(Collections.singletonMap(modelIdcurie, modelIdPrefix));
 		CurieHandler curieHandler = new MappedCurieHandler(DefaultCurieHandler.loadDefaultMappings(), localMappings);
 		BlazegraphMolecularModelManager<Void> m3 = new BlazegraphMolecularModelManager<>(ontology, curieHandler, modelIdPrefix, inputDB, null, null);
+		if(ruleSnapshot!=null) {
+			m3.setRuleSnapshot(new File(ruleSnapshot));
+		}
 		final String immutableModelIdPrefix = modelIdPrefix;
 		final String immutableGpadOutputFolder = gpadOutputFolder;
 		m3.getAvailableModelIds().stream().parallel().forEach(modelIRI -> {
@@ -745,6 +898,35 @@ public class CommandLineInterface {
 	}
 
 
+	/**
+	 * Translate the tbox into Arachne rules and write them to a snapshot
+	 * file, which is used by the server as long as the tbox is unchanged.
+	 * cli --build-rule-snapshot
+	 * @param ontologyIRI
+	 * @param catalog
+	 * @param outputFile
+	 * @throws Exception
+	 */
+	public static void buildRuleSnapshot(String ontologyIRI, String catalog, String outputFile) throws Exception {
+		if(ontologyIRI==null) {
+			ontologyIRI = "http://purl.obolibrary.org/obo/go/extensions/go-lego.owl";
+		}
+		if(outputFile==null) {
+			System.err.println("Missing -o .  Need to specify the rule snapshot file to write.");
+			System.exit(-1);
+		}
+		OWLOntologyManager ontman = OWLManager.createOWLOntologyManager();
+		if(catalog!=null) {
+			LOGGER.info("using catalog: "+catalog);
+			ontman.setIRIMappers(Sets.newHashSet(new owltools.io.CatalogXmlIRIMapper(catalog)));
+		}else {
+			LOGGER.info("no catalog, resolving all ontology uris directly");
+		}
+		OWLOntology ontology = ontman.loadOntology(IRI.create(ontologyIRI));
+		int rules = RuleSnapshot.write(ontology, new File(outputFile));
+		LOGGER.info("wrote "+rules+" rules to: "+outputFile);
+	}
+
 	/**
 	 * --validate-go-cams
 	 * -i /GitHub/GO_Shapes/test_ttl/go_cams/should_pass/ 
@@ -767,6 +949,38 @@ public class CommandLineInterface {
 			String ontologyIRI, String catalog, String modelIdPrefix, String modelIdcurie, 
 			String shexpath, String shapemappath, boolean travisMode, boolean shouldFail, boolean checkShex,  
 			String go_lego_journal_file, boolean run_reasoner_report) throws OWLOntologyCreationException, IOException {
+		validateGoCams(input, outputFolder, ontologyIRI, catalog, modelIdPrefix, modelIdcurie, shexpath, shapemappath, 
+				travisMode, shouldFail, checkShex, go_lego_journal_file, run_reasoner_report, 1, 0);
+	}
+
+	/**
+	 * Validate the models on a pool of worker threads. The reports are
+	 * written by the calling thread, in the order of the model ids, so they
+	 * are the same for any number of threads. Each model is unloaded after
+	 * its validation.
+	 * 
+	 * @param input
+	 * @param outputFolder
+	 * @param ontologyIRI
+	 * @param catalog
+	 * @param modelIdPrefix
+	 * @param modelIdcurie
+	 * @param shexpath
+	 * @param shapemappath
+	 * @param travisMode
+	 * @param shouldFail
+	 * @param checkShex
+	 * @param go_lego_journal_file
+	 * @param run_reasoner_report
+	 * @param threads number of models validated concurrently
+	 * @param modelTimeout seconds for the validation of a model, counted from its start, 0 for no timeout
+	 * @throws OWLOntologyCreationException
+	 * @throws IOException
+	 */
+	public static void validateGoCams(String input, String outputFolder,  
+			String ontologyIRI, String catalog, String modelIdPrefix, String modelIdcurie, 
+			String shexpath, String shapemappath, boolean travisMode, boolean shouldFail, boolean checkShex,  
+			String go_lego_journal_file, boolean run_reasoner_report, int threads, long modelTimeout) throws OWLOntologyCreationException, IOException {
 		LOGGER.setLevel(Level.INFO);
 		String inputDB = "blazegraph.jnl";
 		String shexFileUrl = "https://raw.githubusercontent.com/geneontology/go-shapes/master/shapes/go-cam-shapes.shex";
@@ -916,217 +1130,114 @@ public class CommandLineInterface {
 		//shex validator is ready, now build the inference provider (which provides access to the shex validator and provides inferences useful for shex)
 		String reasonerOpt = "arachne"; 
 		LOGGER.info("Building OWL inference provider: "+reasonerOpt);
-		InferenceProviderCreator ipc = StartUpTool.createInferenceProviderCreator(reasonerOpt, m3, shex);
-		LOGGER.info("Validating models: "+reasonerOpt);
+		InferenceProviderCreator ipc = CachingInferenceProviderCreatorImpl.createArachne(m3.getRuleEngine(), shex, threads);
+		LOGGER.info("Validating models: "+reasonerOpt+" with "+threads+" threads");
 
-		//Set up all the report files.  
-		String basic_output_file = outputFolder+"main_report.txt";
-		String explanations_file = outputFolder+"explanations.txt";
-		String activity_output_file = outputFolder+"activity_report.txt";
-		if(outputFolder!=null) {
-			try {
-				//valid or not
-				FileWriter basic_shex_output = new FileWriter(basic_output_file, false);
-				basic_shex_output.write("filename\tmodel_title\tmodel_url\tmodelstate\tcontributor\tprovider\tdate\tOWL_consistent\tshex_valid\tshex_meta_problem\tshex_data_problem\tvalidation_time_milliseconds\taxioms\tn_rows_gpad\t");
-				basic_shex_output.write(GoCamModelStats.statsHeader()+"\n");
-				basic_shex_output.close();
-				//tab delimited explanations for failures
-				FileWriter explanations = new FileWriter(explanations_file, false);
-				explanations.write("filename\tmodel_title\tmodel_iri\tnode\tNode_types\tproperty\tIntended_range_shapes\tobject\tObject_types\tObject_shapes\n");
-				explanations.close();
-				//tab delimited summary of properties of activity units
-				FileWriter activity_output = new FileWriter(activity_output_file, false);
-				activity_output.write("filename\tmodel_title\tmodel_url\tmodelstate\tcontributor\tprovider\tdate\tactivity_iri\tactivity_xref\tactivity_label\tcomplete\tinputs\toutputs\tenablers\tlocations\tcausal upstream\tcausal downstream\tpart of n BP\tMF\tBP\n");
-				activity_output.close();
-			} catch (IOException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
-		}	
 		//this will generate the json file used for the go rules report for the pipeline
 		BatchPipelineValidationReport pipe_report = null;
 		Set<ErrorMessage> owl_errors = new HashSet<ErrorMessage>();
 		Set<ErrorMessage> shex_errors = new HashSet<ErrorMessage>();
 		pipe_report = new BatchPipelineValidationReport();
+		List<IRI> modelIRIs = new ArrayList<IRI>();
 		try {
-			pipe_report.setNumber_of_models(m3.getAvailableModelIds().size());
+			modelIRIs.addAll(m3.getAvailableModelIds());
+			pipe_report.setNumber_of_models(modelIRIs.size());
 		} catch (IOException e1) {
 			// TODO Auto-generated catch block
 			e1.printStackTrace();
 		}
+		//the reports are written in the order of the model ids, independent of the threads
+		modelIRIs.sort(Comparator.comparing(IRI::toString));
 		int bad_models = 0;  int good_models = 0;
 		final boolean shex_output = checkShex;			
 
 		//only used if OWL reasoning report is requested
 		ReasonerReport reasoner_report = null;
 		if(run_reasoner_report) {
-			reasoner_report = initReasonerReport(outputFolder);
+			reasoner_report = new ReasonerReport();
 		}
-		//now process each gocam
-		try {
-			for(IRI modelIRI : m3.getAvailableModelIds()) {
-				long start = System.currentTimeMillis();
-				String filename = modelid_filename.get(modelIRI.toString());
-				boolean isConsistent = true; //OWL 
-				boolean isConformant = true; //shex
-				if(filename !=null) {
-					LOGGER.info("processing "+filename+"\t"+modelIRI);
-				}else {
-					LOGGER.info("processing \t"+modelIRI);
+		//now process each gocam on the worker threads, only this thread writes the reports
+		//the timeout of a model starts with its validation, a model which timed out gives its thread to a new worker
+		TimedTaskQueue<GoCamValidation> workers = new TimedTaskQueue<GoCamValidation>("validate-go-cams", threads, TimeUnit.SECONDS.toMillis(modelTimeout));
+		//Set up all the report files.  
+		try (Writer basic = new BufferedWriter(new FileWriter(outputFolder+"main_report.txt", false));
+				Writer explanations = new BufferedWriter(new FileWriter(outputFolder+"explanations.txt", false));
+				Writer activity_output = new BufferedWriter(new FileWriter(outputFolder+"activity_report.txt", false));
+				Writer reasoner_output = run_reasoner_report ? new BufferedWriter(new FileWriter(outputFolder+"reasoner_report_all.txt", false)) : null) {
+			//valid or not
+			basic.write("filename\tmodel_title\tmodel_url\tmodelstate\tcontributor\tprovider\tdate\tOWL_consistent\tshex_valid\tshex_meta_problem\tshex_data_problem\tvalidation_time_milliseconds\taxioms\tn_rows_gpad\t");
+			basic.write(GoCamModelStats.statsHeader()+"\n");
+			//tab delimited explanations for failures
+			explanations.write("filename\tmodel_title\tmodel_iri\tnode\tNode_types\tproperty\tIntended_range_shapes\tobject\tObject_types\tObject_shapes\n");
+			//tab delimited summary of properties of activity units
+			activity_output.write("filename\tmodel_title\tmodel_url\tmodelstate\tcontributor\tprovider\tdate\tactivity_iri\tactivity_xref\tactivity_label\tcomplete\tinputs\toutputs\tenablers\tlocations\tcausal upstream\tcausal downstream\tpart of n BP\tMF\tBP\n");
+			if(reasoner_output!=null) {
+				reasoner_output.write("title\tindividual\txref\tasserted\tinferred\n");
+			}
+			//a few models are validated ahead, the others wait, so that the memory stays flat
+			Iterator<IRI> models = modelIRIs.iterator();
+			Deque<IRI> pending_ids = new ArrayDeque<IRI>();
+			while(models.hasNext()||workers.pending()>0) {
+				while(models.hasNext()&&workers.pending()<2*threads) {
+					final IRI modelIRI = models.next();
+					final String filename = modelid_filename.get(modelIRI.toString());
+					pending_ids.add(modelIRI);
+					workers.submit(() -> validateGoCam(m3, ipc, curieHandler, modelIRI, filename, shex_output, travisMode, shouldFail, run_reasoner_report));
 				}
-				//this is where everything actually happens
-				ModelContainer mc = m3.getModel(modelIRI);	
-				OWLOntology gocam = mc.getAboxOntology();
+				IRI modelIRI = pending_ids.remove();
+				String filename = modelid_filename.get(modelIRI.toString());
+				GoCamValidation validation;
 				try {
-					//if a model does not have an import statement that links in an ontology that defines all of its classes and object properties
-					//or if the model does not define the classes and object properties itself, parsing problems will prevail
-					//this step makes sure that does not happen
-					gocam = CoreMolecularModelManager.fixBrokenObjectPropertiesAndAxioms(gocam);
-				} catch (OWLOntologyCreationException e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
+					validation = workers.next();
+				} catch (TimeoutException e) {
+					LOGGER.error("validation timed out after "+modelTimeout+" seconds: "+filename+"\t"+modelIRI);
+					validation = GoCamValidation.failed(modelIRI, filename, "validation timed out after "+modelTimeout+" seconds");
+				} catch (ExecutionException e) {
+					LOGGER.error("validation failed: "+filename+"\t"+modelIRI, e.getCause());
+					validation = GoCamValidation.failed(modelIRI, filename, "validation failed: "+e.getCause());
 				}
-				LOGGER.info("preparing model stats...");
-				//The GoCamModel code is used to capture model-level statistics such as 'how many causal relations are there?'
-				//This might be an area for a speed improvement if needed
-				GoCamModel gcm = new GoCamModel(gocam, m3);
-				String title = "title";
-				if(gcm.getTitle()!=null) {
-					title = makeColSafe(gcm.getTitle());
-				}else {
-					LOGGER.error("no title for "+filename);
-				}
-				//this is to make clickable links in reports
-				String link = modelIRI.toString().replace("http://model.geneontology.org/", "http://noctua.geneontology.org/editor/graph/gomodel:");
-				if(modelIRI.toString().contains("R-HSA")) {
-					link = link.replace("noctua.geneontology", "noctua-dev.berkeleybop");
-				}
-				String modelstate = makeColSafe(gcm.getModelstate());
-				String contributor = makeColSafe(gcm.getContributors().toString());
-				String date = makeColSafe(gcm.getDate());
-				String provider = makeColSafe(gcm.getProvided_by().toString());
-				pipe_report.setTaxa(gcm.getIn_taxon()); 
-				LOGGER.info("model stats done for title: "+title);
-				int axioms = gocam.getAxiomCount();
-				//add activity level statistics as a default
-				FileWriter activity_output = new FileWriter(activity_output_file, true);
-				for(ActivityUnit unit : gcm.getActivities()){
-					activity_output.write(filename+"\t"+title+"\t"+link+"\t"+modelstate+"\t"+contributor+"\t"+provider+"\t"+date+"\t"+unit.getIndividual().getIRI().toString()+"\t"+unit.getXref()+"\t"+unit.getLabel()+"\t");
-					activity_output.write(unit.isComplete()+"\t"+unit.getInputs().size()+"\t"+unit.getOutputs().size()+"\t"+unit.getEnablers().size()+"\t"+unit.getLocations().size()+
-							"\t"+unit.getCausal_in().size()+"\t"+unit.getCausal_out().size()+"\t"+unit.getContaining_processes().size()+"\t"+unit.stringForClasses(unit.getDirect_types())+"\t"+unit.getURIsForConnectedBPs()+"\n");
+				activity_output.write(validation.activity_rows.toString());
+				explanations.write(validation.explanation_rows.toString());
+				//travis mode causes the system to exit when an invalid model is detected (unless shouldFail is on)
+				if(validation.fatal!=null) {
+					LOGGER.error(validation.fatal);
+					basic.flush();
+					explanations.flush();
+					activity_output.flush();
+					System.exit(-1);
 				}
-				activity_output.close();
-
-				InferenceProvider ip = ipc.create(mc);
-				isConsistent = ip.isConsistent();
-				//TODO re-use reasoner object from ip
-				//TODO this is another area that could be touched/removed for speed improvement
-				int n_rows_gpad = 0;
-				if(isConsistent) {
-					try {
-						Set<GPADData> gpad = new GPADSPARQLExport(curieHandler, m3.getLegacyRelationShorthandIndex(), m3.getTboxShorthandIndex(), m3.getDoNotAnnotateSubset()).getGPAD(m3.createInferredModel(modelIRI), modelIRI);
-						if(gpad!=null) {
-							n_rows_gpad = gpad.size();
-						}
-					}catch(InconsistentOntologyException e) {
-						LOGGER.error("inconsistent ontology, can't make gpad");
-					}
+				//basic is just one row per model - did it validate or not
+				if(validation.basic_row!=null) {
+					basic.write(validation.basic_row);
 				}
-				long done = System.currentTimeMillis();
-				long milliseconds = (done-start);
-				//for rules report in pipeline
-				if(!ip.isConsistent()) {
-					String level = "ERROR";
-					String model_id = curieHandler.getCuri(modelIRI);
-					String message = BatchPipelineValidationReport.getOwlMessage();
-					int rule = BatchPipelineValidationReport.getOwlRule();
-					ErrorMessage owl = new ErrorMessage(level, model_id, gcm.getIn_taxon(), message, rule);
-					owl_errors.add(owl);
+				if(reasoner_output!=null&&validation.reasoner_report!=null) {
+					reasoner_output.write(validation.reasoner_rows.toString());
+					reasoner_report.add(validation.reasoner_report);
 				}
-				if(!isConsistent) {
-					FileWriter explanations = new FileWriter(explanations_file, true);
-					explanations.write(filename+"\t"+title+"\t"+modelIRI+"\tOWL fail explanation: "+ip.getValidation_results().getOwlvalidation().getAsText()+"\n");
-					explanations.close();
+				if(validation.valid) {
+					good_models++;
+				}else {
+					bad_models++;
 				}
-				//travis mode causes the system to exit when an invalid model is detected (unless shouldFail is on)
-				if(travisMode&&!isConsistent) {
-					if(!shouldFail) {
-						LOGGER.error(filename+"\t"+title+"\t"+modelIRI+"\tOWL:is inconsistent, quitting");							
-						System.exit(-1);
-					}
+				if(validation.owl_error!=null) {
+					owl_errors.add(validation.owl_error);
 				}
-				//basic is just one row per model - did it validate or not
-				FileWriter  basic= new FileWriter(basic_output_file, true);
-				if(!shex_output) {
-					if(ip.isConsistent()) {
-						good_models++;
-					}else {
-						bad_models++;
-					}
-				}else{
-					ValidationResultSet validations = ip.getValidation_results();
-					isConformant = validations.allConformant();	
-					if(isConformant) {
-						good_models++;
-					}else {
-						bad_models++;
-					}					
-					if(!validations.getShexvalidation().isConformant()) {
-						String level = "WARNING";
-						String model_id = curieHandler.getCuri(modelIRI);
-						String message = BatchPipelineValidationReport.getShexMessage();
-						int rule = BatchPipelineValidationReport.getShexRule();
-						ErrorMessage shex_message = new ErrorMessage(level, model_id, gcm.getIn_taxon(), message, rule);
-						boolean include_explanations_in_json = true; //TODO set as a parameter
-						if(include_explanations_in_json) {
-							shex_message.setExplanations(validations);
-						}
-						shex_errors.add(shex_message);
-						FileWriter explanations = new FileWriter(explanations_file, true);						
-						explanations.write(ip.getValidation_results().getShexvalidation().getAsTab(filename+"\t"+title+"\t"+modelIRI));
-						explanations.close();
-					}
-					if(travisMode) {
-						if(!isConformant&&!shouldFail) {
-							LOGGER.error(filename+"\t"+title+"\t"+modelIRI+"\tshex is nonconformant, quitting, explanation:\n"+ip.getValidation_results().getShexvalidation().getAsText());
-							System.exit(-1);
-						}else if(isConformant&&shouldFail) {
-							LOGGER.error(filename+"\t"+title+"\t"+modelIRI+"\tshex validates, but it should not be, quitting");
-							System.exit(-1);
-						}
-					}
-					//is it a metadata violation or data ?
-					boolean shex_meta_problem = false;
-					boolean shex_data_problem = false;
-					if(!validations.getShexvalidation().isConformant()) {
-						String model_curie = curieHandler.getCuri(modelIRI);
-						ValidationResultSet validationset = ip.getValidation_results();
-						ShexValidationReport shex_report = validationset.getShexvalidation();
-						Set<Violation> violations = shex_report.getViolations();
-						if(violations!=null) { 
-							for(Violation v : violations) {							
-								if(v.getNode().equals(model_curie)){
-									shex_meta_problem = true;
-								}else {
-									shex_data_problem = true;
-								}
-							}
-						}else {
-							LOGGER.error("Invalid model but no violations reported");
-						}
-					}					
-					LOGGER.info(filename+"\t"+title+"\t"+modelIRI+"\tOWL:"+isConsistent+"\tshex:"+isConformant);
-					basic.write(filename+"\t"+title+"\t"+link+"\t"+modelstate+"\t"+contributor+"\t"+provider+"\t"+date+"\t"+isConsistent+"\t"+isConformant+"\t"+shex_meta_problem+"\t"+shex_data_problem+"\t"+milliseconds+"\t"+axioms+"\t"+
-							n_rows_gpad+"\t"+ gcm.getGoCamModelStats().stats2cols()+"\n");
+				if(validation.shex_error!=null) {
+					shex_errors.add(validation.shex_error);
 				}
-				basic.close();
-				if(run_reasoner_report) {
-					addReasonerReport(outputFolder, gocam, ip, title, reasoner_report);
+				if(validation.taxa!=null) {
+					pipe_report.setTaxa(validation.taxa);
 				}
 			}
-		} catch (Exception e) {
+		} catch (InterruptedException e) {
+			LOGGER.error("interrupted validation", e);
+			Thread.currentThread().interrupt();
+		} catch (IOException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
+		} finally {
+			//models which timed out might still be running
+			workers.shutdownNow();
 		}
 		if(run_reasoner_report) {
 			summarizeReasonerReport(outputFolder, reasoner_report);
@@ -1151,32 +1262,217 @@ public class CommandLineInterface {
 		LOGGER.info("done with validation");
 	}
 
+	/**
+	 * Result of the validation of one model. The rows are written to the
+	 * reports by the caller, in the order of the models.
+	 */
+	static class GoCamValidation {
+		final StringBuilder activity_rows = new StringBuilder();
+		final StringBuilder explanation_rows = new StringBuilder();
+		final StringBuilder reasoner_rows = new StringBuilder();
+		String basic_row = null;
+		ReasonerReport reasoner_report = null;
+		boolean valid = false;
+		ErrorMessage owl_error = null;
+		ErrorMessage shex_error = null;
+		Set<String> taxa = null;
+		// message, if the validation has to stop in travis mode
+		String fatal = null;
+
+		static GoCamValidation failed(IRI modelIRI, String filename, String message) {
+			GoCamValidation validation = new GoCamValidation();
+			validation.explanation_rows.append(filename+"\ttitle\t"+modelIRI+"\t"+message+"\n");
+			return validation;
+		}
+	}
+
+	/**
+	 * Validate one model, called on the worker threads of
+	 * {@link #validateGoCams}. The model is unloaded afterwards.
+	 *
+	 * @param m3
+	 * @param ipc
+	 * @param curieHandler
+	 * @param modelIRI
+	 * @param filename
+	 * @param shex_output
+	 * @param travisMode
+	 * @param shouldFail
+	 * @param run_reasoner_report
+	 * @return validation
+	 * @throws Exception
+	 */
+	private static GoCamValidation validateGoCam(UndoAwareMolecularModelManager m3, InferenceProviderCreator ipc, CurieHandler curieHandler,
+			IRI modelIRI, String filename, boolean shex_output, boolean travisMode, boolean shouldFail, boolean run_reasoner_report) throws Exception {
+		GoCamValidation validation = new GoCamValidation();
+		long start = System.currentTimeMillis();
+		boolean isConsistent = true; //OWL 
+		boolean isConformant = true; //shex
+		if(filename !=null) {
+			LOGGER.info("processing "+filename+"\t"+modelIRI);
+		}else {
+			LOGGER.info("processing \t"+modelIRI);
+		}
+		try {
+			//this is where everything actually happens
+			//the model stays in memory until it is unlinked below, also if the cache is full
+			ModelContainer mc = m3.acquireModel(modelIRI);
+			OWLOntology gocam = mc.getAboxOntology();
+			try {
+				//if a model does not have an import statement that links in an ontology that defines all of its classes and object properties
+				//or if the model does not define the classes and object properties itself, parsing problems will prevail
+				//this step makes sure that does not happen
+				gocam = CoreMolecularModelManager.fixBrokenObjectPropertiesAndAxioms(gocam);
+			} catch (OWLOntologyCreationException e) {
+				// TODO Auto-generated catch block
+				e.printStackTrace();
+			}
+			LOGGER.info("preparing model stats...");
+			//The GoCamModel code is used to capture model-level statistics such as 'how many causal relations are there?'
+			//This might be an area for a speed improvement if needed
+			GoCamModel gcm = new GoCamModel(gocam, m3);
+			String title = "title";
+			if(gcm.getTitle()!=null) {
+				title = makeColSafe(gcm.getTitle());
+			}else {
+				LOGGER.error("no title for "+filename);
+			}
+			//this is to make clickable links in reports
+			String link = modelIRI.toString().replace("http://model.geneontology.org/", "http://noctua.geneontology.org/editor/graph/gomodel:");
+			if(modelIRI.toString().contains("R-HSA")) {
+				link = link.replace("noctua.geneontology", "noctua-dev.berkeleybop");
+			}
+			String modelstate = makeColSafe(gcm.getModelstate());
+			String contributor = makeColSafe(gcm.getContributors().toString());
+			String date = makeColSafe(gcm.getDate());
+			String provider = makeColSafe(gcm.getProvided_by().toString());
+			validation.taxa = gcm.getIn_taxon(); 
+			LOGGER.info("model stats done for title: "+title);
+			int axioms = gocam.getAxiomCount();
+			//add activity level statistics as a default
+			for(ActivityUnit unit : gcm.getActivities()){
+				validation.activity_rows.append(filename+"\t"+title+"\t"+link+"\t"+modelstate+"\t"+contributor+"\t"+provider+"\t"+date+"\t"+unit.getIndividual().getIRI().toString()+"\t"+unit.getXref()+"\t"+unit.getLabel()+"\t");
+				validation.activity_rows.append(unit.isComplete()+"\t"+unit.getInputs().size()+"\t"+unit.getOutputs().size()+"\t"+unit.getEnablers().size()+"\t"+unit.getLocations().size()+
+						"\t"+unit.getCausal_in().size()+"\t"+unit.getCausal_out().size()+"\t"+unit.getContaining_processes().size()+"\t"+unit.stringForClasses(unit.getDirect_types())+"\t"+unit.getURIsForConnectedBPs()+"\n");
+			}
+
+			InferenceProvider ip = ipc.create(mc);
+			isConsistent = ip.isConsistent();
+			//TODO re-use reasoner object from ip
+			//TODO this is another area that could be touched/removed for speed improvement
+			int n_rows_gpad = 0;
+			if(isConsistent) {
+				try {
+					Set<GPADData> gpad = new GPADSPARQLExport(curieHandler, m3.getLegacyRelationShorthandIndex(), m3.getTboxShorthandIndex(), m3.getDoNotAnnotateSubset()).getGPAD(m3.createInferredModel(modelIRI), modelIRI);
+					if(gpad!=null) {
+						n_rows_gpad = gpad.size();
+					}
+				}catch(InconsistentOntologyException e) {
+					LOGGER.error("inconsistent ontology, can't make gpad");
+				}
+			}
+			long done = System.currentTimeMillis();
+			long milliseconds = (done-start);
+			//for rules report in pipeline
+			if(!ip.isConsistent()) {
+				String level = "ERROR";
+				String model_id = curieHandler.getCuri(modelIRI);
+				String message = BatchPipelineValidationReport.getOwlMessage();
+				int rule = BatchPipelineValidationReport.getOwlRule();
+				validation.owl_error = new ErrorMessage(level, model_id, gcm.getIn_taxon(), message, rule);
+			}
+			if(!isConsistent) {
+				validation.explanation_rows.append(filename+"\t"+title+"\t"+modelIRI+"\tOWL fail explanation: "+ip.getValidation_results().getOwlvalidation().getAsText()+"\n");
+			}
+			if(travisMode&&!isConsistent) {
+				if(!shouldFail) {
+					validation.fatal = filename+"\t"+title+"\t"+modelIRI+"\tOWL:is inconsistent, quitting";
+					return validation;
+				}
+			}
+			if(!shex_output) {
+				validation.valid = ip.isConsistent();
+			}else{
+				ValidationResultSet validations = ip.getValidation_results();
+				isConformant = validations.allConformant();	
+				validation.valid = isConformant;
+				if(!validations.getShexvalidation().isConformant()) {
+					String level = "WARNING";
+					String model_id = curieHandler.getCuri(modelIRI);
+					String message = BatchPipelineValidationReport.getShexMessage();
+					int rule = BatchPipelineValidationReport.getShexRule();
+					ErrorMessage shex_message = new ErrorMessage(level, model_id, gcm.getIn_taxon(), message, rule);
+					boolean include_explanations_in_json = true; //TODO set as a parameter
+					if(include_explanations_in_json) {
+						shex_message.setExplanations(validations);
+					}
+					validation.shex_error = shex_message;
+					validation.explanation_rows.append(ip.getValidation_results().getShexvalidation().getAsTab(filename+"\t"+title+"\t"+modelIRI));
+				}
+				if(travisMode) {
+					if(!isConformant&&!shouldFail) {
+						validation.fatal = filename+"\t"+title+"\t"+modelIRI+"\tshex is nonconformant, quitting, explanation:\n"+ip.getValidation_results().getShexvalidation().getAsText();
+						return validation;
+					}else if(isConformant&&shouldFail) {
+						validation.fatal = filename+"\t"+title+"\t"+modelIRI+"\tshex validates, but it should not be, quitting";
+						return validation;
+					}
+				}
+				//is it a metadata violation or data ?
+				boolean shex_meta_problem = false;
+				boolean shex_data_problem = false;
+				if(!validations.getShexvalidation().isConformant()) {
+					String model_curie = curieHandler.getCuri(modelIRI);
+					ValidationResultSet validationset = ip.getValidation_results();
+					ShexValidationReport shex_report = validationset.getShexvalidation();
+					Set<Violation> violations = shex_report.getViolations();
+					if(violations!=null) { 
+						for(Violation v : violations) {							
+							if(v.getNode().equals(model_curie)){
+								shex_meta_problem = true;
+							}else {
+								shex_data_problem = true;
+							}
+						}
+					}else {
+						LOGGER.error("Invalid model but no violations reported");
+					}
+				}					
+				LOGGER.info(filename+"\t"+title+"\t"+modelIRI+"\tOWL:"+isConsistent+"\tshex:"+isConformant);
+				validation.basic_row = filename+"\t"+title+"\t"+link+"\t"+modelstate+"\t"+contributor+"\t"+provider+"\t"+date+"\t"+isConsistent+"\t"+isConformant+"\t"+shex_meta_problem+"\t"+shex_data_problem+"\t"+milliseconds+"\t"+axioms+"\t"+
+						n_rows_gpad+"\t"+ gcm.getGoCamModelStats().stats2cols()+"\n";
+			}
+			if(run_reasoner_report) {
+				validation.reasoner_report = new ReasonerReport();
+				addReasonerReport(validation.reasoner_rows, gocam, ip, title, validation.reasoner_report);
+			}
+			return validation;
+		} finally {
+			//keep the memory flat, the model is not needed anymore
+			m3.unlinkModel(modelIRI);
+		}
+	}
 	static class ReasonerReport {
 		Map<String, Integer> term_asserted_instances_mapped = new HashMap<String, Integer>();
 		Map<String, Integer> term_deepened_instances_mapped = new HashMap<String, Integer>();
 		Map<String, Integer> term_asserted_instances_created = new HashMap<String, Integer>();
 		Map<String, Integer> term_deepened_instances_created = new HashMap<String, Integer>();	
-	}
-
 
-	private static ReasonerReport initReasonerReport(String outputFolder) {
-		String reasoner_report_file = outputFolder+"reasoner_report_all.txt";
-		FileWriter reasoner_report;
-		try {
-			reasoner_report = new FileWriter(reasoner_report_file, false);
-			reasoner_report.write("title\tindividual\txref\tasserted\tinferred\n");
-			reasoner_report.close();	
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+		/**
+		 * Add the counts of another report, e.g. of a single model.
+		 * 
+		 * @param other
+		 */
+		void add(ReasonerReport other) {
+			other.term_asserted_instances_mapped.forEach((term, n) -> term_asserted_instances_mapped.merge(term, n, Integer::sum));
+			other.term_deepened_instances_mapped.forEach((term, n) -> term_deepened_instances_mapped.merge(term, n, Integer::sum));
+			other.term_asserted_instances_created.forEach((term, n) -> term_asserted_instances_created.merge(term, n, Integer::sum));
+			other.term_deepened_instances_created.forEach((term, n) -> term_deepened_instances_created.merge(term, n, Integer::sum));
 		}
-		ReasonerReport report = new ReasonerReport();
-		return report;
 	}
 
-	private static ReasonerReport addReasonerReport(String outputFolder, OWLOntology gocam, InferenceProvider ip, String title, ReasonerReport report) throws IOException {
-		String reasoner_report_file = outputFolder+"reasoner_report_all.txt";
-		FileWriter  reasoner_report = new FileWriter(reasoner_report_file, true);
+
+	private static ReasonerReport addReasonerReport(StringBuilder reasoner_report, OWLOntology gocam, InferenceProvider ip, String title, ReasonerReport report) {
 		Set<OWLNamedIndividual> individuals = gocam.getIndividualsInSignature();
 		for (OWLNamedIndividual individual : individuals) {
 			//what kind of individual - mapped or created.  mapped have xrefs, created do not. 
@@ -1205,7 +1501,7 @@ public class CommandLineInterface {
 				}
 			}
 			inferred_direct.removeAll(asserted);
-			reasoner_report.write(title+"\t"+individual.getIRI()+"\t"+xref+"\t"+asserted+"\t"+inferred_direct+"\n");
+			reasoner_report.append(title+"\t"+individual.getIRI()+"\t"+xref+"\t"+asserted+"\t"+inferred_direct+"\n");
 			if(asserted!=null) {
 				for(OWLClass go : asserted) {
 					if(xref.equals("none")) {
@@ -1244,7 +1540,6 @@ public class CommandLineInterface {
 				}
 			}
 		}
-		reasoner_report.close();	
 		return report;
 	}
 
@@ -1299,6 +1594,23 @@ public class CommandLineInterface {
 		return;
 	}
 
+	/**
+	 * cli add-taxon-metadata --bulk
+	 * @param go_cam_journal
+	 * @param go_lego_journal_file
+	 * @param batchSize number of taxon annotations per transaction
+	 * @throws OWLOntologyCreationException
+	 * @throws IOException
+	 */
+	public static void addTaxonMetaDataBulk(String go_cam_journal, String go_lego_journal_file, int batchSize) throws OWLOntologyCreationException, IOException {
+		String modelIdPrefix = "http://model.geneontology.org/";
+		OWLOntology dummy = OWLManager.createOWLOntologyManager().createOntology(IRI.create("http://example.org/dummy"));
+		CurieHandler curieHandler = new MappedCurieHandler();
+		BlazegraphMolecularModelManager<Void> m3 = new BlazegraphMolecularModelManager<>(dummy, curieHandler, modelIdPrefix, go_cam_journal, null, go_lego_journal_file);
+		m3.addTaxonMetadataBulk(batchSize);
+		m3.dispose();
+	}
+
 	public static void cleanGoCams(String input_dir, String output_dir) {
 		OWLOntologyManager m = OWLManager.createOWLOntologyManager();
 		File directory = new File(input_dir);
@@ -0,0 +1,143 @@
+package org.geneontology.minerva.cli;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs tasks on a pool of worker threads and hands back the results in the
+ * order of the submission, see {@link CommandLineInterface#validateGoCams}.<br>
+ * The timeout of a task is counted from the start of the task on its worker,
+ * not from the time the caller starts to wait for it. The reasoner doesn't
+ * react to interrupts, so a task which timed out is abandoned: it keeps its
+ * thread until it is done, and an extra worker is started in its place. The
+ * waiting tasks are never reported as timed out without having run.
+ *
+ * @param <T> result
+ */
+class TimedTaskQueue<T> {
+
+	private static final int RUNNING = 0;
+	private static final int FINISHED = 1;
+	private static final int ABANDONED = 2;
+
+	private final ThreadPoolExecutor executor;
+	private final long timeoutMillis;
+	private final Deque<TimedTask> pending = new ArrayDeque<TimedTask>();
+
+	private class TimedTask implements Callable<T> {
+
+		private final Callable<T> task;
+		private final CountDownLatch started = new CountDownLatch(1);
+		private final AtomicInteger state = new AtomicInteger(RUNNING);
+		private volatile long start = 0;
+		private Future<T> future = null;
+
+		TimedTask(Callable<T> task) {
+			this.task = task;
+		}
+
+		@Override
+		public T call() throws Exception {
+			start = System.currentTimeMillis();
+			started.countDown();
+			try {
+				return task.call();
+			} finally {
+				if (state.compareAndSet(RUNNING, FINISHED) == false) {
+					// the replacement worker is not needed anymore
+					resize(-1);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param name prefix for the names of the worker threads
+	 * @param threads
+	 * @param timeoutMillis time budget of each task, 0 for no timeout
+	 */
+	TimedTaskQueue(String name, int threads, long timeoutMillis) {
+		final AtomicInteger count = new AtomicInteger();
+		// the core size is the number of workers, it grows for each abandoned task
+		executor = new ThreadPoolExecutor(threads, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), (Runnable r) -> {
+					Thread t = new Thread(r, name+"-"+count.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				});
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	/**
+	 * @param task
+	 */
+	void submit(Callable<T> task) {
+		TimedTask timed = new TimedTask(task);
+		timed.future = executor.submit(timed);
+		pending.add(timed);
+	}
+
+	/**
+	 * @return number of tasks, which have not been handed back yet
+	 */
+	int pending() {
+		return pending.size();
+	}
+
+	/**
+	 * Wait for the oldest task, which has not been handed back yet.
+	 *
+	 * @return result
+	 * @throws InterruptedException
+	 * @throws ExecutionException if the task failed
+	 * @throws TimeoutException if the task did not finish within the timeout after its start
+	 */
+	T next() throws InterruptedException, ExecutionException, TimeoutException {
+		TimedTask timed = pending.remove();
+		if (timeoutMillis <= 0) {
+			return timed.future.get();
+		}
+		timed.started.await();
+		long remaining = Math.max(0, timed.start + timeoutMillis - System.currentTimeMillis());
+		try {
+			return timed.future.get(remaining, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			if (timed.state.compareAndSet(RUNNING, ABANDONED)) {
+				timed.future.cancel(true);
+				resize(1);
+				throw e;
+			}
+			// finished just now
+			return timed.future.get();
+		}
+	}
+
+	/**
+	 * @return current number of workers, including the ones of abandoned tasks
+	 */
+	int getWorkers() {
+		return executor.getCorePoolSize();
+	}
+
+	/**
+	 * Stop the workers, the abandoned tasks might still be running.
+	 */
+	void shutdownNow() {
+		executor.shutdownNow();
+	}
+
+	private synchronized void resize(int delta) {
+		if (executor.isShutdown() == false) {
+			executor.setCorePoolSize(executor.getCorePoolSize() + delta);
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package org.geneontology.minerva.cli;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+public class TimedTaskQueueTest {
+
+	@Test
+	public void testOrder() throws Exception {
+		TimedTaskQueue<Integer> queue = new TimedTaskQueue<Integer>("test", 4, 0);
+		try {
+			for (int i = 0; i < 8; i++) {
+				final int n = i;
+				// the later tasks finish first
+				queue.submit(() -> {
+					Thread.sleep((8 - n) * 20);
+					return n;
+				});
+			}
+			for (int i = 0; i < 8; i++) {
+				assertEquals(Integer.valueOf(i), queue.next());
+			}
+			assertEquals(0, queue.pending());
+		} finally {
+			queue.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testFailure() throws Exception {
+		TimedTaskQueue<Integer> queue = new TimedTaskQueue<Integer>("test", 1, 1000);
+		try {
+			queue.submit(() -> {
+				throw new IllegalStateException("broken model");
+			});
+			queue.submit(() -> 1);
+			try {
+				queue.next();
+				fail("expected the failure of the first task");
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof IllegalStateException);
+			}
+			assertEquals(Integer.valueOf(1), queue.next());
+		} finally {
+			queue.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testStuckTaskIsReplaced() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		// a single worker, which is blocked by the first task
+		TimedTaskQueue<Integer> queue = new TimedTaskQueue<Integer>("test", 1, 200);
+		try {
+			queue.submit(() -> {
+				// like the reasoner, ignore the interrupts
+				while (release.getCount() > 0) {
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						// ignore
+					}
+				}
+				return 0;
+			});
+			queue.submit(() -> {
+				// longer than the timeout, if counted from the submit
+				Thread.sleep(150);
+				return 1;
+			});
+			queue.submit(() -> {
+				Thread.sleep(150);
+				return 2;
+			});
+			try {
+				queue.next();
+				fail("expected a timeout for the stuck task");
+			} catch (TimeoutException e) {
+				// expected
+			}
+			assertEquals(2, queue.getWorkers());
+			// the waiting tasks run on the new worker, they are not timed out
+			assertEquals(Integer.valueOf(1), queue.next());
+			assertEquals(Integer.valueOf(2), queue.next());
+
+			// the extra worker is released after the stuck task is done
+			release.countDown();
+			long deadline = System.currentTimeMillis() + 5000;
+			while (queue.getWorkers() > 1 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			assertEquals(1, queue.getWorkers());
+		} finally {
+			queue.shutdownNow();
+		}
+	}
+}
@@ -1,16 +1,31 @@
 package org.geneontology.minerva;
 
 import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
 import com.bigdata.rdf.rio.json.BigdataSPARQLResultsJSONWriter;
 import org.apache.commons.io.FileUtils;
@@ -27,11 +42,14 @@ import org.openrdf.model.impl.URIImpl;
 import org.openrdf.model.vocabulary.OWL;
 import org.openrdf.model.vocabulary.RDF;
 import org.openrdf.query.*;
+import org.openrdf.query.impl.GraphQueryResultImpl;
 import org.openrdf.query.impl.TupleQueryResultBuilder;
+import org.openrdf.query.impl.TupleQueryResultImpl;
 import org.openrdf.query.parser.QueryParser;
 import org.openrdf.query.parser.QueryParserRegistry;
 import org.openrdf.query.parser.QueryParserUtil;
 import org.openrdf.query.parser.QueryPrologLexer;
+import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.repository.RepositoryException;
 import org.openrdf.repository.RepositoryResult;
 import org.openrdf.rio.RDFFormat;
@@ -48,12 +66,14 @@ import org.semanticweb.owlapi.formats.ManchesterSyntaxDocumentFormat;
 import org.semanticweb.owlapi.formats.OWLXMLDocumentFormat;
 import org.semanticweb.owlapi.formats.RDFXMLDocumentFormat;
 import org.semanticweb.owlapi.formats.TurtleDocumentFormat;
+import org.semanticweb.owlapi.model.AddAxiom;
 import org.semanticweb.owlapi.model.AddImport;
+import org.semanticweb.owlapi.model.AxiomType;
 import org.semanticweb.owlapi.model.IRI;
 import org.semanticweb.owlapi.model.OWLAnnotation;
-import org.semanticweb.owlapi.model.OWLAnnotationProperty;
+import org.semanticweb.owlapi.model.OWLAxiom;
 import org.semanticweb.owlapi.model.OWLClass;
-import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLClassAssertionAxiom;
 import org.semanticweb.owlapi.model.OWLDeclarationAxiom;
 import org.semanticweb.owlapi.model.OWLDocumentFormat;
 import org.semanticweb.owlapi.model.OWLImportsDeclaration;
@@ -78,7 +98,10 @@ import com.bigdata.rdf.sail.BigdataSailRepository;
 import com.bigdata.rdf.sail.BigdataSailRepositoryConnection;
 import com.google.common.base.Optional;
 
+import info.aduna.iteration.CloseableIteration;
 import info.aduna.iteration.Iterations;
+import info.aduna.iteration.LookAheadIteration;
+
 
 public class BlazegraphMolecularModelManager<METADATA> extends CoreMolecularModelManager<METADATA> {
 
@@ -90,12 +113,24 @@ public class BlazegraphMolecularModelManager<METADATA> extends CoreMolecularMode
 	final String pathToOWLStore;
 	final String pathToExportFolder; 
 	private final BigdataSailRepository repo;
+	private final BlazegraphWriteQueue writeQueue;
+	private final ModelIdRegistry modelIds;
 	private final CurieHandler curieHandler;
 
 	private final String modelIdPrefix;
 
 	OWLDocumentFormat ontologyFormat = new TurtleDocumentFormat();
 
+	private volatile ModelSearchIndex searchIndex = null;
+	private final Object searchIndexLock = new Object();
+
+	private volatile ModelAnnotationIndex annotationIndex = null;
+	private final Object annotationIndexLock = new Object();
+
+	// taxon -> label for the in_taxon annotations of the stored models, null until requested
+	private volatile Map<String, String> taxonLabels = null;
+	private final Object taxonLabelsLock = new Object();
+
 	private final List<PreFileSaveHandler> preFileSaveHandlers = new ArrayList<PreFileSaveHandler>();
 	private final List<PostLoadOntologyFilter> postLoadOntologyFilters = new ArrayList<PostLoadOntologyFilter>(); 
 
@@ -123,6 +158,8 @@ public class BlazegraphMolecularModelManager<METADATA> extends CoreMolecularMode
 		this.pathToOWLStore = pathToJournal;
 		this.pathToExportFolder = pathToExportFolder;
 		this.repo = initializeRepository(this.pathToOWLStore);
+		this.writeQueue = new BlazegraphWriteQueue(repo, "blazegraph-writer");
+		this.modelIds = ModelIdRegistry.open(repo, new File(pathToJournal + ".model-ids"));
 	}
 
 	/**
@@ -141,6 +178,252 @@ public class BlazegraphMolecularModelManager<METADATA> extends CoreMolecularMode
 		return curieHandler;
 	}
 
+	/**
+	 * Saves and taxon updates are committed in batches, see {@link BlazegraphWriteQueue}.
+	 *
+	 * @param maxBatchSize maximum number of writes in one transaction
+	 * @param maxDelayMillis maximum time to wait for more writes, before committing a batch
+	 */
+	public void setWriteBatchLimits(int maxBatchSize, long maxDelayMillis) {
+		writeQueue.setBatchLimits(maxBatchSize, maxDelayMillis);
+	}
+
+	public BlazegraphWriteQueue getWriteQueue() {
+		return writeQueue;
+	}
+
+	/**
+	 * Writes to the journal, which bypass the manager, e.g. with the
+	 * {@link BulkModelImporter}, have to add the models to the registry.
+	 *
+	 * @return ids of the stored models
+	 */
+	public ModelIdRegistry getModelIdRegistry() {
+		return modelIds;
+	}
+
+	/**
+	 * Update the model id registry and the model search index with a
+	 * stored model. Call after the write has been committed.
+	 *
+	 * @param modelId
+	 */
+	private void modelStored(IRI modelId) {
+		modelIds.add(modelId);
+		updateSearchIndex(modelId);
+		updateAnnotationIndex(modelId);
+	}
+
+	/**
+	 * The index is built from the store with the first call. Afterwards each
+	 * save, import and taxon insert of a model updates it.
+	 *
+	 * @return index of the header annotations of the stored models
+	 * @throws IOException
+	 */
+	public ModelAnnotationIndex getModelAnnotationIndex() throws IOException {
+		ModelAnnotationIndex index = annotationIndex;
+		if (index == null) {
+			synchronized (annotationIndexLock) {
+				index = annotationIndex;
+				if (index == null) {
+					long start = System.currentTimeMillis();
+					index = new ModelAnnotationIndex();
+					try {
+						BigdataSailRepositoryConnection connection = repo.getReadOnlyConnection();
+						try {
+							index.rebuild(connection);
+						} finally {
+							connection.close();
+						}
+					} catch (RepositoryException | MalformedQueryException | QueryEvaluationException e) {
+						throw new IOException(e);
+					}
+					LOG.info("Indexed the annotations of "+index.size()+" models in "+(System.currentTimeMillis()-start)+" ms");
+					annotationIndex = index;
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Read the header of the stored model into the annotation index, if the
+	 * index has been built. Call after the write has been committed.
+	 *
+	 * @param modelId
+	 */
+	private void updateAnnotationIndex(IRI modelId) {
+		ModelAnnotationIndex index = annotationIndex;
+		if (index == null) {
+			// wait for a running build, writes during the build are not part of it
+			synchronized (annotationIndexLock) {
+				index = annotationIndex;
+			}
+			if (index == null) {
+				return;
+			}
+		}
+		try {
+			BigdataSailRepositoryConnection connection = repo.getReadOnlyConnection();
+			try {
+				index.update(connection, modelId);
+			} finally {
+				connection.close();
+			}
+		} catch (RepositoryException e) {
+			// build it again with the next request
+			LOG.error("Could not update the model annotation index for model: "+modelId, e);
+			annotationIndex = null;
+		}
+	}
+
+	/**
+	 * The index is built from the store with the first call. Afterwards each
+	 * save, import and taxon insert of a model updates it.
+	 *
+	 * @return index of the stored models for the model search
+	 * @throws IOException
+	 */
+	public ModelSearchIndex getModelSearchIndex() throws IOException {
+		ModelSearchIndex index = searchIndex;
+		if (index == null) {
+			synchronized (searchIndexLock) {
+				index = searchIndex;
+				if (index == null) {
+					long start = System.currentTimeMillis();
+					index = new ModelSearchIndex(getGolego_repo() != null ? getGolego_repo().getTaxonIndex() : null);
+					try {
+						BigdataSailRepositoryConnection connection = repo.getReadOnlyConnection();
+						try {
+							index.rebuild(connection);
+						} finally {
+							connection.close();
+						}
+					} catch (RepositoryException | MalformedQueryException | QueryEvaluationException e) {
+						throw new IOException(e);
+					}
+					LOG.info("Indexed "+index.size()+" models for the model search in "+(System.currentTimeMillis()-start)+" ms");
+					searchIndex = index;
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Read the stored model into the model search index, if the index has
+	 * been built. Call after the write has been committed.
+	 *
+	 * @param modelId
+	 */
+	private void updateSearchIndex(IRI modelId) {
+		ModelSearchIndex index = searchIndex;
+		if (index == null) {
+			// wait for a running build, writes during the build are not part of it
+			synchronized (searchIndexLock) {
+				index = searchIndex;
+			}
+			if (index == null) {
+				return;
+			}
+		}
+		try {
+			BigdataSailRepositoryConnection connection = repo.getReadOnlyConnection();
+			try {
+				index.update(connection, modelId.toString());
+			} finally {
+				connection.close();
+			}
+		} catch (RepositoryException | MalformedQueryException | QueryEvaluationException e) {
+			// build it again with the next search
+			LOG.error("Could not update the model search index for model: "+modelId, e);
+			searchIndex = null;
+		}
+	}
+
+	/**
+	 * The listing is built from the store with the first call. Afterwards
+	 * saves and taxon inserts add their taxa to it, imports discard it.
+	 *
+	 * @return labels of all taxa used in the in_taxon annotations of the stored models, the label may be null
+	 * @throws IOException
+	 */
+	public Map<String, String> getModelTaxonLabels() throws IOException {
+		Map<String, String> labels = taxonLabels;
+		if (labels == null) {
+			synchronized (taxonLabelsLock) {
+				labels = taxonLabels;
+				if (labels == null) {
+					Set<String> taxa = new HashSet<String>();
+					String sparql = "select distinct ?taxon where { ?model <"+BlazegraphOntologyManager.in_taxon_uri+"> ?taxon }";
+					try {
+						TupleQueryResult result = (TupleQueryResult) openSPARQLQuery(sparql, 1000, 0);
+						try {
+							while (result.hasNext()) {
+								taxa.add(result.next().getValue("taxon").stringValue());
+							}
+						} finally {
+							result.close();
+						}
+					} catch (MalformedQueryException | QueryEvaluationException | RepositoryException e) {
+						throw new IOException(e);
+					}
+					labels = Collections.unmodifiableMap(lookupTaxonLabels(taxa, new HashMap<String, String>()));
+					taxonLabels = labels;
+				}
+			}
+		}
+		return labels;
+	}
+
+	/**
+	 * Add taxa to the taxon listing, if it has been built. Only the labels
+	 * of new taxa are looked up. Call after the write has been committed.
+	 *
+	 * @param taxa
+	 */
+	private void taxaStored(Collection<String> taxa) {
+		if (taxonLabels == null || taxa.isEmpty()) {
+			return;
+		}
+		synchronized (taxonLabelsLock) {
+			Map<String, String> labels = taxonLabels;
+			if (labels == null || labels.keySet().containsAll(taxa)) {
+				return;
+			}
+			Set<String> added = new HashSet<String>(taxa);
+			added.removeAll(labels.keySet());
+			try {
+				taxonLabels = Collections.unmodifiableMap(lookupTaxonLabels(added, new HashMap<String, String>(labels)));
+			} catch (IOException e) {
+				// build it again with the next request
+				LOG.error("Could not update the taxon listing", e);
+				taxonLabels = null;
+			}
+		}
+	}
+
+	/**
+	 * Discard the taxon listing, e.g. after an import with unknown taxa.
+	 */
+	private void invalidateTaxonLabels() {
+		synchronized (taxonLabelsLock) {
+			taxonLabels = null;
+		}
+	}
+
+	private Map<String, String> lookupTaxonLabels(Set<String> taxa, Map<String, String> labels) throws IOException {
+		Map<String, String> found = Collections.emptyMap();
+		if (taxa.isEmpty() == false && getGolego_repo() != null) {
+			found = getGolego_repo().getLabels(taxa);
+		}
+		for (String taxon : taxa) {
+			labels.put(taxon, found.get(taxon));
+		}
+		return labels;
+	}
+
 	private BigdataSailRepository initializeRepository(String pathToJournal) {
 		try {
 			Properties properties = new Properties();
@@ -172,7 +455,7 @@ public class BlazegraphMolecularModelManager<METADATA> extends CoreMolecularMode
 
 		// Create an arbitrary unique ID and add it to the system.
 		IRI modelId = generateId(modelIdPrefix);
-		if (modelMap.containsKey(modelId)) {
+		if (modelCache.containsKey(modelId)) {
 			throw new OWLOntologyCreationException(
 					"A model already exists for this db: " + modelId);
 		}
@@ -183,7 +466,9 @@ public class BlazegraphMolecularModelManager<METADATA> extends CoreMolecularMode
 		OWLOntology abox = null;
 		ModelContainer model = null;
 		try {
-			abox = m.createOntology(modelId);
+			synchronized (m) {
+				abox = m.createOntology(modelId);
+			}
 			// generate model
 			model = new ModelContainer(modelId, tbox, abox);
 		} catch (OWLOntologyCreationException exception) {
@@ -193,7 +478,8 @@ public class BlazegraphMolecularModelManager<METADATA> extends CoreMolecularMode
 			throw exception;
 		}
 		// add to internal map
-		modelMap.put(modelId, model);
+		modelCache.put(modelId, model);
+		evictModels();
 		return model;
 	}
 
@@ -213,8 +499,8 @@ public class BlazegraphMolecularModelManager<METADATA> extends CoreMolecularMode
 	public void saveAllModels(Set<OWLAnnotation> annotations, METADATA metadata)
 			throws OWLOntologyStorageException, OWLOntologyCreationException,
 			IOException, RepositoryException, UnknownIdentifierException {
-		for (Entry<IRI, ModelContainer> entry : modelMap.entrySet()) {
-			saveModel(entry.getValue(), annotations, metadata);
+		for (ModelContainer model : modelCache.values()) {
+			saveModel(model, annotations, metadata);
 		}
 	}
 
@@ -236,21 +522,41 @@ public class BlazegraphMolecularModelManager<METADATA> extends CoreMolecularMode
 					throws OWLOntologyStorageException, OWLOntologyCreationException,
 					IOException, RepositoryException, UnknownIdentifierException {
 		IRI modelId = m.getModelId();
-		OWLOntology ont2save = m.getAboxOntology();
-		Set<String> taxa = getTaxonsForModel(modelId.toString());
+		final OWLOntology ont = m.getAboxOntology();
+		final OWLOntologyManager manager = ont.getOWLOntologyManager();
+		Set<String> taxa = getTaxonsForModel(modelId, ont);
 		if(taxa!=null) { 
+			// apply via the model, so the taxon annotations are part of the recorded changes
+			List<OWLOntologyChange> taxonChanges = new ArrayList<OWLOntologyChange>();
 			for(String taxon : taxa) {
-				ont2save = getGolego_repo().addTaxonModelMetaData(ont2save, IRI.create(taxon));
+				OWLAxiom taxonAxiom = getGolego_repo().getTaxonModelMetaData(ont, IRI.create(taxon));
+				if (ont.containsAxiom(taxonAxiom) == false) {
+					taxonChanges.add(new AddAxiom(ont, taxonAxiom));
+				}
+			}
+			if (taxonChanges.isEmpty() == false) {
+				synchronized (ont) {
+					m.applyChanges(taxonChanges);
+				}
 			}
 		}
-		final OWLOntology ont = ont2save;
-		final OWLOntologyManager manager = ont.getOWLOntologyManager();
 		List<OWLOntologyChange> changes = preSaveFileHandler(ont);
 		synchronized(ont) {
 			try {
-				this.writeModelToDatabase(ont, modelId);
+				StatementDelta delta = null;
+				ModelDelta modelDelta = m.getDelta();
+				// pre save changes are reverted after the save, they always require a full write
+				if (changes == null && modelDelta != null && modelDelta.isConsistentWith(ont)) {
+					delta = StatementDelta.create(ont, modelDelta);
+				}
+				this.writeModelToDatabase(ont, modelId, delta);
+				modelStored(modelId);
+				if (taxa != null) {
+					taxaStored(taxa);
+				}
 				// reset modified flag for abox after successful save
 				m.setAboxModified(false);
+				m.resetDelta();
 			} finally {
 				if (changes != null) {
 					List<OWLOntologyChange> invertedChanges = ReverseChangeGenerator
@@ -258,6 +564,8 @@ public class BlazegraphMolecularModelManager<METADATA> extends CoreMolecularMode
 					if (invertedChanges != null && !invertedChanges.isEmpty()) {
 						manager.applyChanges(invertedChanges);
 					}
+					// the store now differs from the model by the pre save changes
+					m.clearDelta();
 				}
 			}
 		}
@@ -265,26 +573,80 @@ public class BlazegraphMolecularModelManager<METADATA> extends CoreMolecularMode
 
 
 	private void writeModelToDatabase(OWLOntology model, IRI modelId) throws RepositoryException, IOException {
-		// Only one thread at a time can use the unisolated connection.
-		synchronized(repo) {
-			final BigdataSailRepositoryConnection connection = repo.getUnisolatedConnection();
-			try {
-				connection.begin();
-				try {
-					URI graph = new URIImpl(modelId.toString());
-					connection.clear(graph);
-					StatementCollector collector = new StatementCollector();
-					RioRenderer renderer = new RioRenderer(model, collector, null);
-					renderer.render();
-					connection.add(collector.getStatements(), graph);									
-					connection.commit();
-				} catch (Exception e) {
-					connection.rollback();
-					throw e;
-				}
-			} finally {
-				connection.close();
+		writeModelToDatabase(model, modelId, null);
+	}
+
+	/**
+	 * Write the model to the named graph of the model, via the write queue.
+	 * If a delta is given, only the delta is written. If the stored statements
+	 * don't match the delta, the graph is cleared and the whole model is written.
+	 *
+	 * @param model
+	 * @param modelId
+	 * @param delta delta since the last write or null
+	 * @throws RepositoryException
+	 * @throws IOException
+	 */
+	private void writeModelToDatabase(OWLOntology model, IRI modelId, StatementDelta delta) throws RepositoryException, IOException {
+		await(writeQueue.submit(connection -> {
+			writeModel(connection, model, modelId, delta);
+			return null;
+		}));
+	}
+
+	private static void writeModel(BigdataSailRepositoryConnection connection, OWLOntology model, IRI modelId, StatementDelta delta) throws RepositoryException, IOException {
+		URI graph = new URIImpl(modelId.toString());
+		boolean written = false;
+		if (delta != null) {
+			written = delta.apply(connection, graph);
+			if (written) {
+				LOG.debug("Saved model "+modelId+" incrementally: "+delta.getAdditionCount()+" added statements, "+delta.getRemovalCount()+" removed axioms");
+			}
+			else {
+				LOG.warn("Stored model does not match the recorded changes, rewriting model: "+modelId);
+			}
+		}
+		if (written == false) {
+			clearGraph(connection, graph);
+			StatementCollector collector = new StatementCollector();
+			RioRenderer renderer = new RioRenderer(model, collector, null);
+			renderer.render();
+			connection.add(collector.getStatements(), graph);
+		}
+	}
+
+	/**
+	 * Remove all statements of a graph. Unlike {@link BigdataSailRepositoryConnection#clear(Resource...)},
+	 * this keeps the statements added by other writes earlier in the same transaction.
+	 * @param connection
+	 * @param graph
+	 * @throws RepositoryException
+	 */
+	static void clearGraph(RepositoryConnection connection, Resource graph) throws RepositoryException {
+		connection.remove((Resource) null, null, null, graph);
+	}
+
+	/**
+	 * Wait for a queued write to be committed.
+	 */
+	private static <T> T await(CompletableFuture<T> future) throws RepositoryException, IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the write to be committed");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RepositoryException) {
+				throw (RepositoryException) cause;
+			}
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
 			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException(cause);
 		}
 	}
 
@@ -376,16 +738,32 @@ public class BlazegraphMolecularModelManager<METADATA> extends CoreMolecularMode
 	 * @throws IOException
 	 */
 	public Set<IRI> getStoredModelIds() throws IOException {
+		return Collections.unmodifiableSet(streamStoredModelIds().collect(Collectors.toSet()));
+	}
+
+	/**
+	 * Stream the stored model ids without copying them, see
+	 * {@link #getStoredModelIds()}.
+	 *
+	 * @return model ids
+	 */
+	public Stream<IRI> streamStoredModelIds() {
+		return modelIds.stream();
+	}
+
+	/**
+	 * @param modelId
+	 * @return true, if the model is in the datastore
+	 * @throws IOException
+	 */
+	public boolean isStoredModel(IRI modelId) throws IOException {
+		if (modelIds.contains(modelId)) {
+			return true;
+		}
 		try {
 			BigdataSailRepositoryConnection connection = repo.getReadOnlyConnection();
 			try {
-				RepositoryResult<Resource> graphs = connection.getContextIDs();
-				Set<IRI> modelIds = new HashSet<>();
-				while (graphs.hasNext()) {
-					modelIds.add(IRI.create(graphs.next().stringValue()));
-				}
-				graphs.close();
-				return Collections.unmodifiableSet(modelIds);
+				return isStoredModel(connection, modelId);
 			} finally {
 				connection.close();
 			}
@@ -394,6 +772,21 @@ public class BlazegraphMolecularModelManager<METADATA> extends CoreMolecularMode
 		}
 	}
 
+	/**
+	 * Models missing in the registry are looked up in the store, in case they
+	 * have been written without it.
+	 */
+	private boolean isStoredModel(BigdataSailRepositoryConnection connection, IRI modelId) throws RepositoryException {
+		if (modelIds.contains(modelId)) {
+			return true;
+		}
+		if (connection.hasStatement(null, null, null, false, new URIImpl(modelId.toString()))) {
+			modelIds.add(modelId);
+			return true;
+		}
+		return false;
+	}
+
 	/**
 	 * Retrieve all model ids currently in memory in long and short form.<br>
 	 *
@@ -401,7 +794,7 @@ public class BlazegraphMolecularModelManager<METADATA> extends CoreMolecularMode
 	 * @throws IOException
 	 */
 	public Set<IRI> getCurrentModelIds() throws IOException {
-		return new HashSet<IRI>(modelMap.keySet());
+		return new HashSet<IRI>(modelCache.keySet());
 	}
 
 	/**
@@ -412,108 +805,255 @@ public class BlazegraphMolecularModelManager<METADATA> extends CoreMolecularMode
 	 * @throws IOException
 	 */
 	public Set<IRI> getAvailableModelIds() throws IOException {
-		Set<IRI> allModelIds = new HashSet<>();
-		allModelIds.addAll(this.getStoredModelIds());
-		allModelIds.addAll(this.getCurrentModelIds());
+		Set<IRI> allModelIds = streamStoredModelIds().collect(Collectors.toCollection(HashSet::new));
+		allModelIds.addAll(modelCache.keySet());
 		return allModelIds;
 	}
 
+	/**
+	 * Header annotations of all models, served from the
+	 * {@link #getModelAnnotationIndex()}. Modified models in memory replace
+	 * the stored annotations.
+	 *
+	 * @return annotations by model
+	 * @throws IOException
+	 */
 	public Map<IRI, Set<OWLAnnotation>> getAllModelAnnotations() throws IOException {
-		Map<IRI, Set<OWLAnnotation>> annotations = new HashMap<>();
-		// First get annotations from all the stored ontologies
-		try {
-			BigdataSailRepositoryConnection connection = repo.getReadOnlyConnection();
-			try {
-				String query = "PREFIX owl: <http://www.w3.org/2002/07/owl#> " +
-						"PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#> " +
-						"SELECT ?model ?p ?o " +
-						"WHERE { " +
-						"?model a owl:Ontology . " +
-						"?model ?p ?o . " +
-						"FILTER(?p NOT IN (owl:imports, rdf:type, <http://geneontology.org/lego/json-model>)) " +
-						"} ";
-				TupleQuery tupleQuery = connection.prepareTupleQuery(QueryLanguage.SPARQL, query);
-				TupleQueryResult result = tupleQuery.evaluate();
-				OWLDataFactory factory = OWLManager.getOWLDataFactory();
-				while (result.hasNext()) {
-					BindingSet binding = result.next();
-					Value model = binding.getValue("model");
-					Value predicate = binding.getValue("p");
-					String value = binding.getValue("o").stringValue();
-					if ((model instanceof URI) && (predicate instanceof URI)) {
-						IRI modelId = IRI.create(((URI)model).toString());
-						OWLAnnotationProperty property = factory
-								.getOWLAnnotationProperty(IRI.create(((URI)predicate).toString()));
-						OWLAnnotation annotation = factory.getOWLAnnotation(property, factory.getOWLLiteral(value));
-						Set<OWLAnnotation> modelAnnotations = annotations.getOrDefault(modelId, new HashSet<>());
-						modelAnnotations.add(annotation);
-						annotations.put(modelId, modelAnnotations);
-					}
-				}
-			} catch (MalformedQueryException e) {
-				throw new IOException(e);
-			} catch (QueryEvaluationException e) {
-				throw new IOException(e);
-			} finally {
-				connection.close();
-			}
-		} catch (RepositoryException e) {
-			throw new IOException(e);
-		}
+		Map<IRI, Set<OWLAnnotation>> annotations = new HashMap<>(getModelAnnotationIndex().getAll());
 		// Next get annotations from ontologies that may not be stored, replacing any stored annotations
-		modelMap.values().stream().filter(mc -> mc.isModified()).forEach(mc -> {
+		modelCache.values().stream().filter(mc -> mc.isModified()).forEach(mc -> {
 			annotations.put(mc.getModelId(), mc.getAboxOntology().getAnnotations());
 		});
 		return annotations;
 	}
 
+	/**
+	 * Evaluate a query with the default prefixes. The result is read
+	 * completely, before the connection is closed. For large results use
+	 * {@link #openSPARQLQuery(String, int, long)}.
+	 *
+	 * @param queryText
+	 * @param timeout in seconds
+	 * @return {@link TupleQueryResult} or {@link GraphQueryResult}
+	 * @throws MalformedQueryException
+	 * @throws QueryEvaluationException
+	 * @throws RepositoryException
+	 */
 	public QueryResult executeSPARQLQuery(String queryText, int timeout) throws MalformedQueryException, QueryEvaluationException, RepositoryException {
 		BigdataSailRepositoryConnection connection = repo.getReadOnlyConnection();
 		try {
-			List<QueryPrologLexer.Token> tokens = QueryPrologLexer.lex(queryText);
-			Set<String> declaredPrefixes = tokens.stream().filter(token -> token.getType().equals(QueryPrologLexer.TokenType.PREFIX)).map(token -> token.getStringValue()).collect(Collectors.toSet());
-			StringBuffer queryWithDefaultPrefixes = new StringBuffer();
-			for (Entry<String, String> entry : getCuriHandler().getMappings().entrySet()) {
-				if (!declaredPrefixes.contains(entry.getKey())) {
-					queryWithDefaultPrefixes.append("PREFIX " + entry.getKey() + ": <" + entry.getValue() + ">");
-					queryWithDefaultPrefixes.append("\n");
-				}
+			Query query = connection.prepareQuery(QueryLanguage.SPARQL, addDefaultPrefixes(queryText));
+			query.setMaxQueryTime(timeout);
+			return readQueryResult(query);
+		} finally {
+			connection.close();
+		}
+	}
+
+	/**
+	 * The results are evaluated lazily, so they have to be read while the
+	 * connection is open.
+	 */
+	private static QueryResult readQueryResult(Query query) throws QueryEvaluationException {
+		if (query instanceof TupleQuery) {
+			TupleQueryResult tuples = ((TupleQuery) query).evaluate();
+			try {
+				return new TupleQueryResultImpl(tuples.getBindingNames(), Iterations.asList(tuples));
+			} finally {
+				tuples.close();
 			}
-			queryWithDefaultPrefixes.append(queryText);
-			Query query = connection.prepareQuery(QueryLanguage.SPARQL, queryWithDefaultPrefixes.toString());
+		} else if (query instanceof GraphQuery) {
+			GraphQueryResult graph = ((GraphQuery) query).evaluate();
+			try {
+				return new GraphQueryResultImpl(graph.getNamespaces(), Iterations.asList(graph));
+			} finally {
+				graph.close();
+			}
+		} else if (query instanceof BooleanQuery) {
+			throw new UnsupportedOperationException("Unsupported query type."); //FIXME
+		} else {
+			throw new UnsupportedOperationException("Unsupported query type.");
+		}
+	}
+
+	/**
+	 * Evaluate a query with the default prefixes, like
+	 * {@link #executeSPARQLQuery(String, int)}, but the read-only connection
+	 * stays open until the returned result is closed. The result is evaluated
+	 * lazily, while it is consumed, e.g. by a response writer. The caller has
+	 * to close the result.
+	 *
+	 * @param queryText
+	 * @param timeout in seconds
+	 * @param maxRows maximum number of solutions or statements in the result, no limit if maxRows &lt;= 0
+	 * @return {@link TupleQueryResult} or {@link GraphQueryResult}, which is a {@link LimitedQueryResult}
+	 * @throws MalformedQueryException
+	 * @throws QueryEvaluationException
+	 * @throws RepositoryException
+	 */
+	public QueryResult openSPARQLQuery(String queryText, int timeout, long maxRows) throws MalformedQueryException, QueryEvaluationException, RepositoryException {
+		final BigdataSailRepositoryConnection connection = repo.getReadOnlyConnection();
+		boolean opened = false;
+		try {
+			Query query = connection.prepareQuery(QueryLanguage.SPARQL, addDefaultPrefixes(queryText));
 			query.setMaxQueryTime(timeout);
+			final QueryResult result;
 			if (query instanceof TupleQuery) {
-				TupleQuery tupleQuery = (TupleQuery) query;
-				return tupleQuery.evaluate();
+				TupleQueryResult tuples = ((TupleQuery) query).evaluate();
+				result = new LimitedTupleQueryResult(tuples.getBindingNames(), new RowLimitIteration<BindingSet>(tuples, maxRows, connection));
 			} else if (query instanceof GraphQuery) {
-				GraphQuery graphQuery = (GraphQuery) query;
-				return graphQuery.evaluate();
-			} else if (query instanceof BooleanQuery) {
-				throw new UnsupportedOperationException("Unsupported query type."); //FIXME
+				GraphQueryResult graph = ((GraphQuery) query).evaluate();
+				result = new LimitedGraphQueryResult(graph.getNamespaces(), new RowLimitIteration<Statement>(graph, maxRows, connection));
 			} else {
 				throw new UnsupportedOperationException("Unsupported query type.");
 			}
+			opened = true;
+			return result;
 		} finally {
-			connection.close();
+			if (opened == false) {
+				connection.close();
+			}
 		}
 	}
 
+	/**
+	 * Result of {@link #openSPARQLQuery(String, int, long)}, which tells
+	 * whether it was cut off by the row limit.
+	 */
+	public static interface LimitedQueryResult {
+
+		/**
+		 * @return maximum number of solutions or statements, 0 for no limit
+		 */
+		long getMaxRows();
+
+		/**
+		 * @return true, if the query had more solutions or statements than
+		 *         the limit. Known after the last row of the result was read.
+		 */
+		boolean isTruncated();
+	}
+
+	private static class LimitedTupleQueryResult extends TupleQueryResultImpl implements LimitedQueryResult {
+
+		private final RowLimitIteration<BindingSet> rows;
+
+		LimitedTupleQueryResult(List<String> bindingNames, RowLimitIteration<BindingSet> rows) {
+			super(bindingNames, rows);
+			this.rows = rows;
+		}
+
+		@Override
+		public long getMaxRows() {
+			return rows.maxRows;
+		}
+
+		@Override
+		public boolean isTruncated() {
+			return rows.truncated;
+		}
+	}
+
+	private static class LimitedGraphQueryResult extends GraphQueryResultImpl implements LimitedQueryResult {
+
+		private final RowLimitIteration<Statement> rows;
+
+		LimitedGraphQueryResult(Map<String, String> namespaces, RowLimitIteration<Statement> rows) {
+			super(namespaces, rows);
+			this.rows = rows;
+		}
+
+		@Override
+		public long getMaxRows() {
+			return rows.maxRows;
+		}
+
+		@Override
+		public boolean isTruncated() {
+			return rows.truncated;
+		}
+	}
+
+	/**
+	 * Limit the result and close the connection with it. After the last
+	 * row, one more row is requested from the query to detect a cut off.
+	 */
+	private static class RowLimitIteration<E> extends LookAheadIteration<E, QueryEvaluationException> {
+
+		private final CloseableIteration<? extends E, QueryEvaluationException> result;
+		private final long maxRows;
+		private final RepositoryConnection connection;
+		private long rows = 0;
+		private volatile boolean truncated = false;
+
+		RowLimitIteration(CloseableIteration<? extends E, QueryEvaluationException> result, long maxRows, RepositoryConnection connection) {
+			this.result = result;
+			this.maxRows = Math.max(0, maxRows);
+			this.connection = connection;
+		}
+
+		@Override
+		protected E getNextElement() throws QueryEvaluationException {
+			if (result.hasNext() == false) {
+				return null;
+			}
+			if (maxRows > 0 && rows >= maxRows) {
+				truncated = true;
+				LOG.warn("SPARQL result cut off after "+maxRows+" rows");
+				return null;
+			}
+			rows++;
+			return result.next();
+		}
+
+		@Override
+		protected void handleClose() throws QueryEvaluationException {
+			try {
+				super.handleClose();
+				result.close();
+			} finally {
+				try {
+					connection.close();
+				} catch (RepositoryException e) {
+					throw new QueryEvaluationException(e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Declare the prefixes of the curie handler, which are not declared in the query.
+	 */
+	private String addDefaultPrefixes(String queryText) throws MalformedQueryException {
+		List<QueryPrologLexer.Token> tokens = QueryPrologLexer.lex(queryText);
+		Set<String> declaredPrefixes = tokens.stream().filter(token -> token.getType().equals(QueryPrologLexer.TokenType.PREFIX)).map(token -> token.getStringValue()).collect(Collectors.toSet());
+		StringBuffer queryWithDefaultPrefixes = new StringBuffer();
+		for (Entry<String, String> entry : getCuriHandler().getMappings().entrySet()) {
+			if (!declaredPrefixes.contains(entry.getKey())) {
+				queryWithDefaultPrefixes.append("PREFIX " + entry.getKey() + ": <" + entry.getValue() + ">");
+				queryWithDefaultPrefixes.append("\n");
+			}
+		}
+		queryWithDefaultPrefixes.append(queryText);
+		return queryWithDefaultPrefixes.toString();
+	}
+
+	/**
+	 * Evaluate a query as is, see {@link #executeSPARQLQuery(String, int)}.
+	 *
+	 * @param queryText
+	 * @param timeout in seconds
+	 * @return {@link TupleQueryResult} or {@link GraphQueryResult}
+	 * @throws MalformedQueryException
+	 * @throws QueryEvaluationException
+	 * @throws RepositoryException
+	 */
 	public QueryResult executeSPARQLQueryWithoutPrefixManipulation(String queryText, int timeout) throws MalformedQueryException, QueryEvaluationException, RepositoryException {
 		BigdataSailRepositoryConnection connection = repo.getReadOnlyConnection();
 		try {
 			Query query = connection.prepareQuery(QueryLanguage.SPARQL, queryText.toString());
 			query.setMaxQueryTime(timeout);
-			if (query instanceof TupleQuery) {
-				TupleQuery tupleQuery = (TupleQuery) query;
-				return tupleQuery.evaluate();
-			} else if (query instanceof GraphQuery) {
-				GraphQuery graphQuery = (GraphQuery) query;
-				return graphQuery.evaluate();
-			} else if (query instanceof BooleanQuery) {
-				throw new UnsupportedOperationException("Unsupported query type."); //FIXME
-			} else {
-				throw new UnsupportedOperationException("Unsupported query type.");
-			}
+			return readQueryResult(query);
 		} finally {
 			connection.close();
 		}
@@ -521,7 +1061,7 @@ public class BlazegraphMolecularModelManager<METADATA> extends CoreMolecularMode
 
 	@Override
 	public void loadModel(IRI modelId, boolean isOverride) throws OWLOntologyCreationException {
-		if (modelMap.containsKey(modelId)) {
+		if (modelCache.containsKey(modelId)) {
 			if (!isOverride) {
 				throw new OWLOntologyCreationException("Model already exists: " + modelId);
 			}
@@ -530,19 +1070,21 @@ public class BlazegraphMolecularModelManager<METADATA> extends CoreMolecularMode
 		try {
 			BigdataSailRepositoryConnection connection = repo.getReadOnlyConnection(); 
 			try {
-				RepositoryResult<Resource> graphs = connection.getContextIDs();
-				if (!Iterations.asSet(graphs).contains(new URIImpl(modelId.toString()))) {
+				if (!isStoredModel(connection, modelId)) {
 					throw new OWLOntologyCreationException("No such model in datastore: " + modelId);
 				}
-				graphs.close();
 				RepositoryResult<Statement> statements =
 						connection.getStatements(null, null, null, false, new URIImpl(modelId.toString()));
 				//setting minimal = false will load the abox with the tbox ontology manager, allowing for OWL understanding of tbox content
 				boolean minimal = false;
-				OWLOntology abox = loadOntologyDocumentSource(new RioMemoryTripleSource(statements), minimal);
-				statements.close();
-				abox = postLoadFileFilter(abox);
-				ModelContainer model = addModel(modelId, abox);
+				OWLOntology abox = loadModelStatements(statements, minimal);
+				int axiomCount = abox.getAxiomCount();
+				int annotationCount = abox.getAnnotations().size();
+				OWLOntology filtered = postLoadFileFilter(abox);
+				// changes are recorded for incremental saves, unless the filters modified the model
+				boolean isStored = filtered == abox && axiomCount == abox.getAxiomCount()
+						&& annotationCount == abox.getAnnotations().size();
+				ModelContainer model = addModel(modelId, filtered, isStored);
 			} finally {
 				connection.close();
 			}
@@ -559,17 +1101,14 @@ public class BlazegraphMolecularModelManager<METADATA> extends CoreMolecularMode
 			BigdataSailRepositoryConnection connection = repo.getReadOnlyConnection();
 			try {
 				//TODO repeated code with loadModel
-				RepositoryResult<Resource> graphs = connection.getContextIDs();
-				if (!Iterations.asSet(graphs).contains(new URIImpl(modelId.toString()))) {
+				if (!isStoredModel(connection, modelId)) {
 					throw new OWLOntologyCreationException("No such model in datastore: " + modelId);
 				}
-				graphs.close();
 				RepositoryResult<Statement> statements =
 						connection.getStatements(null, null, null, false, new URIImpl(modelId.toString()));
 				//setting minimal to true will give an OWL abox with triples that won't be connected to the tbox, hence e.g. object properties might not be recognized.  
 				boolean minimal = true;
-				OWLOntology abox = loadOntologyDocumentSource(new RioMemoryTripleSource(statements), minimal);
-				statements.close();
+				OWLOntology abox = loadModelStatements(statements, minimal);
 				abox = postLoadFileFilter(abox);
 				return abox;
 			} finally {
@@ -580,6 +1119,31 @@ public class BlazegraphMolecularModelManager<METADATA> extends CoreMolecularMode
 		}
 	}
 
+	/**
+	 * Convert the statements of a model directly into axioms, see
+	 * {@link ModelStatementLoader}. Models with other constructs are parsed.
+	 *
+	 * @param statements closed after reading
+	 * @param minimal if true, load the model with a new manager and skip the imports
+	 * @return model
+	 * @throws RepositoryException
+	 * @throws OWLOntologyCreationException
+	 */
+	private OWLOntology loadModelStatements(RepositoryResult<Statement> statements, boolean minimal) throws RepositoryException, OWLOntologyCreationException {
+		final List<Statement> list;
+		try {
+			list = Iterations.asList(statements);
+		} finally {
+			statements.close();
+		}
+		OWLOntologyManager manager = minimal ? OWLManager.createOWLOntologyManager() : getTbox().getOWLOntologyManager();
+		OWLOntology abox = new ModelStatementLoader(manager, minimal == false).load(list);
+		if (abox == null) {
+			abox = loadOntologyDocumentSource(new RioMemoryTripleSource(list.iterator()), minimal);
+		}
+		return abox;
+	}
+
 	private OWLOntology postLoadFileFilter(OWLOntology model) {
 		for (PostLoadOntologyFilter filter : postLoadOntologyFilters) {
 			model = filter.filter(model);
@@ -632,33 +1196,25 @@ public class BlazegraphMolecularModelManager<METADATA> extends CoreMolecularMode
 					//write it 
 					this.writeModelToDatabase(cam, IRI.create(ontIRIOpt.get().stringValue()));
 				}else { //otherwise just load it all up as rdf (faster because avoids owl api)
-					synchronized(repo) {
-						final BigdataSailRepositoryConnection connection = repo.getUnisolatedConnection();
-						try {
-							connection.begin();
-							try {				
-								URI graph = ontIRIOpt.get();
-								connection.clear(graph);
-								//FIXME Turtle format is hard-coded here
-								if(file.getName().endsWith(".ttl")) {
-									connection.add(file, "", RDFFormat.TURTLE, graph);
-								}else if(file.getName().endsWith(".owl")) {
-									connection.add(file, "", RDFFormat.RDFXML, graph);
-								}
-								connection.commit();
-								modeliri = graph.toString();
-							} catch (Exception e) {
-								connection.rollback();
-								throw e;
-							}
-						} finally {
-							connection.close();
+					final URI graph = ontIRIOpt.get();
+					await(writeQueue.submit(connection -> {
+						clearGraph(connection, graph);
+						//FIXME Turtle format is hard-coded here
+						if(file.getName().endsWith(".ttl")) {
+							connection.add(file, "", RDFFormat.TURTLE, graph);
+						}else if(file.getName().endsWith(".owl")) {
+							connection.add(file, "", RDFFormat.RDFXML, graph);
 						}
-					}
+						return null;
+					}));
+					modeliri = graph.toString();
 				} 
 			}else {
 				throw new OWLOntologyCreationException("Detected anonymous ontology; must have IRI");
 			}
+			modelStored(IRI.create(modeliri));
+			// the taxa of the imported model are not known here
+			invalidateTaxonLabels();
 		}else {
 			System.err.println("skipping "+file.getName());
 		}
@@ -790,7 +1346,7 @@ public class BlazegraphMolecularModelManager<METADATA> extends CoreMolecularMode
 	}
 
 	/**
-	 * Export all models to disk.
+	 * Export all models to disk, one Turtle file per model, using one thread per processor.
 	 *
 	 * @throws OWLOntologyStorageException
 	 * @throws OWLOntologyCreationException
@@ -798,8 +1354,57 @@ public class BlazegraphMolecularModelManager<METADATA> extends CoreMolecularMode
 	 */
 	public void dumpAllStoredModels() throws OWLOntologyStorageException, OWLOntologyCreationException, IOException {
 		File folder = new File(this.pathToExportFolder);
-		for (IRI modelId : this.getStoredModelIds()) {
-			dumpStoredModel(modelId, folder);
+		dumpAllStoredModels(folder, Runtime.getRuntime().availableProcessors(), false);
+	}
+
+	/**
+	 * Export all models to disk, one Turtle file per model. Models are
+	 * exported concurrently, each from its own read-only connection.
+	 *
+	 * @param folder
+	 * @param threads
+	 * @param gzip if true, write gzip compressed '.ttl.gz' files
+	 * @throws IOException
+	 */
+	public void dumpAllStoredModels(File folder, int threads, boolean gzip) throws IOException {
+		forEachStoredModel(threads, modelId -> {
+			dumpStoredModel(modelId, folder, gzip);
+			return null;
+		}, result -> {});
+	}
+
+	/**
+	 * Export all models into a single file with one named graph per model.
+	 * The models are serialized concurrently and written in the order of
+	 * {@link #getStoredModelIds()}.
+	 *
+	 * @param targetFile
+	 * @param format {@link RDFFormat#NQUADS} or {@link RDFFormat#TRIG}
+	 * @param threads
+	 * @param gzip if true, compress the file
+	 * @throws IOException
+	 */
+	public void dumpAllStoredModels(File targetFile, RDFFormat format, int threads, boolean gzip) throws IOException {
+		if (format.supportsContexts() == false) {
+			throw new IOException("Format does not support named graphs: "+format.getName());
+		}
+		targetFile = targetFile.getAbsoluteFile();
+		FileUtils.forceMkdir(targetFile.getParentFile());
+		File tempFile = File.createTempFile(targetFile.getName(), ".tmp", targetFile.getParentFile());
+		try {
+			final OutputStream out = openOutput(tempFile, gzip);
+			try {
+				forEachStoredModel(threads, modelId -> {
+					ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+					exportModel(modelId, buffer, format);
+					return buffer;
+				}, buffer -> buffer.writeTo(out));
+			} finally {
+				out.close();
+			}
+			moveAtomically(tempFile, targetFile);
+		} finally {
+			FileUtils.deleteQuietly(tempFile);
 		}
 	}
 
@@ -811,8 +1416,21 @@ public class BlazegraphMolecularModelManager<METADATA> extends CoreMolecularMode
 	 * @throws IOException
 	 */
 	public void dumpStoredModel(IRI modelId, File folder) throws IOException {
+		dumpStoredModel(modelId, folder, false);
+	}
+
+	/**
+	 * Save a model to disk. The model is written to a temporary file next to
+	 * the target, which is then renamed to the target file.
+	 *
+	 * @param modelId
+	 * @param folder
+	 * @param gzip if true, write a gzip compressed '.ttl.gz' file
+	 * @throws IOException
+	 */
+	public void dumpStoredModel(IRI modelId, File folder, boolean gzip) throws IOException {
 		// preliminary checks for the target file
-		String fileName = StringUtils.replaceOnce(modelId.toString(), modelIdPrefix, "") + ".ttl";
+		String fileName = StringUtils.replaceOnce(modelId.toString(), modelIdPrefix, "") + (gzip ? ".ttl.gz" : ".ttl");
 		File targetFile = new File(folder, fileName).getAbsoluteFile();
 		if (targetFile.exists()) {
 			if (targetFile.isFile() == false) {
@@ -826,45 +1444,124 @@ public class BlazegraphMolecularModelManager<METADATA> extends CoreMolecularMode
 			File targetFolder = targetFile.getParentFile();
 			FileUtils.forceMkdir(targetFolder);
 		}
-		File tempFile = null;
+		// create tempFile in the target folder, for an atomic rename
+		File tempFile = File.createTempFile(targetFile.getName(), ".tmp", targetFile.getParentFile());
 		try {
-			// create tempFile
-			String prefix = modelId.toString(); // TODO escape
-			tempFile = File.createTempFile(prefix, ".ttl");
+			OutputStream out = openOutput(tempFile, gzip);
 			try {
-				BigdataSailRepositoryConnection connection = repo.getReadOnlyConnection();
-				OutputStream out = new FileOutputStream(tempFile);
-				try {
+				exportModel(modelId, out, RDFFormat.TURTLE);
+			} finally {
+				out.close();
+			}
+			moveAtomically(tempFile, targetFile);
+		} finally {
+			// delete temp file, if the rename failed
+			FileUtils.deleteQuietly(tempFile);
+		}
+	}
+
+	private void exportModel(IRI modelId, OutputStream out, RDFFormat format) throws IOException {
+		try {
+			BigdataSailRepositoryConnection connection = repo.getReadOnlyConnection();
+			try {
+				URI graph = new URIImpl(modelId.toString());
+				if (RDFFormat.TURTLE.equals(format)) {
 					// Workaround for order dependence of RDF reading by OWL API
 					// Need to output ontology triple first until this bug is fixed:
 					// https://github.com/owlcs/owlapi/issues/574
 					ValueFactory factory = connection.getValueFactory();
-					Statement ontologyDeclaration = factory.createStatement(factory.createURI(modelId.toString()), RDF.TYPE, OWL.ONTOLOGY);
+					Statement ontologyDeclaration = factory.createStatement(graph, RDF.TYPE, OWL.ONTOLOGY);
 					Rio.write(Collections.singleton(ontologyDeclaration), out, RDFFormat.TURTLE);
 					// end workaround
-					RDFWriter writer = Rio.createWriter(RDFFormat.TURTLE, out);
-					connection.export(writer, new URIImpl(modelId.toString()));
-					// copy temp file to the finalFile
-					FileUtils.copyFile(tempFile, targetFile);
-				}  finally {
-					out.close();
-					connection.close();
 				}
-			} catch (RepositoryException e) {
-				throw new IOException(e);
-			} catch (RDFHandlerException e) {
-				throw new IOException(e);
+				RDFWriter writer = Rio.createWriter(format, out);
+				connection.export(writer, graph);
+			} finally {
+				connection.close();
+			}
+		} catch (RepositoryException e) {
+			throw new IOException(e);
+		} catch (RDFHandlerException e) {
+			throw new IOException(e);
+		}
+	}
+
+	private static OutputStream openOutput(File file, boolean gzip) throws IOException {
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024);
+		if (gzip) {
+			out = new GZIPOutputStream(out, 64 * 1024);
+		}
+		return out;
+	}
+
+	private static void moveAtomically(File source, File target) throws IOException {
+		try {
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static interface ModelExport<T> {
+
+		T export(IRI modelId) throws IOException;
+	}
+
+	private static interface ExportSink<T> {
+
+		void accept(T result) throws IOException;
+	}
+
+	/**
+	 * Export the stored models on a pool of threads. Results are passed to
+	 * the sink in model order on the calling thread. The number of pending
+	 * results is bounded, to limit memory for large journals.
+	 */
+	private <T> void forEachStoredModel(int threads, ModelExport<T> export, ExportSink<T> sink) throws IOException {
+		final int poolSize = Math.max(1, threads);
+		final AtomicInteger threadCount = new AtomicInteger(0);
+		ExecutorService executor = Executors.newFixedThreadPool(poolSize, r -> {
+			Thread t = new Thread(r, "model-export-" + threadCount.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		try {
+			final int window = poolSize * 4;
+			final Iterator<IRI> modelIds = streamStoredModelIds().iterator();
+			final Deque<Future<T>> pending = new ArrayDeque<Future<T>>();
+			while (modelIds.hasNext() || pending.isEmpty() == false) {
+				while (modelIds.hasNext() && pending.size() < window) {
+					final IRI modelId = modelIds.next();
+					pending.add(executor.submit(() -> export.export(modelId)));
+				}
+				try {
+					sink.accept(pending.poll().get());
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof IOException) {
+						throw (IOException) cause;
+					}
+					throw new IOException(cause);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted during model export");
+				}
 			}
 		} finally {
-			// delete temp file
-			FileUtils.deleteQuietly(tempFile);
+			executor.shutdownNow();
 		}
 	}
 
 	public void dispose() {
 		super.dispose();
+		writeQueue.shutdown();
 		try {
 			if(repo.getSail().isOpen()) {
+				try {
+					modelIds.save(ModelIdRegistry.getLastCommitTime(repo));
+				} catch (IOException e) {
+					LOG.error("Failed to save the model ids.", e);
+				}
 				repo.shutDown();
 			}
 			if(this.getGolego_repo()!=null) {
@@ -878,6 +1575,10 @@ public class BlazegraphMolecularModelManager<METADATA> extends CoreMolecularMode
 	}
 
 	public Map<String, Set<String>> buildTaxonModelMap() throws IOException {
+		GeneTaxonIndex index = getGolego_repo().getTaxonIndex();
+		if(index!=null) {
+			return buildTaxonModelMap(index);
+		}
 		Map<String, Set<String>> model_genes = buildModelGeneMap();
 		Map<String, Set<String>> taxon_models = new HashMap<String, Set<String>>();		
 		for(String model : model_genes.keySet()) {
@@ -895,6 +1596,46 @@ public class BlazegraphMolecularModelManager<METADATA> extends CoreMolecularMode
 		return taxon_models;
 	}
 
+	/**
+	 * Map the types of the individuals in all models through the gene to
+	 * taxon dictionary. The pairs are streamed, there is no per model lookup
+	 * and no filter on the type IRIs, the dictionary only knows genes.
+	 *
+	 * @param index
+	 * @return models by taxon
+	 * @throws IOException
+	 */
+	private Map<String, Set<String>> buildTaxonModelMap(GeneTaxonIndex index) throws IOException {
+		Map<String, Set<String>> taxon_models = new HashMap<String, Set<String>>();
+		String sparql = "SELECT DISTINCT ?id ?type WHERE {\n" + 
+				"  GRAPH ?id {  \n" + 
+				"?i rdf:type ?type .\n" + 
+				"FILTER (isIRI(?type)) \n" + 
+				"    }\n" + 
+				"  } ";
+		try {
+			TupleQueryResult result = (TupleQueryResult) openSPARQLQuery(sparql, 1000, 0);
+			try {
+				while(result.hasNext()) {
+					BindingSet bs = result.next();
+					Set<String> taxa = index.getTaxa(bs.getBinding("type").getValue().stringValue());
+					if(taxa.isEmpty()) {
+						continue;
+					}
+					String model = bs.getBinding("id").getValue().stringValue();
+					for(String taxon : taxa) {
+						taxon_models.computeIfAbsent(taxon, k -> new HashSet<String>()).add(model);
+					}
+				}
+			} finally {
+				result.close();
+			}
+		} catch (MalformedQueryException | QueryEvaluationException | RepositoryException e) {
+			throw new IOException(e);
+		}
+		return taxon_models;
+	}
+
 	public Map<String, Set<String>> buildModelGeneMap(){
 		Map<String, Set<String>> model_genes = new HashMap<String, Set<String>>();
 		TupleQueryResult result;
@@ -944,6 +1685,37 @@ public class BlazegraphMolecularModelManager<METADATA> extends CoreMolecularMode
 
 	}
 
+	/**
+	 * Taxa of the gene products in the model, from the named types of the
+	 * individuals in the abox and the gene to taxon dictionary of the
+	 * ontology journal, without querying either store. Without a dictionary
+	 * the stored model is queried, see {@link #getTaxonsForModel(String)}.
+	 *
+	 * @param modelId
+	 * @param abox
+	 * @return taxa or null, if the model has no gene products
+	 * @throws IOException
+	 */
+	public Set<String> getTaxonsForModel(IRI modelId, OWLOntology abox) throws IOException {
+		GeneTaxonIndex index = getGolego_repo() != null ? getGolego_repo().getTaxonIndex() : null;
+		if(index==null) {
+			return getTaxonsForModel(modelId.toString());
+		}
+		Set<String> types = new HashSet<String>();
+		synchronized (abox) {
+			for(OWLClassAssertionAxiom axiom : abox.getAxioms(AxiomType.CLASS_ASSERTION)) {
+				if(axiom.getClassExpression().isNamed()) {
+					types.add(axiom.getClassExpression().asOWLClass().getIRI().toString());
+				}
+			}
+		}
+		Set<String> taxa = index.getTaxa(types);
+		if(taxa.isEmpty()) {
+			return null;
+		}
+		return taxa;
+	}
+
 	public Set<String> getModelGenes(String model_id){ 
 		Set<String> g = new HashSet<String>();
 		TupleQueryResult result;
@@ -986,46 +1758,204 @@ public class BlazegraphMolecularModelManager<METADATA> extends CoreMolecularMode
 		for(String taxon : taxon_models.keySet()) {
 			LOG.info("Updating models in taxon "+taxon);
 			Set<String> models = taxon_models.get(taxon);
-			models.stream().parallel().forEach(model -> {
-				//fine for a few thousand models, but ends up eating massive ram for many
-				//addTaxonWithOWL(IRI.create(model), IRI.create(taxon));
+			//fine for a few thousand models, but ends up eating massive ram for many
+			//addTaxonWithOWL(IRI.create(model), IRI.create(taxon));
+			// queue all inserts of the taxon, they are committed in batches
+			List<CompletableFuture<Integer>> inserts = new ArrayList<CompletableFuture<Integer>>(models.size());
+			for (String model : models) {
+				inserts.add(submitTaxonInsert(IRI.create(model), IRI.create(taxon)));
+			}
+			for (CompletableFuture<Integer> insert : inserts) {
 				try {
-					addTaxonToDatabaseWithSparql(IRI.create(model), IRI.create(taxon));
-				} catch (RepositoryException | UpdateExecutionException | MalformedQueryException e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
-				} catch (InterruptedException e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
+					await(insert);
+				} catch (RepositoryException | RuntimeException e) {
+					LOG.error("Could not add taxon "+taxon, e);
+				}
+			}
+			for (String model : models) {
+				modelStored(IRI.create(model));
+			}
+			taxaStored(Collections.singleton(taxon));
+		}
+	}
+
+	public static final int DEFAULT_TAXON_BATCH_SIZE = 50000;
+
+	/**
+	 * Bulk version of {@link #addTaxonMetadata()}. All (model, taxon) pairs
+	 * are computed in memory from the gene to taxon data of the ontology
+	 * journal, pairs which are already stored are dropped, and the remaining
+	 * in_taxon statements are written in transactions of batchSize statements
+	 * each, with one transaction in flight while the next is assembled.
+	 *
+	 * @param batchSize number of statements per transaction
+	 * @return number of added taxon annotations
+	 * @throws IOException
+	 */
+	public int addTaxonMetadataBulk(int batchSize) throws IOException {
+		final long start = System.currentTimeMillis();
+		Map<String, Set<String>> taxon_models = buildTaxonModelMap();
+		LOG.info("Computed taxa of models for "+taxon_models.size()+" taxa in "+(System.currentTimeMillis()-start)+"ms");
+		return addTaxonMetadataBulk(taxon_models, batchSize);
+	}
+
+	/**
+	 * @param taxon_models models by taxon
+	 * @param batchSize number of statements per transaction
+	 * @return number of added taxon annotations
+	 * @throws IOException
+	 * @see #addTaxonMetadataBulk(int)
+	 */
+	int addTaxonMetadataBulk(Map<String, Set<String>> taxon_models, int batchSize) throws IOException {
+		batchSize = Math.max(1, batchSize);
+		final long start = System.currentTimeMillis();
+		Set<String> stored = getStoredTaxonPairs();
+		LOG.info(stored.size()+" taxon annotations already stored");
+		final ValueFactory factory = repo.getValueFactory();
+		final URI in_taxon = factory.createURI(BlazegraphOntologyManager.in_taxon_uri);
+		Set<IRI> changed = new HashSet<IRI>();
+		Set<String> changedTaxa = new HashSet<String>();
+		List<Statement> batch = new ArrayList<Statement>(batchSize);
+		CompletableFuture<Integer> previous = null;
+		int previousSize = 0;
+		int added = 0;
+		int failed = 0;
+		for(Entry<String, Set<String>> entry : taxon_models.entrySet()) {
+			URI taxon = factory.createURI(entry.getKey());
+			for(String model : entry.getValue()) {
+				if(stored.contains(model+" "+entry.getKey())) {
+					continue;
+				}
+				URI graph = factory.createURI(model);
+				batch.add(factory.createStatement(graph, in_taxon, taxon, graph));
+				changed.add(IRI.create(model));
+				changedTaxa.add(entry.getKey());
+				if(batch.size() >= batchSize) {
+					failed += awaitTaxonBatch(previous, previousSize);
+					previous = submitStatements(batch);
+					previousSize = batch.size();
+					added += batch.size();
+					batch = new ArrayList<Statement>(batchSize);
+					LOG.info(taxonProgress(added, start));
+				}
+			}
+		}
+		failed += awaitTaxonBatch(previous, previousSize);
+		if(batch.isEmpty()==false) {
+			failed += awaitTaxonBatch(submitStatements(batch), batch.size());
+			added += batch.size();
+		}
+		for(IRI model : changed) {
+			modelStored(model);
+		}
+		if(failed > 0) {
+			invalidateTaxonLabels();
+		}else {
+			taxaStored(changedTaxa);
+		}
+		LOG.info("Finished taxon metadata for "+changed.size()+" models: "+taxonProgress(added, start)+", failed: "+failed);
+		return added - failed;
+	}
+
+	private static String taxonProgress(int added, long start) {
+		long elapsed = Math.max(1L, System.currentTimeMillis() - start);
+		return String.format("%d taxon annotations (%.0f/sec)", added, added * 1000.0d / elapsed);
+	}
+
+	/**
+	 * @return the stored in_taxon annotations of the models as "model taxon" strings
+	 * @throws IOException
+	 */
+	Set<String> getStoredTaxonPairs() throws IOException {
+		Set<String> pairs = new HashSet<String>();
+		String sparql = "SELECT ?id ?taxon WHERE { GRAPH ?id { ?id <"+BlazegraphOntologyManager.in_taxon_uri+"> ?taxon } }";
+		try {
+			TupleQueryResult result = (TupleQueryResult) openSPARQLQuery(sparql, 1000, 0);
+			try {
+				while(result.hasNext()) {
+					BindingSet bs = result.next();
+					pairs.add(bs.getValue("id").stringValue()+" "+bs.getValue("taxon").stringValue());
 				}
-			});
+			} finally {
+				result.close();
+			}
+		} catch (MalformedQueryException | QueryEvaluationException | RepositoryException e) {
+			throw new IOException(e);
+		}
+		return pairs;
+	}
+
+	CompletableFuture<Integer> submitStatements(final List<Statement> statements) {
+		return writeQueue.submit(conn -> {
+			// the statements carry their model graph as context
+			conn.add(statements);
+			return statements.size();
+		});
+	}
+
+	/**
+	 * @param batch may be null
+	 * @param size number of statements in the batch
+	 * @return number of statements of the batch, which could not be written
+	 */
+	private static int awaitTaxonBatch(CompletableFuture<Integer> batch, int size) {
+		if(batch==null) {
+			return 0;
+		}
+		try {
+			await(batch);
+			return 0;
+		} catch (RepositoryException | IOException | RuntimeException e) {
+			LOG.error("Could not add batch of "+size+" taxon annotations", e);
+			return size;
 		}
 	}
 
 	//now try with sparql insert
 	public int addTaxonToDatabaseWithSparql(IRI model_iri, IRI taxon_iri) throws RepositoryException, UpdateExecutionException, MalformedQueryException, InterruptedException {
-		int changes = 0;
+		try {
+			int changed = submitTaxonInsert(model_iri, taxon_iri).get();
+			modelStored(model_iri);
+			taxaStored(Collections.singleton(taxon_iri.toString()));
+			return changed;
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RepositoryException) {
+				throw (RepositoryException) cause;
+			}
+			if (cause instanceof UpdateExecutionException) {
+				throw (UpdateExecutionException) cause;
+			}
+			if (cause instanceof MalformedQueryException) {
+				throw (MalformedQueryException) cause;
+			}
+			throw new RepositoryException(cause);
+		}
+	}
+
+	/**
+	 * Queue the insert of a taxon annotation for a stored model.
+	 *
+	 * @param model_iri
+	 * @param taxon_iri
+	 * @return future with the number of changed statements
+	 */
+	public CompletableFuture<Integer> submitTaxonInsert(IRI model_iri, IRI taxon_iri) {
 		String update = 
 				"INSERT DATA\n" + 
 						"{ GRAPH <"+model_iri.toString()+"> { "+
 						"  <"+model_iri.toString()+"> <"+BlazegraphOntologyManager.in_taxon_uri+"> <"+taxon_iri.toString()+">" + 
 						"} }";
-
-		synchronized(repo) {
-			final BigdataSailRepositoryConnection conn = repo.getUnisolatedConnection();
+		return writeQueue.submit(conn -> {
+			BlazegraphMutationCounter counter = new BlazegraphMutationCounter();
+			conn.addChangeLog(counter);
 			try {
-				conn.begin();
-				BlazegraphMutationCounter counter = new BlazegraphMutationCounter();
-				conn.addChangeLog(counter);
 				conn.prepareUpdate(QueryLanguage.SPARQL, update).execute();
-				changes = counter.mutationCount();
-				conn.removeChangeLog(counter);	
-				conn.commit();
 			} finally {
-				conn.close();
+				conn.removeChangeLog(counter);
 			}
-		}
-		return changes;
+			return counter.mutationCount();
+		});
 	}	
 
 }
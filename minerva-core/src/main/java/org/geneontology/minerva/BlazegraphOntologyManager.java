@@ -66,6 +66,12 @@ public class BlazegraphOntologyManager {
 	public static OWLAnnotationProperty in_taxon;
 	private static final Set<String> root_types;
 	public Map<String, Integer> class_depth;
+	//precomputed rdfs:subClassOf* closure, replaces the property path queries for the hierarchy lookups
+	private volatile ClassClosureIndex closure_index;
+	private final File closure_index_file;
+	//precomputed gene class to taxon dictionary, replaces the RO:0002162 restriction queries
+	private volatile GeneTaxonIndex taxon_index;
+	private final File taxon_index_file;
 	static {
 		root_types =  new HashSet<String>();
 		root_types.add("http://purl.obolibrary.org/obo/GO_0008150"); //BP
@@ -86,6 +92,8 @@ public class BlazegraphOntologyManager {
 	public BlazegraphOntologyManager(String go_lego_repo_file) throws IOException {
 		OWLOntologyManager ontman = OWLManager.createOWLOntologyManager();	
 		in_taxon = ontman.getOWLDataFactory().getOWLAnnotationProperty(IRI.create(in_taxon_uri));
+		closure_index_file = new File(go_lego_repo_file+".closure");
+		taxon_index_file = new File(go_lego_repo_file+".taxa");
 		if(new File(go_lego_repo_file).exists()) {			
 			go_lego_repo = initializeRepository(go_lego_repo_file);
 		}else {
@@ -101,6 +109,8 @@ public class BlazegraphOntologyManager {
 			}
 			go_lego_repo = initializeRepository(go_lego_repo_file);
 		}
+		closure_index = loadOrBuildClosureIndex(new File(go_lego_repo_file));
+		taxon_index = loadOrBuildTaxonIndex(new File(go_lego_repo_file));
 		class_depth = buildClassDepthMap("http://purl.obolibrary.org/obo/GO_0003674");
 		class_depth.putAll(buildClassDepthMap("http://purl.obolibrary.org/obo/GO_0008150"));
 		class_depth.putAll(buildClassDepthMap("http://purl.obolibrary.org/obo/GO_0005575"));
@@ -114,15 +124,198 @@ public class BlazegraphOntologyManager {
 		return go_lego_repo;
 	}
 
+	/**
+	 * @return the precomputed subclass closure, may be null if it could not be built
+	 */
+	public ClassClosureIndex getClosureIndex() {
+		return closure_index;
+	}
+
+	/**
+	 * Load the subclass closure from the sidecar file next to the journal,
+	 * if it was written for the current state of the journal. Otherwise build
+	 * it from the journal and try to write a new sidecar file.
+	 * 
+	 * @param journal
+	 * @return index or null, if it could not be built
+	 */
+	private ClassClosureIndex loadOrBuildClosureIndex(File journal) {
+		final long key = closureIndexKey(journal);
+		if(closure_index_file.exists()) {
+			try {
+				ClassClosureIndex index = ClassClosureIndex.read(closure_index_file, key);
+				if(index!=null) {
+					LOG.info("Loaded subclass closure for "+index.size()+" classes from "+closure_index_file);
+					return index;
+				}
+				LOG.info("Subclass closure file is out of date: "+closure_index_file);
+			} catch (IOException e) {
+				LOG.warn("Could not read subclass closure file: "+closure_index_file, e);
+			}
+		}
+		ClassClosureIndex index;
+		try {
+			index = buildClosureIndex();
+		} catch (IOException e) {
+			LOG.error("Could not build subclass closure, falling back to SPARQL queries", e);
+			return null;
+		}
+		try {
+			index.write(closure_index_file, key);
+		} catch (IOException e) {
+			LOG.warn("Could not write subclass closure file: "+closure_index_file, e);
+		}
+		return index;
+	}
+
+	/**
+	 * @return the precomputed gene to taxon dictionary, may be null if it could not be built
+	 */
+	public GeneTaxonIndex getTaxonIndex() {
+		return taxon_index;
+	}
+
+	/**
+	 * Load the gene to taxon dictionary from the sidecar file next to the
+	 * journal, see {@link #loadOrBuildClosureIndex(File)}.
+	 * 
+	 * @param journal
+	 * @return index or null, if it could not be built
+	 */
+	private GeneTaxonIndex loadOrBuildTaxonIndex(File journal) {
+		final long key = closureIndexKey(journal);
+		if(taxon_index_file.exists()) {
+			try {
+				GeneTaxonIndex index = GeneTaxonIndex.read(taxon_index_file, key);
+				if(index!=null) {
+					LOG.info("Loaded taxa for "+index.size()+" genes from "+taxon_index_file);
+					return index;
+				}
+				LOG.info("Gene taxon file is out of date: "+taxon_index_file);
+			} catch (IOException e) {
+				LOG.warn("Could not read gene taxon file: "+taxon_index_file, e);
+			}
+		}
+		GeneTaxonIndex index;
+		try {
+			index = buildTaxonIndex();
+		} catch (IOException e) {
+			LOG.error("Could not build gene taxon dictionary, falling back to SPARQL queries", e);
+			return null;
+		}
+		try {
+			index.write(taxon_index_file, key);
+		} catch (IOException e) {
+			LOG.warn("Could not write gene taxon file: "+taxon_index_file, e);
+		}
+		return index;
+	}
+
+	private static long closureIndexKey(File journal) {
+		return journal.length() * 31 + journal.lastModified();
+	}
+
+	/**
+	 * Build the subclass closure from all asserted rdfs:subClassOf edges in the journal.
+	 * 
+	 * @return index
+	 * @throws IOException
+	 */
+	public ClassClosureIndex buildClosureIndex() throws IOException {
+		long start = System.currentTimeMillis();
+		ClassClosureIndex.Builder builder = new ClassClosureIndex.Builder();
+		try {
+			BigdataSailRepositoryConnection connection = go_lego_repo.getReadOnlyConnection();
+			try {
+				String query = "PREFIX owl: <http://www.w3.org/2002/07/owl#> " +
+						"PREFIX rdfs: <http://www.w3.org/2000/01/rdf-schema#> " +
+						"SELECT ?sub ?super " +
+						"WHERE { " +
+						"?sub rdfs:subClassOf ?super . " +
+						"} ";
+				TupleQuery tupleQuery = connection.prepareTupleQuery(QueryLanguage.SPARQL, query);
+				TupleQueryResult result = tupleQuery.evaluate();
+				while (result.hasNext()) {
+					BindingSet binding = result.next();
+					Value sub = binding.getValue("sub");
+					Value sup = binding.getValue("super");
+					builder.addSubClassOf(sub.stringValue(), !(sub instanceof URI), sup.stringValue(), !(sup instanceof URI));
+				}
+				result.close();
+			} catch (MalformedQueryException e) {
+				throw new IOException(e);
+			} catch (QueryEvaluationException e) {
+				throw new IOException(e);
+			} finally {
+				connection.close();
+			}
+		} catch (RepositoryException e) {
+			throw new IOException(e);
+		}
+		ClassClosureIndex index = builder.build();
+		LOG.info("Built subclass closure for "+index.size()+" classes in "+(System.currentTimeMillis()-start)+"ms");
+		return index;
+	}
+
+	/**
+	 * Build the gene to taxon dictionary from all RO:0002162 (in taxon)
+	 * restrictions on named classes in the journal.
+	 * 
+	 * @return index
+	 * @throws IOException
+	 */
+	public GeneTaxonIndex buildTaxonIndex() throws IOException {
+		long start = System.currentTimeMillis();
+		GeneTaxonIndex.Builder builder = new GeneTaxonIndex.Builder();
+		try {
+			BigdataSailRepositoryConnection connection = go_lego_repo.getReadOnlyConnection();
+			try {
+				String query = "PREFIX owl: <http://www.w3.org/2002/07/owl#> " +
+						"PREFIX rdfs: <http://www.w3.org/2000/01/rdf-schema#> " +
+						"SELECT ?gene ?taxon " +
+						"WHERE { " +
+						"?gene rdfs:subClassOf ?taxon_restriction . " +
+						"?taxon_restriction owl:onProperty <http://purl.obolibrary.org/obo/RO_0002162> . " +
+						"?taxon_restriction owl:someValuesFrom ?taxon " +
+						"} ";
+				TupleQuery tupleQuery = connection.prepareTupleQuery(QueryLanguage.SPARQL, query);
+				TupleQueryResult result = tupleQuery.evaluate();
+				while (result.hasNext()) {
+					BindingSet binding = result.next();
+					Value gene = binding.getValue("gene");
+					Value taxon = binding.getValue("taxon");
+					if (gene instanceof URI && taxon instanceof URI) {
+						builder.add(gene.stringValue(), taxon.stringValue());
+					}
+				}
+				result.close();
+			} catch (MalformedQueryException e) {
+				throw new IOException(e);
+			} catch (QueryEvaluationException e) {
+				throw new IOException(e);
+			} finally {
+				connection.close();
+			}
+		} catch (RepositoryException e) {
+			throw new IOException(e);
+		}
+		GeneTaxonIndex index = builder.build();
+		LOG.info("Built taxa for "+index.size()+" genes in "+(System.currentTimeMillis()-start)+"ms");
+		return index;
+	}
+
 	public OWLOntology addTaxonModelMetaData(OWLOntology model, IRI taxon_iri) {
 		OWLOntologyManager ontman = model.getOWLOntologyManager();
-		OWLDataFactory df = ontman.getOWLDataFactory();		
-		OWLAnnotation taxon_anno = df.getOWLAnnotation(in_taxon, taxon_iri);
-		OWLAxiom taxonannoaxiom = df.getOWLAnnotationAssertionAxiom(model.getOntologyID().getOntologyIRI().get(), taxon_anno);
-		ontman.addAxiom(model, taxonannoaxiom);
+		ontman.addAxiom(model, getTaxonModelMetaData(model, taxon_iri));
 		return model;
 	}
 
+	public OWLAxiom getTaxonModelMetaData(OWLOntology model, IRI taxon_iri) {
+		OWLDataFactory df = model.getOWLOntologyManager().getOWLDataFactory();
+		OWLAnnotation taxon_anno = df.getOWLAnnotation(in_taxon, taxon_iri);
+		return df.getOWLAnnotationAssertionAxiom(model.getOntologyID().getOntologyIRI().get(), taxon_anno);
+	}
+
 	public void unGunzipFile(String compressedFile, String decompressedFile) {		 
 		byte[] buffer = new byte[1024]; 
 		try { 
@@ -183,11 +376,17 @@ public class BlazegraphOntologyManager {
 			} finally {
 				connection.close();
 			}
-			return ;
-		}		
+		}
+		// the hierarchy may have changed, the sidecar file is keyed by the journal state
+		closure_index = buildClosureIndex();
+		taxon_index = buildTaxonIndex();
 	}
 
 	public Set<String> getAllSuperClasses(String uri) throws IOException {
+		ClassClosureIndex index = closure_index;
+		if(index!=null) {
+			return index.getAncestors(uri);
+		}
 		Set<String> supers = new HashSet<String>();
 		try {
 			BigdataSailRepositoryConnection connection = go_lego_repo.getReadOnlyConnection();
@@ -223,6 +422,10 @@ public class BlazegraphOntologyManager {
 		return supers;
 	}
 	public Set<String> getAllSubClasses(String uri) throws IOException {
+		ClassClosureIndex index = closure_index;
+		if(index!=null) {
+			return index.getDescendants(uri);
+		}
 		Set<String> supers = new HashSet<String>();
 		try {
 			BigdataSailRepositoryConnection connection = go_lego_repo.getReadOnlyConnection();
@@ -439,6 +642,25 @@ public class BlazegraphOntologyManager {
 
 	public Map<String, Set<String>> getSuperCategoryMap(Set<String> uris) throws IOException {
 		Map<String, Set<String>> sub_supers = new HashMap<String, Set<String>>();
+		ClassClosureIndex index = closure_index;
+		if(index!=null) {
+			for(String uri : uris) {
+				if(!uri.startsWith("http")) {
+					continue;
+				}
+				for(String root : root_types) {
+					if(index.isSubClassOf(uri, root)) {
+						Set<String> supers = sub_supers.get(uri);
+						if(supers==null) {
+							supers = new HashSet<String>();
+							sub_supers.put(uri, supers);
+						}
+						supers.add(root);
+					}
+				}
+			}
+			return sub_supers;
+		}
 		try {
 			BigdataSailRepositoryConnection connection = go_lego_repo.getReadOnlyConnection();
 			try {
@@ -526,6 +748,13 @@ public class BlazegraphOntologyManager {
 
 	public Map<String, Set<String>> getSuperClassMap(Set<String> uris) throws IOException {
 		Map<String, Set<String>> sub_supers = new HashMap<String, Set<String>>();
+		ClassClosureIndex index = closure_index;
+		if(index!=null) {
+			for(String uri : uris) {
+				sub_supers.put(uri, new HashSet<String>(index.getAncestors(uri)));
+			}
+			return sub_supers;
+		}
 		try {
 			BigdataSailRepositoryConnection connection = go_lego_repo.getReadOnlyConnection();
 			try {
@@ -612,6 +841,10 @@ public class BlazegraphOntologyManager {
 	}
 
 	public Set<String> getAllTaxaWithGenes() throws IOException {
+		GeneTaxonIndex index = taxon_index;
+		if(index!=null) {
+			return index.getAllTaxa();
+		}
 		Set<String> taxa = new HashSet<String>();
 		try {
 			BigdataSailRepositoryConnection connection = go_lego_repo.getReadOnlyConnection();
@@ -659,6 +892,10 @@ public class BlazegraphOntologyManager {
 		}
 	}
 	public Set<String> getTaxaByGenes(Set<String> genes) throws IOException {
+		GeneTaxonIndex index = taxon_index;
+		if(index!=null) {
+			return index.getTaxa(genes);
+		}
 		String expansion = "VALUES ?gene { "; 
 		for(String gene : genes) {
 			expansion += "<"+gene+"> \n";
@@ -0,0 +1,230 @@
+package org.geneontology.minerva;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.bigdata.rdf.sail.BigdataSailRepository;
+import com.bigdata.rdf.sail.BigdataSailRepositoryConnection;
+
+/**
+ * Single writer for a Blazegraph repository with group commit.<br>
+ * Writes are queued and executed by one writer thread. Writes arriving
+ * within a short time window are executed in one transaction on the
+ * unisolated connection, so concurrent saves share one commit and journal
+ * sync. The future of each write completes, when its transaction has been
+ * committed.<br>
+ * If a write fails, the transaction is rolled back and the writes of the
+ * batch are retried one transaction each, so a failing write does not
+ * affect the others. Writes must therefore be repeatable.
+ */
+public class BlazegraphWriteQueue {
+
+	private static final Logger LOG = Logger.getLogger(BlazegraphWriteQueue.class);
+
+	public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+	public static final long DEFAULT_MAX_DELAY_MILLIS = 5L;
+
+	/**
+	 * A write to the repository, executed in an open transaction.
+	 *
+	 * @param <T> result type
+	 */
+	public static interface Write<T> {
+
+		public T apply(BigdataSailRepositoryConnection connection) throws Exception;
+	}
+
+	private static class Pending<T> {
+		final Write<T> write;
+		final CompletableFuture<T> future = new CompletableFuture<T>();
+		T result = null;
+
+		Pending(Write<T> write) {
+			this.write = write;
+		}
+
+		void execute(BigdataSailRepositoryConnection connection) throws Exception {
+			result = write.apply(connection);
+		}
+
+		void complete() {
+			future.complete(result);
+		}
+	}
+
+	private final BigdataSailRepository repo;
+	private final BlockingQueue<Pending<?>> queue = new LinkedBlockingQueue<Pending<?>>();
+	private final Thread writer;
+	private volatile boolean running = true;
+	private volatile int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+	private volatile long maxDelayMillis = DEFAULT_MAX_DELAY_MILLIS;
+
+	private final AtomicLong writes = new AtomicLong(0L);
+	private final AtomicLong commits = new AtomicLong(0L);
+	private final AtomicLong failures = new AtomicLong(0L);
+
+	/**
+	 * Create the queue and start the writer thread.
+	 *
+	 * @param repo
+	 * @param name used for the writer thread
+	 */
+	public BlazegraphWriteQueue(BigdataSailRepository repo, String name) {
+		this.repo = repo;
+		writer = new Thread(this::run, name);
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * @param maxBatchSize maximum number of writes in one transaction
+	 * @param maxDelayMillis maximum time to wait for more writes, before committing a batch
+	 */
+	public void setBatchLimits(int maxBatchSize, long maxDelayMillis) {
+		this.maxBatchSize = Math.max(1, maxBatchSize);
+		this.maxDelayMillis = Math.max(0L, maxDelayMillis);
+	}
+
+	/**
+	 * Queue a write.
+	 *
+	 * @param write
+	 * @return future, completed after the write has been committed
+	 * @throws RejectedExecutionException if the queue has been shut down
+	 */
+	public <T> CompletableFuture<T> submit(Write<T> write) {
+		if (running == false) {
+			throw new RejectedExecutionException("Write queue has been shut down");
+		}
+		Pending<T> pending = new Pending<T>(write);
+		queue.add(pending);
+		return pending.future;
+	}
+
+	private void run() {
+		List<Pending<?>> batch = new ArrayList<Pending<?>>();
+		while (running || queue.isEmpty() == false) {
+			try {
+				Pending<?> first = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+				final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+				while (batch.size() < maxBatchSize) {
+					Pending<?> next = queue.poll(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+					if (next == null) {
+						break;
+					}
+					batch.add(next);
+				}
+				commit(batch);
+			} catch (InterruptedException e) {
+				// keep going until the queue is drained, see shutdown()
+			} catch (Throwable t) {
+				LOG.error("Unexpected error in write queue", t);
+				for (Pending<?> pending : batch) {
+					pending.future.completeExceptionally(t);
+				}
+			} finally {
+				batch.clear();
+			}
+		}
+	}
+
+	private void commit(List<Pending<?>> batch) {
+		// Only one thread at a time can use the unisolated connection.
+		synchronized (repo) {
+			try {
+				execute(batch);
+				for (Pending<?> pending : batch) {
+					pending.complete();
+				}
+				return;
+			} catch (Exception e) {
+				if (batch.size() == 1) {
+					failures.incrementAndGet();
+					batch.get(0).future.completeExceptionally(e);
+					return;
+				}
+				LOG.warn("Batch of " + batch.size() + " writes failed, retrying writes individually", e);
+			}
+			for (Pending<?> pending : batch) {
+				try {
+					execute(Collections.<Pending<?>>singletonList(pending));
+					pending.complete();
+				} catch (Exception e) {
+					failures.incrementAndGet();
+					pending.future.completeExceptionally(e);
+				}
+			}
+		}
+	}
+
+	private void execute(List<Pending<?>> batch) throws Exception {
+		final BigdataSailRepositoryConnection connection = repo.getUnisolatedConnection();
+		try {
+			connection.begin();
+			try {
+				for (Pending<?> pending : batch) {
+					pending.execute(connection);
+				}
+				connection.commit();
+				commits.incrementAndGet();
+				writes.addAndGet(batch.size());
+			} catch (Exception e) {
+				connection.rollback();
+				throw e;
+			}
+		} finally {
+			connection.close();
+		}
+	}
+
+	/**
+	 * Stop accepting writes, execute the remaining queued writes and stop the writer thread.
+	 */
+	public void shutdown() {
+		running = false;
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		// writes submitted concurrently with the shutdown
+		Pending<?> pending;
+		while ((pending = queue.poll()) != null) {
+			pending.future.completeExceptionally(new RejectedExecutionException("Write queue has been shut down"));
+		}
+	}
+
+	/**
+	 * @return number of committed writes
+	 */
+	public long getWriteCount() {
+		return writes.get();
+	}
+
+	/**
+	 * @return number of commits, each commit contains one or more writes
+	 */
+	public long getCommitCount() {
+		return commits.get();
+	}
+
+	/**
+	 * @return number of failed writes
+	 */
+	public long getFailureCount() {
+		return failures.get();
+	}
+}
@@ -0,0 +1,409 @@
+package org.geneontology.minerva;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.geneontology.minerva.util.AnnotationShorthand;
+import org.openrdf.model.BNode;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.vocabulary.OWL;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFParseException;
+import org.openrdf.rio.RDFParser;
+import org.openrdf.rio.Rio;
+import org.openrdf.rio.helpers.RDFHandlerBase;
+import org.semanticweb.owlapi.model.IRI;
+
+/**
+ * Bulk import of model files into the journal.<br>
+ * Each file is parsed exactly once: the delete marker, the ontology IRI and
+ * the imports are collected in the same pass as the statements. Files are
+ * parsed on a pool of worker threads and the statements of many models are
+ * written in one transaction through the {@link BlazegraphWriteQueue}.<br>
+ * Import triples are dropped from the statements, instead of round-tripping
+ * the model through the OWL API as
+ * {@link BlazegraphMolecularModelManager#importModelToDatabase(File, boolean)} does.
+ */
+public class BulkModelImporter {
+
+	private static final Logger LOG = Logger.getLogger(BulkModelImporter.class);
+
+	public static final int DEFAULT_BATCH_STATEMENTS = 100000;
+	public static final long DEFAULT_REPORT_INTERVAL_MILLIS = 10000L;
+
+	private static final String MODELSTATE = AnnotationShorthand.modelstate.getAnnotationProperty().toString();
+
+	/**
+	 * A model file, parsed in a single pass.
+	 */
+	public static class ParsedModelFile {
+
+		private final File file;
+		private final URI ontologyIRI;
+		private final Set<URI> imports;
+		private final boolean delete;
+		private final List<Statement> statements;
+
+		ParsedModelFile(File file, URI ontologyIRI, Set<URI> imports, boolean delete, List<Statement> statements) {
+			this.file = file;
+			this.ontologyIRI = ontologyIRI;
+			this.imports = imports;
+			this.delete = delete;
+			this.statements = statements;
+		}
+
+		public File getFile() {
+			return file;
+		}
+
+		/**
+		 * @return ontology IRI or null, if the ontology is anonymous
+		 */
+		public URI getOntologyIRI() {
+			return ontologyIRI;
+		}
+
+		public Set<URI> getImports() {
+			return imports;
+		}
+
+		/**
+		 * @return true, if the model is marked with the modelstate 'delete'
+		 */
+		public boolean isDelete() {
+			return delete;
+		}
+
+		/**
+		 * @return all statements, except the import triples
+		 */
+		public List<Statement> getStatements() {
+			return statements;
+		}
+	}
+
+	/**
+	 * Counters for a bulk import.
+	 */
+	public static class Report {
+
+		private final long start = System.currentTimeMillis();
+		private int imported = 0;
+		private int skippedDeleted = 0;
+		private int skippedExisting = 0;
+		private int failed = 0;
+		private long statements = 0L;
+
+		public int getImported() {
+			return imported;
+		}
+
+		public int getSkippedDeleted() {
+			return skippedDeleted;
+		}
+
+		public int getSkippedExisting() {
+			return skippedExisting;
+		}
+
+		public int getFailed() {
+			return failed;
+		}
+
+		public long getStatements() {
+			return statements;
+		}
+
+		public int getFiles() {
+			return imported + skippedDeleted + skippedExisting + failed;
+		}
+
+		public double getFilesPerSecond() {
+			return rate(getFiles());
+		}
+
+		public double getStatementsPerSecond() {
+			return rate(statements);
+		}
+
+		private double rate(long count) {
+			long elapsed = Math.max(1L, System.currentTimeMillis() - start);
+			return count * 1000.0d / elapsed;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d files (%.1f files/sec), %d triples (%.0f triples/sec); imported: %d, skipped deleted: %d, skipped existing: %d, failed: %d",
+					getFiles(), getFilesPerSecond(), statements, getStatementsPerSecond(),
+					imported, skippedDeleted, skippedExisting, failed);
+		}
+	}
+
+	private final BlazegraphWriteQueue writeQueue;
+	private final ModelIdRegistry modelIds;
+	private final int threads;
+	private int batchStatements = DEFAULT_BATCH_STATEMENTS;
+	private long reportIntervalMillis = DEFAULT_REPORT_INTERVAL_MILLIS;
+
+	/**
+	 * @param writeQueue writer of the target journal
+	 * @param threads number of parser threads
+	 */
+	public BulkModelImporter(BlazegraphWriteQueue writeQueue, int threads) {
+		this(writeQueue, null, threads);
+	}
+
+	/**
+	 * @param writeQueue writer of the target journal
+	 * @param modelIds registry of the journal, updated with the imported models, may be null
+	 * @param threads number of parser threads
+	 */
+	public BulkModelImporter(BlazegraphWriteQueue writeQueue, ModelIdRegistry modelIds, int threads) {
+		this.writeQueue = writeQueue;
+		this.modelIds = modelIds;
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * @param batchStatements minimum number of statements written in one transaction
+	 */
+	public void setBatchStatements(int batchStatements) {
+		this.batchStatements = Math.max(1, batchStatements);
+	}
+
+	/**
+	 * @param reportIntervalMillis time between progress log messages
+	 */
+	public void setReportIntervalMillis(long reportIntervalMillis) {
+		this.reportIntervalMillis = reportIntervalMillis;
+	}
+
+	/**
+	 * Parse a model file, Turtle for '.ttl' files, RDF/XML otherwise.
+	 *
+	 * @param file
+	 * @return parsed file
+	 * @throws RDFParseException
+	 * @throws RDFHandlerException
+	 * @throws IOException
+	 */
+	public static ParsedModelFile parse(File file) throws RDFParseException, RDFHandlerException, IOException {
+		final List<Statement> statements = new ArrayList<Statement>();
+		final Set<URI> imports = new LinkedHashSet<URI>();
+		final URI[] ontologyIRI = new URI[1];
+		final boolean[] ontologyFound = new boolean[1];
+		final boolean[] delete = new boolean[1];
+		RDFHandlerBase handler = new RDFHandlerBase() {
+
+			@Override
+			public void handleStatement(Statement statement) {
+				if (OWL.IMPORTS.equals(statement.getPredicate())) {
+					if (statement.getObject() instanceof URI) {
+						imports.add((URI) statement.getObject());
+					}
+					return;
+				}
+				if (ontologyFound[0] == false && RDF.TYPE.equals(statement.getPredicate())
+						&& OWL.ONTOLOGY.equals(statement.getObject())) {
+					ontologyFound[0] = true;
+					if (statement.getSubject() instanceof BNode) {
+						LOG.warn("Blank node subject for ontology triple: " + statement);
+					}
+					else {
+						ontologyIRI[0] = (URI) statement.getSubject();
+					}
+				}
+				else if (MODELSTATE.equals(statement.getPredicate().stringValue())
+						&& "delete".equals(statement.getObject().stringValue())) {
+					delete[0] = true;
+				}
+				statements.add(statement);
+			}
+		};
+		RDFParser parser = Rio.createParser(file.getName().endsWith(".ttl") ? RDFFormat.TURTLE : RDFFormat.RDFXML);
+		parser.setRDFHandler(handler);
+		InputStream inputStream = new FileInputStream(file);
+		try {
+			parser.parse(inputStream, "");
+		} finally {
+			inputStream.close();
+		}
+		return new ParsedModelFile(file, ontologyIRI[0], imports, delete[0], statements);
+	}
+
+	/**
+	 * Import the files, in the given order. A model is only imported once:
+	 * models in the existing set and repeated ontology IRIs are skipped.
+	 *
+	 * @param files
+	 * @param skipMarkedDelete if true, skip models with the modelstate 'delete'
+	 * @param existing ontology IRIs of the models in the journal, updated with the imported models
+	 * @return report
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public Report importFiles(Collection<File> files, boolean skipMarkedDelete, Set<IRI> existing) throws IOException, InterruptedException {
+		final Report report = new Report();
+		final AtomicInteger threadCount = new AtomicInteger(0);
+		final ExecutorService parsers = Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "model-import-parser-" + threadCount.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		try {
+			// parse ahead in file order, bounded to limit memory
+			final int window = threads * 4;
+			final Iterator<File> pending = files.iterator();
+			final Deque<Future<ParsedModelFile>> parsing = new ArrayDeque<Future<ParsedModelFile>>();
+			final Deque<File> parsingFiles = new ArrayDeque<File>();
+			List<ParsedModelFile> batch = new ArrayList<ParsedModelFile>();
+			int batchSize = 0;
+			Batch previous = null;
+			long lastReport = System.currentTimeMillis();
+			while (pending.hasNext() || parsing.isEmpty() == false) {
+				while (pending.hasNext() && parsing.size() < window) {
+					final File file = pending.next();
+					parsing.add(parsers.submit(() -> parse(file)));
+					parsingFiles.add(file);
+				}
+				final File file = parsingFiles.poll();
+				ParsedModelFile parsed;
+				try {
+					parsed = parsing.poll().get();
+				} catch (ExecutionException e) {
+					LOG.error("Failed to parse and load RDF go-cam file: " + file, e.getCause());
+					report.failed += 1;
+					continue;
+				}
+				if (skipMarkedDelete && parsed.isDelete()) {
+					LOG.info("skipping " + parsed.getFile().getName());
+					report.skippedDeleted += 1;
+				}
+				else if (parsed.getOntologyIRI() == null) {
+					LOG.error("Detected anonymous ontology; must have IRI: " + parsed.getFile());
+					report.failed += 1;
+				}
+				else if (existing.add(IRI.create(parsed.getOntologyIRI().stringValue())) == false) {
+					LOG.error("Attempted to load gocam ttl file into database but gocam with that iri already exists, skipping "
+							+ parsed.getFile() + " " + parsed.getOntologyIRI());
+					report.skippedExisting += 1;
+				}
+				else {
+					batch.add(parsed);
+					batchSize += parsed.getStatements().size();
+					if (batchSize >= batchStatements) {
+						// keep one batch in flight, while parsing continues
+						complete(previous, report);
+						previous = submit(batch);
+						batch = new ArrayList<ParsedModelFile>();
+						batchSize = 0;
+					}
+				}
+				if (System.currentTimeMillis() - lastReport >= reportIntervalMillis) {
+					LOG.info("Imported " + report);
+					lastReport = System.currentTimeMillis();
+				}
+			}
+			complete(previous, report);
+			if (batch.isEmpty() == false) {
+				complete(submit(batch), report);
+			}
+		}
+		finally {
+			parsers.shutdownNow();
+		}
+		LOG.info("Finished import: " + report);
+		return report;
+	}
+
+	private static class Batch {
+		final List<ParsedModelFile> models;
+		final CompletableFuture<Integer> future;
+
+		Batch(List<ParsedModelFile> models, CompletableFuture<Integer> future) {
+			this.models = models;
+			this.future = future;
+		}
+	}
+
+	private Batch submit(List<ParsedModelFile> models) {
+		return new Batch(models, writeQueue.submit(connection -> {
+			int count = 0;
+			for (ParsedModelFile model : models) {
+				count += write(connection, model);
+			}
+			return count;
+		}));
+	}
+
+	private static int write(RepositoryConnection connection, ParsedModelFile model) throws Exception {
+		BlazegraphMolecularModelManager.clearGraph(connection, model.getOntologyIRI());
+		connection.add(model.getStatements(), model.getOntologyIRI());
+		return model.getStatements().size();
+	}
+
+	/**
+	 * Wait for a batch. If the batch transaction failed, write its models
+	 * one transaction each, to report the failing files.
+	 */
+	private void complete(Batch batch, Report report) throws InterruptedException {
+		if (batch == null) {
+			return;
+		}
+		try {
+			report.statements += batch.future.get();
+			report.imported += batch.models.size();
+			for (ParsedModelFile model : batch.models) {
+				imported(model);
+			}
+			return;
+		} catch (ExecutionException e) {
+			if (batch.models.size() == 1) {
+				failed(batch.models.get(0), e.getCause(), report);
+				return;
+			}
+			LOG.warn("Batch of " + batch.models.size() + " models failed, retrying models individually", e.getCause());
+		}
+		for (ParsedModelFile model : batch.models) {
+			try {
+				report.statements += writeQueue.submit(connection -> write(connection, model)).get();
+				report.imported += 1;
+				imported(model);
+			} catch (ExecutionException e) {
+				failed(model, e.getCause(), report);
+			}
+		}
+	}
+
+	private void imported(ParsedModelFile model) {
+		if (modelIds != null) {
+			modelIds.add(IRI.create(model.getOntologyIRI().stringValue()));
+		}
+	}
+
+	private static void failed(ParsedModelFile model, Throwable cause, Report report) {
+		LOG.error("Failed to load RDF go-cam file: " + model.getFile(), cause);
+		report.failed += 1;
+	}
+}
@@ -0,0 +1,297 @@
+package org.geneontology.minerva;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+/**
+ * Precomputed reflexive transitive closure of the rdfs:subClassOf hierarchy
+ * in the tbox. Class IRIs are interned to int ids; ancestors and descendants
+ * of every class are kept as sorted int arrays in a compressed row layout.
+ *
+ * Anonymous classes take part in the traversal (like a rdfs:subClassOf* property path),
+ * but are never reported in a result.
+ */
+public class ClassClosureIndex {
+
+	private static final int FORMAT_VERSION = 1;
+
+	private final String[] names;
+	private final BitSet anonymous;
+	private final TObjectIntHashMap<String> ids;
+	// ancestors of class i are ancestorData[ancestorOffsets[i]..ancestorOffsets[i+1]), sorted
+	private final int[] ancestorOffsets;
+	private final int[] ancestorData;
+	// descendants of class i are descendantData[descendantOffsets[i]..descendantOffsets[i+1]), sorted
+	private final int[] descendantOffsets;
+	private final int[] descendantData;
+
+	private ClassClosureIndex(String[] names, BitSet anonymous, int[] ancestorOffsets, int[] ancestorData) {
+		this.names = names;
+		this.anonymous = anonymous;
+		this.ancestorOffsets = ancestorOffsets;
+		this.ancestorData = ancestorData;
+		this.ids = new TObjectIntHashMap<String>(names.length, 0.5f, -1);
+		for (int i = 0; i < names.length; i++) {
+			ids.put(names[i], i);
+		}
+		// invert the ancestor relation; iterating in id order keeps every descendant row sorted
+		final int n = names.length;
+		descendantOffsets = new int[n + 1];
+		for (int a : ancestorData) {
+			descendantOffsets[a + 1]++;
+		}
+		for (int i = 0; i < n; i++) {
+			descendantOffsets[i + 1] += descendantOffsets[i];
+		}
+		descendantData = new int[ancestorData.length];
+		int[] fill = Arrays.copyOf(descendantOffsets, n);
+		for (int c = 0; c < n; c++) {
+			for (int k = ancestorOffsets[c]; k < ancestorOffsets[c + 1]; k++) {
+				descendantData[fill[ancestorData[k]]++] = c;
+			}
+		}
+	}
+
+	/**
+	 * @return number of classes (named and anonymous) in the index
+	 */
+	public int size() {
+		return names.length;
+	}
+
+	public boolean contains(String iri) {
+		return ids.containsKey(iri);
+	}
+
+	/**
+	 * Equivalent of <code>&lt;iri&gt; rdfs:subClassOf* ?super</code>,
+	 * without anonymous classes. Unknown IRIs only have themselves as super class.
+	 *
+	 * @param iri
+	 * @return set of super class IRIs, including the class itself
+	 */
+	public Set<String> getAncestors(String iri) {
+		int id = ids.get(iri);
+		if (id < 0) {
+			Set<String> self = new HashSet<String>();
+			self.add(iri);
+			return self;
+		}
+		return collect(ancestorData, ancestorOffsets[id], ancestorOffsets[id + 1]);
+	}
+
+	/**
+	 * Equivalent of <code>?sub rdfs:subClassOf* &lt;iri&gt;</code>,
+	 * without anonymous classes. Unknown IRIs only have themselves as sub class.
+	 *
+	 * @param iri
+	 * @return set of sub class IRIs, including the class itself
+	 */
+	public Set<String> getDescendants(String iri) {
+		int id = ids.get(iri);
+		if (id < 0) {
+			Set<String> self = new HashSet<String>();
+			self.add(iri);
+			return self;
+		}
+		return collect(descendantData, descendantOffsets[id], descendantOffsets[id + 1]);
+	}
+
+	/**
+	 * @param sub
+	 * @param sup
+	 * @return true, if sub rdfs:subClassOf* sup holds
+	 */
+	public boolean isSubClassOf(String sub, String sup) {
+		if (sub.equals(sup)) {
+			return true;
+		}
+		int subId = ids.get(sub);
+		int supId = ids.get(sup);
+		if (subId < 0 || supId < 0) {
+			return false;
+		}
+		return Arrays.binarySearch(ancestorData, ancestorOffsets[subId], ancestorOffsets[subId + 1], supId) >= 0;
+	}
+
+	private Set<String> collect(int[] data, int from, int to) {
+		Set<String> result = new HashSet<String>(Math.max(16, (to - from) * 2));
+		for (int k = from; k < to; k++) {
+			int c = data[k];
+			if (!anonymous.get(c)) {
+				result.add(names[c]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Write the index to a sidecar file. The key identifies the source
+	 * (e.g. the state of the ontology journal) the index was built from.
+	 *
+	 * @param file
+	 * @param key
+	 * @throws IOException
+	 */
+	public void write(File file, long key) throws IOException {
+		File tmp = new File(file.getPath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+			out.writeInt(FORMAT_VERSION);
+			out.writeLong(key);
+			out.writeInt(names.length);
+			for (int i = 0; i < names.length; i++) {
+				out.writeUTF(names[i]);
+				out.writeBoolean(anonymous.get(i));
+			}
+			for (int offset : ancestorOffsets) {
+				out.writeInt(offset);
+			}
+			for (int a : ancestorData) {
+				out.writeInt(a);
+			}
+		}
+		if (file.exists() && !file.delete()) {
+			throw new IOException("Could not replace closure index file: " + file);
+		}
+		if (!tmp.renameTo(file)) {
+			throw new IOException("Could not move closure index file into place: " + file);
+		}
+	}
+
+	/**
+	 * Read an index from a sidecar file.
+	 *
+	 * @param file
+	 * @param expectedKey
+	 * @return index or null, if the file is written in an old format or for a different key
+	 * @throws IOException
+	 */
+	public static ClassClosureIndex read(File file, long expectedKey) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+			if (in.readInt() != FORMAT_VERSION || in.readLong() != expectedKey) {
+				return null;
+			}
+			int n = in.readInt();
+			String[] names = new String[n];
+			BitSet anonymous = new BitSet(n);
+			for (int i = 0; i < n; i++) {
+				names[i] = in.readUTF();
+				if (in.readBoolean()) {
+					anonymous.set(i);
+				}
+			}
+			int[] offsets = new int[n + 1];
+			for (int i = 0; i <= n; i++) {
+				offsets[i] = in.readInt();
+			}
+			int[] data = new int[offsets[n]];
+			for (int i = 0; i < data.length; i++) {
+				data[i] = in.readInt();
+			}
+			return new ClassClosureIndex(names, anonymous, offsets, data);
+		}
+	}
+
+	/**
+	 * Collects direct rdfs:subClassOf edges and computes the closure.
+	 */
+	public static class Builder {
+
+		private final TObjectIntHashMap<String> ids = new TObjectIntHashMap<String>(1024, 0.5f, -1);
+		private final List<String> names = new ArrayList<String>();
+		private final BitSet anonymous = new BitSet();
+		private final TIntArrayList edgeSubs = new TIntArrayList();
+		private final TIntArrayList edgeSupers = new TIntArrayList();
+
+		private int intern(String name, boolean isAnonymous) {
+			int id = ids.get(name);
+			if (id < 0) {
+				id = names.size();
+				names.add(name);
+				ids.put(name, id);
+				if (isAnonymous) {
+					anonymous.set(id);
+				}
+			}
+			return id;
+		}
+
+		public Builder addClass(String iri) {
+			intern(iri, false);
+			return this;
+		}
+
+		/**
+		 * @param sub
+		 * @param subAnonymous true, if sub is a blank node
+		 * @param sup
+		 * @param supAnonymous true, if sup is a blank node
+		 * @return builder
+		 */
+		public Builder addSubClassOf(String sub, boolean subAnonymous, String sup, boolean supAnonymous) {
+			edgeSubs.add(intern(sub, subAnonymous));
+			edgeSupers.add(intern(sup, supAnonymous));
+			return this;
+		}
+
+		public ClassClosureIndex build() {
+			final int n = names.size();
+			// direct parents in a compressed row layout
+			int[] parentOffsets = new int[n + 1];
+			for (int i = 0; i < edgeSubs.size(); i++) {
+				parentOffsets[edgeSubs.getQuick(i) + 1]++;
+			}
+			for (int i = 0; i < n; i++) {
+				parentOffsets[i + 1] += parentOffsets[i];
+			}
+			int[] parents = new int[edgeSubs.size()];
+			int[] fill = Arrays.copyOf(parentOffsets, n);
+			for (int i = 0; i < edgeSubs.size(); i++) {
+				parents[fill[edgeSubs.getQuick(i)]++] = edgeSupers.getQuick(i);
+			}
+			// reflexive closure per class by graph traversal, robust against cycles
+			int[] ancestorOffsets = new int[n + 1];
+			TIntArrayList ancestorData = new TIntArrayList(n * 4);
+			int[] visited = new int[n];
+			TIntArrayList stack = new TIntArrayList();
+			TIntArrayList closure = new TIntArrayList();
+			for (int c = 0; c < n; c++) {
+				final int stamp = c + 1;
+				closure.resetQuick();
+				stack.resetQuick();
+				stack.add(c);
+				visited[c] = stamp;
+				while (!stack.isEmpty()) {
+					int current = stack.removeAt(stack.size() - 1);
+					closure.add(current);
+					for (int k = parentOffsets[current]; k < parentOffsets[current + 1]; k++) {
+						int p = parents[k];
+						if (visited[p] != stamp) {
+							visited[p] = stamp;
+							stack.add(p);
+						}
+					}
+				}
+				closure.sort();
+				ancestorData.addAll(closure);
+				ancestorOffsets[c + 1] = ancestorData.size();
+			}
+			return new ClassClosureIndex(names.toArray(new String[n]), anonymous, ancestorOffsets, ancestorData.toArray());
+		}
+	}
+}
@@ -11,16 +11,18 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.jena.rdf.model.Statement;
-import org.apache.jena.reasoner.rulesys.Rule;
 import org.apache.jena.vocabulary.OWL;
 import org.apache.log4j.Logger;
-import org.geneontology.jena.OWLtoRules;
 import org.geneontology.jena.SesameJena;
+import org.geneontology.minerva.ModelContainer.ModelChangeListener;
 import org.geneontology.minerva.util.AnnotationShorthand;
 import org.geneontology.rules.engine.RuleEngine;
 import org.geneontology.rules.engine.Triple;
@@ -63,6 +65,7 @@ import org.semanticweb.owlapi.model.OWLObjectSomeValuesFrom;
 import org.semanticweb.owlapi.model.OWLOntology;
 import org.semanticweb.owlapi.model.OWLOntologyAlreadyExistsException;
 import org.semanticweb.owlapi.model.OWLOntologyChange;
+import org.semanticweb.owlapi.model.OWLOntologyChangeListener;
 import org.semanticweb.owlapi.model.OWLOntologyCreationException;
 import org.semanticweb.owlapi.model.OWLOntologyID;
 import org.semanticweb.owlapi.model.OWLOntologyIRIMapper;
@@ -94,8 +97,9 @@ import scala.collection.JavaConverters;
 /**
  * Manager and core operations for in memory MolecularModels (aka lego diagrams).
  * 
- * Any number of models can be loaded at any time <br>
- * TODO - impose some limit to avoid using too much memory
+ * Models are kept in a bounded {@link ModelCache}. Unmodified models, which
+ * have not been used recently, are evicted from memory and reloaded from
+ * the store on demand. Modified models stay in memory until they are saved.
  * 
  * Each model is an OWLOntology, see {@link ModelContainer}. 
  * 
@@ -125,10 +129,30 @@ public abstract class CoreMolecularModelManager<METADATA> {
 	private BlazegraphOntologyManager go_lego_repo;
 	private final IRI tboxIRI;
 
-	final Map<IRI, ModelContainer> modelMap = new HashMap<IRI, ModelContainer>();
+	final ModelCache modelCache = new ModelCache();
+	private final ConcurrentHashMap<IRI, CompletableFuture<ModelContainer>> pendingLoads = new ConcurrentHashMap<IRI, CompletableFuture<ModelContainer>>();
 	Set<IRI> additionalImports;
 
-	private final RuleEngine ruleEngine;
+	private volatile RuleEngine ruleEngine = null;
+	private final Object ruleEngineLock = new Object();
+	private File ruleSnapshot = null;
+	// triples of the RBox, shared by all inferred models, reset with changes of the RBox
+	private volatile Set<Triple> schemaTriples = null;
+	private final OWLOntologyChangeListener schemaListener = new OWLOntologyChangeListener() {
+
+		@Override
+		public void ontologiesChanged(List<? extends OWLOntologyChange> changes) {
+			for (OWLOntologyChange change : changes) {
+				if (change.isAxiomChange() && AxiomType.RBoxAxiomTypes.contains(change.getAxiom().getAxiomType())
+						&& tbox.getImportsClosure().contains(change.getOntology())) {
+					schemaTriples = null;
+					return;
+				}
+			}
+		}
+	};
+	// working memories of the models in memory, updated with their edits
+	private final Map<ModelContainer, IncrementalInferredModel> inferredModels = new ConcurrentHashMap<ModelContainer, IncrementalInferredModel>();
 	private final Map<IRI, String> legacyRelationIndex = new HashMap<IRI, String>();
 	private final Map<IRI, String> tboxLabelIndex = new HashMap<IRI, String>();
 	private final Map<IRI, String> tboxShorthandIndex = new HashMap<IRI, String>();
@@ -211,7 +235,7 @@ public abstract class CoreMolecularModelManager<METADATA> {
 		super();
 		this.tbox = tbox;
 		tboxIRI = getTboxIRI(tbox);
-		this.ruleEngine = initializeRuleEngine();
+		tbox.getOWLOntologyManager().addOntologyChangeListener(schemaListener);
 		initializeLegacyRelationIndex();
 		initializeTboxLabelIndex();
 		initializeTboxShorthandIndex();
@@ -302,46 +326,133 @@ public abstract class CoreMolecularModelManager<METADATA> {
 		return Collections.unmodifiableSet(this.doNotAnnotateSubset);
 	}
 
-	public RuleEngine getRuleEngine() {
-		return ruleEngine;
+	/**
+	 * Use the rule snapshot file for the Arachne rules of the tbox, see
+	 * {@link RuleSnapshot}. Must be set before the first use of the rule
+	 * engine.
+	 * 
+	 * @param ruleSnapshot file or null
+	 */
+	public void setRuleSnapshot(File ruleSnapshot) {
+		this.ruleSnapshot = ruleSnapshot;
 	}
 
-	private RuleEngine initializeRuleEngine() {
-		Set<Rule> rules = new HashSet<>();
-		rules.addAll(JavaConverters.setAsJavaSetConverter(OWLtoRules.translate(getOntology(), Imports.INCLUDED, true, true, true, true)).asJava());
-		rules.addAll(JavaConverters.setAsJavaSetConverter(OWLtoRules.indirectRules(getOntology())).asJava());
-		return new RuleEngine(Bridge.rulesFromJena(JavaConverters.asScalaSetConverter(rules).asScala()), true);
+	/**
+	 * The rule engine is created on first use, from the rule snapshot if
+	 * available.
+	 * 
+	 * @return rule engine for the tbox
+	 */
+	public RuleEngine getRuleEngine() {
+		RuleEngine engine = ruleEngine;
+		if (engine == null) {
+			synchronized (ruleEngineLock) {
+				engine = ruleEngine;
+				if (engine == null) {
+					engine = RuleSnapshot.createRuleEngine(getOntology(), ruleSnapshot);
+					ruleEngine = engine;
+				}
+			}
+		}
+		return engine;
 	}
 
 	public WorkingMemory createInferredModel(OWLOntology abox, IRI modelId) {
-		Set<Statement> statements = JavaConverters.setAsJavaSetConverter(SesameJena.ontologyAsTriples(abox)).asJava();
-		Set<Triple> triples = statements.stream().map(s -> Bridge.tripleFromJena(s.asTriple())).collect(Collectors.toSet());
+		Set<Triple> triples = ontologyAsTriples(abox);
+		triples.addAll(getSchemaTriples());
+		return getRuleEngine().processTriples(JavaConverters.asScalaSetConverter(triples).asScala());
+
+	}
+
+	/**
+	 * The triples are created once and re-used until the RBox of the tbox
+	 * changes.
+	 * 
+	 * @return unmodifiable triples of the RBox of the tbox, which are added to each inferred model
+	 */
+	public Set<Triple> getSchemaTriples() {
+		Set<Triple> triples = schemaTriples;
+		if (triples == null) {
+			triples = Collections.unmodifiableSet(createSchemaTriples(getOntology()));
+			schemaTriples = triples;
+		}
+		return triples;
+	}
+
+	/**
+	 * @param tbox
+	 * @return triples of the RBox of the tbox
+	 */
+	static Set<Triple> createSchemaTriples(OWLOntology tbox) {
 		try {
 			// Using model's ontology IRI so that a spurious different ontology declaration triple isn't added
 		//	OWLOntology schemaOntology = OWLManager.createOWLOntologyManager().createOntology(getOntology().getRBoxAxioms(Imports.INCLUDED), modelId);
 		// I think the re-use of the model IRI as the IRI of the rule ontology has some weird effects on the model in question, rendering its contents inaccesible.  
 			OWLOntologyManager tmp_man = OWLManager.createOWLOntologyManager();
 			OWLOntology schemaOntology = tmp_man.createOntology(IRI.create("http://therules.org"));
-			Set<OWLAxiom> owl_rules = getOntology().getRBoxAxioms(Imports.INCLUDED);
+			Set<OWLAxiom> owl_rules = tbox.getRBoxAxioms(Imports.INCLUDED);
 			tmp_man.addAxioms(schemaOntology, owl_rules);
 		//	
-			Set<Statement> schemaStatements = JavaConverters.setAsJavaSetConverter(SesameJena.ontologyAsTriples(schemaOntology)).asJava();
-			triples.addAll(schemaStatements.stream().map(s -> Bridge.tripleFromJena(s.asTriple())).collect(Collectors.toSet()));
+			return ontologyAsTriples(schemaOntology);
 		} catch (OWLOntologyCreationException e) {
 			LOG.error("Couldn't add rbox statements to data model.", e);
+			return new HashSet<Triple>();
 		}
-		return getRuleEngine().processTriples(JavaConverters.asScalaSetConverter(triples).asScala());
+	}
 
+	static Set<Triple> ontologyAsTriples(OWLOntology ontology) {
+		Set<Statement> statements = JavaConverters.setAsJavaSetConverter(SesameJena.ontologyAsTriples(ontology)).asJava();
+		return statements.stream().map(s -> Bridge.tripleFromJena(s.asTriple())).collect(Collectors.toSet());
 	}
 
 	/**
 	 * Return Arachne working memory representing LEGO model combined with inference rules.
-	 * This model will not remain synchronized with changes to data.
+	 * This model will not remain synchronized with changes to data.<br>
+	 * For a model in memory, the working memory is kept and updated with
+	 * the edits of the model, see {@link IncrementalInferredModel}.
 	 * @param modelId
 	 * @return Jena model
 	 */
 	public WorkingMemory createInferredModel(IRI modelId) {
-		return createInferredModel(getModelAbox(modelId), modelId);
+		ModelContainer model = modelCache.peek(modelId);
+		if (model == null) {
+			return createInferredModel(getModelAbox(modelId), modelId);
+		}
+		return getIncrementalInferredModel(model).getWorkingMemory();
+	}
+
+	private IncrementalInferredModel getIncrementalInferredModel(ModelContainer model) {
+		IncrementalInferredModel inferred = inferredModels.get(model);
+		if (inferred == null) {
+			IncrementalInferredModel created = new IncrementalInferredModel(model, getRuleEngine(), getSchemaTriples());
+			inferred = inferredModels.putIfAbsent(model, created);
+			if (inferred == null) {
+				inferred = created;
+				model.registerListener(new InferredModelListener(model, created));
+			}
+		}
+		return inferred;
+	}
+
+	private final class InferredModelListener implements ModelChangeListener {
+		private final ModelContainer model;
+		private final IncrementalInferredModel inferred;
+
+		private InferredModelListener(ModelContainer model, IncrementalInferredModel inferred) {
+			this.model = model;
+			this.inferred = inferred;
+		}
+
+		@Override
+		public void handleChange(List<OWLOntologyChange> changes) {
+			inferred.handleChange(changes);
+		}
+
+		@Override
+		public void dispose() {
+			inferredModels.remove(model);
+			inferred.dispose();
+		}
 	}
 
 	public WorkingMemory createCanonicalInferredModel(IRI modelId) {
@@ -350,6 +461,14 @@ public abstract class CoreMolecularModelManager<METADATA> {
 		OWLOntologyManager aman = OWLManager.createOWLOntologyManager();
 		OWLDataFactory df = aman.getOWLDataFactory();
 		OWLAnnotationProperty canonical_record = df.getOWLAnnotationProperty(IRI.create("http://geneontology.org/lego/canonical_record"));
+		if (hasCanonicalRecord(source_abox, canonical_record) == false) {
+			// nothing to swap, use the working memory of the model
+			ModelContainer model = modelCache.peek(modelId);
+			if (model != null && model.getAboxOntology() == source_abox) {
+				return getIncrementalInferredModel(model).getWorkingMemory();
+			}
+			return createInferredModel(source_abox, modelId);
+		}
 		OWLReasonerFactory reasonerFactory = new StructuralReasonerFactory();
 		try {
 			OWLOntology abox = aman.copyOntology(source_abox, OntologyCopy.DEEP);
@@ -389,6 +508,24 @@ public abstract class CoreMolecularModelManager<METADATA> {
 		}
 	}
 
+	/**
+	 * Check whether any of the asserted types has a canonical record.
+	 * 
+	 * @param abox
+	 * @param canonical_record
+	 * @return true, if the types have to be swapped for a canonical inferred model
+	 */
+	private boolean hasCanonicalRecord(OWLOntology abox, OWLAnnotationProperty canonical_record) {
+		for (OWLClassAssertionAxiom ax : abox.getAxioms(AxiomType.CLASS_ASSERTION)) {
+			OWLClassExpression type = ax.getClassExpression();
+			if (type.isAnonymous() == false
+					&& EntitySearcher.getAnnotationObjects(type.asOWLClass(), tbox, canonical_record).isEmpty() == false) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	private void initializeLegacyRelationIndex() {
 		synchronized(legacyRelationIndex) {
 			OWLAnnotationProperty rdfsLabel = OWLManager.getOWLDataFactory().getRDFSLabel();
@@ -790,19 +927,127 @@ public abstract class CoreMolecularModelManager<METADATA> {
 	 * @return wrapped model
 	 */
 	public ModelContainer getModel(IRI id) {
-		synchronized (modelMap) { 
-			// synchronized to avoid race condition for simultaneous loads of the same model
-			if (!modelMap.containsKey(id)) {
+		ModelContainer model = modelCache.get(id);
+		if (model != null) {
+			return model;
+		}
+		// concurrent requests for the same missing model share one load,
+		// loads of different models run in parallel
+		CompletableFuture<ModelContainer> load = new CompletableFuture<ModelContainer>();
+		CompletableFuture<ModelContainer> running = pendingLoads.putIfAbsent(id, load);
+		if (running != null) {
+			return awaitLoad(running);
+		}
+		try {
+			model = modelCache.peek(id);
+			if (model == null) {
 				try {
 					loadModel(id, false);
 				} catch (OWLOntologyCreationException e) {
 					LOG.info("Could not load model with id: "+id, e);
 				}
+				model = modelCache.peek(id);
+			}
+			load.complete(model);
+			return model;
+		} catch (RuntimeException e) {
+			load.completeExceptionally(e);
+			throw e;
+		} finally {
+			pendingLoads.remove(id, load);
+		}
+	}
+
+	/**
+	 * Fetches a model and keeps it in memory, until it is released with
+	 * {@link #releaseModel(ModelContainer)}. Use this for requests, which
+	 * work with a model for a longer time, e.g. an export or a validation.
+	 *
+	 * @param id
+	 * @return pinned model or null, if there is no such model
+	 */
+	public ModelContainer acquireModel(IRI id) {
+		ModelContainer model = null;
+		for (int i = 0; i < 3; i++) {
+			ModelContainer pinned = modelCache.pin(id);
+			if (pinned != null) {
+				return pinned;
+			}
+			// load the model, it is pinned with the next try
+			model = getModel(id);
+			if (model == null) {
+				return null;
+			}
+		}
+		// only with limits, which don't leave room for the loaded model
+		LOG.warn("Could not keep the model in memory: "+id+", "+modelCache.getStats());
+		return model;
+	}
+
+	/**
+	 * Release a model of {@link #acquireModel(IRI)}, it can be evicted again.
+	 *
+	 * @param model
+	 */
+	public void releaseModel(ModelContainer model) {
+		modelCache.unpin(model.getModelId(), model);
+	}
+
+	private static ModelContainer awaitLoad(CompletableFuture<ModelContainer> load) {
+		try {
+			return load.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
 			}
-			return modelMap.get(id);
+			throw e;
 		}
 	}
 
+	/**
+	 * Limit the number of models in memory. Least recently used models are
+	 * evicted, if one of the limits is exceeded; modified models are kept
+	 * until they are saved.
+	 * 
+	 * @param maxModels maximum number of models in memory
+	 * @param maxAxioms maximum number of abox axioms for all models in memory
+	 */
+	public void setModelCacheLimits(int maxModels, long maxAxioms) {
+		modelCache.setLimits(maxModels, maxAxioms);
+		evictModels();
+	}
+
+	/**
+	 * @return hit, miss and eviction counters of the model cache
+	 */
+	public ModelCache.Stats getModelCacheStats() {
+		return modelCache.getStats();
+	}
+
+	/**
+	 * Evict models from memory, if the model cache is over its limits.
+	 */
+	protected void evictModels() {
+		List<ModelContainer> evicted = modelCache.evict();
+		for (ModelContainer model : evicted) {
+			model.dispose();
+			modelEvicted(model.getModelId());
+		}
+		if (evicted.isEmpty() == false && LOG.isInfoEnabled()) {
+			LOG.info("Evicted "+evicted.size()+" models from memory, "+modelCache.getStats());
+		}
+	}
+
+	/**
+	 * Hook for cleaning up data associated with an unmodified model, after it
+	 * has been evicted from memory.
+	 * 
+	 * @param modelId
+	 */
+	protected void modelEvicted(IRI modelId) {
+		// do nothing
+	}
+
 	/**
 	 * Retrieve the abox ontology. May skip loading the imports.
 	 * This method is mostly intended to read metadata from a model.
@@ -811,7 +1056,7 @@ public abstract class CoreMolecularModelManager<METADATA> {
 	 * @return abox, maybe without any imports loaded
 	 */
 	public OWLOntology getModelAbox(IRI id) {
-		ModelContainer model = modelMap.get(id);
+		ModelContainer model = modelCache.peek(id);
 		if (model != null) {
 			return model.getAboxOntology();
 		}
@@ -825,7 +1070,7 @@ public abstract class CoreMolecularModelManager<METADATA> {
 	}
 
 	public boolean isModelModified(IRI modelId) {
-		ModelContainer model = modelMap.get(modelId);
+		ModelContainer model = modelCache.peek(modelId);
 		if (model != null) {
 			// ask model about modification
 			return model.isModified();
@@ -845,22 +1090,24 @@ public abstract class CoreMolecularModelManager<METADATA> {
 	 * @param id
 	 */
 	public void unlinkModel(IRI id) {
-		ModelContainer model = modelMap.get(id);
-		model.dispose();
-		modelMap.remove(id);
+		ModelContainer model = modelCache.remove(id);
+		if (model != null) {
+			model.dispose();
+		}
 	}
 
 	/**
 	 * @return ids for all loaded models
 	 */
 	public Set<IRI> getModelIds() {
-		return modelMap.keySet();
+		return modelCache.keySet();
 	}
 
 	/**
 	 * internal method to cleanup this instance
 	 */
 	public void dispose() {
+		tbox.getOWLOntologyManager().removeOntologyChangeListener(schemaListener);
 		Set<IRI> ids = new HashSet<IRI>(getModelIds());
 		for (IRI id : ids) {
 			unlinkModel(id);
@@ -954,7 +1201,7 @@ public abstract class CoreMolecularModelManager<METADATA> {
 			throw new OWLOntologyCreationException("Could not extract the modelId from the given model");
 		}
 		// paranoia check
-		ModelContainer existingModel = modelMap.get(modelId);
+		ModelContainer existingModel = modelCache.peek(modelId);
 		if (existingModel != null) {
 			unlinkModel(modelId);
 		}
@@ -967,9 +1214,25 @@ public abstract class CoreMolecularModelManager<METADATA> {
 
 	protected abstract void loadModel(IRI modelId, boolean isOverride) throws OWLOntologyCreationException;
 
-	ModelContainer addModel(IRI modelId, OWLOntology abox) throws OWLOntologyCreationException {
+	protected ModelContainer addModel(IRI modelId, OWLOntology abox) throws OWLOntologyCreationException {
+		return addModel(modelId, abox, false);
+	}
+
+	/**
+	 * @param modelId
+	 * @param abox
+	 * @param isStored true, if the abox is identical to the stored model;
+	 *  changes are then recorded from the start, to allow incremental saves.
+	 * @return model
+	 * @throws OWLOntologyCreationException
+	 */
+	protected ModelContainer addModel(IRI modelId, OWLOntology abox, boolean isStored) throws OWLOntologyCreationException {
 		ModelContainer m = new ModelContainer(modelId, tbox, abox);
-		modelMap.put(modelId, m);
+		if (isStored) {
+			m.resetDelta();
+		}
+		modelCache.put(modelId, m);
+		evictModels();
 		return m;
 	}
 
@@ -1325,7 +1588,10 @@ public abstract class CoreMolecularModelManager<METADATA> {
 	public static OWLOntology loadOntologyDocumentSource(final OWLOntologyDocumentSource source, boolean minimal, OWLOntologyManager manager) throws OWLOntologyCreationException {		
 		// silence the OBO parser in the OWL-API
 		java.util.logging.Logger.getLogger("org.obolibrary").setLevel(java.util.logging.Level.SEVERE);
-		final Set<OWLParserFactory> originalFactories = removeOBOParserFactories(manager);
+		// triple sources are parsed directly with the Rio parser, the registered parsers are not used
+		// skipping the swap also avoids racing parallel loads on the shared parser collection
+		final boolean swapParsers = (source instanceof RioMemoryTripleSource) == false;
+		final Set<OWLParserFactory> originalFactories = swapParsers ? removeOBOParserFactories(manager) : null;
 		try {			
 			// load model from source
 			if (minimal == false) {
@@ -1366,7 +1632,9 @@ public abstract class CoreMolecularModelManager<METADATA> {
 				return minimalAbox;
 			}
 		} finally {
-			resetOBOParserFactories(manager, originalFactories);
+			if (swapParsers) {
+				resetOBOParserFactories(manager, originalFactories);
+			}
 		}
 	}
 
@@ -1374,7 +1642,10 @@ public abstract class CoreMolecularModelManager<METADATA> {
 		final OWLOntology ontology;
 		if (source instanceof RioMemoryTripleSource) {
 			RioParserImpl parser = new RioParserImpl(new RioRDFXMLDocumentFormatFactory());
-			ontology = manager.createOntology();
+			synchronized (manager) {
+				// the shared manager is not thread safe, models may be loaded in parallel
+				ontology = manager.createOntology();
+			}
 			OWLOntologyLoaderConfiguration config = new OWLOntologyLoaderConfiguration();
 			try {
 				parser.parse(source, ontology, config);
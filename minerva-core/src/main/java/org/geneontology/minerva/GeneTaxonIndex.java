@@ -0,0 +1,215 @@
+package org.geneontology.minerva;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+/**
+ * Precomputed taxa of the gene product classes in the tbox, i.e. the
+ * <code>?gene rdfs:subClassOf [owl:onProperty RO:0002162; owl:someValuesFrom ?taxon]</code>
+ * restrictions. Taxon IRIs are interned to int ids. Almost all genes have
+ * one taxon, which is kept directly in the map; the few genes with several
+ * taxa refer to a sorted array of taxon ids.
+ */
+public class GeneTaxonIndex {
+
+	private static final int FORMAT_VERSION = 1;
+
+	private final String[] taxa;
+	// taxon id, or -(k + 2) for the taxa of the gene in multiTaxa[k]
+	private final TObjectIntHashMap<String> genes;
+	private final int[][] multiTaxa;
+
+	private GeneTaxonIndex(String[] taxa, TObjectIntHashMap<String> genes, int[][] multiTaxa) {
+		this.taxa = taxa;
+		this.genes = genes;
+		this.multiTaxa = multiTaxa;
+	}
+
+	/**
+	 * @return number of genes with a taxon
+	 */
+	public int size() {
+		return genes.size();
+	}
+
+	/**
+	 * @param gene
+	 * @return taxa of the gene, empty for unknown IRIs
+	 */
+	public Set<String> getTaxa(String gene) {
+		Set<String> result = new HashSet<String>();
+		addTaxa(gene, result);
+		return result;
+	}
+
+	/**
+	 * Equivalent of {@link BlazegraphOntologyManager#getTaxaByGenes(Set)},
+	 * IRIs, which are not genes, are ignored.
+	 *
+	 * @param genes
+	 * @return taxa of the genes
+	 */
+	public Set<String> getTaxa(Collection<String> genes) {
+		Set<String> result = new HashSet<String>();
+		for (String gene : genes) {
+			addTaxa(gene, result);
+		}
+		return result;
+	}
+
+	private void addTaxa(String gene, Set<String> result) {
+		int id = genes.get(gene);
+		if (id >= 0) {
+			result.add(taxa[id]);
+		}
+		else if (id < -1) {
+			for (int t : multiTaxa[-id - 2]) {
+				result.add(taxa[t]);
+			}
+		}
+	}
+
+	/**
+	 * @return all taxa with genes
+	 */
+	public Set<String> getAllTaxa() {
+		return new HashSet<String>(Arrays.asList(taxa));
+	}
+
+	/**
+	 * Write the index to a sidecar file. The key identifies the source
+	 * (e.g. the state of the ontology journal) the index was built from.
+	 *
+	 * @param file
+	 * @param key
+	 * @throws IOException
+	 */
+	public void write(File file, long key) throws IOException {
+		File tmp = new File(file.getPath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+			out.writeInt(FORMAT_VERSION);
+			out.writeLong(key);
+			out.writeInt(taxa.length);
+			for (String taxon : taxa) {
+				out.writeUTF(taxon);
+			}
+			out.writeInt(multiTaxa.length);
+			for (int[] ids : multiTaxa) {
+				out.writeInt(ids.length);
+				for (int id : ids) {
+					out.writeInt(id);
+				}
+			}
+			out.writeInt(genes.size());
+			Object[] keys = genes.keys();
+			for (Object gene : keys) {
+				out.writeUTF((String) gene);
+				out.writeInt(genes.get(gene));
+			}
+		}
+		if (file.exists() && !file.delete()) {
+			throw new IOException("Could not replace taxon index file: " + file);
+		}
+		if (!tmp.renameTo(file)) {
+			throw new IOException("Could not move taxon index file into place: " + file);
+		}
+	}
+
+	/**
+	 * Read an index from a sidecar file.
+	 *
+	 * @param file
+	 * @param expectedKey
+	 * @return index or null, if the file is written in an old format or for a different key
+	 * @throws IOException
+	 */
+	public static GeneTaxonIndex read(File file, long expectedKey) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+			if (in.readInt() != FORMAT_VERSION || in.readLong() != expectedKey) {
+				return null;
+			}
+			String[] taxa = new String[in.readInt()];
+			for (int i = 0; i < taxa.length; i++) {
+				taxa[i] = in.readUTF();
+			}
+			int[][] multiTaxa = new int[in.readInt()][];
+			for (int k = 0; k < multiTaxa.length; k++) {
+				multiTaxa[k] = new int[in.readInt()];
+				for (int i = 0; i < multiTaxa[k].length; i++) {
+					multiTaxa[k][i] = in.readInt();
+				}
+			}
+			int n = in.readInt();
+			TObjectIntHashMap<String> genes = new TObjectIntHashMap<String>(n, 0.5f, -1);
+			for (int i = 0; i < n; i++) {
+				String gene = in.readUTF();
+				genes.put(gene, in.readInt());
+			}
+			return new GeneTaxonIndex(taxa, genes, multiTaxa);
+		}
+	}
+
+	/**
+	 * Collects the gene taxon pairs.
+	 */
+	public static class Builder {
+
+		private final TObjectIntHashMap<String> taxonIds = new TObjectIntHashMap<String>(64, 0.5f, -1);
+		private final List<String> taxa = new ArrayList<String>();
+		private final TObjectIntHashMap<String> genes = new TObjectIntHashMap<String>(1024, 0.5f, -1);
+		private final List<int[]> multiTaxa = new ArrayList<int[]>();
+
+		private int intern(String taxon) {
+			int id = taxonIds.get(taxon);
+			if (id < 0) {
+				id = taxa.size();
+				taxa.add(taxon);
+				taxonIds.put(taxon, id);
+			}
+			return id;
+		}
+
+		public Builder add(String gene, String taxon) {
+			final int taxonId = intern(taxon);
+			final int current = genes.get(gene);
+			if (current == -1) {
+				genes.put(gene, taxonId);
+			}
+			else if (current >= 0) {
+				if (current != taxonId) {
+					multiTaxa.add(new int[]{Math.min(current, taxonId), Math.max(current, taxonId)});
+					genes.put(gene, -(multiTaxa.size() - 1) - 2);
+				}
+			}
+			else {
+				int k = -current - 2;
+				int[] ids = multiTaxa.get(k);
+				if (Arrays.binarySearch(ids, taxonId) < 0) {
+					int[] extended = Arrays.copyOf(ids, ids.length + 1);
+					extended[ids.length] = taxonId;
+					Arrays.sort(extended);
+					multiTaxa.set(k, extended);
+				}
+			}
+			return this;
+		}
+
+		public GeneTaxonIndex build() {
+			return new GeneTaxonIndex(taxa.toArray(new String[taxa.size()]), genes, multiTaxa.toArray(new int[multiTaxa.size()][]));
+		}
+	}
+}
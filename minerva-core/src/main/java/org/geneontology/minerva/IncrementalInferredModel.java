@@ -0,0 +1,391 @@
+package org.geneontology.minerva;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.geneontology.rules.engine.AlphaNode;
+import org.geneontology.rules.engine.AnyNode$;
+import org.geneontology.rules.engine.BlankNode;
+import org.geneontology.rules.engine.ConcreteNode;
+import org.geneontology.rules.engine.Node;
+import org.geneontology.rules.engine.Resource;
+import org.geneontology.rules.engine.RuleEngine;
+import org.geneontology.rules.engine.Triple;
+import org.geneontology.rules.engine.TriplePattern;
+import org.geneontology.rules.engine.URI;
+import org.geneontology.rules.engine.WorkingMemory;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.AddAxiom;
+import org.semanticweb.owlapi.model.AddImport;
+import org.semanticweb.owlapi.model.AddOntologyAnnotation;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAnnotation;
+import org.semanticweb.owlapi.model.OWLAnnotationAssertionAxiom;
+import org.semanticweb.owlapi.model.OWLAnnotationProperty;
+import org.semanticweb.owlapi.model.OWLAnnotationValue;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyChange;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.semanticweb.owlapi.vocab.OWLRDFVocabulary;
+
+import com.google.common.base.Optional;
+
+import scala.Option;
+import scala.Tuple2;
+import scala.collection.JavaConverters;
+import scala.collection.immutable.Queue;
+
+/**
+ * Arachne working memory of a loaded model, which is kept in sync with the
+ * edits of the model instead of being created from scratch for each request.<br>
+ * The changes of the model are recorded as a {@link ModelDelta} and applied
+ * on the next request. Added axioms are rendered as triples on their own and
+ * fed into the existing working memory, only the rules matching the new
+ * triples fire.<br>
+ * Arachne can't retract triples. Removed annotations, which are not matched
+ * by any rule, are dropped from the working memory. Any other removal
+ * re-derives the working memory from the current abox.
+ *
+ * @see CoreMolecularModelManager#createInferredModel(IRI)
+ */
+class IncrementalInferredModel {
+
+	private static final Logger LOG = Logger.getLogger(IncrementalInferredModel.class);
+
+	// blank node ids of separately rendered axioms, the renderer starts with the same ids each time
+	private static final String BLANK_NODE_PREFIX = "incremental";
+	private static final AtomicLong blankNodeCounter = new AtomicLong(0L);
+
+	private static final URI RDF_TYPE = new URI(OWLRDFVocabulary.RDF_TYPE.toString());
+	private static final URI OWL_ONTOLOGY = new URI(OWLRDFVocabulary.OWL_ONTOLOGY.toString());
+	private static final URI OWL_IMPORTS = new URI(OWLRDFVocabulary.OWL_IMPORTS.toString());
+
+	private final ModelContainer model;
+	private final RuleEngine engine;
+	private final Set<Triple> schema;
+
+	private Set<Triple> asserted = null;
+	private WorkingMemory memory = null;
+	// handed out to the callers, copy of the memory after the last change
+	private WorkingMemory snapshot = null;
+	// changes since the last request, null if the memory has to be created
+	private ModelDelta pending = null;
+	private int rebuilds = 0;
+
+	/**
+	 * @param model
+	 * @param engine rules of the tbox
+	 * @param schema triples added to each model, i.e. the RBox of the tbox
+	 */
+	IncrementalInferredModel(ModelContainer model, RuleEngine engine, Set<Triple> schema) {
+		this.model = model;
+		this.engine = engine;
+		this.schema = schema;
+	}
+
+	/**
+	 * Record the changes of the model, they are applied with the next call
+	 * of {@link #getWorkingMemory()}.
+	 *
+	 * @param changes enacted changes of the abox
+	 */
+	synchronized void handleChange(List<OWLOntologyChange> changes) {
+		if (pending != null) {
+			for (OWLOntologyChange change : changes) {
+				pending.record(change);
+			}
+		}
+	}
+
+	/**
+	 * Release the working memory, it is created again on the next request.
+	 */
+	synchronized void dispose() {
+		asserted = null;
+		memory = null;
+		snapshot = null;
+		pending = null;
+	}
+
+	/**
+	 * Return the working memory for the current state of the model. The
+	 * result is not modified by later edits of the model.
+	 *
+	 * @return working memory
+	 */
+	synchronized WorkingMemory getWorkingMemory() {
+		OWLOntology abox = model.getAboxOntology();
+		if (memory == null || pending == null || pending.isConsistentWith(abox) == false) {
+			rebuild(abox);
+		}
+		else if (pending.isEmpty() == false) {
+			ModelDelta delta = pending;
+			pending = new ModelDelta(abox);
+			boolean updated = false;
+			try {
+				updated = update(abox, delta);
+			} catch (OWLOntologyCreationException e) {
+				LOG.warn("Could not render the changes of model: "+model.getModelId(), e);
+			}
+			if (updated == false) {
+				rebuild(abox);
+			}
+		}
+		if (snapshot == null) {
+			WorkingMemory copy = new WorkingMemory(JavaConverters.asScalaSetConverter(asserted).asScala().toSet());
+			copy.facts().$plus$plus$eq(memory.facts());
+			copy.derivations_$eq(memory.derivations());
+			snapshot = copy;
+		}
+		return snapshot;
+	}
+
+	/**
+	 * @return number of times the working memory was created from scratch
+	 */
+	synchronized int getRebuilds() {
+		return rebuilds;
+	}
+
+	private void rebuild(OWLOntology abox) {
+		// changes applied while rendering are recorded and applied with the next request
+		pending = new ModelDelta(abox);
+		Set<Triple> triples = CoreMolecularModelManager.ontologyAsTriples(abox);
+		triples.addAll(schema);
+		asserted = triples;
+		memory = engine.processTriples(JavaConverters.asScalaSetConverter(triples).asScala());
+		snapshot = null;
+		rebuilds += 1;
+	}
+
+	/**
+	 * Apply the changes to the working memory.
+	 *
+	 * @param abox
+	 * @param delta
+	 * @return false, if the changes could not be applied and the memory has to be re-created
+	 * @throws OWLOntologyCreationException
+	 */
+	private boolean update(OWLOntology abox, ModelDelta delta) throws OWLOntologyCreationException {
+		Optional<IRI> ontologyIRI = abox.getOntologyID().getOntologyIRI();
+		if (ontologyIRI.isPresent() == false || removable(delta.getRemovedAxioms()) == false) {
+			return false;
+		}
+		// retract, only triples still produced by other axioms or annotations are kept
+		Set<OWLAxiom> removedAxioms = new HashSet<OWLAxiom>();
+		for (OWLAxiom ax : delta.getRemovedAxioms()) {
+			OWLAnnotationAssertionAxiom annotationAssertion = (OWLAnnotationAssertionAxiom) ax;
+			if (isStillAsserted(abox, (IRI) annotationAssertion.getSubject(), annotationAssertion.getProperty(), annotationAssertion.getValue()) == false) {
+				removedAxioms.add(ax);
+			}
+		}
+		Set<OWLAnnotation> removedAnnotations = new HashSet<OWLAnnotation>();
+		for (OWLAnnotation annotation : delta.getRemovedAnnotations()) {
+			if (annotation.getAnnotations().isEmpty() == false || annotation.getValue().asAnonymousIndividual().isPresent()) {
+				return false;
+			}
+			if (isStillAsserted(abox, ontologyIRI.get(), annotation.getProperty(), annotation.getValue()) == false) {
+				removedAnnotations.add(annotation);
+			}
+		}
+		Set<Triple> retracted = render(abox, ontologyIRI.get(), removedAxioms, removedAnnotations);
+		for (Triple t : retracted) {
+			if (isInert(t) == false) {
+				return false;
+			}
+		}
+		Set<Triple> added = render(abox, ontologyIRI.get(), delta.getAddedAxioms(), delta.getAddedAnnotations());
+		for (Triple t : retracted) {
+			asserted.remove(t);
+			memory.facts().remove(t);
+		}
+		for (Triple t : added) {
+			asserted.add(t);
+			engine.processTriple(t, memory);
+		}
+		while (memory.agenda().nonEmpty()) {
+			Tuple2<Triple, Queue<Triple>> next = memory.agenda().dequeue();
+			memory.agenda_$eq(next._2());
+			inject(next._1());
+		}
+		snapshot = null;
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Updated inferences of model "+model.getModelId()+": "+added.size()+" added and "+retracted.size()+" removed triples");
+		}
+		return true;
+	}
+
+	/**
+	 * Only annotation assertions without axiom annotations can be retracted,
+	 * their triple is not reified with blank nodes.
+	 */
+	private static boolean removable(Set<OWLAxiom> removed) {
+		for (OWLAxiom ax : removed) {
+			if (ax instanceof OWLAnnotationAssertionAxiom == false || ax.isAnnotated()) {
+				return false;
+			}
+			OWLAnnotationAssertionAxiom annotationAssertion = (OWLAnnotationAssertionAxiom) ax;
+			if (annotationAssertion.getSubject() instanceof IRI == false
+					|| annotationAssertion.getValue().asAnonymousIndividual().isPresent()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Check for an annotation with the same triple, i.e. one which differs
+	 * only in its axiom annotations.
+	 */
+	private static boolean isStillAsserted(OWLOntology abox, IRI subject, OWLAnnotationProperty property, OWLAnnotationValue value) {
+		for (OWLAnnotationAssertionAxiom ax : abox.getAnnotationAssertionAxioms(subject)) {
+			if (ax.getProperty().equals(property) && ax.getValue().equals(value)) {
+				return true;
+			}
+		}
+		if (subject.equals(abox.getOntologyID().getOntologyIRI().orNull())) {
+			for (OWLAnnotation annotation : abox.getAnnotations()) {
+				if (annotation.getProperty().equals(property) && annotation.getValue().equals(value)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * A triple can be dropped from the working memory, if no rule has seen it.
+	 * Annotations don't occur in the rules of the tbox, they are neither
+	 * matched nor derived.
+	 */
+	private boolean isInert(Triple t) {
+		// declarations for undeclared entities, which may still be used elsewhere
+		if (t.p().equals(RDF_TYPE) || t.s() instanceof BlankNode || t.o() instanceof BlankNode) {
+			return false;
+		}
+		if (memory.derivations().contains(t)) {
+			return false;
+		}
+		for (TriplePattern pattern : patterns(t)) {
+			if (engine.alphaIndex().contains(pattern)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Pass the triple to all alpha nodes with a matching pattern, like
+	 * {@link RuleEngine#processTriples(scala.collection.Iterable)}.
+	 */
+	private void inject(Triple t) {
+		for (TriplePattern pattern : patterns(t)) {
+			Option<AlphaNode> alpha = engine.alphaIndex().get(pattern);
+			if (alpha.isDefined()) {
+				alpha.get().activate(t, memory);
+			}
+		}
+	}
+
+	private static List<TriplePattern> patterns(Triple t) {
+		Node any = AnyNode$.MODULE$;
+		return Arrays.asList(
+				new TriplePattern(any, any, any),
+				new TriplePattern(any, any, t.o()),
+				new TriplePattern(any, t.p(), any),
+				new TriplePattern(any, t.p(), t.o()),
+				new TriplePattern(t.s(), any, any),
+				new TriplePattern(t.s(), any, t.o()),
+				new TriplePattern(t.s(), t.p(), any),
+				new TriplePattern(t.s(), t.p(), t.o()));
+	}
+
+	/**
+	 * Render the axioms and ontology annotations as triples, as they appear
+	 * in the rendering of the whole abox. The temporary ontology imports a
+	 * stub with the declarations of the abox and its imports for its
+	 * entities, so that declarations are only added for undeclared entities.
+	 * Both live in a private manager, the shared manager of the abox is not
+	 * modified and nothing is left behind. The stub has a generated IRI,
+	 * re-using the model IRI for another ontology makes the contents of the
+	 * abox inaccessible, see {@link CoreMolecularModelManager#createSchemaTriples(OWLOntology)}.
+	 *
+	 * @param abox
+	 * @param ontologyIRI
+	 * @param axioms
+	 * @param annotations
+	 * @return triples
+	 * @throws OWLOntologyCreationException
+	 */
+	private static Set<Triple> render(OWLOntology abox, IRI ontologyIRI, Set<OWLAxiom> axioms, Set<OWLAnnotation> annotations) throws OWLOntologyCreationException {
+		Set<Triple> result = new HashSet<Triple>();
+		if (axioms.isEmpty() && annotations.isEmpty()) {
+			return result;
+		}
+		OWLOntologyManager m = OWLManager.createOWLOntologyManager();
+		Set<OWLEntity> signature = new HashSet<OWLEntity>();
+		for (OWLAxiom ax : axioms) {
+			signature.addAll(ax.getSignature());
+		}
+		for (OWLAnnotation annotation : annotations) {
+			signature.addAll(annotation.getSignature());
+		}
+		Set<OWLAxiom> declarations = new HashSet<OWLAxiom>();
+		synchronized (abox) {
+			for (OWLOntology o : abox.getImportsClosure()) {
+				for (OWLEntity entity : signature) {
+					declarations.addAll(o.getDeclarationAxioms(entity));
+				}
+			}
+		}
+		IRI stubIRI = IRI.generateDocumentIRI();
+		m.createOntology(declarations, stubIRI);
+		OWLOntology part = m.createOntology(IRI.generateDocumentIRI());
+		List<OWLOntologyChange> changes = new ArrayList<OWLOntologyChange>();
+		changes.add(new AddImport(part, m.getOWLDataFactory().getOWLImportsDeclaration(stubIRI)));
+		for (OWLAxiom ax : axioms) {
+			changes.add(new AddAxiom(part, ax));
+		}
+		for (OWLAnnotation annotation : annotations) {
+			changes.add(new AddOntologyAnnotation(part, annotation));
+		}
+		m.applyChanges(changes);
+		URI partURI = new URI(part.getOntologyID().getOntologyIRI().get().toString());
+		URI modelURI = new URI(ontologyIRI.toString());
+		Map<String, BlankNode> blankNodes = new HashMap<String, BlankNode>();
+		for (Triple t : CoreMolecularModelManager.ontologyAsTriples(part)) {
+			Resource s = t.s();
+			if (s.equals(partURI)) {
+				if (t.p().equals(OWL_IMPORTS) || t.p().equals(RDF_TYPE) && t.o().equals(OWL_ONTOLOGY)) {
+					continue;
+				}
+				s = modelURI;
+			}
+			result.add(new Triple((Resource) rename(s, blankNodes), t.p(), rename(t.o(), blankNodes)));
+		}
+		return result;
+	}
+
+	private static ConcreteNode rename(ConcreteNode node, Map<String, BlankNode> blankNodes) {
+		if (node instanceof BlankNode) {
+			String id = ((BlankNode) node).id();
+			BlankNode renamed = blankNodes.get(id);
+			if (renamed == null) {
+				renamed = new BlankNode(BLANK_NODE_PREFIX + blankNodeCounter.incrementAndGet());
+				blankNodes.put(id, renamed);
+			}
+			return renamed;
+		}
+		return node;
+	}
+}
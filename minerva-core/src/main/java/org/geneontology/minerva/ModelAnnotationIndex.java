@@ -0,0 +1,153 @@
+package org.geneontology.minerva;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.model.vocabulary.OWL;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.MalformedQueryException;
+import org.openrdf.query.QueryEvaluationException;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.repository.RepositoryResult;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAnnotation;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+
+/**
+ * In-memory index of the header annotations of the stored models, i.e. the
+ * statements about the owl:Ontology node of each model without the imports,
+ * the type and the json-model annotation. Like in the former query over all
+ * models, the values are rendered as plain literals.<br>
+ * The index reflects the statements in the store: after a write, the model is
+ * read again with {@link #update(RepositoryConnection, IRI)}, see also
+ * {@link ModelSearchIndex}.
+ */
+public class ModelAnnotationIndex {
+
+	private static final URI JSON_MODEL = new URIImpl("http://geneontology.org/lego/json-model");
+
+	private final Map<IRI, Set<OWLAnnotation>> annotations = new ConcurrentHashMap<IRI, Set<OWLAnnotation>>();
+	private final OWLDataFactory factory = OWLManager.getOWLDataFactory();
+
+	/**
+	 * Replace the index with all models in the store.
+	 *
+	 * @param connection
+	 * @throws RepositoryException
+	 * @throws MalformedQueryException
+	 * @throws QueryEvaluationException
+	 */
+	public synchronized void rebuild(RepositoryConnection connection) throws RepositoryException, MalformedQueryException, QueryEvaluationException {
+		String query = "PREFIX owl: <http://www.w3.org/2002/07/owl#> " +
+				"PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#> " +
+				"SELECT ?model ?p ?o " +
+				"WHERE { " +
+				"?model a owl:Ontology . " +
+				"?model ?p ?o . " +
+				"FILTER(?p NOT IN (owl:imports, rdf:type, <" + JSON_MODEL + ">)) " +
+				"} ";
+		Map<IRI, Set<OWLAnnotation>> read = new HashMap<IRI, Set<OWLAnnotation>>();
+		TupleQueryResult result = connection.prepareTupleQuery(QueryLanguage.SPARQL, query).evaluate();
+		try {
+			while (result.hasNext()) {
+				BindingSet binding = result.next();
+				Value model = binding.getValue("model");
+				Value predicate = binding.getValue("p");
+				if ((model instanceof URI) && (predicate instanceof URI)) {
+					IRI modelId = IRI.create(model.stringValue());
+					read.computeIfAbsent(modelId, k -> new HashSet<OWLAnnotation>()).add(annotation((URI) predicate, binding.getValue("o")));
+				}
+			}
+		} finally {
+			result.close();
+		}
+		annotations.clear();
+		for (Map.Entry<IRI, Set<OWLAnnotation>> entry : read.entrySet()) {
+			annotations.put(entry.getKey(), Collections.unmodifiableSet(entry.getValue()));
+		}
+	}
+
+	/**
+	 * Read the header of the stored model again, e.g. after a save or import.
+	 * A model, which is not stored anymore, is removed.
+	 *
+	 * @param connection
+	 * @param modelId
+	 * @throws RepositoryException
+	 */
+	public synchronized void update(RepositoryConnection connection, IRI modelId) throws RepositoryException {
+		URI model = new URIImpl(modelId.toString());
+		Set<OWLAnnotation> read = new HashSet<OWLAnnotation>();
+		boolean isOntology = false;
+		RepositoryResult<Statement> statements = connection.getStatements(model, null, null, false, new Resource[]{model});
+		try {
+			while (statements.hasNext()) {
+				Statement statement = statements.next();
+				URI predicate = statement.getPredicate();
+				if (RDF.TYPE.equals(predicate)) {
+					isOntology |= OWL.ONTOLOGY.equals(statement.getObject());
+				}
+				else if (OWL.IMPORTS.equals(predicate) == false && JSON_MODEL.equals(predicate) == false) {
+					read.add(annotation(predicate, statement.getObject()));
+				}
+			}
+		} finally {
+			statements.close();
+		}
+		if (isOntology) {
+			annotations.put(modelId, Collections.unmodifiableSet(read));
+		}
+		else {
+			annotations.remove(modelId);
+		}
+	}
+
+	/**
+	 * @param modelId
+	 * @return true, if the model was in the index
+	 */
+	public boolean remove(IRI modelId) {
+		return annotations.remove(modelId) != null;
+	}
+
+	/**
+	 * @param modelId
+	 * @return annotations or null, if the model is not indexed
+	 */
+	public Set<OWLAnnotation> get(IRI modelId) {
+		return annotations.get(modelId);
+	}
+
+	/**
+	 * @return read only view of the annotations by model
+	 */
+	public Map<IRI, Set<OWLAnnotation>> getAll() {
+		return Collections.unmodifiableMap(annotations);
+	}
+
+	/**
+	 * @return number of indexed models
+	 */
+	public int size() {
+		return annotations.size();
+	}
+
+	private OWLAnnotation annotation(URI predicate, Value value) {
+		return factory.getOWLAnnotation(factory.getOWLAnnotationProperty(IRI.create(predicate.stringValue())),
+				factory.getOWLLiteral(value.stringValue()));
+	}
+}
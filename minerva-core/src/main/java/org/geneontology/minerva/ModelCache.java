@@ -0,0 +1,343 @@
+package org.geneontology.minerva;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.semanticweb.owlapi.model.IRI;
+
+/**
+ * Bounded cache for the in-memory {@link ModelContainer}s of a model manager.
+ *
+ * The cache is bounded by the number of models and by the total number of
+ * abox axioms, as a proxy for the heap used by the models. If a bound is
+ * exceeded, the least recently used models are evicted. Modified models are
+ * pinned: they are never evicted before they have been saved. A request, which
+ * uses a model for a longer time, e.g. an export or a validation, pins it with
+ * {@link #pin(IRI)} until {@link #unpin(IRI, ModelContainer)}. Models used in
+ * the last {@link #getMinIdleMillis()} are also not evicted, for the readers
+ * without a pin.<br>
+ * The access order is tracked with a logical clock. The pins, the accesses and
+ * the eviction of a model are atomic per model id, so a model is never evicted
+ * between its lookup and its pin.
+ */
+public class ModelCache {
+
+	/**
+	 * Default minimum idle time for a model, before it can be evicted: 1 minute.
+	 */
+	public static final long DEFAULT_MIN_IDLE_MILLIS = 60 * 1000L;
+
+	private final ConcurrentHashMap<IRI, Entry> entries = new ConcurrentHashMap<IRI, Entry>();
+	private final AtomicLong clock = new AtomicLong(0L);
+
+	private volatile int maxModels;
+	private volatile long maxAxioms;
+	private volatile long minIdleMillis = DEFAULT_MIN_IDLE_MILLIS;
+
+	private final AtomicLong hits = new AtomicLong(0L);
+	private final AtomicLong misses = new AtomicLong(0L);
+	private final AtomicLong evictions = new AtomicLong(0L);
+
+	private static class Entry {
+		final ModelContainer model;
+		volatile long lastAccess;
+		volatile long lastAccessMillis;
+		// guarded by the map entry, see ConcurrentHashMap#computeIfPresent
+		volatile int pins = 0;
+
+		Entry(ModelContainer model, long lastAccess) {
+			this.model = model;
+			this.lastAccess = lastAccess;
+			this.lastAccessMillis = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Create an unbounded cache.
+	 */
+	public ModelCache() {
+		this(Integer.MAX_VALUE, Long.MAX_VALUE);
+	}
+
+	/**
+	 * @param maxModels maximum number of models in memory
+	 * @param maxAxioms maximum number of abox axioms for all models in memory
+	 */
+	public ModelCache(int maxModels, long maxAxioms) {
+		this.maxModels = maxModels;
+		this.maxAxioms = maxAxioms;
+	}
+
+	public int getMaxModels() {
+		return maxModels;
+	}
+
+	public long getMaxAxioms() {
+		return maxAxioms;
+	}
+
+	public long getMinIdleMillis() {
+		return minIdleMillis;
+	}
+
+	/**
+	 * @param maxModels maximum number of models in memory
+	 * @param maxAxioms maximum number of abox axioms for all models in memory
+	 */
+	public void setLimits(int maxModels, long maxAxioms) {
+		this.maxModels = maxModels;
+		this.maxAxioms = maxAxioms;
+	}
+
+	/**
+	 * @param minIdleMillis time without access, before a model can be evicted
+	 */
+	public void setMinIdleMillis(long minIdleMillis) {
+		this.minIdleMillis = minIdleMillis;
+	}
+
+	/**
+	 * Retrieve a model and mark it as recently used. Updates the hit and miss
+	 * counters.
+	 *
+	 * @param modelId
+	 * @return model or null
+	 */
+	public ModelContainer get(IRI modelId) {
+		Entry entry = entries.computeIfPresent(modelId, (id, e) -> {
+			touch(e);
+			return e;
+		});
+		if (entry == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return entry.model;
+	}
+
+	/**
+	 * Retrieve a model and keep it in the cache, until it is released with
+	 * {@link #unpin(IRI, ModelContainer)}. A model can be pinned more than
+	 * once. Updates the hit and miss counters.
+	 *
+	 * @param modelId
+	 * @return pinned model or null
+	 */
+	public ModelContainer pin(IRI modelId) {
+		Entry entry = entries.computeIfPresent(modelId, (id, e) -> {
+			e.pins += 1;
+			touch(e);
+			return e;
+		});
+		if (entry == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return entry.model;
+	}
+
+	/**
+	 * Release a pin of {@link #pin(IRI)}. Nothing happens, if the model has
+	 * been removed or replaced in the meantime.
+	 *
+	 * @param modelId
+	 * @param model the pinned model
+	 */
+	public void unpin(IRI modelId, ModelContainer model) {
+		entries.computeIfPresent(modelId, (id, e) -> {
+			if (e.model == model && e.pins > 0) {
+				e.pins -= 1;
+				touch(e);
+			}
+			return e;
+		});
+	}
+
+	/**
+	 * Retrieve a model without changing the statistics or the access order.
+	 *
+	 * @param modelId
+	 * @return model or null
+	 */
+	public ModelContainer peek(IRI modelId) {
+		Entry entry = entries.get(modelId);
+		if (entry != null) {
+			return entry.model;
+		}
+		return null;
+	}
+
+	public boolean containsKey(IRI modelId) {
+		return entries.containsKey(modelId);
+	}
+
+	/**
+	 * Add a model to the cache. This does not evict any models, see {@link #evict()}.
+	 *
+	 * @param modelId
+	 * @param model
+	 * @return previous model for the id or null
+	 */
+	public ModelContainer put(IRI modelId, ModelContainer model) {
+		Entry previous = entries.put(modelId, new Entry(model, clock.incrementAndGet()));
+		if (previous != null) {
+			return previous.model;
+		}
+		return null;
+	}
+
+	/**
+	 * @param modelId
+	 * @return removed model or null
+	 */
+	public ModelContainer remove(IRI modelId) {
+		Entry removed = entries.remove(modelId);
+		if (removed != null) {
+			return removed.model;
+		}
+		return null;
+	}
+
+	/**
+	 * @return live view of the ids of all models in memory
+	 */
+	public Set<IRI> keySet() {
+		return Collections.unmodifiableSet(entries.keySet());
+	}
+
+	/**
+	 * @return snapshot of all models in memory
+	 */
+	public Collection<ModelContainer> values() {
+		List<ModelContainer> models = new ArrayList<ModelContainer>(entries.size());
+		for (Entry entry : entries.values()) {
+			models.add(entry.model);
+		}
+		return models;
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	private void touch(Entry entry) {
+		entry.lastAccess = clock.incrementAndGet();
+		entry.lastAccessMillis = System.currentTimeMillis();
+	}
+
+	private boolean isEvictable(Entry entry, long idleThreshold) {
+		return entry.pins == 0 && entry.model.isModified() == false && entry.lastAccessMillis <= idleThreshold;
+	}
+
+	/**
+	 * Remove the least recently used, unmodified and unpinned models until the
+	 * cache is within its limits again. The caller is responsible for disposing
+	 * the returned models.
+	 *
+	 * @return evicted models, never null
+	 */
+	public synchronized List<ModelContainer> evict() {
+		int count = entries.size();
+		long axioms = 0;
+		if (count <= maxModels && maxAxioms == Long.MAX_VALUE) {
+			return Collections.emptyList();
+		}
+		List<Map.Entry<IRI, Entry>> candidates = new ArrayList<Map.Entry<IRI, Entry>>(count);
+		final long idleThreshold = System.currentTimeMillis() - minIdleMillis;
+		for (Map.Entry<IRI, Entry> e : entries.entrySet()) {
+			Entry entry = e.getValue();
+			axioms += entry.model.getAboxOntology().getAxiomCount();
+			if (isEvictable(entry, idleThreshold)) {
+				candidates.add(e);
+			}
+		}
+		if (count <= maxModels && axioms <= maxAxioms) {
+			return Collections.emptyList();
+		}
+		// least recently used first
+		Collections.sort(candidates, (e1, e2) -> Long.compare(e1.getValue().lastAccess, e2.getValue().lastAccess));
+		List<ModelContainer> evicted = new ArrayList<ModelContainer>();
+		for (Map.Entry<IRI, Entry> candidate : candidates) {
+			if (count <= maxModels && axioms <= maxAxioms) {
+				break;
+			}
+			final Entry entry = candidate.getValue();
+			final boolean[] removed = {false};
+			// the model may have been used, pinned or modified since the scan
+			entries.computeIfPresent(candidate.getKey(), (id, e) -> {
+				if (e == entry && isEvictable(e, idleThreshold)) {
+					removed[0] = true;
+					return null;
+				}
+				return e;
+			});
+			if (removed[0]) {
+				count -= 1;
+				axioms -= entry.model.getAboxOntology().getAxiomCount();
+				evicted.add(entry.model);
+				evictions.incrementAndGet();
+			}
+		}
+		return evicted;
+	}
+
+	/**
+	 * @return snapshot of the cache statistics
+	 */
+	public Stats getStats() {
+		int pinned = 0;
+		int inUse = 0;
+		long axioms = 0;
+		for (Entry entry : entries.values()) {
+			if (entry.model.isModified()) {
+				pinned += 1;
+			}
+			if (entry.pins > 0) {
+				inUse += 1;
+			}
+			axioms += entry.model.getAboxOntology().getAxiomCount();
+		}
+		return new Stats(hits.get(), misses.get(), evictions.get(), entries.size(), pinned, inUse, axioms, maxModels, maxAxioms);
+	}
+
+	/**
+	 * Immutable snapshot of the cache counters.
+	 */
+	public static class Stats {
+		public final long hits;
+		public final long misses;
+		public final long evictions;
+		public final int models;
+		public final int pinned;
+		public final int in_use;
+		public final long axioms;
+		public final int max_models;
+		public final long max_axioms;
+
+		Stats(long hits, long misses, long evictions, int models, int pinned, int inUse, long axioms, int maxModels, long maxAxioms) {
+			this.hits = hits;
+			this.misses = misses;
+			this.evictions = evictions;
+			this.models = models;
+			this.pinned = pinned;
+			this.in_use = inUse;
+			this.axioms = axioms;
+			this.max_models = maxModels;
+			this.max_axioms = maxAxioms;
+		}
+
+		@Override
+		public String toString() {
+			return "models: "+models+"/"+max_models+" axioms: "+axioms+"/"+max_axioms+
+					" pinned: "+pinned+" in use: "+in_use+" hits: "+hits+" misses: "+misses+" evictions: "+evictions;
+		}
+	}
+}
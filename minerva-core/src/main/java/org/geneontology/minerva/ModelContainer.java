@@ -6,6 +6,7 @@ import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.log4j.Logger;
 import org.semanticweb.owlapi.model.AddImport;
+import org.semanticweb.owlapi.model.ChangeDetails;
 import org.semanticweb.owlapi.model.IRI;
 import org.semanticweb.owlapi.model.OWLDataFactory;
 import org.semanticweb.owlapi.model.OWLOntology;
@@ -24,6 +25,8 @@ public class ModelContainer {
 	private final IRI modelId;
 	private OWLOntology aboxOntology = null;
 	private boolean aboxModified = false;
+	// net changes since the abox was last written to the store, null if unknown
+	private ModelDelta delta = null;
 	private OWLOntology tboxOntology = null;
 	//private OWLReasoner tboxReasoner = null;
 	
@@ -110,7 +113,9 @@ public class ModelContainer {
 	public void dispose() {
 		final OWLOntologyManager m = getOWLOntologyManager();
 		if (aboxOntology != null) {
-			m.removeOntology(aboxOntology);
+			synchronized (m) {
+				m.removeOntology(aboxOntology);
+			}
 		}
 		
 		for(ModelChangeListener listener : listeners) {
@@ -147,12 +152,18 @@ public class ModelContainer {
 	}
 	
 	public List<OWLOntologyChange> applyChanges(List<? extends OWLOntologyChange> changes) {
-		ChangeApplied applied = getOWLOntologyManager().applyChanges(changes);
-		if (applied == ChangeApplied.SUCCESSFULLY) {
+		ChangeDetails details = getOWLOntologyManager().applyChangesAndGetDetails(changes);
+		if (details.getChangeEffect() == ChangeApplied.SUCCESSFULLY) {
+			recordChanges(details.getEnactedChanges());
 			List<OWLOntologyChange> relevantChanges = new ArrayList<>();
 			for (OWLOntologyChange change : changes) {
 				if (aboxOntology.equals(change.getOntology())) {
 					aboxModified = true;
+				}
+			}
+			// only the changes which took effect, listeners may track the state of the abox
+			for (OWLOntologyChange change : details.getEnactedChanges()) {
+				if (aboxOntology.equals(change.getOntology())) {
 					relevantChanges.add(change);
 				}
 			}
@@ -172,4 +183,36 @@ public class ModelContainer {
 	void setAboxModified(boolean modified) {
 		aboxModified = modified;
 	}
+
+	private synchronized void recordChanges(List<? extends OWLOntologyChange> enacted) {
+		if (delta != null) {
+			for (OWLOntologyChange change : enacted) {
+				if (aboxOntology.equals(change.getOntology())) {
+					delta.record(change);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return changes since the abox was last written to the store or null, if unknown
+	 */
+	synchronized ModelDelta getDelta() {
+		return delta;
+	}
+
+	/**
+	 * Mark the current abox as identical to the stored model and start
+	 * recording changes from here.
+	 */
+	synchronized void resetDelta() {
+		delta = new ModelDelta(aboxOntology);
+	}
+
+	/**
+	 * Mark the recorded changes as lost, the next save has to write the whole model.
+	 */
+	synchronized void clearDelta() {
+		delta = null;
+	}
 }
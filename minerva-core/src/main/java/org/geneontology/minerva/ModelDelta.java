@@ -0,0 +1,113 @@
+package org.geneontology.minerva;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.semanticweb.owlapi.model.AddOntologyAnnotation;
+import org.semanticweb.owlapi.model.OWLAnnotation;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLImportsDeclaration;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyChange;
+import org.semanticweb.owlapi.model.OWLOntologyID;
+import org.semanticweb.owlapi.model.RemoveOntologyAnnotation;
+
+/**
+ * Net changes of a model abox, since it was last written to the store.<br>
+ * Only enacted changes must be recorded: an axiom which is removed and added
+ * again cancels out. Imports and ontology id changes can't be expressed as a
+ * delta, they mark the delta as incomplete.
+ *
+ * @see ModelContainer#getDelta()
+ * @see StatementDelta
+ */
+class ModelDelta {
+
+	// state of the abox in the store
+	private final OWLOntologyID ontologyId;
+	private final Set<OWLImportsDeclaration> imports;
+	private final int axiomCount;
+	private final int annotationCount;
+
+	private final Set<OWLAxiom> addedAxioms = new HashSet<OWLAxiom>();
+	private final Set<OWLAxiom> removedAxioms = new HashSet<OWLAxiom>();
+	private final Set<OWLAnnotation> addedAnnotations = new HashSet<OWLAnnotation>();
+	private final Set<OWLAnnotation> removedAnnotations = new HashSet<OWLAnnotation>();
+	private boolean complete = true;
+
+	/**
+	 * @param stored abox in the same state as in the store
+	 */
+	ModelDelta(OWLOntology stored) {
+		ontologyId = stored.getOntologyID();
+		imports = new HashSet<OWLImportsDeclaration>(stored.getImportsDeclarations());
+		axiomCount = stored.getAxiomCount();
+		annotationCount = stored.getAnnotations().size();
+	}
+
+	void record(OWLOntologyChange change) {
+		if (change.isAxiomChange()) {
+			if (change.isAddAxiom()) {
+				move(change.getAxiom(), removedAxioms, addedAxioms);
+			}
+			else {
+				move(change.getAxiom(), addedAxioms, removedAxioms);
+			}
+		}
+		else if (change instanceof AddOntologyAnnotation) {
+			move(((AddOntologyAnnotation) change).getAnnotation(), removedAnnotations, addedAnnotations);
+		}
+		else if (change instanceof RemoveOntologyAnnotation) {
+			move(((RemoveOntologyAnnotation) change).getAnnotation(), addedAnnotations, removedAnnotations);
+		}
+		else {
+			// imports or ontology id
+			complete = false;
+		}
+	}
+
+	private static <T> void move(T o, Set<T> from, Set<T> to) {
+		if (from.remove(o) == false) {
+			to.add(o);
+		}
+	}
+
+	boolean isEmpty() {
+		return addedAxioms.isEmpty() && removedAxioms.isEmpty()
+				&& addedAnnotations.isEmpty() && removedAnnotations.isEmpty();
+	}
+
+	/**
+	 * Check that the delta accounts for all differences between the stored
+	 * and the current state. Changes applied to the ontology without going
+	 * through the {@link ModelContainer} are not recorded, they show up as a
+	 * mismatch in the axiom or annotation count.
+	 *
+	 * @param current
+	 * @return true, if the delta can be used to update the store
+	 */
+	boolean isConsistentWith(OWLOntology current) {
+		return complete
+				&& ontologyId.equals(current.getOntologyID())
+				&& imports.equals(current.getImportsDeclarations())
+				&& axiomCount + addedAxioms.size() - removedAxioms.size() == current.getAxiomCount()
+				&& annotationCount + addedAnnotations.size() - removedAnnotations.size() == current.getAnnotations().size();
+	}
+
+	Set<OWLAxiom> getAddedAxioms() {
+		return Collections.unmodifiableSet(addedAxioms);
+	}
+
+	Set<OWLAxiom> getRemovedAxioms() {
+		return Collections.unmodifiableSet(removedAxioms);
+	}
+
+	Set<OWLAnnotation> getAddedAnnotations() {
+		return Collections.unmodifiableSet(addedAnnotations);
+	}
+
+	Set<OWLAnnotation> getRemovedAnnotations() {
+		return Collections.unmodifiableSet(removedAnnotations);
+	}
+}
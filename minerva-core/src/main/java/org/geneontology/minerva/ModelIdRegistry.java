@@ -0,0 +1,179 @@
+package org.geneontology.minerva;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.apache.log4j.Logger;
+import org.openrdf.model.Resource;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.repository.RepositoryResult;
+import org.semanticweb.owlapi.model.IRI;
+
+import com.bigdata.rdf.sail.BigdataSailRepository;
+import com.bigdata.rdf.sail.BigdataSailRepositoryConnection;
+
+/**
+ * Ids of the models in a journal, i.e. the named graphs, for existence
+ * checks and enumeration without reading the graph ids from the store.<br>
+ * The ids are persisted in a file next to the journal, together with the
+ * last commit time of the journal. If the journal has been changed since,
+ * e.g. by a SPARQL update from the command line, the ids are read from the
+ * store again. Writes through the model manager and the
+ * {@link BulkModelImporter} update the registry.
+ */
+public class ModelIdRegistry {
+
+	private static final Logger LOG = Logger.getLogger(ModelIdRegistry.class);
+
+	static final String HEADER = "minerva-model-ids 1 ";
+
+	private final File file;
+	private final Set<IRI> modelIds = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * @param file persisted ids, may be null
+	 */
+	ModelIdRegistry(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Load the ids for the repository from the file, if they are up to date
+	 * with the journal, otherwise read them from the store and save them.
+	 *
+	 * @param repo
+	 * @param file persisted ids, may be null
+	 * @return registry
+	 * @throws IOException
+	 */
+	public static ModelIdRegistry open(BigdataSailRepository repo, File file) throws IOException {
+		ModelIdRegistry registry = new ModelIdRegistry(file);
+		long commitTime = getLastCommitTime(repo);
+		if (registry.load(commitTime) == false) {
+			long start = System.currentTimeMillis();
+			registry.rebuild(repo);
+			LOG.info("Read "+registry.size()+" model ids from the journal in "+(System.currentTimeMillis()-start)+" ms");
+			registry.save(commitTime);
+		}
+		return registry;
+	}
+
+	static long getLastCommitTime(BigdataSailRepository repo) {
+		return repo.getSail().getIndexManager().getLastCommitTime();
+	}
+
+	/**
+	 * @param commitTime last commit time of the journal
+	 * @return true, if the file has been written for the commit time and was read
+	 */
+	boolean load(long commitTime) {
+		if (file == null || file.isFile() == false) {
+			return false;
+		}
+		try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+			String header = reader.readLine();
+			if (header == null || header.equals(HEADER+commitTime) == false) {
+				LOG.info("Model ids are outdated: "+file);
+				return false;
+			}
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty() == false) {
+					modelIds.add(IRI.create(line));
+				}
+			}
+			return true;
+		} catch (IOException e) {
+			LOG.warn("Could not read model ids: "+file, e);
+			modelIds.clear();
+			return false;
+		}
+	}
+
+	/**
+	 * Replace the ids with the graph ids of the store.
+	 *
+	 * @param repo
+	 * @throws IOException
+	 */
+	void rebuild(BigdataSailRepository repo) throws IOException {
+		modelIds.clear();
+		try {
+			BigdataSailRepositoryConnection connection = repo.getReadOnlyConnection();
+			try {
+				RepositoryResult<Resource> graphs = connection.getContextIDs();
+				try {
+					while (graphs.hasNext()) {
+						modelIds.add(IRI.create(graphs.next().stringValue()));
+					}
+				} finally {
+					graphs.close();
+				}
+			} finally {
+				connection.close();
+			}
+		} catch (RepositoryException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Write the ids to the file, replacing it once the ids are complete.
+	 *
+	 * @param commitTime last commit time of the journal, which includes all writes of the ids
+	 * @throws IOException
+	 */
+	public void save(long commitTime) throws IOException {
+		if (file == null) {
+			return;
+		}
+		File tempFile = new File(file.getPath()+".tmp");
+		try (BufferedWriter writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8)) {
+			writer.write(HEADER+commitTime);
+			writer.newLine();
+			for (IRI modelId : modelIds) {
+				writer.write(modelId.toString());
+				writer.newLine();
+			}
+		}
+		Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	public boolean contains(IRI modelId) {
+		return modelIds.contains(modelId);
+	}
+
+	public void add(IRI modelId) {
+		modelIds.add(modelId);
+	}
+
+	public void remove(IRI modelId) {
+		modelIds.remove(modelId);
+	}
+
+	public int size() {
+		return modelIds.size();
+	}
+
+	/**
+	 * The stream is not a snapshot, it may or may not show concurrent changes.
+	 *
+	 * @return ids
+	 */
+	public Stream<IRI> stream() {
+		return modelIds.stream();
+	}
+
+	public void forEach(Consumer<IRI> consumer) {
+		modelIds.forEach(consumer);
+	}
+}
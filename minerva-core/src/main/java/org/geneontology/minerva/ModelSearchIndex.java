@@ -0,0 +1,567 @@
+package org.geneontology.minerva;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.openrdf.model.Literal;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.MalformedQueryException;
+import org.openrdf.query.QueryEvaluationException;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.TupleQuery;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryException;
+
+/**
+ * In memory index of the stored models for the model search. Each model has
+ * an int id; the models with a type, source, taxon, state, contributor or
+ * group are kept as a bit set, so a search is an intersection of bit sets.
+ * The dates are kept sorted, for the date ranges.<br>
+ * The index reflects the statements in the store: after a write, the model is
+ * read again with {@link #update(RepositoryConnection, String)}.<br>
+ * Like the SPARQL search, only models with a title, date and contributor
+ * are found. The taxa of a model are its in_taxon annotations and, with a
+ * {@link GeneTaxonIndex}, the taxa of the gene products in the model.
+ */
+public class ModelSearchIndex {
+
+	static final String TITLE = "http://purl.org/dc/elements/1.1/title";
+	static final String DATE = "http://purl.org/dc/elements/1.1/date";
+	static final String CONTRIBUTOR = "http://purl.org/dc/elements/1.1/contributor";
+	static final String SOURCE = "http://purl.org/dc/elements/1.1/source";
+	static final String GROUP = "http://purl.org/pav/providedBy";
+	static final String STATE = "http://geneontology.org/lego/modelstate";
+	static final String TYPE = "http://www.w3.org/1999/02/22-rdf-syntax-ns#type";
+
+	private static final String QUERY = "SELECT ?id ?s ?p ?o WHERE { " +
+			"VALUES ?p { <"+TYPE+"> <"+SOURCE+"> <"+TITLE+"> <"+DATE+"> <"+CONTRIBUTOR+"> <"+GROUP+"> <"+STATE+"> <"+BlazegraphOntologyManager.in_taxon_uri+"> } " +
+			"GRAPH ?id { ?s ?p ?o } }";
+
+	/**
+	 * Meta data of an indexed model.
+	 */
+	public static class IndexedModel {
+		private final String id;
+		private String title = null;
+		private String date = null;
+		private String state = null;
+		private final Set<String> contributors = new HashSet<String>();
+		private final Set<String> groups = new HashSet<String>();
+		private final Set<String> taxa = new HashSet<String>();
+		private final Set<String> types = new HashSet<String>();
+		private final Set<String> sources = new HashSet<String>();
+
+		IndexedModel(String id) {
+			this.id = id;
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		public String getTitle() {
+			return title;
+		}
+
+		/**
+		 * @return latest date of the model
+		 */
+		public String getDate() {
+			return date;
+		}
+
+		/**
+		 * @return state or null
+		 */
+		public String getState() {
+			return state;
+		}
+
+		public Set<String> getContributors() {
+			return Collections.unmodifiableSet(contributors);
+		}
+
+		public Set<String> getGroups() {
+			return Collections.unmodifiableSet(groups);
+		}
+
+		boolean isSearchable() {
+			return title != null && date != null && contributors.isEmpty() == false;
+		}
+
+		void add(String subject, String predicate, Value object) {
+			String value = object.stringValue();
+			if (TYPE.equals(predicate)) {
+				if (object instanceof URI) {
+					types.add(value);
+				}
+			}
+			else if (SOURCE.equals(predicate)) {
+				if (object instanceof Literal) {
+					sources.add(value);
+				}
+			}
+			else if (id.equals(subject)) {
+				// the meta data are annotations of the model
+				if (TITLE.equals(predicate)) {
+					title = min(title, value);
+				}
+				else if (DATE.equals(predicate)) {
+					date = (date == null || value.compareTo(date) > 0) ? value : date;
+				}
+				else if (STATE.equals(predicate)) {
+					state = min(state, value);
+				}
+				else if (CONTRIBUTOR.equals(predicate)) {
+					contributors.add(value);
+				}
+				else if (GROUP.equals(predicate)) {
+					groups.add(value);
+				}
+				else if (BlazegraphOntologyManager.in_taxon_uri.equals(predicate)) {
+					if (object instanceof URI) {
+						taxa.add(value);
+					}
+				}
+			}
+		}
+
+		private static String min(String current, String value) {
+			return (current == null || value.compareTo(current) < 0) ? value : current;
+		}
+	}
+
+	/**
+	 * Constraints of a search. All constraints have to match, a null or
+	 * empty constraint matches all models.
+	 */
+	public static class Query {
+		/**
+		 * each set is the alternatives for one searched type, e.g. a term
+		 * and its sub classes
+		 */
+		public final List<Set<String>> types = new ArrayList<Set<String>>();
+		/** all sources, e.g. PMIDs */
+		public final Set<String> sources = new HashSet<String>();
+		/** all taxa */
+		public final Set<String> taxa = new HashSet<String>();
+		/** any of the ids */
+		public Set<String> ids = null;
+		/** any of the states */
+		public Set<String> states = null;
+		/** any of the contributors */
+		public Set<String> contributors = null;
+		/** any of the groups */
+		public Set<String> groups = null;
+		/** date is equal */
+		public String exactDate = null;
+		/** date is after */
+		public String dateAfter = null;
+		/** date is before */
+		public String dateBefore = null;
+	}
+
+	/**
+	 * Models of a search.
+	 */
+	public static class Result {
+		private final int total;
+		private final List<IndexedModel> models;
+		private final String nextCursor;
+
+		Result(int total, List<IndexedModel> models, String nextCursor) {
+			this.total = total;
+			this.models = models;
+			this.nextCursor = nextCursor;
+		}
+
+		/**
+		 * @return number of models matching the query, independent of offset and limit
+		 */
+		public int getTotal() {
+			return total;
+		}
+
+		/**
+		 * @return models, latest date first
+		 */
+		public List<IndexedModel> getModels() {
+			return models;
+		}
+
+		/**
+		 * @return opaque cursor for the next page or null, if there are no more models
+		 */
+		public String getNextCursor() {
+			return nextCursor;
+		}
+	}
+
+	private static final char CURSOR_SEPARATOR = '\n';
+
+	private static final Comparator<IndexedModel> LATEST_FIRST = Comparator
+			.comparing(IndexedModel::getDate)
+			.thenComparing(IndexedModel::getId)
+			.reversed();
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final Map<String, Integer> ordinals = new HashMap<String, Integer>();
+	private final List<IndexedModel> models = new ArrayList<IndexedModel>();
+	private final List<Integer> free = new ArrayList<Integer>();
+	private final BitSet searchable = new BitSet();
+
+	private final Map<String, BitSet> byType = new HashMap<String, BitSet>();
+	private final Map<String, BitSet> bySource = new HashMap<String, BitSet>();
+	private final Map<String, BitSet> byTaxon = new HashMap<String, BitSet>();
+	private final Map<String, BitSet> byState = new HashMap<String, BitSet>();
+	private final Map<String, BitSet> byContributor = new HashMap<String, BitSet>();
+	private final Map<String, BitSet> byGroup = new HashMap<String, BitSet>();
+	private final NavigableMap<String, BitSet> byDate = new TreeMap<String, BitSet>();
+
+	private final GeneTaxonIndex geneTaxa;
+
+	public ModelSearchIndex() {
+		this(null);
+	}
+
+	/**
+	 * @param geneTaxa dictionary for the taxa of the gene products, may be null
+	 */
+	public ModelSearchIndex(GeneTaxonIndex geneTaxa) {
+		this.geneTaxa = geneTaxa;
+	}
+
+	/**
+	 * Replace the index with all models in the store.
+	 *
+	 * @param connection
+	 * @throws RepositoryException
+	 * @throws MalformedQueryException
+	 * @throws QueryEvaluationException
+	 */
+	public void rebuild(RepositoryConnection connection) throws RepositoryException, MalformedQueryException, QueryEvaluationException {
+		lock.writeLock().lock();
+		try {
+			ordinals.clear();
+			models.clear();
+			free.clear();
+			searchable.clear();
+			byType.clear();
+			bySource.clear();
+			byTaxon.clear();
+			byState.clear();
+			byContributor.clear();
+			byGroup.clear();
+			byDate.clear();
+			for (IndexedModel model : read(connection, null).values()) {
+				add(model);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Read the stored model again, e.g. after a save or import. A model,
+	 * which is not stored anymore, is removed.
+	 *
+	 * @param connection
+	 * @param modelId
+	 * @throws RepositoryException
+	 * @throws MalformedQueryException
+	 * @throws QueryEvaluationException
+	 */
+	public void update(RepositoryConnection connection, String modelId) throws RepositoryException, MalformedQueryException, QueryEvaluationException {
+		// read with the lock, so the last update of a model reads the last write
+		lock.writeLock().lock();
+		try {
+			remove(modelId);
+			IndexedModel model = read(connection, modelId).get(modelId);
+			if (model != null) {
+				add(model);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @param modelId
+	 * @return true, if the model was in the index
+	 */
+	public boolean remove(String modelId) {
+		lock.writeLock().lock();
+		try {
+			Integer ordinal = ordinals.remove(modelId);
+			if (ordinal == null) {
+				return false;
+			}
+			IndexedModel model = models.set(ordinal, null);
+			searchable.clear(ordinal);
+			unpost(byType, model.types, ordinal);
+			unpost(bySource, model.sources, ordinal);
+			unpost(byTaxon, model.taxa, ordinal);
+			unpost(byContributor, model.contributors, ordinal);
+			unpost(byGroup, model.groups, ordinal);
+			unpost(byState, optional(model.state), ordinal);
+			unpost(byDate, optional(model.date), ordinal);
+			free.add(ordinal);
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return number of indexed models
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return ordinals.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @param query
+	 * @param offset number of skipped models
+	 * @param limit maximum number of models, 0 for all
+	 * @return result
+	 */
+	public Result search(Query query, int offset, int limit) {
+		return search(query, null, offset, limit);
+	}
+
+	/**
+	 * Search the models after a cursor. The models are visited in the order
+	 * of the sorted dates, starting at the date of the cursor, so the cost
+	 * of a page does not depend on the number of previous pages.
+	 *
+	 * @param query
+	 * @param cursor {@link Result#getNextCursor()} of the previous page or null for the first page
+	 * @param offset number of skipped models after the cursor
+	 * @param limit maximum number of models, 0 for all
+	 * @return result
+	 * @throws IllegalArgumentException if the cursor is invalid
+	 */
+	public Result search(Query query, String cursor, int offset, int limit) {
+		String[] after = cursor != null ? decodeCursor(cursor) : null;
+		lock.readLock().lock();
+		try {
+			BitSet matches = (BitSet) searchable.clone();
+			if (query.ids != null && query.ids.isEmpty() == false) {
+				BitSet ids = new BitSet();
+				for (String id : query.ids) {
+					Integer ordinal = ordinals.get(id);
+					if (ordinal != null) {
+						ids.set(ordinal);
+					}
+				}
+				matches.and(ids);
+			}
+			for (Set<String> alternatives : query.types) {
+				matches.and(any(byType, alternatives));
+			}
+			for (String source : query.sources) {
+				matches.and(any(bySource, Collections.singleton(source)));
+			}
+			for (String taxon : query.taxa) {
+				matches.and(any(byTaxon, Collections.singleton(taxon)));
+			}
+			if (query.states != null && query.states.isEmpty() == false) {
+				matches.and(any(byState, query.states));
+			}
+			if (query.contributors != null && query.contributors.isEmpty() == false) {
+				matches.and(any(byContributor, query.contributors));
+			}
+			if (query.groups != null && query.groups.isEmpty() == false) {
+				matches.and(any(byGroup, query.groups));
+			}
+			if (query.exactDate != null) {
+				matches.and(any(byDate, Collections.singleton(query.exactDate)));
+			}
+			else if (query.dateAfter != null || query.dateBefore != null) {
+				NavigableMap<String, BitSet> dates = byDate;
+				if (query.dateAfter != null) {
+					dates = dates.tailMap(query.dateAfter, false);
+				}
+				if (query.dateBefore != null) {
+					dates = dates.headMap(query.dateBefore, false);
+				}
+				matches.and(any(dates, dates.keySet()));
+			}
+			int total = matches.cardinality();
+			NavigableMap<String, BitSet> dates = byDate;
+			if (after != null) {
+				dates = dates.headMap(after[0], true);
+			}
+			List<IndexedModel> page = new ArrayList<IndexedModel>();
+			int skip = Math.max(0, offset);
+			boolean more = false;
+			visit: for (BitSet date : dates.descendingMap().values()) {
+				if (date.intersects(matches) == false) {
+					continue;
+				}
+				BitSet found = (BitSet) date.clone();
+				found.and(matches);
+				List<IndexedModel> sameDate = new ArrayList<IndexedModel>(found.cardinality());
+				for (int i = found.nextSetBit(0); i >= 0; i = found.nextSetBit(i + 1)) {
+					sameDate.add(models.get(i));
+				}
+				sameDate.sort(LATEST_FIRST);
+				for (IndexedModel model : sameDate) {
+					if (after != null && model.date.equals(after[0]) && model.id.compareTo(after[1]) >= 0) {
+						continue;
+					}
+					if (skip > 0) {
+						skip--;
+						continue;
+					}
+					if (limit > 0 && page.size() == limit) {
+						more = true;
+						break visit;
+					}
+					page.add(model);
+				}
+			}
+			String next = null;
+			if (more) {
+				IndexedModel last = page.get(page.size() - 1);
+				next = encodeCursor(last.date, last.id);
+			}
+			return new Result(total, page, next);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private void add(IndexedModel model) {
+		int ordinal;
+		if (free.isEmpty()) {
+			ordinal = models.size();
+			models.add(model);
+		}
+		else {
+			ordinal = free.remove(free.size() - 1);
+			models.set(ordinal, model);
+		}
+		ordinals.put(model.id, ordinal);
+		if (model.isSearchable()) {
+			searchable.set(ordinal);
+		}
+		if (geneTaxa != null) {
+			model.taxa.addAll(geneTaxa.getTaxa(model.types));
+		}
+		post(byType, model.types, ordinal);
+		post(bySource, model.sources, ordinal);
+		post(byTaxon, model.taxa, ordinal);
+		post(byContributor, model.contributors, ordinal);
+		post(byGroup, model.groups, ordinal);
+		post(byState, optional(model.state), ordinal);
+		post(byDate, optional(model.date), ordinal);
+	}
+
+	private static Map<String, IndexedModel> read(RepositoryConnection connection, String modelId) throws RepositoryException, MalformedQueryException, QueryEvaluationException {
+		Map<String, IndexedModel> read = new HashMap<String, IndexedModel>();
+		TupleQuery query = connection.prepareTupleQuery(QueryLanguage.SPARQL, QUERY);
+		if (modelId != null) {
+			query.setBinding("id", new URIImpl(modelId));
+		}
+		TupleQueryResult result = query.evaluate();
+		try {
+			while (result.hasNext()) {
+				BindingSet bindings = result.next();
+				String id = bindings.getValue("id").stringValue();
+				IndexedModel model = read.get(id);
+				if (model == null) {
+					model = new IndexedModel(id);
+					read.put(id, model);
+				}
+				model.add(bindings.getValue("s").stringValue(), bindings.getValue("p").stringValue(), bindings.getValue("o"));
+			}
+		} finally {
+			result.close();
+		}
+		return read;
+	}
+
+	/**
+	 * @param date
+	 * @param id
+	 * @return cursor for the models after the model
+	 */
+	static String encodeCursor(String date, String id) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString((date+CURSOR_SEPARATOR+id).getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @param cursor
+	 * @return date and id of the last model of the previous page
+	 * @throws IllegalArgumentException if the cursor is invalid
+	 */
+	static String[] decodeCursor(String cursor) {
+		String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+		int separator = decoded.indexOf(CURSOR_SEPARATOR);
+		if (separator < 0) {
+			throw new IllegalArgumentException("Invalid cursor: "+cursor);
+		}
+		return new String[]{decoded.substring(0, separator), decoded.substring(separator + 1)};
+	}
+
+	private static Collection<String> optional(String value) {
+		if (value == null) {
+			return Collections.emptySet();
+		}
+		return Collections.singleton(value);
+	}
+
+	private static void post(Map<String, BitSet> postings, Collection<String> keys, int ordinal) {
+		for (String key : keys) {
+			postings.computeIfAbsent(key, (k) -> new BitSet()).set(ordinal);
+		}
+	}
+
+	private static void unpost(Map<String, BitSet> postings, Collection<String> keys, int ordinal) {
+		for (String key : keys) {
+			BitSet models = postings.get(key);
+			if (models != null) {
+				models.clear(ordinal);
+				if (models.isEmpty()) {
+					postings.remove(key);
+				}
+			}
+		}
+	}
+
+	private static BitSet any(Map<String, BitSet> postings, Collection<String> keys) {
+		BitSet union = new BitSet();
+		for (String key : keys) {
+			BitSet models = postings.get(key);
+			if (models != null) {
+				union.or(models);
+			}
+		}
+		return union;
+	}
+}
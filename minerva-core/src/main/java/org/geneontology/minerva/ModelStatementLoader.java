@@ -0,0 +1,443 @@
+package org.geneontology.minerva;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.semanticweb.owlapi.model.AddAxiom;
+import org.semanticweb.owlapi.model.AddImport;
+import org.semanticweb.owlapi.model.AddOntologyAnnotation;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAnnotation;
+import org.semanticweb.owlapi.model.OWLAnnotationValue;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLClassExpression;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLLiteral;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyChange;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.model.OWLOntologyID;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.semanticweb.owlapi.model.SetOntologyID;
+import org.semanticweb.owlapi.model.parameters.Imports;
+import org.semanticweb.owlapi.vocab.OWLRDFVocabulary;
+
+/**
+ * Converts the statements of a stored model directly into OWL axioms,
+ * without the RDF parser of the OWL API.<br>
+ * GO-CAM models only use a few axiom shapes: declarations, class assertions
+ * with a named class or its complement, property assertions between named
+ * individuals, annotation assertions and axiom annotations. Properties are
+ * typed like the parser does in lax mode: by the declarations in the model
+ * and in the imported ontologies, all other properties are annotation
+ * properties.<br>
+ * For any other construct, e.g. other class expressions, anonymous
+ * individuals or imports, which are not loaded in the manager, the loader
+ * gives up and the statements have to be parsed.<br>
+ * A loader reads one model.
+ */
+public class ModelStatementLoader {
+
+	private static final Logger LOG = Logger.getLogger(ModelStatementLoader.class);
+
+	private static final IRI TYPE = OWLRDFVocabulary.RDF_TYPE.getIRI();
+	private static final IRI ONTOLOGY = OWLRDFVocabulary.OWL_ONTOLOGY.getIRI();
+	private static final IRI IMPORTS = OWLRDFVocabulary.OWL_IMPORTS.getIRI();
+	private static final IRI VERSION_IRI = OWLRDFVocabulary.OWL_VERSION_IRI.getIRI();
+	private static final IRI NAMED_INDIVIDUAL = OWLRDFVocabulary.OWL_NAMED_INDIVIDUAL.getIRI();
+	private static final IRI CLASS = OWLRDFVocabulary.OWL_CLASS.getIRI();
+	private static final IRI OBJECT_PROPERTY = OWLRDFVocabulary.OWL_OBJECT_PROPERTY.getIRI();
+	private static final IRI DATA_PROPERTY = OWLRDFVocabulary.OWL_DATA_PROPERTY.getIRI();
+	private static final IRI ANNOTATION_PROPERTY = OWLRDFVocabulary.OWL_ANNOTATION_PROPERTY.getIRI();
+	private static final IRI DATATYPE = OWLRDFVocabulary.RDFS_DATATYPE.getIRI();
+	private static final IRI COMPLEMENT_OF = OWLRDFVocabulary.OWL_COMPLEMENT_OF.getIRI();
+	private static final IRI AXIOM = OWLRDFVocabulary.OWL_AXIOM.getIRI();
+	private static final IRI ANNOTATED_SOURCE = OWLRDFVocabulary.OWL_ANNOTATED_SOURCE.getIRI();
+	private static final IRI ANNOTATED_PROPERTY = OWLRDFVocabulary.OWL_ANNOTATED_PROPERTY.getIRI();
+	private static final IRI ANNOTATED_TARGET = OWLRDFVocabulary.OWL_ANNOTATED_TARGET.getIRI();
+
+	private static enum PropertyType {
+		OBJECT, DATA, ANNOTATION
+	}
+
+	/**
+	 * A statement, which is not supported by the loader.
+	 */
+	private static class UnsupportedStatementException extends Exception {
+
+		// generated
+		private static final long serialVersionUID = -2606379924307478497L;
+
+		UnsupportedStatementException(String message) {
+			super(message, null, false, false);
+		}
+	}
+
+	private final OWLOntologyManager manager;
+	private final boolean resolveImports;
+	private final OWLDataFactory df;
+
+	private IRI ontologyIRI = null;
+	private IRI versionIRI = null;
+	private final Set<IRI> imports = new LinkedHashSet<IRI>();
+	private final Map<IRI, Set<IRI>> declarations = new HashMap<IRI, Set<IRI>>();
+	private final List<Statement> assertions = new ArrayList<Statement>();
+	private final Map<Resource, List<Statement>> blankNodes = new HashMap<Resource, List<Statement>>();
+	private final List<OWLOntology> importedOntologies = new ArrayList<OWLOntology>();
+
+	/**
+	 * @param manager manager of the new ontology
+	 * @param resolveImports if true, the imported ontologies have to be in
+	 *            the manager, their properties are used for the typing.
+	 *            Otherwise the imports are only declared.
+	 */
+	public ModelStatementLoader(OWLOntologyManager manager, boolean resolveImports) {
+		this.manager = manager;
+		this.resolveImports = resolveImports;
+		this.df = manager.getOWLDataFactory();
+	}
+
+	/**
+	 * Create the ontology for the statements of a model.
+	 *
+	 * @param statements
+	 * @return ontology or null, if the statements have to be parsed
+	 * @throws OWLOntologyCreationException
+	 */
+	public OWLOntology load(Iterable<? extends Statement> statements) throws OWLOntologyCreationException {
+		final List<OWLAnnotation> annotations = new ArrayList<OWLAnnotation>();
+		final Map<List<Object>, OWLAxiom> axioms = new HashMap<List<Object>, OWLAxiom>();
+		try {
+			for (Statement statement : statements) {
+				read(statement);
+			}
+			if (ontologyIRI == null) {
+				throw new UnsupportedStatementException("no ontology IRI");
+			}
+			for (IRI importIRI : imports) {
+				if (resolveImports) {
+					OWLOntology imported = manager.getOntology(importIRI);
+					if (imported == null) {
+						throw new UnsupportedStatementException("import is not loaded: "+importIRI);
+					}
+					importedOntologies.add(imported);
+				}
+			}
+			createAxioms(annotations, axioms);
+		} catch (UnsupportedStatementException e) {
+			LOG.debug("Model requires the RDF parser: "+e.getMessage());
+			return null;
+		}
+		final OWLOntology ontology;
+		synchronized (manager) {
+			// the shared manager is not thread safe, models may be loaded in parallel
+			ontology = manager.createOntology();
+		}
+		final List<OWLOntologyChange> changes = new ArrayList<OWLOntologyChange>();
+		changes.add(new SetOntologyID(ontology, new OWLOntologyID(ontologyIRI, versionIRI)));
+		for (IRI importIRI : imports) {
+			changes.add(new AddImport(ontology, df.getOWLImportsDeclaration(importIRI)));
+		}
+		for (OWLAnnotation annotation : annotations) {
+			changes.add(new AddOntologyAnnotation(ontology, annotation));
+		}
+		for (OWLAxiom axiom : axioms.values()) {
+			changes.add(new AddAxiom(ontology, axiom));
+		}
+		manager.applyChanges(changes);
+		return ontology;
+	}
+
+	private void read(Statement statement) throws UnsupportedStatementException {
+		final Resource subject = statement.getSubject();
+		if (subject instanceof BNode) {
+			blankNodes.computeIfAbsent(subject, (s) -> new ArrayList<Statement>()).add(statement);
+			return;
+		}
+		if ((subject instanceof URI) == false) {
+			throw new UnsupportedStatementException("subject: "+subject);
+		}
+		final IRI predicate = iri(statement.getPredicate());
+		final Value object = statement.getObject();
+		if (TYPE.equals(predicate)) {
+			if (object instanceof URI) {
+				IRI type = iri((URI) object);
+				if (ONTOLOGY.equals(type)) {
+					IRI iri = iri((URI) subject);
+					if (ontologyIRI != null && ontologyIRI.equals(iri) == false) {
+						throw new UnsupportedStatementException("several ontologies");
+					}
+					ontologyIRI = iri;
+					return;
+				}
+				if (NAMED_INDIVIDUAL.equals(type) || CLASS.equals(type) || OBJECT_PROPERTY.equals(type)
+						|| DATA_PROPERTY.equals(type) || ANNOTATION_PROPERTY.equals(type) || DATATYPE.equals(type)) {
+					declarations.computeIfAbsent(type, (t) -> new HashSet<IRI>()).add(iri((URI) subject));
+					return;
+				}
+				if (type.isReservedVocabulary()) {
+					throw new UnsupportedStatementException("type: "+type);
+				}
+			}
+			else if ((object instanceof BNode) == false) {
+				throw new UnsupportedStatementException("type: "+object);
+			}
+			assertions.add(statement);
+		}
+		else if (IMPORTS.equals(predicate) && object instanceof URI) {
+			imports.add(iri((URI) object));
+			assertions.add(statement);
+		}
+		else if (VERSION_IRI.equals(predicate) && object instanceof URI) {
+			if (versionIRI != null) {
+				throw new UnsupportedStatementException("several version IRIs");
+			}
+			versionIRI = iri((URI) object);
+			assertions.add(statement);
+		}
+		else if (predicate.isReservedVocabulary() && OWLRDFVocabulary.BUILT_IN_ANNOTATION_PROPERTY_IRIS.contains(predicate) == false) {
+			throw new UnsupportedStatementException("predicate: "+predicate);
+		}
+		else {
+			assertions.add(statement);
+		}
+	}
+
+	/**
+	 * @param annotations ontology annotations
+	 * @param axioms axioms by their triple, for the axiom annotations
+	 */
+	private void createAxioms(List<OWLAnnotation> annotations, Map<List<Object>, OWLAxiom> axioms) throws UnsupportedStatementException {
+		for (Map.Entry<IRI, Set<IRI>> entry : declarations.entrySet()) {
+			for (IRI iri : entry.getValue()) {
+				axioms.put(Arrays.asList(iri, TYPE, entry.getKey()), declaration(entry.getKey(), iri));
+			}
+		}
+		for (Statement statement : assertions) {
+			final IRI subject = iri((URI) statement.getSubject());
+			final IRI predicate = iri(statement.getPredicate());
+			final Value object = statement.getObject();
+			final List<Object> triple = Arrays.asList(subject, predicate, term(object));
+			if (subject.equals(ontologyIRI)) {
+				if (IMPORTS.equals(predicate) || VERSION_IRI.equals(predicate)) {
+					continue;
+				}
+				if (getPropertyType(predicate) != PropertyType.ANNOTATION || object instanceof BNode) {
+					throw new UnsupportedStatementException("ontology annotation: "+predicate);
+				}
+				annotations.add(df.getOWLAnnotation(df.getOWLAnnotationProperty(predicate), value(object)));
+			}
+			else if (IMPORTS.equals(predicate) || VERSION_IRI.equals(predicate)) {
+				throw new UnsupportedStatementException("predicate: "+predicate);
+			}
+			else if (TYPE.equals(predicate)) {
+				axioms.put(triple, df.getOWLClassAssertionAxiom(classExpression(object), df.getOWLNamedIndividual(subject)));
+			}
+			else if (object instanceof BNode) {
+				throw new UnsupportedStatementException("anonymous individual: "+object);
+			}
+			else {
+				switch (getPropertyType(predicate)) {
+				case OBJECT:
+					if ((object instanceof URI) == false) {
+						throw new UnsupportedStatementException("object property with literal: "+predicate);
+					}
+					axioms.put(triple, df.getOWLObjectPropertyAssertionAxiom(df.getOWLObjectProperty(predicate),
+							df.getOWLNamedIndividual(subject), df.getOWLNamedIndividual(iri((URI) object))));
+					break;
+				case DATA:
+					if ((object instanceof Literal) == false) {
+						throw new UnsupportedStatementException("data property with IRI: "+predicate);
+					}
+					axioms.put(triple, df.getOWLDataPropertyAssertionAxiom(df.getOWLDataProperty(predicate),
+							df.getOWLNamedIndividual(subject), literal((Literal) object)));
+					break;
+				default:
+					axioms.put(triple, df.getOWLAnnotationAssertionAxiom(df.getOWLAnnotationProperty(predicate), subject, value(object)));
+				}
+			}
+		}
+		annotateAxioms(axioms);
+	}
+
+	/**
+	 * Replace the axioms of the reified triples with the annotated axioms.
+	 * All blank nodes, which are not complement classes, have to be axiom
+	 * annotations.
+	 */
+	private void annotateAxioms(Map<List<Object>, OWLAxiom> axioms) throws UnsupportedStatementException {
+		final Set<List<Object>> annotated = new HashSet<List<Object>>();
+		for (Map.Entry<Resource, List<Statement>> entry : blankNodes.entrySet()) {
+			URI source = null;
+			URI property = null;
+			Value target = null;
+			boolean isAxiom = false;
+			boolean isComplement = false;
+			final Set<OWLAnnotation> annotations = new HashSet<OWLAnnotation>();
+			for (Statement statement : entry.getValue()) {
+				final IRI predicate = iri(statement.getPredicate());
+				final Value object = statement.getObject();
+				if (TYPE.equals(predicate) && object instanceof URI && AXIOM.equals(iri((URI) object))) {
+					isAxiom = true;
+				}
+				else if (TYPE.equals(predicate) && object instanceof URI && CLASS.equals(iri((URI) object))) {
+					isComplement = true;
+				}
+				else if (ANNOTATED_SOURCE.equals(predicate) && source == null && object instanceof URI) {
+					source = (URI) object;
+				}
+				else if (ANNOTATED_PROPERTY.equals(predicate) && property == null && object instanceof URI) {
+					property = (URI) object;
+				}
+				else if (ANNOTATED_TARGET.equals(predicate) && target == null) {
+					target = object;
+				}
+				else if (COMPLEMENT_OF.equals(predicate)) {
+					// read with the class assertion
+				}
+				else if (predicate.isReservedVocabulary() == false || OWLRDFVocabulary.BUILT_IN_ANNOTATION_PROPERTY_IRIS.contains(predicate)) {
+					if (getPropertyType(predicate) != PropertyType.ANNOTATION || object instanceof BNode) {
+						throw new UnsupportedStatementException("axiom annotation: "+predicate);
+					}
+					annotations.add(df.getOWLAnnotation(df.getOWLAnnotationProperty(predicate), value(object)));
+				}
+				else {
+					throw new UnsupportedStatementException("blank node predicate: "+predicate);
+				}
+			}
+			if (isComplement && isAxiom == false && annotations.isEmpty() && source == null && property == null && target == null) {
+				continue;
+			}
+			if (isAxiom == false || isComplement || source == null || property == null || target == null) {
+				throw new UnsupportedStatementException("blank node: "+entry.getKey());
+			}
+			final List<Object> triple = Arrays.asList(iri(source), iri(property), term(target));
+			final OWLAxiom axiom = axioms.get(triple);
+			if (axiom == null || annotated.add(triple) == false) {
+				throw new UnsupportedStatementException("reified triple: "+triple);
+			}
+			axioms.put(triple, axiom.getAnnotatedAxiom(annotations));
+		}
+	}
+
+	private OWLClassExpression classExpression(Value object) throws UnsupportedStatementException {
+		if (object instanceof URI) {
+			return df.getOWLClass(iri((URI) object));
+		}
+		// only the complement of a named class: [ a owl:Class ; owl:complementOf C ]
+		final List<Statement> statements = blankNodes.get(object);
+		if (statements != null && statements.size() == 2) {
+			URI complementOf = null;
+			boolean isClass = false;
+			for (Statement statement : statements) {
+				final IRI predicate = iri(statement.getPredicate());
+				if (COMPLEMENT_OF.equals(predicate) && statement.getObject() instanceof URI) {
+					complementOf = (URI) statement.getObject();
+				}
+				else if (TYPE.equals(predicate) && statement.getObject() instanceof URI && CLASS.equals(iri((URI) statement.getObject()))) {
+					isClass = true;
+				}
+			}
+			if (isClass && complementOf != null) {
+				return df.getOWLObjectComplementOf(df.getOWLClass(iri(complementOf)));
+			}
+		}
+		throw new UnsupportedStatementException("class expression: "+object);
+	}
+
+	private OWLAxiom declaration(IRI type, IRI iri) {
+		if (NAMED_INDIVIDUAL.equals(type)) {
+			return df.getOWLDeclarationAxiom(df.getOWLNamedIndividual(iri));
+		}
+		if (CLASS.equals(type)) {
+			return df.getOWLDeclarationAxiom(df.getOWLClass(iri));
+		}
+		if (OBJECT_PROPERTY.equals(type)) {
+			return df.getOWLDeclarationAxiom(df.getOWLObjectProperty(iri));
+		}
+		if (DATA_PROPERTY.equals(type)) {
+			return df.getOWLDeclarationAxiom(df.getOWLDataProperty(iri));
+		}
+		if (ANNOTATION_PROPERTY.equals(type)) {
+			return df.getOWLDeclarationAxiom(df.getOWLAnnotationProperty(iri));
+		}
+		return df.getOWLDeclarationAxiom(df.getOWLDatatype(iri));
+	}
+
+	/**
+	 * Type of a property by its declarations, undeclared properties are
+	 * annotation properties, like the parser in lax mode.
+	 */
+	private PropertyType getPropertyType(IRI property) throws UnsupportedStatementException {
+		if (OWLRDFVocabulary.BUILT_IN_ANNOTATION_PROPERTY_IRIS.contains(property)) {
+			return PropertyType.ANNOTATION;
+		}
+		boolean isObject = isDeclared(OBJECT_PROPERTY, property);
+		boolean isData = isDeclared(DATA_PROPERTY, property);
+		boolean isAnnotation = isDeclared(ANNOTATION_PROPERTY, property);
+		for (OWLOntology imported : importedOntologies) {
+			isObject |= imported.containsObjectPropertyInSignature(property, Imports.INCLUDED);
+			isData |= imported.containsDataPropertyInSignature(property, Imports.INCLUDED);
+			isAnnotation |= imported.containsAnnotationPropertyInSignature(property, Imports.INCLUDED);
+		}
+		if ((isObject ? 1 : 0) + (isData ? 1 : 0) + (isAnnotation ? 1 : 0) > 1) {
+			throw new UnsupportedStatementException("ambiguous property: "+property);
+		}
+		if (isObject) {
+			return PropertyType.OBJECT;
+		}
+		if (isData) {
+			return PropertyType.DATA;
+		}
+		return PropertyType.ANNOTATION;
+	}
+
+	private boolean isDeclared(IRI type, IRI iri) {
+		Set<IRI> declared = declarations.get(type);
+		return declared != null && declared.contains(iri);
+	}
+
+	private OWLAnnotationValue value(Value object) {
+		if (object instanceof Literal) {
+			return literal((Literal) object);
+		}
+		return iri((URI) object);
+	}
+
+	private OWLLiteral literal(Literal literal) {
+		if (literal.getDatatype() != null) {
+			return df.getOWLLiteral(literal.getLabel(), df.getOWLDatatype(iri(literal.getDatatype())));
+		}
+		if (literal.getLanguage() != null) {
+			return df.getOWLLiteral(literal.getLabel(), literal.getLanguage());
+		}
+		return df.getOWLLiteral(literal.getLabel(), "");
+	}
+
+	private static IRI iri(URI uri) {
+		return IRI.create(uri.stringValue());
+	}
+
+	/**
+	 * @return object of a triple, comparable across value implementations
+	 */
+	private Object term(Value object) {
+		if (object instanceof BNode) {
+			return object;
+		}
+		return value(object);
+	}
+}
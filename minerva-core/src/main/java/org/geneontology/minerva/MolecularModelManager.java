@@ -270,7 +270,7 @@ public class MolecularModelManager<METADATA> extends BlazegraphMolecularModelMan
 	 * @return true, if the model was removed
 	 */
 	public boolean deleteModel(IRI modelId) {
-		ModelContainer model = modelMap.remove(modelId);
+		ModelContainer model = modelCache.remove(modelId);
 		if (model != null) {
 			model.dispose();
 			return true;
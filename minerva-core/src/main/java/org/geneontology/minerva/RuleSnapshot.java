@@ -0,0 +1,195 @@
+package org.geneontology.minerva;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.log4j.Logger;
+import org.geneontology.jena.OWLtoRules;
+import org.geneontology.rules.engine.Rule;
+import org.geneontology.rules.engine.RuleEngine;
+import org.geneontology.rules.util.Bridge;
+import org.semanticweb.owlapi.model.AxiomType;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.parameters.Imports;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.primitives.Longs;
+
+import scala.collection.JavaConverters;
+
+/**
+ * Arachne rules translated from a tbox, stored in a file. Translating the
+ * rules of the complete go-lego tbox takes a large part of the start up, the
+ * snapshot is used instead as long as the tbox is unchanged.<br>
+ * The snapshot is keyed by a hash of the logical axioms and declarations of
+ * the tbox, the only axioms used for the translation. It also records the
+ * version of the file format and of the Scala library, the rules are
+ * serialized Scala objects. A snapshot which doesn't match is ignored.<br>
+ * The Rete network of the {@link RuleEngine} can't be serialized, it is
+ * still compiled from the rules at start up.
+ */
+public class RuleSnapshot {
+
+	private static final Logger LOG = Logger.getLogger(RuleSnapshot.class);
+
+	/**
+	 * Increment with any change of the file format or the translation of the rules.
+	 */
+	static final int FORMAT_VERSION = 1;
+
+	private RuleSnapshot() {
+		// no instances
+	}
+
+	/**
+	 * Create the rule engine for the tbox. The rules are read from the
+	 * snapshot, if it matches the tbox. Otherwise they are translated and
+	 * the snapshot is replaced.
+	 *
+	 * @param tbox
+	 * @param snapshot file or null, to always translate the rules
+	 * @return rule engine
+	 */
+	public static RuleEngine createRuleEngine(OWLOntology tbox, File snapshot) {
+		List<Rule> rules = null;
+		if (snapshot != null) {
+			String key = createKey(tbox);
+			rules = load(snapshot, key);
+			if (rules == null) {
+				rules = translate(tbox);
+				try {
+					save(snapshot, key, rules);
+					LOG.info("Wrote "+rules.size()+" rules to snapshot: "+snapshot);
+				} catch (IOException e) {
+					LOG.warn("Could not write rule snapshot: "+snapshot, e);
+				}
+			}
+		}
+		else {
+			rules = translate(tbox);
+		}
+		return new RuleEngine(JavaConverters.asScalaBufferConverter(rules).asScala(), true);
+	}
+
+	/**
+	 * Translate the tbox and write the rules to the snapshot file, e.g. to
+	 * prepare the start up of the server with a new tbox.
+	 *
+	 * @param tbox
+	 * @param snapshot
+	 * @return number of rules
+	 * @throws IOException
+	 */
+	public static int write(OWLOntology tbox, File snapshot) throws IOException {
+		List<Rule> rules = translate(tbox);
+		save(snapshot, createKey(tbox), rules);
+		return rules.size();
+	}
+
+	/**
+	 * @param tbox
+	 * @return rules for the tbox, including the rules for indirect types
+	 */
+	static List<Rule> translate(OWLOntology tbox) {
+		Set<org.apache.jena.reasoner.rulesys.Rule> rules = new HashSet<>();
+		rules.addAll(JavaConverters.setAsJavaSetConverter(OWLtoRules.translate(tbox, Imports.INCLUDED, true, true, true, true)).asJava());
+		rules.addAll(JavaConverters.setAsJavaSetConverter(OWLtoRules.indirectRules(tbox)).asJava());
+		return new ArrayList<Rule>(JavaConverters.asJavaCollectionConverter(Bridge.rulesFromJena(JavaConverters.asScalaSetConverter(rules).asScala())).asJavaCollection());
+	}
+
+	/**
+	 * Create a key for the axioms, which are used for the translation. The
+	 * hashes of the axioms are summed up, the key doesn't depend on the order
+	 * of the axioms.
+	 *
+	 * @param tbox
+	 * @return key
+	 */
+	static String createKey(OWLOntology tbox) {
+		HashFunction hashFunction = Hashing.murmur3_128();
+		long high = 0;
+		long low = 0;
+		long count = 0;
+		for (OWLOntology ont : tbox.getImportsClosure()) {
+			for (OWLAxiom ax : ont.getAxioms()) {
+				if (ax.isLogicalAxiom() || ax.isOfType(AxiomType.DECLARATION)) {
+					byte[] hash = hashFunction.hashString(ax.getAxiomWithoutAnnotations().toString(), StandardCharsets.UTF_8).asBytes();
+					high += Longs.fromBytes(hash[0], hash[1], hash[2], hash[3], hash[4], hash[5], hash[6], hash[7]);
+					low += Longs.fromBytes(hash[8], hash[9], hash[10], hash[11], hash[12], hash[13], hash[14], hash[15]);
+					count += 1;
+				}
+			}
+		}
+		return String.format("%016x%016x-%d", high, low, count);
+	}
+
+	/**
+	 * @param snapshot
+	 * @param key
+	 * @return rules or null, if there is no snapshot for the key
+	 */
+	@SuppressWarnings("unchecked")
+	static List<Rule> load(File snapshot, String key) {
+		if (snapshot.isFile() == false) {
+			LOG.info("No rule snapshot found: "+snapshot);
+			return null;
+		}
+		try (ObjectInputStream in = new ObjectInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(snapshot))))) {
+			int version = in.readInt();
+			String snapshotKey = in.readUTF();
+			String scalaVersion = in.readUTF();
+			if (version != FORMAT_VERSION || key.equals(snapshotKey) == false
+					|| scala.util.Properties.versionNumberString().equals(scalaVersion) == false) {
+				LOG.info("Rule snapshot doesn't match the tbox, translating the rules: "+snapshot);
+				return null;
+			}
+			List<Rule> rules = (List<Rule>) in.readObject();
+			LOG.info("Loaded "+rules.size()+" rules from snapshot: "+snapshot);
+			return rules;
+		} catch (IOException | ClassNotFoundException | ClassCastException e) {
+			LOG.warn("Could not read rule snapshot, translating the rules: "+snapshot, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Write the rules to a temporary file first, a concurrent start up
+	 * never reads a partial snapshot.
+	 *
+	 * @param snapshot
+	 * @param key
+	 * @param rules
+	 * @throws IOException
+	 */
+	static void save(File snapshot, String key, List<Rule> rules) throws IOException {
+		File parent = snapshot.getAbsoluteFile().getParentFile();
+		if (parent != null) {
+			parent.mkdirs();
+		}
+		File tmp = new File(parent, snapshot.getName()+".tmp");
+		try (ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(tmp))))) {
+			out.writeInt(FORMAT_VERSION);
+			out.writeUTF(key);
+			out.writeUTF(scala.util.Properties.versionNumberString());
+			out.writeObject(new ArrayList<Rule>(rules));
+		}
+		Files.move(tmp.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+}
@@ -0,0 +1,383 @@
+package org.geneontology.minerva;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.model.vocabulary.OWL;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.model.vocabulary.RDFS;
+import org.openrdf.model.vocabulary.XMLSchema;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.repository.RepositoryResult;
+import org.openrdf.rio.helpers.StatementCollector;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.AddOntologyAnnotation;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAnnotation;
+import org.semanticweb.owlapi.model.OWLAnnotationAssertionAxiom;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyChange;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.semanticweb.owlapi.model.parameters.AxiomAnnotations;
+import org.semanticweb.owlapi.model.parameters.Imports;
+import org.semanticweb.owlapi.rio.RioRenderer;
+
+import com.google.common.base.Optional;
+
+/**
+ * Translation of a {@link ModelDelta} into statements to add to and remove
+ * from the named graph of a model.<br>
+ * The changed axioms are rendered with the same {@link RioRenderer} as the full
+ * model, so the result is the same as clearing the graph and writing the whole
+ * model. Axiom annotations are stored as reified blank nodes, for removal they
+ * are matched against the stored blank nodes by their statements.
+ * Changes involving other blank nodes (anonymous individuals, class expressions
+ * or nested annotations) can't be matched, for these {@link #create(OWLOntology, ModelDelta)}
+ * returns null.
+ */
+class StatementDelta {
+
+	private static final URI ANNOTATED_SOURCE = new URIImpl(OWL.NAMESPACE + "annotatedSource");
+	private static final Set<URI> ENTITY_TYPES = new HashSet<URI>(Arrays.asList(OWL.CLASS,
+			OWL.OBJECTPROPERTY, OWL.DATATYPEPROPERTY, OWL.ANNOTATIONPROPERTY, RDFS.DATATYPE,
+			new URIImpl(OWL.NAMESPACE + "NamedIndividual")));
+
+	// changed axioms are rendered in small temporary ontologies
+	private static final OWLOntologyManager RENDER_MANAGER = OWLManager.createOWLOntologyManager();
+	private static final AtomicLong RENDER_COUNT = new AtomicLong(0L);
+	private static final ValueFactory VALUES = ValueFactoryImpl.getInstance();
+
+	private final List<Statement> additions;
+	private final List<Removal> removals;
+
+	private StatementDelta(List<Statement> additions, List<Removal> removals) {
+		this.additions = additions;
+		this.removals = removals;
+	}
+
+	/**
+	 * Statements of a removed axiom or ontology annotation.
+	 */
+	private static class Removal {
+		// ground statements, which must be in the store
+		final List<Statement> required = new ArrayList<Statement>();
+		// entity declarations, which may have been omitted in the store
+		final List<Statement> optional = new ArrayList<Statement>();
+		// reified axiom annotations: statements grouped by blank node
+		final Collection<List<Statement>> reifications;
+
+		Removal(List<Statement> statements, boolean isMainTripleRetained, OWLOntology current) {
+			Map<Resource, List<Statement>> groups = new HashMap<Resource, List<Statement>>();
+			for (Statement s : statements) {
+				if (s.getSubject() instanceof BNode) {
+					List<Statement> group = groups.get(s.getSubject());
+					if (group == null) {
+						group = new ArrayList<Statement>();
+						groups.put(s.getSubject(), group);
+					}
+					group.add(s);
+				}
+				else if (isEntityDeclaration(s)) {
+					// the declaration is rendered as long as the entity is used in the model
+					if (isReferenced(IRI.create(s.getSubject().stringValue()), current) == false) {
+						optional.add(s);
+					}
+				}
+				else if (isMainTripleRetained == false) {
+					required.add(s);
+				}
+			}
+			reifications = groups.values();
+		}
+
+		boolean apply(RepositoryConnection connection, Resource graph) throws RepositoryException {
+			for (Statement s : required) {
+				List<Statement> stored = find(connection, s.getSubject(), s.getPredicate(), s.getObject(), graph);
+				if (stored.isEmpty()) {
+					return false;
+				}
+				connection.remove(stored, graph);
+			}
+			for (Statement s : optional) {
+				connection.remove(find(connection, s.getSubject(), s.getPredicate(), s.getObject(), graph), graph);
+			}
+			for (List<Statement> reification : reifications) {
+				List<Statement> stored = findReification(connection, reification, graph);
+				if (stored.isEmpty()) {
+					return false;
+				}
+				connection.remove(stored, graph);
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * @param current the current state of the model
+	 * @param delta changes of the model since it was last written
+	 * @return statement delta or null, if the changes can't be expressed as statement delta
+	 * @throws OWLOntologyCreationException
+	 * @throws IOException
+	 */
+	static StatementDelta create(OWLOntology current, ModelDelta delta) throws OWLOntologyCreationException, IOException {
+		Optional<IRI> ontologyIRI = current.getOntologyID().getOntologyIRI();
+		if (ontologyIRI.isPresent() == false) {
+			return null;
+		}
+		final URI subject = new URIImpl(ontologyIRI.get().toString());
+		List<Statement> additions = render(subject, delta.getAddedAxioms(), delta.getAddedAnnotations());
+		if (additions == null) {
+			return null;
+		}
+		List<Removal> removals = new ArrayList<Removal>();
+		for (OWLAxiom axiom : delta.getRemovedAxioms()) {
+			List<Statement> statements = render(subject, Collections.singleton(axiom), Collections.<OWLAnnotation>emptySet());
+			if (statements == null) {
+				return null;
+			}
+			// the same axiom with different axiom annotations is rendered with the same main triple
+			boolean isRetained = current.containsAxiom(axiom, Imports.EXCLUDED, AxiomAnnotations.IGNORE_AXIOM_ANNOTATIONS);
+			if (isRetained == false && axiom instanceof OWLAnnotationAssertionAxiom) {
+				OWLAnnotationAssertionAxiom assertion = (OWLAnnotationAssertionAxiom) axiom;
+				isRetained = ontologyIRI.get().equals(assertion.getSubject())
+						&& current.getAnnotations().contains(assertion.getAnnotation());
+			}
+			removals.add(new Removal(statements, isRetained, current));
+		}
+		final OWLDataFactory f = current.getOWLOntologyManager().getOWLDataFactory();
+		for (OWLAnnotation annotation : delta.getRemovedAnnotations()) {
+			List<Statement> statements = render(subject, Collections.<OWLAxiom>emptySet(), Collections.singleton(annotation));
+			if (statements == null) {
+				return null;
+			}
+			// an annotation assertion on the model renders the same triple as an ontology annotation
+			OWLAxiom assertion = f.getOWLAnnotationAssertionAxiom(ontologyIRI.get(), annotation);
+			boolean isRetained = current.containsAxiom(assertion, Imports.EXCLUDED, AxiomAnnotations.IGNORE_AXIOM_ANNOTATIONS);
+			removals.add(new Removal(statements, isRetained, current));
+		}
+		return new StatementDelta(additions, removals);
+	}
+
+	/**
+	 * Apply the delta to the named graph. Must be called in an open
+	 * transaction, as the delta may be applied only partially.
+	 *
+	 * @param connection
+	 * @param graph
+	 * @return true, if the delta was applied; false, if the stored statements
+	 *  did not match the expected state and the graph needs to be rewritten.
+	 * @throws RepositoryException
+	 */
+	boolean apply(RepositoryConnection connection, Resource graph) throws RepositoryException {
+		for (Removal removal : removals) {
+			if (removal.apply(connection, graph) == false) {
+				return false;
+			}
+		}
+		if (additions.isEmpty() == false) {
+			// fresh blank nodes, the rendered ids are only unique within the rendering
+			ValueFactory factory = connection.getValueFactory();
+			Map<BNode, BNode> bnodes = new HashMap<BNode, BNode>();
+			List<Statement> statements = new ArrayList<Statement>(additions.size());
+			for (Statement s : additions) {
+				Resource subject = s.getSubject();
+				if (subject instanceof BNode) {
+					BNode bnode = bnodes.get(subject);
+					if (bnode == null) {
+						bnode = factory.createBNode();
+						bnodes.put((BNode) subject, bnode);
+					}
+					subject = bnode;
+				}
+				statements.add(factory.createStatement(subject, s.getPredicate(), s.getObject()));
+			}
+			connection.add(statements, graph);
+		}
+		return true;
+	}
+
+	int getAdditionCount() {
+		return additions.size();
+	}
+
+	int getRemovalCount() {
+		return removals.size();
+	}
+
+	/**
+	 * Render axioms and ontology annotations with the given ontology as subject.
+	 *
+	 * @return statements without the ontology header, or null if the statements contain unsupported blank nodes
+	 */
+	private static List<Statement> render(URI ontology, Collection<OWLAxiom> axioms, Collection<OWLAnnotation> annotations)
+			throws OWLOntologyCreationException, IOException {
+		if (axioms.isEmpty() && annotations.isEmpty()) {
+			return Collections.emptyList();
+		}
+		final IRI tempIRI = IRI.create("urn:minerva:delta:" + RENDER_COUNT.incrementAndGet());
+		OWLOntology temp;
+		synchronized (RENDER_MANAGER) {
+			temp = RENDER_MANAGER.createOntology(tempIRI);
+			List<OWLOntologyChange> changes = new ArrayList<OWLOntologyChange>(annotations.size());
+			for (OWLAnnotation annotation : annotations) {
+				changes.add(new AddOntologyAnnotation(temp, annotation));
+			}
+			if (changes.isEmpty() == false) {
+				RENDER_MANAGER.applyChanges(changes);
+			}
+			RENDER_MANAGER.addAxioms(temp, new HashSet<OWLAxiom>(axioms));
+		}
+		try {
+			StatementCollector collector = new StatementCollector();
+			RioRenderer renderer = new RioRenderer(temp, collector, null);
+			renderer.render();
+			final URI tempURI = new URIImpl(tempIRI.toString());
+			List<Statement> statements = new ArrayList<Statement>();
+			for (Statement s : collector.getStatements()) {
+				if (s.getObject() instanceof BNode) {
+					return null;
+				}
+				if (tempURI.equals(s.getSubject())) {
+					if (RDF.TYPE.equals(s.getPredicate()) && OWL.ONTOLOGY.equals(s.getObject())) {
+						// header, already stored
+						continue;
+					}
+					s = VALUES.createStatement(ontology, s.getPredicate(), s.getObject());
+				}
+				statements.add(s);
+			}
+			return statements;
+		} finally {
+			synchronized (RENDER_MANAGER) {
+				RENDER_MANAGER.removeOntology(temp);
+			}
+		}
+	}
+
+	private static boolean isEntityDeclaration(Statement s) {
+		return s.getSubject() instanceof URI && RDF.TYPE.equals(s.getPredicate()) && ENTITY_TYPES.contains(s.getObject());
+	}
+
+	private static boolean isReferenced(IRI iri, OWLOntology current) {
+		if (current.containsEntityInSignature(iri, Imports.EXCLUDED)) {
+			return true;
+		}
+		for (OWLAnnotation annotation : current.getAnnotations()) {
+			if (iri.equals(annotation.getProperty().getIRI())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Find stored statements, literals are compared by lexical form, language and datatype.
+	 */
+	private static List<Statement> find(RepositoryConnection connection, Resource s, URI p, Value o, Resource graph) throws RepositoryException {
+		List<Statement> found = new ArrayList<Statement>(1);
+		RepositoryResult<Statement> statements = connection.getStatements(s, p, o instanceof Literal ? null : o, false, graph);
+		try {
+			String key = key(o);
+			while (statements.hasNext()) {
+				Statement statement = statements.next();
+				if (key.equals(key(statement.getObject()))) {
+					found.add(statement);
+				}
+			}
+		} finally {
+			statements.close();
+		}
+		return found;
+	}
+
+	/**
+	 * Find the stored blank nodes with the same statements as the rendered reification.
+	 *
+	 * @return all statements of the matching blank nodes
+	 */
+	private static List<Statement> findReification(RepositoryConnection connection, List<Statement> reification, Resource graph) throws RepositoryException {
+		Set<String> expected = new HashSet<String>();
+		Value source = null;
+		for (Statement s : reification) {
+			expected.add(key(s.getPredicate()) + " " + key(s.getObject()));
+			if (ANNOTATED_SOURCE.equals(s.getPredicate())) {
+				source = s.getObject();
+			}
+		}
+		List<Statement> found = new ArrayList<Statement>();
+		if (source instanceof Resource == false) {
+			return found;
+		}
+		Set<Resource> candidates = new HashSet<Resource>();
+		RepositoryResult<Statement> sources = connection.getStatements(null, ANNOTATED_SOURCE, source, false, graph);
+		try {
+			while (sources.hasNext()) {
+				Resource candidate = sources.next().getSubject();
+				if (candidate instanceof BNode) {
+					candidates.add(candidate);
+				}
+			}
+		} finally {
+			sources.close();
+		}
+		for (Resource candidate : candidates) {
+			List<Statement> stored = new ArrayList<Statement>();
+			Set<String> actual = new HashSet<String>();
+			RepositoryResult<Statement> statements = connection.getStatements(candidate, null, null, false, graph);
+			try {
+				while (statements.hasNext()) {
+					Statement s = statements.next();
+					stored.add(s);
+					actual.add(key(s.getPredicate()) + " " + key(s.getObject()));
+				}
+			} finally {
+				statements.close();
+			}
+			if (expected.equals(actual)) {
+				found.addAll(stored);
+			}
+		}
+		return found;
+	}
+
+	private static String key(Value value) {
+		if (value instanceof Literal) {
+			Literal literal = (Literal) value;
+			if (literal.getLanguage() != null) {
+				return "\"" + literal.getLabel() + "\"@" + literal.getLanguage().toLowerCase();
+			}
+			URI datatype = literal.getDatatype();
+			if (datatype == null) {
+				// plain literals are strings
+				datatype = XMLSchema.STRING;
+			}
+			return "\"" + literal.getLabel() + "\"^^" + datatype.stringValue();
+		}
+		if (value instanceof BNode) {
+			return "_:";
+		}
+		return "<" + value.stringValue() + ">";
+	}
+}
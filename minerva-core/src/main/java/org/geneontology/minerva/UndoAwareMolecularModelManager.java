@@ -311,6 +311,14 @@ public class UndoAwareMolecularModelManager extends MolecularModelManager<UndoMe
 		}
 	}
 	
+	@Override
+	protected void modelEvicted(IRI modelId) {
+		// the recorded changes refer to the disposed ontology, they can't be replayed on a reloaded model
+		synchronized (allChanges) {
+			allChanges.remove(modelId);
+		}
+	}
+	
 	protected void applyChanges(ModelContainer model, List<OWLOntologyChange> changes) {
 		model.applyChanges(changes);
 	}
@@ -0,0 +1,97 @@
+package org.geneontology.minerva.curie;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Immutable character trie over the long (IRI) prefixes of a CURIE mapping,
+ * for longest prefix matching in a single pass over the IRI.
+ */
+class CuriePrefixTrie {
+
+	private static final char[] NO_KEYS = new char[0];
+	private static final Node[] NO_CHILDREN = new Node[0];
+
+	private static class Node {
+		// sorted, for binary search
+		char[] keys = NO_KEYS;
+		Node[] children = NO_CHILDREN;
+		// mapping ending at this node
+		Match match = null;
+
+		Node get(char c) {
+			int pos = Arrays.binarySearch(keys, c);
+			return pos >= 0 ? children[pos] : null;
+		}
+
+		Node getOrAdd(char c) {
+			int pos = Arrays.binarySearch(keys, c);
+			if (pos >= 0) {
+				return children[pos];
+			}
+			int insert = -(pos + 1);
+			char[] newKeys = new char[keys.length + 1];
+			Node[] newChildren = new Node[children.length + 1];
+			System.arraycopy(keys, 0, newKeys, 0, insert);
+			System.arraycopy(children, 0, newChildren, 0, insert);
+			System.arraycopy(keys, insert, newKeys, insert + 1, keys.length - insert);
+			System.arraycopy(children, insert, newChildren, insert + 1, children.length - insert);
+			Node child = new Node();
+			newKeys[insert] = c;
+			newChildren[insert] = child;
+			keys = newKeys;
+			children = newChildren;
+			return child;
+		}
+	}
+
+	/**
+	 * Result of a prefix match.
+	 */
+	static class Match {
+		final String longPrefix;
+		final String shortPrefix;
+
+		Match(String longPrefix, String shortPrefix) {
+			this.longPrefix = longPrefix;
+			this.shortPrefix = shortPrefix;
+		}
+	}
+
+	private final Node root = new Node();
+
+	/**
+	 * @param curieMap short prefix to long prefix
+	 */
+	CuriePrefixTrie(Map<String, String> curieMap) {
+		for (Entry<String, String> e : curieMap.entrySet()) {
+			String longPrefix = e.getValue();
+			Node node = root;
+			for (int i = 0; i < longPrefix.length(); i++) {
+				node = node.getOrAdd(longPrefix.charAt(i));
+			}
+			node.match = new Match(longPrefix, e.getKey());
+		}
+	}
+
+	/**
+	 * Find the longest prefix, which is shorter than the given IRI.
+	 *
+	 * @param iri
+	 * @return match or null
+	 */
+	Match longestMatch(String iri) {
+		Node node = root;
+		Match found = null;
+		// a prefix must leave at least one character for the local id
+		final int max = iri.length() - 1;
+		for (int i = 0; i < max && node != null; i++) {
+			node = node.get(iri.charAt(i));
+			if (node != null && node.match != null) {
+				found = node.match;
+			}
+		}
+		return found;
+	}
+}
@@ -3,7 +3,7 @@ package org.geneontology.minerva.curie;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang3.StringUtils;
 import org.geneontology.minerva.MolecularModelManager.UnknownIdentifierException;
@@ -18,7 +18,12 @@ import com.google.common.collect.ImmutableBiMap;
 
 public class MappedCurieHandler implements CurieHandler {
 
+	private static final int RECENT_CACHE_SIZE = 10000;
+
 	private final ImmutableBiMap<String, String> curieMap;
+	// longest prefix match for getCuri
+	private final CuriePrefixTrie prefixes;
+	private final ConcurrentHashMap<String, String> recent = new ConcurrentHashMap<String, String>();
 
 	public MappedCurieHandler(CurieMappings...mappings) {
 		this(merge(mappings));
@@ -43,6 +48,7 @@ public class MappedCurieHandler implements CurieHandler {
 	public MappedCurieHandler(Map<String, String> curieMap) {
 		super();
 		this.curieMap = ImmutableBiMap.copyOf(curieMap);
+		this.prefixes = new CuriePrefixTrie(this.curieMap);
 	}
 
 	@Override
@@ -73,24 +79,20 @@ public class MappedCurieHandler implements CurieHandler {
 	@Override
 	public String getCuri(IRI iri) {
 		String iriString = iri.toString();
-		String curi = iriString;
-		
-		String longPrefix = null;
-		String shortPrefix = null;
-		// iterate over inverted map, find longest prefix match
-		for (Entry<String, String> e : curieMap.inverse().entrySet()) {
-			String currentLongPrefix = e.getKey();
-			int currentLongprefixLength = currentLongPrefix.length();
-			if (iriString.startsWith(currentLongPrefix) && 
-					iriString.length() > currentLongprefixLength) {
-				if (longPrefix == null || currentLongprefixLength > longPrefix.length()) {
-					longPrefix = currentLongPrefix;
-					shortPrefix = e.getValue();
-				}
+		String curi = recent.get(iriString);
+		if (curi == null) {
+			CuriePrefixTrie.Match match = prefixes.longestMatch(iriString);
+			if (match != null) {
+				curi = match.shortPrefix + ":" + iriString.substring(match.longPrefix.length());
 			}
-		}
-		if (longPrefix != null) {
-			return shortPrefix + ":" + iriString.substring(longPrefix.length());
+			else {
+				curi = iriString;
+			}
+			if (recent.size() >= RECENT_CACHE_SIZE) {
+				// cheap bound, the cache only has to cover the IRIs of the current requests
+				recent.clear();
+			}
+			recent.put(iriString, curi);
 		}
 		return curi;
 	}
@@ -3,15 +3,18 @@
  */
 package org.geneontology.minerva.util;
 
-import java.io.IOException;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
+import java.util.Map;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Statement;
+import org.geneontology.jena.SesameJena;
 import org.semanticweb.owlapi.formats.TurtleDocumentFormat;
+import org.semanticweb.owlapi.model.OWLDocumentFormat;
 import org.semanticweb.owlapi.model.OWLOntology;
-import org.semanticweb.owlapi.model.OWLOntologyStorageException;
+
+import scala.collection.JavaConverters;
 
 /**
  * @author bgood
@@ -26,22 +29,29 @@ public class JenaOwlTool {
 		// TODO Auto-generated constructor stub
 	}
 
+	/**
+	 * Convert the ontology into a Jena model. The RDF statements are created
+	 * in memory by the OWL API RDF renderer, without a text format.<br>
+	 * The model has the prefixes of a Turtle rendering of the ontology.
+	 *
+	 * @param ontology
+	 * @return model
+	 */
 	public static Model getJenaModel(OWLOntology ontology) {
 		Model model = ModelFactory.createDefaultModel();
-
-		try (PipedInputStream is = new PipedInputStream(); PipedOutputStream os = new PipedOutputStream(is)) {
-			new Thread(new Runnable() {
-				@Override
-				public void run() {
-					try {
-						ontology.getOWLOntologyManager().saveOntology(ontology, new TurtleDocumentFormat(), os);
-						os.close();
-					} catch (OWLOntologyStorageException | IOException e) {
-						e.printStackTrace();
-					}
-				}
-			}).start();
-			model.read(is, null, "TURTLE");
+		try {
+			for (Statement statement : JavaConverters.setAsJavaSetConverter(SesameJena.ontologyAsTriples(ontology)).asJava()) {
+				model.add(statement);
+			}
+			TurtleDocumentFormat format = new TurtleDocumentFormat();
+			OWLDocumentFormat ontologyFormat = ontology.getOWLOntologyManager().getOntologyFormat(ontology);
+			if (ontologyFormat != null && ontologyFormat.isPrefixOWLOntologyFormat()) {
+				format.copyPrefixesFrom(ontologyFormat.asPrefixOWLOntologyFormat());
+			}
+			for (Map.Entry<String, String> prefix : format.getPrefixName2PrefixMap().entrySet()) {
+				// OWL API prefix names end with a colon
+				model.setNsPrefix(StringUtils.removeEnd(prefix.getKey(), ":"), prefix.getValue());
+			}
 			return model;
 		} catch (Exception e) {
 			throw new RuntimeException("Could not convert OWL API ontology to JENA API model.", e);
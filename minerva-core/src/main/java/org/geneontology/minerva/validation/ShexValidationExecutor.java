@@ -0,0 +1,326 @@
+package org.geneontology.minerva.validation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.apache.commons.rdf.api.BlankNodeOrIRI;
+import org.apache.commons.rdf.api.Graph;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDFTerm;
+import org.apache.commons.rdf.api.Triple;
+import org.apache.log4j.Logger;
+
+/**
+ * Bounded pool of named threads for the ShEx validations, shared by all
+ * validators. The validations are run with a time budget. The shexjava
+ * algorithms don't react to interrupts, the graph of a validation is wrapped
+ * with {@link #cancellable(Graph, Cancellation)}: after the budget is spent
+ * the next access to the graph aborts the validation, instead of leaving it
+ * running in the background.<br>
+ * If the queue is full, a validation is rejected and reported like a timeout.
+ */
+public class ShexValidationExecutor {
+
+	private static final Logger LOGGER = Logger.getLogger(ShexValidationExecutor.class);
+
+	public static final int DEFAULT_QUEUE_SIZE = 10000;
+
+	private static volatile ShexValidationExecutor shared = null;
+
+	private final ThreadPoolExecutor executor;
+	private final AtomicLong timeouts = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+
+	/**
+	 * A validation task, which is expected to use the cancellation for its
+	 * graph, see {@link ShexValidationExecutor#cancellable(Graph, Cancellation)}.
+	 *
+	 * @param <T> result
+	 */
+	public static interface ValidationTask<T> {
+
+		public T run(Cancellation cancellation) throws Exception;
+	}
+
+	/**
+	 * Time budget of one or more validations, which are canceled together.
+	 */
+	public static class Cancellation {
+
+		private final long deadline;
+		private volatile boolean canceled = false;
+
+		Cancellation(long deadline) {
+			this.deadline = deadline;
+		}
+
+		public void cancel() {
+			canceled = true;
+		}
+
+		public boolean isCanceled() {
+			return canceled || System.currentTimeMillis() > deadline || Thread.currentThread().isInterrupted();
+		}
+
+		/**
+		 * @throws CancellationException if the validation is canceled or the budget is spent
+		 */
+		public void check() {
+			if (isCanceled()) {
+				throw new CancellationException("shex validation canceled");
+			}
+		}
+	}
+
+	public static class Stats {
+		public final int threads;
+		public final int active;
+		public final int queued;
+		public final long completed;
+		public final long timeouts;
+		public final long rejected;
+		public final long failures;
+
+		Stats(int threads, int active, int queued, long completed, long timeouts, long rejected, long failures) {
+			this.threads = threads;
+			this.active = active;
+			this.queued = queued;
+			this.completed = completed;
+			this.timeouts = timeouts;
+			this.rejected = rejected;
+			this.failures = failures;
+		}
+
+		@Override
+		public String toString() {
+			return "threads: "+threads+" active: "+active+" queued: "+queued+" completed: "+completed+
+					" timeouts: "+timeouts+" rejected: "+rejected+" failures: "+failures;
+		}
+	}
+
+	/**
+	 * @param threads
+	 * @param queueSize maximum number of waiting validations
+	 */
+	public ShexValidationExecutor(int threads, int queueSize) {
+		final AtomicInteger count = new AtomicInteger();
+		ThreadFactory factory = (Runnable r) -> {
+			Thread t = new Thread(r, "shex-validation-"+count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		};
+		executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(queueSize), factory, new ThreadPoolExecutor.AbortPolicy());
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * @return executor with one thread per processor, shared by all validators
+	 */
+	public static ShexValidationExecutor getShared() {
+		ShexValidationExecutor e = shared;
+		if (e == null) {
+			synchronized (ShexValidationExecutor.class) {
+				e = shared;
+				if (e == null) {
+					e = new ShexValidationExecutor(Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_SIZE);
+					shared = e;
+				}
+			}
+		}
+		return e;
+	}
+
+	/**
+	 * Run a validation with a time budget.
+	 *
+	 * @param task
+	 * @param timeoutMillis
+	 * @return result or null, if the validation failed, timed out or was rejected
+	 */
+	public <T> T invoke(ValidationTask<T> task, long timeoutMillis) {
+		return invokeAll(Collections.singletonList(task), timeoutMillis).get(0);
+	}
+
+	/**
+	 * Run independent validations in parallel, with a total time budget.
+	 * After the budget is spent, the remaining validations are canceled.
+	 *
+	 * @param tasks
+	 * @param budgetMillis
+	 * @return results in the order of the tasks, null for each validation,
+	 *         which failed, timed out or was rejected
+	 */
+	public <T> List<T> invokeAll(List<? extends ValidationTask<T>> tasks, long budgetMillis) {
+		final Cancellation cancellation = new Cancellation(System.currentTimeMillis() + budgetMillis);
+		List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
+		for (ValidationTask<T> task : tasks) {
+			try {
+				futures.add(executor.submit(() -> {
+					cancellation.check();
+					return task.run(cancellation);
+				}));
+			} catch (RejectedExecutionException e) {
+				rejected.incrementAndGet();
+				futures.add(null);
+			}
+		}
+		List<T> results = new ArrayList<T>(tasks.size());
+		try {
+			for (Future<T> future : futures) {
+				results.add(get(future, cancellation));
+			}
+		} finally {
+			cancellation.cancel();
+		}
+		return results;
+	}
+
+	private <T> T get(Future<T> future, Cancellation cancellation) {
+		if (future == null) {
+			return null;
+		}
+		try {
+			long remaining = Math.max(0, cancellation.deadline - System.currentTimeMillis());
+			return future.get(remaining, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			timeouts.incrementAndGet();
+			cancellation.cancel();
+			future.cancel(true);
+			return null;
+		} catch (InterruptedException e) {
+			cancellation.cancel();
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof CancellationException) {
+				timeouts.incrementAndGet();
+			}
+			else {
+				failures.incrementAndGet();
+				LOGGER.error("shex validation failed", e.getCause());
+			}
+			return null;
+		} catch (CancellationException e) {
+			timeouts.incrementAndGet();
+			return null;
+		}
+	}
+
+	/**
+	 * @param graph
+	 * @param cancellation
+	 * @return graph, which aborts the validation with a
+	 *         {@link CancellationException} after the cancellation
+	 */
+	public static Graph cancellable(Graph graph, Cancellation cancellation) {
+		return new CancellableGraph(graph, cancellation);
+	}
+
+	public Stats getStats() {
+		return new Stats(executor.getMaximumPoolSize(), executor.getActiveCount(), executor.getQueue().size(),
+				executor.getCompletedTaskCount(), timeouts.get(), rejected.get(), failures.get());
+	}
+
+	/**
+	 * Wait for the running validations and stop the threads, e.g. for a
+	 * validator with its own executor.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	private static class CancellableGraph implements Graph {
+
+		private final Graph graph;
+		private final Cancellation cancellation;
+
+		CancellableGraph(Graph graph, Cancellation cancellation) {
+			this.graph = graph;
+			this.cancellation = cancellation;
+		}
+
+		@Override
+		public void add(Triple triple) {
+			graph.add(triple);
+		}
+
+		@Override
+		public void add(BlankNodeOrIRI subject, IRI predicate, RDFTerm object) {
+			graph.add(subject, predicate, object);
+		}
+
+		@Override
+		public boolean contains(Triple triple) {
+			cancellation.check();
+			return graph.contains(triple);
+		}
+
+		@Override
+		public boolean contains(BlankNodeOrIRI subject, IRI predicate, RDFTerm object) {
+			cancellation.check();
+			return graph.contains(subject, predicate, object);
+		}
+
+		@Override
+		public void remove(Triple triple) {
+			graph.remove(triple);
+		}
+
+		@Override
+		public void remove(BlankNodeOrIRI subject, IRI predicate, RDFTerm object) {
+			graph.remove(subject, predicate, object);
+		}
+
+		@Override
+		public void clear() {
+			graph.clear();
+		}
+
+		@Override
+		public long size() {
+			return graph.size();
+		}
+
+		@Override
+		public Stream<? extends Triple> stream() {
+			cancellation.check();
+			return graph.stream();
+		}
+
+		@Override
+		public Stream<? extends Triple> stream(BlankNodeOrIRI subject, IRI predicate, RDFTerm object) {
+			cancellation.check();
+			return graph.stream(subject, predicate, object);
+		}
+
+		@Override
+		public Iterable<Triple> iterate() throws ConcurrentModificationException, IllegalStateException {
+			cancellation.check();
+			return graph.iterate();
+		}
+
+		@Override
+		public Iterable<Triple> iterate(BlankNodeOrIRI subject, IRI predicate, RDFTerm object)
+				throws ConcurrentModificationException, IllegalStateException {
+			cancellation.check();
+			return graph.iterate(subject, predicate, object);
+		}
+	}
+}
@@ -9,15 +9,11 @@ import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.rdf.api.RDF;
@@ -84,9 +80,14 @@ public class ShexValidator {
 	public Map<Label, Map<String, Set<String>>> shape_expected_property_ranges;
 	public Map<Label, Map<String, Interval>> shape_expected_property_cardinality;
 	Map<Label, Interval> tripexprlabel_cardinality;
+	// parsed focus node queries of the shape map, by shape
+	Map<String, Query> focus_queries;
 	public CurieHandler curieHandler;
 	public RDF rdfFactory;
 	public final int timeout_mill = 30000;
+	// total time for the single node validations of a model, the nodes are validated in parallel
+	public long model_timeout_mill = 120000;
+	private ShexValidationExecutor executor = ShexValidationExecutor.getShared();
 
 	/**
 	 * @throws Exception 
@@ -103,6 +104,15 @@ public class ShexValidator {
 	public void init(File shex_schema_file, File shex_map_file, BlazegraphOntologyManager go_lego, CurieHandler curieHandler_) throws Exception {
 		schema = GenParser.parseSchema(shex_schema_file.toPath());
 		GoQueryMap = makeGoQueryMap(shex_map_file.getAbsolutePath());
+		focus_queries = new HashMap<String, Query>();
+		for(String shapelabel : GoQueryMap.keySet()) {
+			//not quite the same pattern as the other shapes
+			//TODO needs more work 
+			if(shapelabel.equals("http://purl.obolibrary.org/obo/go/shapes/AnnotatedEdge")) {
+				continue;
+			}
+			focus_queries.put(shapelabel, QueryFactory.create(GoQueryMap.get(shapelabel)));
+		}
 		//tbox_reasoner = tbox_reasoner_;
 		setGo_lego_repo(go_lego);
 		shape_expected_property_ranges = new HashMap<Label, Map<String, Set<String>>>();
@@ -281,93 +291,70 @@ public class ShexValidator {
 	}
 
 
+	/**
+	 * Validate each focus node against its most specific shapes. The nodes
+	 * are validated in parallel, within {@link #model_timeout_mill} for the
+	 * whole model.
+	 * 
+	 * @param test_model
+	 * @param stream_output
+	 * @return report
+	 * @throws Exception
+	 */
 	public ShexValidationReport runShapeMapValidationWithRecursiveSingleNodeValidation(Model test_model, boolean stream_output) throws Exception {		
 		ShexValidationReport r = new ShexValidationReport(null, test_model);	
 		JenaRDF jr = new JenaRDF();
 		//this shex implementation likes to use the commons JenaRDF interface, nothing exciting here
 		JenaGraph shexy_graph = jr.asGraph(test_model);
-		//recursive only checks the focus node against the chosen shape.  
-		RecursiveValidationWithMemorization shex_model_validator = new RecursiveValidationWithMemorization(schema, shexy_graph);
 		//for each shape in the query map (e.g. MF, BP, CC, etc.)
 
 		boolean all_good = true;
 		Map<Resource, Set<String>> node_s_shapes = getShapesToTestForEachResource(test_model);
 
+		List<Resource> nodes = new ArrayList<Resource>();
+		List<String> shapes = new ArrayList<String>();
+		List<ShexValidationExecutor.ValidationTask<NodeResult>> tasks = new ArrayList<ShexValidationExecutor.ValidationTask<NodeResult>>();
 		for(Resource focus_node_resource : node_s_shapes.keySet()) {
 			Set<String> shape_nodes = node_s_shapes.get(focus_node_resource);
 
 			for(String shapelabel : shape_nodes) {
-				Label shape_label = new Label(rdfFactory.createIRI(shapelabel));
 				if(focus_node_resource==null) {
-					System.out.println("null focus node for shape "+shape_label);
+					System.out.println("null focus node for shape "+shapelabel);
 					continue;
 				}
-				//check for use of properties not defined for this shape (okay if OPEN, not if CLOSED)
-				Typing typing = validateNodeWithTimeout(shex_model_validator, focus_node_resource, shape_label);
-
-				if(typing!=null) {
-					Set<ShexViolation> extra_prop_violations = checkForExtraProperties(focus_node_resource, test_model, shape_label, typing);
-					if(extra_prop_violations != null && !extra_prop_violations.isEmpty()) {
-						for(Violation v : extra_prop_violations) {
-							r.addViolation(v);
-						}				
-						all_good = false;
-					}
-					//run the validation on the node if possible..
-					RDFTerm focus_node = null;
-					String focus_node_id = "";
-					if(focus_node_resource.isURIResource()) {
-						focus_node = rdfFactory.createIRI(focus_node_resource.getURI());
-						focus_node_id = focus_node_resource.getURI();
-					}else {
-						focus_node = rdfFactory.createBlankNode(focus_node_resource.getId().getLabelString());
-						focus_node_id = focus_node_resource.getId().getLabelString();
-					}
-					//deal with curies for output
-					String node = focus_node_id;
-					node = getCurie(focus_node_id);
-					Status status = typing.getStatus(focus_node, shape_label);
-					if(status.equals(Status.CONFORMANT)) {
-						Set<String> shape_ids = r.node_matched_shapes.get(node);
-						if(shape_ids==null) {
-							shape_ids = new HashSet<String>();
-						}
-						shape_ids.add(shapelabel);				
-						r.node_matched_shapes.put(node, shape_ids);
-					}else if(status.equals(Status.NONCONFORMANT)) {
-						all_good = false;
-						//implementing a start on a generic violation report structure here
-						ShexViolation violation = new ShexViolation(node);				 					
-						ShexExplanation explanation = new ShexExplanation();
-						String shape_curie = getCurie(shapelabel);
-						explanation.setShape(shape_curie);				
-						Set<ShexConstraint> unmet_constraints = getUnmetConstraints(focus_node_resource, shape_label, test_model, typing);				
-						if(unmet_constraints!=null) {
-							for(ShexConstraint constraint : unmet_constraints) {
-								explanation.addConstraint(constraint);
-								violation.addExplanation(explanation);
-							}	
-						}else {
-							explanation.setErrorMessage("explanation computation timed out");
-							violation.addExplanation(explanation);
-						}
-						r.addViolation(violation);			
-					}else if(status.equals(Status.NOTCOMPUTED)) {
-						//if any of these are not computed, there is a problem
-						String error = focus_node_id+" was not tested against "+shapelabel;
-						LOGGER.error(error);
+				nodes.add(focus_node_resource);
+				shapes.add(shapelabel);
+				//recursive only checks the focus node against the chosen shape, one validator per task as they are not thread safe
+				tasks.add((cancellation) -> validateFocusNode(ShexValidationExecutor.cancellable(shexy_graph, cancellation), test_model, focus_node_resource, shapelabel));
+			}
+		}
+		List<NodeResult> results = executor.invokeAll(tasks, model_timeout_mill);
+		for(int i = 0; i < results.size(); i++) {
+			NodeResult result = results.get(i);
+			if(result!=null) {
+				for(Violation v : result.violations) {
+					r.addViolation(v);
+				}
+				if(result.matched_shape!=null) {
+					Set<String> shape_ids = r.node_matched_shapes.get(result.node);
+					if(shape_ids==null) {
+						shape_ids = new HashSet<String>();
 					}
-				}else {
-					LOGGER.info("shex validation failed for node "+focus_node_resource.getURI());
-					all_good = false;
-					ShexViolation violation = new ShexViolation(focus_node_resource.getURI());				 					
-					ShexExplanation explanation = new ShexExplanation();
-					explanation.setErrorMessage("Validating this node was canceled because it took more then "+timeout_mill+" milliseconds");
-					String shape_curie = getCurie(shapelabel);
-					explanation.setShape(shape_curie);				
-					violation.addExplanation(explanation);
-					r.addViolation(violation);	
+					shape_ids.add(result.matched_shape);				
+					r.node_matched_shapes.put(result.node, shape_ids);
 				}
+				all_good = all_good && result.good;
+			}else {
+				Resource focus_node_resource = nodes.get(i);
+				LOGGER.info("shex validation failed for node "+focus_node_resource.getURI());
+				all_good = false;
+				ShexViolation violation = new ShexViolation(focus_node_resource.getURI());				 					
+				ShexExplanation explanation = new ShexExplanation();
+				explanation.setErrorMessage("Validating this node was canceled because it failed or the validation of the model took more then "+model_timeout_mill+" milliseconds");
+				String shape_curie = getCurie(shapes.get(i));
+				explanation.setShape(shape_curie);				
+				violation.addExplanation(explanation);
+				r.addViolation(violation);	
 			}
 		}
 		if(all_good) {
@@ -378,136 +365,188 @@ public class ShexValidator {
 		return r;
 	}
 
-	private Map<Resource, Set<String>> getShapesToTestForEachResource(Model test_model) {
-		Map<Resource, Set<String>> node_shapes = new HashMap<Resource, Set<String>>();
-		for(String shapelabel : GoQueryMap.keySet()) {
-			//not quite the same pattern as the other shapes
-			//TODO needs more work 
-			if(shapelabel.equals("http://purl.obolibrary.org/obo/go/shapes/AnnotatedEdge")) {
-				continue;
+	/**
+	 * Violations and matched shape of a focus node
+	 */
+	private static class NodeResult {
+		String node;
+		String matched_shape = null;
+		final Set<Violation> violations = new HashSet<Violation>();
+		boolean good = true;
+	}
+
+	/**
+	 * @return result or null, if the node is not valid
+	 */
+	private NodeResult validateFocusNode(org.apache.commons.rdf.api.Graph graph, Model test_model, Resource focus_node_resource, String shapelabel) throws IOException {
+		Label shape_label = new Label(rdfFactory.createIRI(shapelabel));
+		RecursiveValidationWithMemorization shex_model_validator = new RecursiveValidationWithMemorization(schema, graph);
+		//run the validation on the node if possible..
+		RDFTerm focus_node = getFocusNode(focus_node_resource);
+		Typing typing = validateNode(shex_model_validator, focus_node, shape_label);
+		if(typing==null) {
+			return null;
+		}
+		NodeResult result = new NodeResult();
+		//check for use of properties not defined for this shape (okay if OPEN, not if CLOSED)
+		Set<ShexViolation> extra_prop_violations = checkForExtraProperties(focus_node_resource, test_model, shape_label, typing);
+		if(extra_prop_violations != null && !extra_prop_violations.isEmpty()) {
+			result.violations.addAll(extra_prop_violations);
+			result.good = false;
+		}
+		String focus_node_id = "";
+		if(focus_node_resource.isURIResource()) {
+			focus_node_id = focus_node_resource.getURI();
+		}else {
+			focus_node_id = focus_node_resource.getId().getLabelString();
+		}
+		//deal with curies for output
+		String node = getCurie(focus_node_id);
+		result.node = node;
+		Status status = typing.getStatus(focus_node, shape_label);
+		if(status.equals(Status.CONFORMANT)) {
+			result.matched_shape = shapelabel;
+		}else if(status.equals(Status.NONCONFORMANT)) {
+			result.good = false;
+			//implementing a start on a generic violation report structure here
+			ShexViolation violation = new ShexViolation(node);				 					
+			ShexExplanation explanation = new ShexExplanation();
+			String shape_curie = getCurie(shapelabel);
+			explanation.setShape(shape_curie);				
+			Set<ShexConstraint> unmet_constraints = getUnmetConstraints(focus_node_resource, shape_label, test_model, typing);				
+			if(unmet_constraints!=null) {
+				for(ShexConstraint constraint : unmet_constraints) {
+					explanation.addConstraint(constraint);
+					violation.addExplanation(explanation);
+				}	
+			}else {
+				explanation.setErrorMessage("explanation computation timed out");
+				violation.addExplanation(explanation);
 			}
-			//get the nodes in this model that SHOULD match the shape
-			Set<Resource> focus_nodes = getFocusNodesBySparql(test_model, GoQueryMap.get(shapelabel));
-			//shape_nodes.put(shapelabel, focus_nodes);
+			result.violations.add(violation);			
+		}else if(status.equals(Status.NOTCOMPUTED)) {
+			//if any of these are not computed, there is a problem
+			String error = focus_node_id+" was not tested against "+shapelabel;
+			LOGGER.error(error);
+		}
+		return result;
+	}
 
+	Map<Resource, Set<String>> getShapesToTestForEachResource(Model test_model) {
+		//get the nodes in this model that SHOULD match each shape, once per model
+		Map<String, Set<Resource>> shape_nodes = new HashMap<String, Set<Resource>>();
+		Map<Resource, Set<String>> node_shapes = new HashMap<Resource, Set<String>>();
+		for(String shapelabel : focus_queries.keySet()) {
+			Set<Resource> focus_nodes = getFocusNodes(test_model, focus_queries.get(shapelabel));
+			shape_nodes.put(shapelabel, focus_nodes);
 			for(Resource focus_node : focus_nodes) {
 				Set<String> shapes = node_shapes.get(focus_node);
 				if(shapes==null) {
 					shapes = new HashSet<String>();
+					node_shapes.put(focus_node, shapes);
 				}
 				shapes.add(shapelabel);
-				node_shapes.put(focus_node, shapes);
 			}
 		}	
 		//prune to only test the most specific shapes
-		//TODO - do it once up front
-		Map<Resource, Set<String>> node_s_shapes = new HashMap<Resource, Set<String>>();
+		//each pair of shapes is compared once per model, not for each node
+		Map<String, Boolean> contains_all = new HashMap<String, Boolean>();
 		for(Resource node : node_shapes.keySet()) {
 			Set<String> shapes = node_shapes.get(node);
 			Set<String> shapes_to_remove = new HashSet<String>();
 			for(String shape1 : shapes) {
-				Set<Resource> shape1_nodes = getFocusNodesBySparql(test_model, GoQueryMap.get(shape1));
 				for(String shape2 : shapes) {
 					if(shape1.equals(shape2)) {
 						continue;
 					}
-					Set<Resource> shape2_nodes = getFocusNodesBySparql(test_model, GoQueryMap.get(shape2));
 					//if shape1 contains all of shape2 - e.g. mf would contain all transporter activity
-					if(shape1_nodes.containsAll(shape2_nodes)) {
+					String pair = shape1+" "+shape2;
+					Boolean contains = contains_all.get(pair);
+					if(contains==null) {
+						contains = shape_nodes.get(shape1).containsAll(shape_nodes.get(shape2));
+						contains_all.put(pair, contains);
+					}
+					if(contains) {
 						//then remove shape1 from this resource (as shape2 is more specific). 
 						shapes_to_remove.add(shape1);
 					}
 				}
 			}
 			shapes.removeAll(shapes_to_remove);
-			node_s_shapes.put(node, shapes);
 		}
-		return node_s_shapes;
+		return node_shapes;
 	}
 
 	private Typing runRefineWithTimeout(JenaGraph shexy_graph) {		
-		final ExecutorService service = Executors.newSingleThreadExecutor();
-		try {
-			final Future<Typing> f = service.submit(() -> {
-				RefineValidation refine = new RefineValidation(schema, shexy_graph);
-				refine.validate();
-				Typing all = refine.getTyping();
-				return all;
-			});
-			Typing typing = f.get(timeout_mill, TimeUnit.MILLISECONDS);
-			return typing;
-
-		} catch (final TimeoutException e) {
-			LOGGER.error("shex refine all validation took to long  ");
-			service.shutdownNow();
-			return null;		
-		} catch (InterruptedException e) {
-			LOGGER.error("And we have Refine an interrupted exception: ");
-			e.printStackTrace();
-			service.shutdownNow();
-			return null;
-		} catch (ExecutionException e) {
-			LOGGER.error("And we have a Refine execution exception: ");
-			e.printStackTrace();
-			service.shutdownNow();
-			return null;
-		}  finally {
-			service.shutdown();			
+		Typing typing = executor.invoke((cancellation) -> {
+			RefineValidation refine = new RefineValidation(schema, ShexValidationExecutor.cancellable(shexy_graph, cancellation));
+			refine.validate();
+			Typing all = refine.getTyping();
+			return all;
+		}, timeout_mill);
+		if(typing==null) {
+			LOGGER.error("shex refine all validation failed or took to long");
 		}
+		return typing;
 	}
 
 	public Typing validateNodeWithTimeout(RecursiveValidationWithMemorization shex_model_validator, Resource focus_node_resource, Label shape_label) {
-		RDFTerm focus_node = null;
-		String focus_node_id = "";
-		if(focus_node_resource.isURIResource()) {
-			focus_node = rdfFactory.createIRI(focus_node_resource.getURI());
-			focus_node_id = focus_node_resource.getURI();
-		}else {
-			focus_node = rdfFactory.createBlankNode(focus_node_resource.getId().getLabelString());
-			focus_node_id = focus_node_resource.getId().getLabelString();
-		}
-		//deal with curies for output
-		String node = focus_node_id;
-		node = getCurie(focus_node_id);
+		final RDFTerm test_node = getFocusNode(focus_node_resource);
 		//this can take a while - give up if it gets stuck
 		//limit total time to avoid service death on some weird edge case
-		final ExecutorService service = Executors.newSingleThreadExecutor();
-		final RDFTerm test_node = focus_node;
-		try {
-			final Future<Typing> f = service.submit(() -> {
-				boolean is_valid = shex_model_validator.validate(test_node, shape_label);
-				if(is_valid) {
-					return shex_model_validator.getTyping();
-				}else {
-					return null;
-				}
-
-			});
-			Typing typing = f.get(timeout_mill, TimeUnit.MILLISECONDS);
-			return typing;
+		Typing typing = executor.invoke((cancellation) -> validateNode(shex_model_validator, test_node, shape_label), timeout_mill);
+		if(typing==null) {
+			LOGGER.error("shex validation failed or took to long for "+focus_node_resource+" "+shape_label);
+		}
+		return typing;
+	}
 
-		} catch (final TimeoutException e) {
-			LOGGER.error("shex validation took to long for "+focus_node_resource);
-			service.shutdownNow();
-			return null;		
-		} catch (InterruptedException e) {
-			LOGGER.error("And we have an interrupted exception: "+test_node+" "+shape_label);
-			e.printStackTrace();
-			service.shutdownNow();
-			return null;
-		} catch (ExecutionException e) {
-			LOGGER.error("And we have an execution exception: "+test_node+" "+shape_label);
-			e.printStackTrace();
-			service.shutdownNow();
+	/**
+	 * @param shex_model_validator
+	 * @param focus_node
+	 * @param shape_label
+	 * @return typing, if the node is valid, otherwise null
+	 */
+	private static Typing validateNode(RecursiveValidationWithMemorization shex_model_validator, RDFTerm focus_node, Label shape_label) {
+		boolean is_valid = shex_model_validator.validate(focus_node, shape_label);
+		if(is_valid) {
+			return shex_model_validator.getTyping();
+		}else {
 			return null;
-		}  finally {
-			service.shutdown();			
 		}
 	}
 
+	private RDFTerm getFocusNode(Resource focus_node_resource) {
+		if(focus_node_resource.isURIResource()) {
+			return rdfFactory.createIRI(focus_node_resource.getURI());
+		}else {
+			return rdfFactory.createBlankNode(focus_node_resource.getId().getLabelString());
+		}
+	}
+
+	public ShexValidationExecutor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * @param executor used for all validations, by default the shared executor
+	 */
+	public void setExecutor(ShexValidationExecutor executor) {
+		this.executor = executor;
+	}
+
 	public static Set<Resource> getFocusNodesBySparql(Model model, String sparql){
+		return getFocusNodes(model, QueryFactory.create(sparql));
+	}
+
+	/**
+	 * @param model
+	 * @param query parsed focus node query, selecting ?x
+	 * @return focus nodes
+	 */
+	public static Set<Resource> getFocusNodes(Model model, Query query){
 		Set<Resource> nodes = new HashSet<Resource>();
-		QueryExecution qe = QueryExecutionFactory.create(sparql, model);
+		QueryExecution qe = QueryExecutionFactory.create(query, model);
 		ResultSet results = qe.execSelect();
 		while (results.hasNext()) {
 			QuerySolution qs = results.next();
@@ -684,6 +723,9 @@ public class ShexValidator {
 			while (results.hasNext()) {
 				QuerySolution qs = results.next();
 				Resource type = qs.getResource("type");
+				if(!type.isURIResource()) {
+					continue; //class expressions, e.g. the complement for a negated annotation
+				}
 				types.add(getCurie(type.getURI()));
 				//				OWLClass t = tbox_reasoner.getRootOntology().getOWLOntologyManager().getOWLDataFactory().getOWLClass(IRI.create(type.getURI()));
 				//				for(OWLClass p : tbox_reasoner.getSuperClasses(t, false).getFlattened()) {
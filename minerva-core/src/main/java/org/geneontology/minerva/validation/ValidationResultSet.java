@@ -26,7 +26,8 @@ public class ValidationResultSet {
 		super();
 		this.owl_validation = owlvalidation;
 		this.shex_validation = shexvalidation;
-		if(owlvalidation.conformant&&shex_validation.conformant) {
+		// no shex report when the shex validation is turned off
+		if(owlvalidation.conformant&&(shex_validation==null||shex_validation.conformant)) {
 			all_conformant = true;
 		}else {
 			all_conformant = false; 
@@ -50,7 +51,7 @@ public class ValidationResultSet {
 	}
 
 	public boolean allConformant() {
-		if(owl_validation.conformant&&shex_validation.conformant) {
+		if(owl_validation.conformant&&(shex_validation==null||shex_validation.conformant)) {
 			return true;
 		}else {
 			return false;
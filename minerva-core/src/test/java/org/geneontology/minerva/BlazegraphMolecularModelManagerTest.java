@@ -13,6 +13,7 @@ import org.geneontology.minerva.util.AnnotationShorthand;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.openrdf.model.Statement;
 import org.openrdf.query.GraphQueryResult;
 import org.openrdf.query.QueryResult;
 import org.openrdf.query.TupleQueryResult;
@@ -24,6 +25,8 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
 
@@ -168,6 +171,99 @@ public class BlazegraphMolecularModelManagerTest  {
 		}
 	}
 
+	@Test
+	public void testOpenSPARQLQuery() throws Exception {
+		String sourceModelPath = "src/test/resources/dummy-noctua-model.ttl";
+		BlazegraphMolecularModelManager<Void> m3 = createBlazegraphMolecularModelManager();
+		try {
+			m3.importModelToDatabase(new File(sourceModelPath), false);
+			TupleQueryResult selectResult = (TupleQueryResult) m3.openSPARQLQuery("SELECT ?s WHERE { GRAPH ?g { ?s ?p ?o } }", 10, 3);
+			try {
+				assertEquals(Arrays.asList("s"), selectResult.getBindingNames());
+				int rows = 0;
+				while (selectResult.hasNext()) {
+					selectResult.next();
+					rows += 1;
+				}
+				// cut off after the maximum number of rows
+				assertEquals(3, rows);
+				assertTrue(((BlazegraphMolecularModelManager.LimitedQueryResult) selectResult).isTruncated());
+			} finally {
+				selectResult.close();
+			}
+			TupleQueryResult graphsResult = (TupleQueryResult) m3.openSPARQLQuery("SELECT DISTINCT ?g WHERE { GRAPH ?g { ?s ?p ?o } }", 10, 1);
+			try {
+				// exactly the maximum number of rows
+				assertEquals("http://model.geneontology.org/0000000300000001", graphsResult.next().getValue("g").stringValue());
+				assertFalse(graphsResult.hasNext());
+				assertFalse(((BlazegraphMolecularModelManager.LimitedQueryResult) graphsResult).isTruncated());
+			} finally {
+				graphsResult.close();
+			}
+			GraphQueryResult constructResult = (GraphQueryResult) m3.openSPARQLQuery("CONSTRUCT { ?s <http://example.org/subject_in> ?g } WHERE { GRAPH ?g { ?s ?p ?o } }", 10, 0);
+			try {
+				assertEquals("http://model.geneontology.org/0000000300000001", constructResult.next().getObject().stringValue());
+				assertFalse(((BlazegraphMolecularModelManager.LimitedQueryResult) constructResult).isTruncated());
+			} finally {
+				// closing an unfinished result releases the connection
+				constructResult.close();
+			}
+		}finally {
+			m3.dispose();
+		}
+	}
+
+	@Test
+	public void testAddTaxonMetadataBulk() throws Exception {
+		BlazegraphMolecularModelManager<Void> m3 = createBlazegraphMolecularModelManager();
+		try {
+			String model = m3.importModelToDatabase(new File("src/test/resources/dummy-noctua-model.ttl"), false);
+			m3.addTaxonToDatabaseWithSparql(IRI.create(model), IRI.create(taxon("9606")));
+			Map<String, Set<String>> taxon_models = taxonModels(model, "9606", "10090", "7955", "559292");
+			// the stored pair is skipped, the others are written in two batches
+			assertEquals(3, m3.addTaxonMetadataBulk(taxon_models, 2));
+			Set<String> stored = m3.getStoredTaxonPairs();
+			assertEquals(4, stored.size());
+			for (String taxon : taxon_models.keySet()) {
+				assertTrue(stored.contains(model+" "+taxon));
+			}
+			// nothing left to add
+			assertEquals(0, m3.addTaxonMetadataBulk(taxon_models, 2));
+			assertEquals(4, m3.getStoredTaxonPairs().size());
+		} finally {
+			m3.dispose();
+		}
+	}
+
+	@Test
+	public void testAddTaxonMetadataBulkFailingBatch() throws Exception {
+		// the first batch is not written
+		BlazegraphMolecularModelManager<Void> m3 = createBlazegraphMolecularModelManager(0);
+		try {
+			String model = m3.importModelToDatabase(new File("src/test/resources/dummy-noctua-model.ttl"), false);
+			Map<String, Set<String>> taxon_models = taxonModels(model, "9606", "10090", "7955");
+			assertEquals(1, m3.addTaxonMetadataBulk(taxon_models, 2));
+			assertEquals(1, m3.getStoredTaxonPairs().size());
+			// the missing pairs are added with the next run
+			assertEquals(2, m3.addTaxonMetadataBulk(taxon_models, 2));
+			assertEquals(3, m3.getStoredTaxonPairs().size());
+		} finally {
+			m3.dispose();
+		}
+	}
+
+	private static String taxon(String id) {
+		return "http://purl.obolibrary.org/obo/NCBITaxon_"+id;
+	}
+
+	private static Map<String, Set<String>> taxonModels(String model, String...taxa) {
+		Map<String, Set<String>> taxon_models = new HashMap<String, Set<String>>();
+		for (String id : taxa) {
+			taxon_models.put(taxon(id), Collections.singleton(model));
+		}
+		return taxon_models;
+	}
+
 	/**
 	 * Test the process that adds some individuals, saves them and then loads them back into the model.
 	 *
@@ -295,6 +391,15 @@ public class BlazegraphMolecularModelManagerTest  {
 	 * @throws Exception
 	 */
 	private BlazegraphMolecularModelManager<Void> createBlazegraphMolecularModelManager() throws Exception {
+		return createBlazegraphMolecularModelManager(-1);
+	}
+
+	/**
+	 * @param failingBatch number of the statement batch, which fails to be written, -1 for none
+	 * @return the instance of BlazegraphMolecularModelManager
+	 * @throws Exception
+	 */
+	private BlazegraphMolecularModelManager<Void> createBlazegraphMolecularModelManager(final int failingBatch) throws Exception {
 		/* A path of the temporary journal file for Blazegraph storage system */
 		String journalPath = folder.newFile().getAbsolutePath();
 		/* A root path of the temporary directory */
@@ -307,7 +412,19 @@ public class BlazegraphMolecularModelManagerTest  {
 		prefixes.put("ex", "http://example.org/");
 		prefixes.put("GO", "http://purl.obolibrary.org/obo/GO_");
 		CurieHandler curieHandler = new MappedCurieHandler(prefixes);
-		BlazegraphMolecularModelManager<Void> m3 = new BlazegraphMolecularModelManager<>(tbox, curieHandler,"http://model.geneontology.org/", journalPath, tempRootPath, go_lego_journal_file);
+		final AtomicInteger batches = new AtomicInteger();
+		BlazegraphMolecularModelManager<Void> m3 = new BlazegraphMolecularModelManager<Void>(tbox, curieHandler,"http://model.geneontology.org/", journalPath, tempRootPath, go_lego_journal_file) {
+
+			@Override
+			CompletableFuture<Integer> submitStatements(List<Statement> statements) {
+				if (batches.getAndIncrement() == failingBatch) {
+					CompletableFuture<Integer> failed = new CompletableFuture<Integer>();
+					failed.completeExceptionally(new RuntimeException("failing batch"));
+					return failed;
+				}
+				return super.submitStatements(statements);
+			}
+		};
 		return m3;
 	}
 
@@ -0,0 +1,157 @@
+package org.geneontology.minerva;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.model.vocabulary.RDFS;
+
+import com.bigdata.journal.Options;
+import com.bigdata.rdf.sail.BigdataSail;
+import com.bigdata.rdf.sail.BigdataSailRepository;
+import com.bigdata.rdf.sail.BigdataSailRepositoryConnection;
+
+public class BlazegraphWriteQueueTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private BigdataSailRepository repo;
+	private BlazegraphWriteQueue queue;
+
+	@Before
+	public void before() throws Exception {
+		Properties properties = new Properties();
+		properties.load(BlazegraphMolecularModelManager.class.getResourceAsStream("blazegraph.properties"));
+		properties.setProperty(Options.FILE, new File(folder.getRoot(), "test.jnl").getAbsolutePath());
+		repo = new BigdataSailRepository(new BigdataSail(properties));
+		repo.initialize();
+		queue = new BlazegraphWriteQueue(repo, "test-writer");
+	}
+
+	@After
+	public void after() throws Exception {
+		queue.shutdown();
+		repo.shutDown();
+	}
+
+	private static URI graph(int i) {
+		return new URIImpl("http://model.geneontology.org/" + i);
+	}
+
+	private CompletableFuture<Integer> insert(int i) {
+		return queue.submit(connection -> {
+			connection.add(graph(i), RDF.TYPE, RDFS.RESOURCE, graph(i));
+			return i;
+		});
+	}
+
+	private int countStored() throws Exception {
+		BigdataSailRepositoryConnection connection = repo.getReadOnlyConnection();
+		try {
+			return (int) connection.size();
+		} finally {
+			connection.close();
+		}
+	}
+
+	@Test
+	public void testGroupCommit() throws Exception {
+		// long window, all writes end up in one transaction
+		queue.setBatchLimits(1000, 500);
+		List<CompletableFuture<Integer>> futures = new ArrayList<CompletableFuture<Integer>>();
+		for (int i = 0; i < 50; i++) {
+			futures.add(insert(i));
+		}
+		for (int i = 0; i < 50; i++) {
+			assertEquals(Integer.valueOf(i), futures.get(i).get(10, TimeUnit.SECONDS));
+		}
+		assertEquals(50, queue.getWriteCount());
+		assertTrue("expected fewer commits than writes: " + queue.getCommitCount(), queue.getCommitCount() < 50);
+		assertEquals(50, countStored());
+	}
+
+	@Test
+	public void testBatchSizeLimit() throws Exception {
+		queue.setBatchLimits(10, 500);
+		List<CompletableFuture<Integer>> futures = new ArrayList<CompletableFuture<Integer>>();
+		for (int i = 0; i < 30; i++) {
+			futures.add(insert(i));
+		}
+		for (CompletableFuture<Integer> future : futures) {
+			future.get(10, TimeUnit.SECONDS);
+		}
+		assertTrue(queue.getCommitCount() >= 3);
+	}
+
+	@Test
+	public void testFailedWriteIsIsolated() throws Exception {
+		queue.setBatchLimits(1000, 200);
+		CompletableFuture<Integer> first = insert(1);
+		CompletableFuture<Integer> failing = queue.submit(connection -> {
+			connection.add(graph(2), RDF.TYPE, RDFS.RESOURCE, graph(2));
+			throw new IllegalStateException("failed write");
+		});
+		CompletableFuture<Integer> last = insert(3);
+		assertEquals(Integer.valueOf(1), first.get(10, TimeUnit.SECONDS));
+		assertEquals(Integer.valueOf(3), last.get(10, TimeUnit.SECONDS));
+		try {
+			failing.get(10, TimeUnit.SECONDS);
+			fail("expected failed write");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		assertEquals(1, queue.getFailureCount());
+		// the statement of the failed write has been rolled back
+		assertEquals(2, countStored());
+	}
+
+	@Test
+	public void testReplaceGraphsInOneBatch() throws Exception {
+		queue.setBatchLimits(1000, 500);
+		List<CompletableFuture<Integer>> futures = new ArrayList<CompletableFuture<Integer>>();
+		for (int i = 0; i < 10; i++) {
+			final int n = i;
+			futures.add(queue.submit(connection -> {
+				BlazegraphMolecularModelManager.clearGraph(connection, graph(n));
+				connection.add(graph(n), RDF.TYPE, RDFS.RESOURCE, graph(n));
+				return n;
+			}));
+		}
+		for (CompletableFuture<Integer> future : futures) {
+			future.get(10, TimeUnit.SECONDS);
+		}
+		// clearing one graph must not drop the statements of the other writes in the transaction
+		assertEquals(10, countStored());
+	}
+
+	@Test
+	public void testShutdown() throws Exception {
+		CompletableFuture<Integer> pending = insert(1);
+		queue.shutdown();
+		// queued writes are executed before the shutdown completes
+		assertTrue(pending.isDone());
+		assertEquals(Integer.valueOf(1), pending.get());
+		try {
+			insert(2);
+			fail("expected rejected write");
+		} catch (RejectedExecutionException e) {
+			// expected
+		}
+	}
+}
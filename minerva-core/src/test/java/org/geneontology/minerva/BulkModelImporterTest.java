@@ -0,0 +1,137 @@
+package org.geneontology.minerva;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.geneontology.minerva.BulkModelImporter.ParsedModelFile;
+import org.geneontology.minerva.BulkModelImporter.Report;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.model.vocabulary.OWL;
+import org.semanticweb.owlapi.model.IRI;
+
+import com.bigdata.journal.Options;
+import com.bigdata.rdf.sail.BigdataSail;
+import com.bigdata.rdf.sail.BigdataSailRepository;
+import com.bigdata.rdf.sail.BigdataSailRepositoryConnection;
+
+public class BulkModelImporterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private BigdataSailRepository repo;
+	private BlazegraphWriteQueue queue;
+
+	@Before
+	public void before() throws Exception {
+		Properties properties = new Properties();
+		properties.load(BlazegraphMolecularModelManager.class.getResourceAsStream("blazegraph.properties"));
+		properties.setProperty(Options.FILE, new File(folder.getRoot(), "test.jnl").getAbsolutePath());
+		repo = new BigdataSailRepository(new BigdataSail(properties));
+		repo.initialize();
+		queue = new BlazegraphWriteQueue(repo, "test-writer");
+	}
+
+	@After
+	public void after() throws Exception {
+		queue.shutdown();
+		repo.shutDown();
+	}
+
+	private File model(String name, String ontology, String extra) throws Exception {
+		File file = new File(folder.getRoot(), name + ".ttl");
+		String ttl = "@prefix owl: <http://www.w3.org/2002/07/owl#> .\n"
+				+ "@prefix rdfs: <http://www.w3.org/2000/01/rdf-schema#> .\n"
+				+ ontology + " a owl:Ontology" + extra + " .\n"
+				+ "<http://model.geneontology.org/" + name + "/i1> a owl:NamedIndividual ;\n"
+				+ "  rdfs:label \"" + name + "\" .\n";
+		FileUtils.write(file, ttl, StandardCharsets.UTF_8);
+		return file;
+	}
+
+	private File model(String name, String extra) throws Exception {
+		return model(name, "<http://model.geneontology.org/" + name + ">", extra);
+	}
+
+	private long countStored(URI graph) throws Exception {
+		BigdataSailRepositoryConnection connection = repo.getReadOnlyConnection();
+		try {
+			return connection.size(graph);
+		} finally {
+			connection.close();
+		}
+	}
+
+	@Test
+	public void testSinglePassParse() throws Exception {
+		File file = model("m1", " ; owl:imports <http://purl.obolibrary.org/obo/go/extensions/go-lego.owl> ; "
+				+ "<http://geneontology.org/lego/modelstate> \"delete\"");
+		ParsedModelFile parsed = BulkModelImporter.parse(file);
+		assertEquals(new URIImpl("http://model.geneontology.org/m1"), parsed.getOntologyIRI());
+		assertTrue(parsed.isDelete());
+		assertEquals(1, parsed.getImports().size());
+		// import triple is dropped
+		assertEquals(4, parsed.getStatements().size());
+		parsed.getStatements().forEach(s -> assertNotEquals(OWL.IMPORTS, s.getPredicate()));
+
+		ParsedModelFile anonymous = BulkModelImporter.parse(model("m2", "[]", ""));
+		assertNull(anonymous.getOntologyIRI());
+		assertFalse(anonymous.isDelete());
+	}
+
+	@Test
+	public void testImport() throws Exception {
+		List<File> files = new ArrayList<File>();
+		for (int i = 0; i < 20; i++) {
+			files.add(model("m" + i, ""));
+		}
+		files.add(model("imports", " ; owl:imports <http://purl.obolibrary.org/obo/go/extensions/go-lego.owl>"));
+		files.add(model("deleted", " ; <http://geneontology.org/lego/modelstate> \"delete\""));
+		files.add(model("anonymous", "[]", ""));
+		files.add(model("existing", ""));
+		// same ontology IRI as m0
+		files.add(model("duplicate", "<http://model.geneontology.org/m0>", ""));
+		File broken = new File(folder.getRoot(), "broken.ttl");
+		FileUtils.write(broken, "this is not turtle", StandardCharsets.UTF_8);
+		files.add(broken);
+
+		Set<IRI> existing = new HashSet<IRI>();
+		existing.add(IRI.create("http://model.geneontology.org/existing"));
+		ModelIdRegistry modelIds = new ModelIdRegistry(null);
+		BulkModelImporter importer = new BulkModelImporter(queue, modelIds, 4);
+		// several models per transaction
+		importer.setBatchStatements(20);
+		Report report = importer.importFiles(files, true, existing);
+
+		assertEquals(21, report.getImported());
+		assertEquals(1, report.getSkippedDeleted());
+		assertEquals(2, report.getSkippedExisting());
+		assertEquals(2, report.getFailed());
+		assertEquals(26, report.getFiles());
+		assertEquals(21 * 3, report.getStatements());
+		assertTrue(queue.getCommitCount() < 21);
+
+		assertEquals(3, countStored(new URIImpl("http://model.geneontology.org/m0")));
+		assertEquals(3, countStored(new URIImpl("http://model.geneontology.org/imports")));
+		assertEquals(0, countStored(new URIImpl("http://model.geneontology.org/deleted")));
+		assertEquals(0, countStored(new URIImpl("http://model.geneontology.org/existing")));
+		assertTrue(existing.contains(IRI.create("http://model.geneontology.org/m19")));
+		assertEquals(21, modelIds.size());
+		assertTrue(modelIds.contains(IRI.create("http://model.geneontology.org/m19")));
+		assertFalse(modelIds.contains(IRI.create("http://model.geneontology.org/existing")));
+	}
+}
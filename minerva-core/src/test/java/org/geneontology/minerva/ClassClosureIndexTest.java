@@ -0,0 +1,88 @@
+package org.geneontology.minerva;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ClassClosureIndexTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final String GO = "http://purl.obolibrary.org/obo/GO_";
+
+	/**
+	 * small diamond with an anonymous intermediate class and a cycle:
+	 * 3 -> 1, 3 -> 2, 1 -> 0, 2 -> _:b, _:b -> 0, 4 <-> 5, 5 -> 0
+	 */
+	private static ClassClosureIndex createIndex() {
+		ClassClosureIndex.Builder builder = new ClassClosureIndex.Builder();
+		builder.addSubClassOf(GO+"3", false, GO+"1", false);
+		builder.addSubClassOf(GO+"3", false, GO+"2", false);
+		builder.addSubClassOf(GO+"1", false, GO+"0", false);
+		builder.addSubClassOf(GO+"2", false, "b1", true);
+		builder.addSubClassOf("b1", true, GO+"0", false);
+		builder.addSubClassOf(GO+"4", false, GO+"5", false);
+		builder.addSubClassOf(GO+"5", false, GO+"4", false);
+		builder.addSubClassOf(GO+"5", false, GO+"0", false);
+		return builder.build();
+	}
+
+	@Test
+	public void testAncestors() {
+		ClassClosureIndex index = createIndex();
+		Set<String> supers = index.getAncestors(GO+"3");
+		assertEquals(4, supers.size());
+		assertTrue(supers.contains(GO+"3"));
+		assertTrue(supers.contains(GO+"0"));
+		assertFalse("anonymous classes are not reported", supers.contains("b1"));
+		// cycle
+		supers = index.getAncestors(GO+"4");
+		assertEquals(3, supers.size());
+		assertTrue(supers.contains(GO+"5"));
+		// unknown class is only its own super class
+		supers = index.getAncestors(GO+"42");
+		assertEquals(1, supers.size());
+		assertTrue(supers.contains(GO+"42"));
+	}
+
+	@Test
+	public void testDescendants() {
+		ClassClosureIndex index = createIndex();
+		Set<String> subs = index.getDescendants(GO+"0");
+		assertEquals(6, subs.size());
+		assertTrue("reached through an anonymous class", subs.contains(GO+"2"));
+		assertFalse(subs.contains("b1"));
+		subs = index.getDescendants(GO+"2");
+		assertEquals(2, subs.size());
+		assertTrue(subs.contains(GO+"3"));
+	}
+
+	@Test
+	public void testIsSubClassOf() {
+		ClassClosureIndex index = createIndex();
+		assertTrue(index.isSubClassOf(GO+"3", GO+"0"));
+		assertTrue(index.isSubClassOf(GO+"3", GO+"3"));
+		assertTrue(index.isSubClassOf(GO+"5", GO+"4"));
+		assertFalse(index.isSubClassOf(GO+"0", GO+"3"));
+		assertFalse(index.isSubClassOf(GO+"42", GO+"0"));
+	}
+
+	@Test
+	public void testWriteRead() throws Exception {
+		ClassClosureIndex index = createIndex();
+		File file = new File(folder.getRoot(), "test.jnl.closure");
+		index.write(file, 42L);
+		assertNull("different key", ClassClosureIndex.read(file, 43L));
+		ClassClosureIndex read = ClassClosureIndex.read(file, 42L);
+		assertNotNull(read);
+		assertEquals(index.size(), read.size());
+		assertEquals(index.getAncestors(GO+"3"), read.getAncestors(GO+"3"));
+		assertEquals(index.getDescendants(GO+"0"), read.getDescendants(GO+"0"));
+	}
+}
@@ -13,6 +13,7 @@ import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
 import org.geneontology.minerva.CoreMolecularModelManager;
 import org.geneontology.minerva.validation.ShexValidationReport;
+import org.geneontology.rules.engine.Triple;
 import org.junit.Test;
 import org.semanticweb.owlapi.apibinding.OWLManager;
 import org.semanticweb.owlapi.formats.RDFXMLDocumentFormat;
@@ -28,6 +29,7 @@ import org.semanticweb.owlapi.model.OWLDataFactory;
 import org.semanticweb.owlapi.model.OWLDeclarationAxiom;
 import org.semanticweb.owlapi.model.OWLDocumentFormat;
 import org.semanticweb.owlapi.model.OWLImportsDeclaration;
+import org.semanticweb.owlapi.model.OWLObjectProperty;
 import org.semanticweb.owlapi.model.OWLOntology;
 import org.semanticweb.owlapi.model.OWLOntologyCreationException;
 import org.semanticweb.owlapi.model.OWLOntologyManager;
@@ -101,6 +103,42 @@ public class CoreMolecularModelManagerTest {
 		}
 	}
 	
+	@Test
+	public void testSchemaTriplesAreShared() throws Exception {
+		OWLOntologyManager m = OWLManager.createOWLOntologyManager();
+		OWLDataFactory f = m.getOWLDataFactory();
+		OWLOntology tbox = m.createOntology(IRI.create("http://purl.obolibrary.org/obo/test.owl"));
+		OWLObjectProperty partOf = f.getOWLObjectProperty(IRI.create("http://purl.obolibrary.org/obo/BFO_0000050"));
+		OWLObjectProperty hasPart = f.getOWLObjectProperty(IRI.create("http://purl.obolibrary.org/obo/BFO_0000051"));
+		m.addAxiom(tbox, f.getOWLTransitiveObjectPropertyAxiom(partOf));
+		CoreMolecularModelManager<Void> m3 = new CoreMolecularModelManager<Void>(tbox, null) {
+
+			@Override
+			protected OWLOntology loadModelABox(IRI modelId) throws OWLOntologyCreationException {
+				throw new OWLOntologyCreationException("no models");
+			}
+
+			@Override
+			protected void loadModel(IRI modelId, boolean isOverride) throws OWLOntologyCreationException {
+				throw new OWLOntologyCreationException("no models");
+			}
+		};
+		Set<Triple> schema = m3.getSchemaTriples();
+		assertEquals(CoreMolecularModelManager.createSchemaTriples(tbox), schema);
+		assertSame(schema, m3.getSchemaTriples());
+
+		// other axioms don't change the RBox
+		m.addAxiom(tbox, f.getOWLDeclarationAxiom(f.getOWLClass(IRI.create("http://purl.obolibrary.org/obo/GO_0003674"))));
+		assertSame(schema, m3.getSchemaTriples());
+
+		m.addAxiom(tbox, f.getOWLInverseObjectPropertiesAxiom(partOf, hasPart));
+		Set<Triple> changed = m3.getSchemaTriples();
+		assertNotSame(schema, changed);
+		assertEquals(CoreMolecularModelManager.createSchemaTriples(tbox), changed);
+		assertTrue(changed.size() > schema.size());
+		m3.dispose();
+	}
+
 	private String getTitle(OWLOntology ont) {
 		String title = "";
 		for(OWLAnnotation anno : ont.getAnnotations()) {
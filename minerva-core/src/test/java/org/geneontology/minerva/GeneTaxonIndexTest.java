@@ -0,0 +1,64 @@
+package org.geneontology.minerva;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class GeneTaxonIndexTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final String GENE = "http://identifiers.org/uniprot/P";
+	private static final String TAXON = "http://purl.obolibrary.org/obo/NCBITaxon_";
+
+	/**
+	 * P1 and P2 are human, P3 is mouse and human, P4 is in three taxa
+	 */
+	private static GeneTaxonIndex createIndex() {
+		GeneTaxonIndex.Builder builder = new GeneTaxonIndex.Builder();
+		builder.add(GENE+"1", TAXON+"9606");
+		builder.add(GENE+"2", TAXON+"9606");
+		builder.add(GENE+"3", TAXON+"10090");
+		builder.add(GENE+"3", TAXON+"9606");
+		builder.add(GENE+"3", TAXON+"9606");
+		builder.add(GENE+"4", TAXON+"7955");
+		builder.add(GENE+"4", TAXON+"10090");
+		builder.add(GENE+"4", TAXON+"9606");
+		return builder.build();
+	}
+
+	@Test
+	public void testGetTaxa() {
+		GeneTaxonIndex index = createIndex();
+		assertEquals(4, index.size());
+		assertEquals(new HashSet<String>(Arrays.asList(TAXON+"9606")), index.getTaxa(GENE+"1"));
+		assertEquals(new HashSet<String>(Arrays.asList(TAXON+"9606", TAXON+"10090")), index.getTaxa(GENE+"3"));
+		assertEquals(3, index.getTaxa(GENE+"4").size());
+		assertTrue(index.getTaxa("http://purl.obolibrary.org/obo/GO_0003674").isEmpty());
+		assertEquals(new HashSet<String>(Arrays.asList(TAXON+"9606", TAXON+"10090")),
+				index.getTaxa(Arrays.asList(GENE+"1", GENE+"3", "http://purl.obolibrary.org/obo/GO_0003674")));
+		assertEquals(3, index.getAllTaxa().size());
+	}
+
+	@Test
+	public void testWriteRead() throws Exception {
+		GeneTaxonIndex index = createIndex();
+		File file = new File(folder.getRoot(), "test.jnl.taxa");
+		index.write(file, 42L);
+		assertNull("different key", GeneTaxonIndex.read(file, 43L));
+		GeneTaxonIndex read = GeneTaxonIndex.read(file, 42L);
+		assertNotNull(read);
+		assertEquals(index.size(), read.size());
+		for (int i = 1; i <= 4; i++) {
+			assertEquals(index.getTaxa(GENE+i), read.getTaxa(GENE+i));
+		}
+		assertEquals(index.getAllTaxa(), read.getAllTaxa());
+	}
+}
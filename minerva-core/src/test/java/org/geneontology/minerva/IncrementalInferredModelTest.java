@@ -0,0 +1,215 @@
+package org.geneontology.minerva;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.jena.reasoner.rulesys.Rule;
+import org.geneontology.jena.OWLtoRules;
+import org.geneontology.rules.engine.BlankNode;
+import org.geneontology.rules.engine.RuleEngine;
+import org.geneontology.rules.engine.Triple;
+import org.geneontology.rules.engine.URI;
+import org.geneontology.rules.engine.WorkingMemory;
+import org.geneontology.rules.util.Bridge;
+import org.junit.Before;
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.AddAxiom;
+import org.semanticweb.owlapi.model.AddImport;
+import org.semanticweb.owlapi.model.AddOntologyAnnotation;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAnnotation;
+import org.semanticweb.owlapi.model.OWLAnnotationProperty;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLNamedIndividual;
+import org.semanticweb.owlapi.model.OWLObjectProperty;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyChange;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.semanticweb.owlapi.model.RemoveAxiom;
+import org.semanticweb.owlapi.model.RemoveOntologyAnnotation;
+import org.semanticweb.owlapi.model.parameters.Imports;
+import org.semanticweb.owlapi.vocab.OWLRDFVocabulary;
+
+import scala.collection.JavaConverters;
+
+public class IncrementalInferredModelTest {
+
+	private static final String NS = "http://model.geneontology.org/test/";
+	private static final IRI MODEL_ID = IRI.create("http://model.geneontology.org/test");
+	private static final IRI TBOX_ID = IRI.create("http://purl.obolibrary.org/obo/test.owl");
+
+	private OWLOntologyManager m;
+	private OWLDataFactory f;
+	private ModelContainer model;
+	private RuleEngine engine;
+	private IncrementalInferredModel inferred;
+
+	private OWLClass a, b;
+	private OWLObjectProperty partOf;
+	private OWLAnnotationProperty date, comment;
+	private OWLNamedIndividual i1, i2, i3;
+
+	@Before
+	public void before() throws Exception {
+		m = OWLManager.createOWLOntologyManager();
+		f = m.getOWLDataFactory();
+		a = f.getOWLClass(IRI.create(NS + "A"));
+		b = f.getOWLClass(IRI.create(NS + "B"));
+		partOf = f.getOWLObjectProperty(IRI.create(NS + "part_of"));
+		date = f.getOWLAnnotationProperty(IRI.create("http://purl.org/dc/elements/1.1/date"));
+		comment = f.getRDFSComment();
+		i1 = f.getOWLNamedIndividual(IRI.create(NS + "i1"));
+		i2 = f.getOWLNamedIndividual(IRI.create(NS + "i2"));
+		i3 = f.getOWLNamedIndividual(IRI.create(NS + "i3"));
+
+		OWLOntology tbox = m.createOntology(TBOX_ID);
+		m.addAxiom(tbox, f.getOWLDeclarationAxiom(a));
+		m.addAxiom(tbox, f.getOWLDeclarationAxiom(b));
+		m.addAxiom(tbox, f.getOWLDeclarationAxiom(partOf));
+		m.addAxiom(tbox, f.getOWLSubClassOfAxiom(a, b));
+		m.addAxiom(tbox, f.getOWLTransitiveObjectPropertyAxiom(partOf));
+		Set<Rule> rules = new HashSet<>();
+		rules.addAll(JavaConverters.setAsJavaSetConverter(OWLtoRules.translate(tbox, Imports.INCLUDED, true, true, true, true)).asJava());
+		rules.addAll(JavaConverters.setAsJavaSetConverter(OWLtoRules.indirectRules(tbox)).asJava());
+		engine = new RuleEngine(Bridge.rulesFromJena(JavaConverters.asScalaSetConverter(rules).asScala()), true);
+
+		OWLOntology abox = m.createOntology(MODEL_ID);
+		m.applyChange(new AddImport(abox, f.getOWLImportsDeclaration(TBOX_ID)));
+		m.addAxiom(abox, f.getOWLDeclarationAxiom(date));
+		m.addAxiom(abox, f.getOWLDeclarationAxiom(comment));
+		m.applyChange(new AddOntologyAnnotation(abox, f.getOWLAnnotation(date, f.getOWLLiteral("2020-01-01"))));
+		for (OWLNamedIndividual i : new OWLNamedIndividual[]{i1, i2, i3}) {
+			m.addAxiom(abox, f.getOWLDeclarationAxiom(i));
+			m.addAxiom(abox, f.getOWLAnnotationAssertionAxiom(date, i.getIRI(), f.getOWLLiteral("2020-01-01")));
+		}
+		m.addAxiom(abox, f.getOWLClassAssertionAxiom(a, i1));
+		m.addAxiom(abox, f.getOWLObjectPropertyAssertionAxiom(partOf, i1, i2));
+		model = new ModelContainer(MODEL_ID, tbox, abox);
+		inferred = new IncrementalInferredModel(model, engine, Collections.<Triple>emptySet());
+		model.registerListener(new ModelContainer.ModelChangeListener() {
+
+			@Override
+			public void handleChange(List<OWLOntologyChange> changes) {
+				inferred.handleChange(changes);
+			}
+
+			@Override
+			public void dispose() {
+				inferred.dispose();
+			}
+		});
+	}
+
+	@Test
+	public void testAdditionsAreIncremental() throws Exception {
+		assertSameAsRebuild(inferred.getWorkingMemory());
+		final int ontologies = m.getOntologies().size();
+		List<OWLOntologyChange> changes = new ArrayList<>();
+		changes.add(new AddAxiom(model.getAboxOntology(), f.getOWLClassAssertionAxiom(a, i3)));
+		// annotated, rendered with blank nodes
+		Set<OWLAnnotation> annotations = Collections.singleton(f.getOWLAnnotation(comment, f.getOWLLiteral("edge")));
+		changes.add(new AddAxiom(model.getAboxOntology(), f.getOWLObjectPropertyAssertionAxiom(partOf, i2, i3, annotations)));
+		changes.add(new RemoveOntologyAnnotation(model.getAboxOntology(), f.getOWLAnnotation(date, f.getOWLLiteral("2020-01-01"))));
+		changes.add(new AddOntologyAnnotation(model.getAboxOntology(), f.getOWLAnnotation(date, f.getOWLLiteral("2020-02-02"))));
+		model.applyChanges(changes);
+		final int triples = CoreMolecularModelManager.ontologyAsTriples(model.getAboxOntology()).size();
+
+		WorkingMemory wm = inferred.getWorkingMemory();
+		assertEquals(1, inferred.getRebuilds());
+		// the changes are rendered without touching the shared manager or the abox
+		assertEquals(ontologies, m.getOntologies().size());
+		assertEquals(triples, CoreMolecularModelManager.ontologyAsTriples(model.getAboxOntology()).size());
+		assertSameAsRebuild(wm);
+		assertTrue(wm.facts().contains(triple(i1, partOf, i3)));
+		assertTrue(wm.facts().contains(new Triple(uri(i3.getIRI()), uri(OWLRDFVocabulary.RDF_TYPE.getIRI()), uri(b.getIRI()))));
+	}
+
+	@Test
+	public void testRemovedAnnotationsAreDropped() throws Exception {
+		inferred.getWorkingMemory();
+		OWLAxiom removed = f.getOWLAnnotationAssertionAxiom(date, i2.getIRI(), f.getOWLLiteral("2020-01-01"));
+		model.applyChanges(Collections.singletonList(new RemoveAxiom(model.getAboxOntology(), removed)));
+		final int triples = CoreMolecularModelManager.ontologyAsTriples(model.getAboxOntology()).size();
+
+		WorkingMemory wm = inferred.getWorkingMemory();
+		assertEquals(1, inferred.getRebuilds());
+		assertEquals(triples, CoreMolecularModelManager.ontologyAsTriples(model.getAboxOntology()).size());
+		assertSameAsRebuild(wm);
+		assertFalse(hasSubjectAndPredicate(wm, i2.getIRI(), date.getIRI()));
+		assertTrue(hasSubjectAndPredicate(wm, i1.getIRI(), date.getIRI()));
+	}
+
+	@Test
+	public void testRemovalsAreRederived() throws Exception {
+		inferred.getWorkingMemory();
+		model.applyChanges(Collections.singletonList(new RemoveAxiom(model.getAboxOntology(), f.getOWLObjectPropertyAssertionAxiom(partOf, i1, i2))));
+		model.applyChanges(Collections.singletonList(new AddAxiom(model.getAboxOntology(), f.getOWLObjectPropertyAssertionAxiom(partOf, i2, i3))));
+
+		WorkingMemory wm = inferred.getWorkingMemory();
+		assertEquals(2, inferred.getRebuilds());
+		assertSameAsRebuild(wm);
+		assertFalse(wm.facts().contains(triple(i1, partOf, i3)));
+	}
+
+	@Test
+	public void testWorkingMemoryIsNotModified() throws Exception {
+		WorkingMemory before = inferred.getWorkingMemory();
+		assertSame(before, inferred.getWorkingMemory());
+		int facts = before.facts().size();
+		model.applyChanges(Collections.singletonList(new AddAxiom(model.getAboxOntology(), f.getOWLObjectPropertyAssertionAxiom(partOf, i2, i3))));
+
+		WorkingMemory after = inferred.getWorkingMemory();
+		assertNotSame(before, after);
+		assertEquals(facts, before.facts().size());
+		assertFalse(before.facts().contains(triple(i1, partOf, i3)));
+		assertTrue(after.facts().contains(triple(i1, partOf, i3)));
+		assertTrue(after.asserted().contains(triple(i2, partOf, i3)));
+	}
+
+	private void assertSameAsRebuild(WorkingMemory actual) {
+		Set<Triple> triples = CoreMolecularModelManager.ontologyAsTriples(model.getAboxOntology());
+		WorkingMemory expected = engine.processTriples(JavaConverters.asScalaSetConverter(triples).asScala());
+		assertEquals(withoutBlankNodes(expected.asserted()), withoutBlankNodes(actual.asserted()));
+		assertEquals(withoutBlankNodes(expected.facts()), withoutBlankNodes(actual.facts()));
+		assertEquals(expected.asserted().size(), actual.asserted().size());
+		assertEquals(expected.facts().size(), actual.facts().size());
+	}
+
+	/**
+	 * Blank node ids differ between the renderings.
+	 */
+	private static Set<Triple> withoutBlankNodes(scala.collection.Set<Triple> triples) {
+		Set<Triple> result = new HashSet<>();
+		for (Triple t : JavaConverters.setAsJavaSetConverter(triples).asJava()) {
+			if (t.s() instanceof BlankNode == false && t.o() instanceof BlankNode == false) {
+				result.add(t);
+			}
+		}
+		return result;
+	}
+
+	private static boolean hasSubjectAndPredicate(WorkingMemory wm, IRI s, IRI p) {
+		for (Triple t : JavaConverters.setAsJavaSetConverter(wm.facts()).asJava()) {
+			if (t.s().equals(uri(s)) && t.p().equals(uri(p))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static Triple triple(OWLNamedIndividual s, OWLObjectProperty p, OWLNamedIndividual o) {
+		return new Triple(uri(s.getIRI()), uri(p.getIRI()), uri(o.getIRI()));
+	}
+
+	private static URI uri(IRI iri) {
+		return new URI(iri.toString());
+	}
+}
@@ -0,0 +1,139 @@
+package org.geneontology.minerva;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.model.vocabulary.OWL;
+import org.openrdf.model.vocabulary.RDF;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAnnotation;
+
+import com.bigdata.journal.Options;
+import com.bigdata.rdf.sail.BigdataSail;
+import com.bigdata.rdf.sail.BigdataSailRepository;
+import com.bigdata.rdf.sail.BigdataSailRepositoryConnection;
+
+public class ModelAnnotationIndexTest {
+
+	private static final String MODEL = "http://model.geneontology.org/";
+	private static final String TITLE = "http://purl.org/dc/elements/1.1/title";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private BigdataSailRepository repo;
+	private ModelAnnotationIndex index;
+
+	@Before
+	public void before() throws Exception {
+		Properties properties = new Properties();
+		properties.load(BlazegraphMolecularModelManager.class.getResourceAsStream("blazegraph.properties"));
+		properties.setProperty(Options.FILE, new File(folder.getRoot(), "test.jnl").getAbsolutePath());
+		repo = new BigdataSailRepository(new BigdataSail(properties));
+		repo.initialize();
+		addModel("1", "model 1");
+		addModel("2", "model 2");
+		// not an ontology, never indexed
+		write((connection) -> connection.add(uri(MODEL+"3"), uri(TITLE), new LiteralImpl("model 3"), uri(MODEL+"3")));
+		index = new ModelAnnotationIndex();
+		BigdataSailRepositoryConnection connection = repo.getReadOnlyConnection();
+		try {
+			index.rebuild(connection);
+		} finally {
+			connection.close();
+		}
+	}
+
+	@After
+	public void after() throws Exception {
+		repo.shutDown();
+	}
+
+	private static URI uri(String uri) {
+		return new URIImpl(uri);
+	}
+
+	private static interface Write {
+		void apply(BigdataSailRepositoryConnection connection) throws Exception;
+	}
+
+	private void write(Write write) throws Exception {
+		BigdataSailRepositoryConnection connection = repo.getUnisolatedConnection();
+		try {
+			connection.begin();
+			write.apply(connection);
+			connection.commit();
+		} finally {
+			connection.close();
+		}
+	}
+
+	private void update(String id) throws Exception {
+		BigdataSailRepositoryConnection connection = repo.getReadOnlyConnection();
+		try {
+			index.update(connection, IRI.create(MODEL+id));
+		} finally {
+			connection.close();
+		}
+	}
+
+	private void addModel(String id, String title) throws Exception {
+		final URI model = uri(MODEL+id);
+		write((connection) -> {
+			connection.add(model, RDF.TYPE, OWL.ONTOLOGY, model);
+			connection.add(model, OWL.IMPORTS, uri("http://purl.obolibrary.org/obo/go/extensions/go-lego.owl"), model);
+			connection.add(model, uri(TITLE), new LiteralImpl(title), model);
+		});
+	}
+
+	private Set<String> titles(String id) {
+		Set<String> titles = new HashSet<String>();
+		for (OWLAnnotation annotation : index.get(IRI.create(MODEL+id))) {
+			assertEquals(TITLE, annotation.getProperty().getIRI().toString());
+			titles.add(annotation.getValue().asLiteral().get().getLiteral());
+		}
+		return titles;
+	}
+
+	@Test
+	public void testRebuild() throws Exception {
+		assertEquals(2, index.size());
+		// imports and type are not annotations
+		assertEquals(1, index.get(IRI.create(MODEL+"1")).size());
+		assertTrue(titles("1").contains("model 1"));
+		assertNull(index.get(IRI.create(MODEL+"3")));
+	}
+
+	@Test
+	public void testUpdate() throws Exception {
+		write((connection) -> {
+			connection.remove(uri(MODEL+"1"), uri(TITLE), null, uri(MODEL+"1"));
+			connection.add(uri(MODEL+"1"), uri(TITLE), new LiteralImpl("renamed"), uri(MODEL+"1"));
+		});
+		update("1");
+		assertEquals(1, titles("1").size());
+		assertTrue(titles("1").contains("renamed"));
+
+		addModel("4", "model 4");
+		update("4");
+		assertEquals(3, index.size());
+
+		// a model, which is not stored anymore, is removed
+		write((connection) -> connection.remove((URI) null, null, null, uri(MODEL+"2")));
+		update("2");
+		assertNull(index.get(IRI.create(MODEL+"2")));
+		assertEquals(2, index.size());
+	}
+}
@@ -0,0 +1,159 @@
+package org.geneontology.minerva;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+
+public class ModelCacheTest {
+
+	private OWLOntologyManager m;
+	private OWLOntology tbox;
+
+	@Before
+	public void setUp() throws Exception {
+		m = OWLManager.createOWLOntologyManager();
+		tbox = m.createOntology(IRI.create("http://example.org/tbox"));
+	}
+
+	private ModelContainer createModel(String id, int individuals) throws Exception {
+		IRI modelId = IRI.create("http://model.geneontology.org/"+id);
+		OWLOntology abox = m.createOntology(modelId);
+		OWLDataFactory f = m.getOWLDataFactory();
+		for (int i = 0; i < individuals; i++) {
+			m.addAxiom(abox, f.getOWLDeclarationAxiom(f.getOWLNamedIndividual(IRI.create(modelId+"/"+i))));
+		}
+		return new ModelContainer(modelId, tbox, abox);
+	}
+
+	private static void put(ModelCache cache, ModelContainer model) {
+		cache.put(model.getModelId(), model);
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEviction() throws Exception {
+		ModelCache cache = new ModelCache(2, Long.MAX_VALUE);
+		cache.setMinIdleMillis(0);
+		ModelContainer a = createModel("a", 1);
+		ModelContainer b = createModel("b", 1);
+		ModelContainer c = createModel("c", 1);
+		put(cache, a);
+		put(cache, b);
+		assertTrue(cache.evict().isEmpty());
+		// use a, so b is the least recently used model
+		assertSame(a, cache.get(a.getModelId()));
+		put(cache, c);
+		List<ModelContainer> evicted = cache.evict();
+		assertEquals(1, evicted.size());
+		assertSame(b, evicted.get(0));
+		assertFalse(cache.containsKey(b.getModelId()));
+		assertNull(cache.get(b.getModelId()));
+
+		ModelCache.Stats stats = cache.getStats();
+		assertEquals(1, stats.hits);
+		assertEquals(1, stats.misses);
+		assertEquals(1, stats.evictions);
+		assertEquals(2, stats.models);
+	}
+
+	@Test
+	public void testModifiedModelsArePinned() throws Exception {
+		ModelCache cache = new ModelCache(1, Long.MAX_VALUE);
+		cache.setMinIdleMillis(0);
+		ModelContainer a = createModel("a", 1);
+		ModelContainer b = createModel("b", 1);
+		a.setAboxModified(true);
+		put(cache, a);
+		put(cache, b);
+		List<ModelContainer> evicted = cache.evict();
+		assertEquals(1, evicted.size());
+		assertSame(b, evicted.get(0));
+		assertTrue(cache.containsKey(a.getModelId()));
+		assertEquals(1, cache.getStats().pinned);
+
+		// a stays, even though the cache is over its limit
+		put(cache, createModel("c", 1));
+		cache.setLimits(0, Long.MAX_VALUE);
+		evicted = cache.evict();
+		assertEquals(1, evicted.size());
+		assertTrue(cache.containsKey(a.getModelId()));
+
+		// after a save, the model can be evicted
+		a.setAboxModified(false);
+		evicted = cache.evict();
+		assertEquals(1, evicted.size());
+		assertSame(a, evicted.get(0));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testAxiomLimit() throws Exception {
+		ModelCache cache = new ModelCache(Integer.MAX_VALUE, 10);
+		cache.setMinIdleMillis(0);
+		put(cache, createModel("a", 6));
+		put(cache, createModel("b", 3));
+		assertTrue(cache.evict().isEmpty());
+		put(cache, createModel("c", 3));
+		List<ModelContainer> evicted = cache.evict();
+		assertEquals(1, evicted.size());
+		assertEquals(IRI.create("http://model.geneontology.org/a"), evicted.get(0).getModelId());
+		assertEquals(6, cache.getStats().axioms);
+	}
+
+	@Test
+	public void testPinnedModelsAreKept() throws Exception {
+		ModelCache cache = new ModelCache(1, Long.MAX_VALUE);
+		cache.setMinIdleMillis(0);
+		ModelContainer a = createModel("a", 1);
+		ModelContainer b = createModel("b", 1);
+		put(cache, a);
+		put(cache, b);
+		// a is used by a request, twice
+		assertSame(a, cache.pin(a.getModelId()));
+		assertSame(a, cache.pin(a.getModelId()));
+		assertNull(cache.pin(IRI.create("http://model.geneontology.org/missing")));
+		List<ModelContainer> evicted = cache.evict();
+		assertEquals(1, evicted.size());
+		assertSame(b, evicted.get(0));
+		assertEquals(1, cache.getStats().in_use);
+
+		cache.setLimits(0, Long.MAX_VALUE);
+		cache.unpin(a.getModelId(), a);
+		assertTrue(cache.evict().isEmpty());
+		// released by both requests
+		cache.unpin(a.getModelId(), a);
+		assertEquals(0, cache.getStats().in_use);
+		evicted = cache.evict();
+		assertEquals(1, evicted.size());
+		assertSame(a, evicted.get(0));
+
+		// releasing a model, which has been replaced, does not touch the new one
+		ModelContainer c1 = createModel("c1", 1);
+		put(cache, c1);
+		assertSame(c1, cache.pin(c1.getModelId()));
+		ModelContainer c2 = new ModelContainer(c1.getModelId(), tbox, c1.getAboxOntology());
+		put(cache, c2);
+		assertSame(c2, cache.pin(c2.getModelId()));
+		cache.unpin(c1.getModelId(), c1);
+		assertTrue(cache.evict().isEmpty());
+		cache.unpin(c2.getModelId(), c2);
+		assertEquals(1, cache.evict().size());
+	}
+
+	@Test
+	public void testRecentlyUsedModelsAreKept() throws Exception {
+		ModelCache cache = new ModelCache(1, Long.MAX_VALUE);
+		put(cache, createModel("a", 1));
+		put(cache, createModel("b", 1));
+		// both models have just been used
+		assertTrue(cache.evict().isEmpty());
+		assertEquals(2, cache.size());
+	}
+}
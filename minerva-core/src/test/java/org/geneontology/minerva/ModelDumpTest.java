@@ -0,0 +1,108 @@
+package org.geneontology.minerva;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.geneontology.minerva.curie.MappedCurieHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openrdf.model.Model;
+import org.openrdf.model.Resource;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.Rio;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLOntology;
+
+public class ModelDumpTest {
+
+	private static final int MODELS = 12;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private BlazegraphMolecularModelManager<Void> m3;
+
+	@Before
+	public void before() throws Exception {
+		OWLOntology tbox = OWLManager.createOWLOntologyManager().createOntology(IRI.create("http://example.org/tbox"));
+		String journal = new File(folder.getRoot(), "test.jnl").getAbsolutePath();
+		m3 = new BlazegraphMolecularModelManager<>(tbox, new MappedCurieHandler(), "http://model.geneontology.org/", journal, null, null);
+		File input = folder.newFolder("input");
+		for (int i = 0; i < MODELS; i++) {
+			File file = new File(input, "m" + i + ".ttl");
+			FileUtils.write(file, "@prefix owl: <http://www.w3.org/2002/07/owl#> .\n"
+					+ "@prefix rdfs: <http://www.w3.org/2000/01/rdf-schema#> .\n"
+					+ "<http://model.geneontology.org/m" + i + "> a owl:Ontology .\n"
+					+ "<http://model.geneontology.org/m" + i + "/i1> a owl:NamedIndividual ;\n"
+					+ "  rdfs:label \"model " + i + "\" .\n", StandardCharsets.UTF_8);
+			m3.importModelToDatabase(file, false);
+		}
+	}
+
+	@After
+	public void after() throws Exception {
+		m3.dispose();
+	}
+
+	private static Model read(File file, RDFFormat format, boolean gzip) throws Exception {
+		InputStream in = new FileInputStream(file);
+		try {
+			return Rio.parse(gzip ? new GZIPInputStream(in) : in, "", format);
+		} finally {
+			in.close();
+		}
+	}
+
+	@Test
+	public void testDumpFiles() throws Exception {
+		File out = folder.newFolder("out");
+		// existing files are replaced
+		FileUtils.write(new File(out, "m0.ttl"), "stale", StandardCharsets.UTF_8);
+		m3.dumpAllStoredModels(out, 4, false);
+		String[] names = out.list();
+		Arrays.sort(names);
+		assertEquals(MODELS, names.length);
+		for (int i = 0; i < MODELS; i++) {
+			Model model = read(new File(out, "m" + i + ".ttl"), RDFFormat.TURTLE, false);
+			assertEquals(3, model.size());
+		}
+	}
+
+	@Test
+	public void testDumpGzipFiles() throws Exception {
+		File out = folder.newFolder("out");
+		m3.dumpAllStoredModels(out, 3, true);
+		assertEquals(MODELS, out.list().length);
+		Model model = read(new File(out, "m5.ttl.gz"), RDFFormat.TURTLE, true);
+		assertEquals(3, model.size());
+	}
+
+	@Test
+	public void testDumpSingleStream() throws Exception {
+		for (RDFFormat format : Arrays.asList(RDFFormat.NQUADS, RDFFormat.TRIG)) {
+			File target = new File(folder.getRoot(), "all." + format.getDefaultFileExtension() + ".gz");
+			m3.dumpAllStoredModels(target, format, 4, true);
+			Model model = read(target, format, true);
+			assertEquals(MODELS * 3, model.size());
+			Set<Resource> graphs = new HashSet<Resource>(model.contexts());
+			assertEquals(MODELS, graphs.size());
+			assertTrue(graphs.contains(new URIImpl("http://model.geneontology.org/m7")));
+			// no temporary files are left behind
+			assertEquals(1, folder.getRoot().listFiles((dir, name) -> name.startsWith("all." + format.getDefaultFileExtension())).length);
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package org.geneontology.minerva;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.model.vocabulary.RDFS;
+import org.semanticweb.owlapi.model.IRI;
+
+import com.bigdata.journal.Options;
+import com.bigdata.rdf.sail.BigdataSail;
+import com.bigdata.rdf.sail.BigdataSailRepository;
+import com.bigdata.rdf.sail.BigdataSailRepositoryConnection;
+
+public class ModelIdRegistryTest {
+
+	private static final String MODEL = "http://model.geneontology.org/";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private BigdataSailRepository repo;
+	private File file;
+
+	@Before
+	public void before() throws Exception {
+		Properties properties = new Properties();
+		properties.load(BlazegraphMolecularModelManager.class.getResourceAsStream("blazegraph.properties"));
+		properties.setProperty(Options.FILE, new File(folder.getRoot(), "test.jnl").getAbsolutePath());
+		repo = new BigdataSailRepository(new BigdataSail(properties));
+		repo.initialize();
+		file = new File(folder.getRoot(), "test.jnl.model-ids");
+		addModel("1");
+		addModel("2");
+	}
+
+	@After
+	public void after() throws Exception {
+		repo.shutDown();
+	}
+
+	private void addModel(String id) throws Exception {
+		BigdataSailRepositoryConnection connection = repo.getUnisolatedConnection();
+		try {
+			connection.begin();
+			connection.add(new URIImpl(MODEL+id), RDFS.LABEL, new LiteralImpl("model "+id), new URIImpl(MODEL+id));
+			connection.commit();
+		} finally {
+			connection.close();
+		}
+	}
+
+	private static Set<String> ids(ModelIdRegistry registry) {
+		return registry.stream().map(IRI::toString).collect(Collectors.toSet());
+	}
+
+	@Test
+	public void testOpen() throws Exception {
+		ModelIdRegistry registry = ModelIdRegistry.open(repo, file);
+		assertEquals(2, registry.size());
+		assertTrue(registry.contains(IRI.create(MODEL+"1")));
+		assertFalse(registry.contains(IRI.create(MODEL+"3")));
+		assertTrue(file.isFile());
+
+		// saved for the commit, the ids in the file are used
+		registry.remove(IRI.create(MODEL+"2"));
+		registry.save(ModelIdRegistry.getLastCommitTime(repo));
+		assertEquals(1, ModelIdRegistry.open(repo, file).size());
+	}
+
+	@Test
+	public void testOutdated() throws Exception {
+		ModelIdRegistry registry = ModelIdRegistry.open(repo, file);
+		// a write without the registry
+		addModel("3");
+		assertFalse(registry.contains(IRI.create(MODEL+"3")));
+		registry = ModelIdRegistry.open(repo, file);
+		assertEquals(3, registry.size());
+		assertTrue(ids(registry).contains(MODEL+"3"));
+	}
+}
@@ -0,0 +1,239 @@
+package org.geneontology.minerva;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+
+import org.geneontology.minerva.ModelSearchIndex.IndexedModel;
+import org.geneontology.minerva.ModelSearchIndex.Query;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.model.vocabulary.RDF;
+
+import com.bigdata.journal.Options;
+import com.bigdata.rdf.sail.BigdataSail;
+import com.bigdata.rdf.sail.BigdataSailRepository;
+import com.bigdata.rdf.sail.BigdataSailRepositoryConnection;
+
+public class ModelSearchIndexTest {
+
+	private static final String MODEL = "http://model.geneontology.org/";
+	private static final String OBO = "http://purl.obolibrary.org/obo/";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private BigdataSailRepository repo;
+	private ModelSearchIndex index;
+
+	@Before
+	public void before() throws Exception {
+		Properties properties = new Properties();
+		properties.load(BlazegraphMolecularModelManager.class.getResourceAsStream("blazegraph.properties"));
+		properties.setProperty(Options.FILE, new File(folder.getRoot(), "test.jnl").getAbsolutePath());
+		repo = new BigdataSailRepository(new BigdataSail(properties));
+		repo.initialize();
+		addModel("1", "2019-01-01", "production", "http://orcid.org/1", OBO+"GO_0003674", "PMID:1");
+		addModel("2", "2020-01-01", "development", "http://orcid.org/2", OBO+"GO_0008150", "PMID:2");
+		addModel("3", "2020-06-01", "production", "http://orcid.org/1", OBO+"GO_0003674", "PMID:2");
+		write((connection) -> connection.add(uri(MODEL+"3"), uri(BlazegraphOntologyManager.in_taxon_uri), uri(OBO+"NCBITaxon_9606"), uri(MODEL+"3")));
+		// no title, never found
+		write((connection) -> connection.add(uri(MODEL+"4"), uri(ModelSearchIndex.DATE), new LiteralImpl("2021-01-01"), uri(MODEL+"4")));
+		index = new ModelSearchIndex();
+		BigdataSailRepositoryConnection connection = repo.getReadOnlyConnection();
+		try {
+			index.rebuild(connection);
+		} finally {
+			connection.close();
+		}
+	}
+
+	@After
+	public void after() throws Exception {
+		repo.shutDown();
+	}
+
+	private static URI uri(String uri) {
+		return new URIImpl(uri);
+	}
+
+	private static interface Write {
+		void apply(BigdataSailRepositoryConnection connection) throws Exception;
+	}
+
+	private void write(Write write) throws Exception {
+		BigdataSailRepositoryConnection connection = repo.getUnisolatedConnection();
+		try {
+			connection.begin();
+			write.apply(connection);
+			connection.commit();
+		} finally {
+			connection.close();
+		}
+	}
+
+	private void update(String id) throws Exception {
+		BigdataSailRepositoryConnection connection = repo.getReadOnlyConnection();
+		try {
+			index.update(connection, MODEL+id);
+		} finally {
+			connection.close();
+		}
+	}
+
+	private void addModel(String id, String date, String state, String contributor, String type, String source) throws Exception {
+		final URI model = uri(MODEL+id);
+		final URI individual = uri(MODEL+id+"/1");
+		write((connection) -> {
+			connection.add(model, uri(ModelSearchIndex.TITLE), new LiteralImpl("model "+id), model);
+			connection.add(model, uri(ModelSearchIndex.DATE), new LiteralImpl(date), model);
+			connection.add(model, uri(ModelSearchIndex.STATE), new LiteralImpl(state), model);
+			connection.add(model, uri(ModelSearchIndex.CONTRIBUTOR), new LiteralImpl(contributor), model);
+			connection.add(individual, RDF.TYPE, uri(type), model);
+			connection.add(individual, uri(ModelSearchIndex.SOURCE), new LiteralImpl(source), model);
+		});
+	}
+
+	private List<String> search(Query query) {
+		List<String> ids = new ArrayList<String>();
+		for (IndexedModel model : index.search(query, 0, 0).getModels()) {
+			ids.add(model.getId().substring(MODEL.length()));
+		}
+		return ids;
+	}
+
+	@Test
+	public void testLatestFirst() throws Exception {
+		assertEquals(4, index.size());
+		assertEquals(Arrays.asList("3", "2", "1"), search(new Query()));
+		ModelSearchIndex.Result page = index.search(new Query(), 1, 1);
+		assertEquals(3, page.getTotal());
+		assertEquals(MODEL+"2", page.getModels().get(0).getId());
+		IndexedModel model = page.getModels().get(0);
+		assertEquals("model 2", model.getTitle());
+		assertEquals("development", model.getState());
+		assertEquals(Collections.singleton("http://orcid.org/2"), model.getContributors());
+	}
+
+	@Test
+	public void testCursor() throws Exception {
+		// same date as model 3
+		addModel("5", "2020-06-01", "production", "http://orcid.org/1", OBO+"GO_0003674", "PMID:1");
+		update("5");
+		List<String> walked = new ArrayList<String>();
+		String cursor = null;
+		do {
+			ModelSearchIndex.Result page = index.search(new Query(), cursor, 0, 1);
+			assertEquals(4, page.getTotal());
+			assertEquals(1, page.getModels().size());
+			walked.add(page.getModels().get(0).getId().substring(MODEL.length()));
+			cursor = page.getNextCursor();
+		} while (cursor != null);
+		assertEquals(Arrays.asList("5", "3", "2", "1"), walked);
+
+		ModelSearchIndex.Result page = index.search(new Query(), null, 0, 2);
+		assertEquals(Arrays.asList(MODEL+"5", MODEL+"3"), Arrays.asList(page.getModels().get(0).getId(), page.getModels().get(1).getId()));
+		page = index.search(new Query(), page.getNextCursor(), 0, 2);
+		assertEquals(2, page.getModels().size());
+		assertEquals(MODEL+"2", page.getModels().get(0).getId());
+		assertNull(page.getNextCursor());
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidCursor() throws Exception {
+		index.search(new Query(), "not a cursor", 0, 1);
+	}
+
+	@Test
+	public void testConstraints() throws Exception {
+		Query query = new Query();
+		query.types.add(Collections.singleton(OBO+"GO_0003674"));
+		assertEquals(Arrays.asList("3", "1"), search(query));
+		query.sources.add("PMID:2");
+		assertEquals(Arrays.asList("3"), search(query));
+
+		query = new Query();
+		query.types.add(new HashSet<String>(Arrays.asList(OBO+"GO_0003674", OBO+"GO_0008150")));
+		query.states = Collections.singleton("production");
+		query.contributors = Collections.singleton("http://orcid.org/1");
+		assertEquals(Arrays.asList("3", "1"), search(query));
+
+		query = new Query();
+		query.taxa.add(OBO+"NCBITaxon_9606");
+		assertEquals(Arrays.asList("3"), search(query));
+
+		query = new Query();
+		query.ids = new HashSet<String>(Arrays.asList(MODEL+"1", MODEL+"4"));
+		assertEquals(Arrays.asList("1"), search(query));
+	}
+
+	@Test
+	public void testDates() throws Exception {
+		Query query = new Query();
+		query.exactDate = "2020-01-01";
+		assertEquals(Arrays.asList("2"), search(query));
+		query = new Query();
+		query.dateAfter = "2019-01-01";
+		assertEquals(Arrays.asList("3", "2"), search(query));
+		query.dateBefore = "2020-06-01";
+		assertEquals(Arrays.asList("2"), search(query));
+	}
+
+	@Test
+	public void testUpdate() throws Exception {
+		final URI model = uri(MODEL+"1");
+		write((connection) -> {
+			connection.remove(model, uri(ModelSearchIndex.STATE), null, model);
+			connection.add(model, uri(ModelSearchIndex.STATE), new LiteralImpl("delete"), model);
+			connection.add(model, uri(ModelSearchIndex.DATE), new LiteralImpl("2021-01-01"), model);
+		});
+		update("1");
+		assertEquals(Arrays.asList("1", "3", "2"), search(new Query()));
+		Query query = new Query();
+		query.states = Collections.singleton("production");
+		assertEquals(Arrays.asList("3"), search(query));
+		query.states = Collections.singleton("delete");
+		assertEquals(Arrays.asList("1"), search(query));
+
+		write((connection) -> connection.remove((URI) null, null, null, uri(MODEL+"3")));
+		update("3");
+		assertEquals(3, index.size());
+		assertEquals(Arrays.asList("1", "2"), search(new Query()));
+		query = new Query();
+		query.taxa.add(OBO+"NCBITaxon_9606");
+		assertTrue(search(query).isEmpty());
+	}
+
+	@Test
+	public void testGeneTaxa() throws Exception {
+		final String gene = "http://identifiers.org/uniprot/P12345";
+		write((connection) -> connection.add(uri(MODEL+"2/2"), RDF.TYPE, uri(gene), uri(MODEL+"2")));
+		GeneTaxonIndex geneTaxa = new GeneTaxonIndex.Builder().add(gene, OBO+"NCBITaxon_10090").build();
+		index = new ModelSearchIndex(geneTaxa);
+		BigdataSailRepositoryConnection connection = repo.getReadOnlyConnection();
+		try {
+			index.rebuild(connection);
+		} finally {
+			connection.close();
+		}
+		Query query = new Query();
+		query.taxa.add(OBO+"NCBITaxon_10090");
+		assertEquals(Arrays.asList("2"), search(query));
+		// annotated taxa are still used
+		query = new Query();
+		query.taxa.add(OBO+"NCBITaxon_9606");
+		assertEquals(Arrays.asList("3"), search(query));
+	}
+}
@@ -0,0 +1,125 @@
+package org.geneontology.minerva;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.openrdf.model.Statement;
+import org.openrdf.model.impl.StatementImpl;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.model.vocabulary.OWL;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.model.vocabulary.RDFS;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFParser;
+import org.openrdf.rio.Rio;
+import org.openrdf.rio.helpers.StatementCollector;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.AxiomType;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.semanticweb.owlapi.model.parameters.Imports;
+import org.semanticweb.owlapi.rio.RioMemoryTripleSource;
+
+/**
+ * The direct loader has to create the same ontologies as the RDF parser.
+ */
+public class ModelStatementLoaderTest {
+
+	private static final String GO_LEGO = "http://purl.obolibrary.org/obo/go/extensions/go-lego.owl";
+	private static final String ENABLED_BY = "http://purl.obolibrary.org/obo/RO_0002333";
+
+	private static List<Statement> parse(File file) throws Exception {
+		List<Statement> statements = new ArrayList<Statement>();
+		RDFParser parser = Rio.createParser(RDFFormat.TURTLE);
+		parser.setRDFHandler(new StatementCollector(statements));
+		try (InputStream in = new FileInputStream(file)) {
+			parser.parse(in, file.toURI().toString());
+		}
+		return statements;
+	}
+
+	private static void assertSameOntology(OWLOntology expected, OWLOntology actual) {
+		assertEquals(expected.getOntologyID(), actual.getOntologyID());
+		assertEquals(expected.getImportsDeclarations(), actual.getImportsDeclarations());
+		assertEquals(expected.getAnnotations(), actual.getAnnotations());
+		assertEquals(expected.getAxioms(), actual.getAxioms());
+	}
+
+	@Test
+	public void testSameAsParser() throws Exception {
+		Collection<File> files = FileUtils.listFiles(new File("src/test/resources"), new String[]{"ttl"}, true);
+		int loaded = 0;
+		for (File file : files) {
+			List<Statement> statements;
+			try {
+				statements = parse(file);
+			} catch (Exception e) {
+				// broken test files
+				continue;
+			}
+			OWLOntology actual = new ModelStatementLoader(OWLManager.createOWLOntologyManager(), false).load(statements);
+			if (actual == null) {
+				continue;
+			}
+			OWLOntology expected = CoreMolecularModelManager.loadOntologyDocumentSource(
+					new RioMemoryTripleSource(statements.iterator()), true, OWLManager.createOWLOntologyManager());
+			assertSameOntology(expected, actual);
+			loaded += 1;
+		}
+		// most test models only use the supported constructs
+		assertTrue(loaded+" of "+files.size(), loaded > files.size() / 2);
+	}
+
+	private static OWLOntologyManager createManagerWithGoLego() throws Exception {
+		OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+		OWLDataFactory df = manager.getOWLDataFactory();
+		OWLOntology goLego = manager.createOntology(IRI.create(GO_LEGO));
+		manager.addAxiom(goLego, df.getOWLDeclarationAxiom(df.getOWLObjectProperty(IRI.create(ENABLED_BY))));
+		return manager;
+	}
+
+	@Test
+	public void testImports() throws Exception {
+		File file = new File("src/test/resources/validation/should_pass/test-negation1.ttl");
+		List<Statement> statements = parse(file);
+		statements.add(new StatementImpl(new URIImpl("http://model.geneontology.org/5d29218800000021"), OWL.IMPORTS, new URIImpl(GO_LEGO)));
+
+		OWLOntologyManager manager = createManagerWithGoLego();
+		OWLOntology actual = new ModelStatementLoader(manager, true).load(statements);
+		assertNotNull(actual);
+		OWLOntology expected = CoreMolecularModelManager.loadOntologyDocumentSource(
+				new RioMemoryTripleSource(statements.iterator()), false, createManagerWithGoLego());
+		assertSameOntology(expected, actual);
+		// typed by the import
+		assertEquals(2, actual.getAxiomCount(AxiomType.OBJECT_PROPERTY_ASSERTION));
+		assertEquals(2, actual.getImportsClosure().size());
+		assertTrue(actual.containsObjectPropertyInSignature(IRI.create(ENABLED_BY), Imports.INCLUDED));
+
+		// the import is not loaded
+		assertNull(new ModelStatementLoader(OWLManager.createOWLOntologyManager(), true).load(statements));
+	}
+
+	@Test
+	public void testUnsupported() throws Exception {
+		File file = new File("src/test/resources/validation/should_pass/test-negation1.ttl");
+		List<Statement> statements = parse(file);
+		statements.add(new StatementImpl(new URIImpl("http://purl.obolibrary.org/obo/GO_0005158"), RDFS.SUBCLASSOF, new URIImpl("http://purl.obolibrary.org/obo/GO_0003674")));
+		OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+		assertNull(new ModelStatementLoader(manager, false).load(statements));
+		assertTrue(manager.getOntologies().isEmpty());
+
+		statements = parse(file);
+		statements.add(new StatementImpl(new URIImpl("http://model.geneontology.org/5d29218800000021/5d29218800000022"), RDF.TYPE, OWL.THING));
+		assertNull(new ModelStatementLoader(manager, false).load(statements));
+	}
+}
@@ -0,0 +1,123 @@
+package org.geneontology.minerva;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.geneontology.rules.engine.RuleEngine;
+import org.geneontology.rules.engine.Triple;
+import org.geneontology.rules.engine.URI;
+import org.geneontology.rules.engine.WorkingMemory;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLObjectProperty;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.semanticweb.owlapi.vocab.OWLRDFVocabulary;
+
+import scala.collection.JavaConverters;
+
+public class RuleSnapshotTest {
+
+	private static final String NS = "http://purl.obolibrary.org/obo/test/";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private OWLOntologyManager m;
+	private OWLDataFactory f;
+	private OWLOntology tbox;
+	private OWLClass a, b;
+	private OWLObjectProperty partOf;
+
+	@Before
+	public void before() throws Exception {
+		m = OWLManager.createOWLOntologyManager();
+		f = m.getOWLDataFactory();
+		a = f.getOWLClass(IRI.create(NS + "A"));
+		b = f.getOWLClass(IRI.create(NS + "B"));
+		partOf = f.getOWLObjectProperty(IRI.create(NS + "part_of"));
+		tbox = m.createOntology(IRI.create("http://purl.obolibrary.org/obo/test.owl"));
+		m.addAxiom(tbox, f.getOWLDeclarationAxiom(a));
+		m.addAxiom(tbox, f.getOWLDeclarationAxiom(b));
+		m.addAxiom(tbox, f.getOWLDeclarationAxiom(partOf));
+		m.addAxiom(tbox, f.getOWLSubClassOfAxiom(a, b));
+		m.addAxiom(tbox, f.getOWLTransitiveObjectPropertyAxiom(partOf));
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		File snapshot = new File(folder.getRoot(), "rules.ser.gz");
+		List<org.geneontology.rules.engine.Rule> rules = RuleSnapshot.translate(tbox);
+		assertFalse(rules.isEmpty());
+		assertEquals(rules.size(), RuleSnapshot.write(tbox, snapshot));
+
+		List<org.geneontology.rules.engine.Rule> loaded = RuleSnapshot.load(snapshot, RuleSnapshot.createKey(tbox));
+		assertNotNull(loaded);
+		assertEquals(new HashSet<org.geneontology.rules.engine.Rule>(rules), new HashSet<org.geneontology.rules.engine.Rule>(loaded));
+		assertFalse(new File(folder.getRoot(), "rules.ser.gz.tmp").exists());
+	}
+
+	@Test
+	public void testChangedTbox() throws Exception {
+		File snapshot = new File(folder.getRoot(), "rules.ser.gz");
+		RuleSnapshot.write(tbox, snapshot);
+		String key = RuleSnapshot.createKey(tbox);
+
+		// annotations are not used for the rules
+		m.addAxiom(tbox, f.getOWLAnnotationAssertionAxiom(f.getRDFSLabel(), a.getIRI(), f.getOWLLiteral("a")));
+		assertEquals(key, RuleSnapshot.createKey(tbox));
+
+		OWLClass c = f.getOWLClass(IRI.create(NS + "C"));
+		m.addAxiom(tbox, f.getOWLSubClassOfAxiom(b, c));
+		String changed = RuleSnapshot.createKey(tbox);
+		assertNotEquals(key, changed);
+		assertNull(RuleSnapshot.load(snapshot, changed));
+
+		// the outdated snapshot is replaced
+		RuleSnapshot.createRuleEngine(tbox, snapshot);
+		assertNotNull(RuleSnapshot.load(snapshot, changed));
+	}
+
+	@Test
+	public void testUnreadableSnapshot() throws Exception {
+		File snapshot = folder.newFile("broken.ser.gz");
+		assertNull(RuleSnapshot.load(snapshot, RuleSnapshot.createKey(tbox)));
+		assertNull(RuleSnapshot.load(new File(folder.getRoot(), "missing.ser.gz"), RuleSnapshot.createKey(tbox)));
+		// falls back to the translation
+		assertNotNull(RuleSnapshot.createRuleEngine(tbox, snapshot));
+	}
+
+	@Test
+	public void testSameInferences() throws Exception {
+		File snapshot = new File(folder.getRoot(), "rules.ser.gz");
+		RuleSnapshot.write(tbox, snapshot);
+		RuleEngine fromSnapshot = RuleSnapshot.createRuleEngine(tbox, snapshot);
+		RuleEngine translated = RuleSnapshot.createRuleEngine(tbox, null);
+
+		URI type = new URI(OWLRDFVocabulary.RDF_TYPE.getIRI().toString());
+		URI p = new URI(partOf.getIRI().toString());
+		URI i1 = new URI(NS + "i1");
+		URI i2 = new URI(NS + "i2");
+		URI i3 = new URI(NS + "i3");
+		Set<Triple> triples = new HashSet<>();
+		triples.add(new Triple(i1, type, new URI(a.getIRI().toString())));
+		triples.add(new Triple(i1, p, i2));
+		triples.add(new Triple(i2, p, i3));
+
+		WorkingMemory expected = translated.processTriples(JavaConverters.asScalaSetConverter(triples).asScala());
+		WorkingMemory actual = fromSnapshot.processTriples(JavaConverters.asScalaSetConverter(triples).asScala());
+		assertEquals(expected.facts(), actual.facts());
+		assertTrue(actual.facts().contains(new Triple(i1, p, i3)));
+		assertTrue(actual.facts().contains(new Triple(i1, type, new URI(b.getIRI().toString()))));
+	}
+}
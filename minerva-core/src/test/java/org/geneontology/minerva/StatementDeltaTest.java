@@ -0,0 +1,289 @@
+package org.geneontology.minerva;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.model.vocabulary.XMLSchema;
+import org.openrdf.repository.RepositoryResult;
+import org.openrdf.rio.helpers.StatementCollector;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.AddAxiom;
+import org.semanticweb.owlapi.model.AddImport;
+import org.semanticweb.owlapi.model.AddOntologyAnnotation;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAnnotation;
+import org.semanticweb.owlapi.model.OWLAnnotationProperty;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLNamedIndividual;
+import org.semanticweb.owlapi.model.OWLObjectProperty;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyChange;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.semanticweb.owlapi.model.RemoveAxiom;
+import org.semanticweb.owlapi.model.RemoveOntologyAnnotation;
+import org.semanticweb.owlapi.rio.RioRenderer;
+
+import com.bigdata.journal.Options;
+import com.bigdata.rdf.sail.BigdataSail;
+import com.bigdata.rdf.sail.BigdataSailRepository;
+import com.bigdata.rdf.sail.BigdataSailRepositoryConnection;
+
+import info.aduna.iteration.Iterations;
+
+public class StatementDeltaTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final String NS = "http://model.geneontology.org/test/";
+	private static final IRI MODEL_ID = IRI.create("http://model.geneontology.org/test");
+	private static final URI GRAPH = new URIImpl(MODEL_ID.toString());
+
+	private BigdataSailRepository repo;
+	private OWLOntologyManager m;
+	private OWLDataFactory f;
+	private ModelContainer model;
+
+	private OWLObjectProperty partOf;
+	private OWLAnnotationProperty comment;
+	private OWLClass c1;
+	private OWLNamedIndividual i1, i2, i3;
+
+	@Before
+	public void before() throws Exception {
+		Properties properties = new Properties();
+		properties.load(BlazegraphMolecularModelManager.class.getResourceAsStream("blazegraph.properties"));
+		properties.setProperty(Options.FILE, new File(folder.getRoot(), "test.jnl").getAbsolutePath());
+		repo = new BigdataSailRepository(new BigdataSail(properties));
+		repo.initialize();
+
+		m = OWLManager.createOWLOntologyManager();
+		f = m.getOWLDataFactory();
+		partOf = f.getOWLObjectProperty(IRI.create("http://purl.obolibrary.org/obo/BFO_0000050"));
+		comment = f.getRDFSComment();
+		c1 = f.getOWLClass(IRI.create("http://purl.obolibrary.org/obo/GO_0000001"));
+		i1 = f.getOWLNamedIndividual(IRI.create(NS + "i1"));
+		i2 = f.getOWLNamedIndividual(IRI.create(NS + "i2"));
+		i3 = f.getOWLNamedIndividual(IRI.create(NS + "i3"));
+
+		OWLOntology tbox = m.createOntology(IRI.create("http://example.org/tbox"));
+		OWLOntology abox = m.createOntology(MODEL_ID);
+		m.addAxiom(abox, f.getOWLDeclarationAxiom(i1));
+		m.addAxiom(abox, f.getOWLDeclarationAxiom(i2));
+		m.addAxiom(abox, f.getOWLClassAssertionAxiom(c1, i1));
+		m.addAxiom(abox, f.getOWLClassAssertionAxiom(c1, i2));
+		m.addAxiom(abox, f.getOWLObjectPropertyAssertionAxiom(partOf, i1, i2, annotations("fact")));
+		m.addAxiom(abox, f.getOWLAnnotationAssertionAxiom(i1.getIRI(), f.getOWLAnnotation(comment, f.getOWLLiteral("first"))));
+		m.applyChange(new AddOntologyAnnotation(abox, f.getOWLAnnotation(comment, f.getOWLLiteral("model"))));
+		model = new ModelContainer(MODEL_ID, tbox, abox);
+		writeAll();
+		model.resetDelta();
+	}
+
+	@After
+	public void after() throws Exception {
+		repo.shutDown();
+	}
+
+	private Set<OWLAnnotation> annotations(String value) {
+		return Collections.singleton(f.getOWLAnnotation(comment, f.getOWLLiteral(value)));
+	}
+
+	private List<Statement> render() throws Exception {
+		StatementCollector collector = new StatementCollector();
+		new RioRenderer(model.getAboxOntology(), collector, null).render();
+		return (List<Statement>) collector.getStatements();
+	}
+
+	private void writeAll() throws Exception {
+		BigdataSailRepositoryConnection connection = repo.getUnisolatedConnection();
+		try {
+			connection.begin();
+			connection.clear(GRAPH);
+			connection.add(render(), GRAPH);
+			connection.commit();
+		} finally {
+			connection.close();
+		}
+	}
+
+	private boolean writeDelta() throws Exception {
+		StatementDelta delta = StatementDelta.create(model.getAboxOntology(), model.getDelta());
+		assertNotNull(delta);
+		BigdataSailRepositoryConnection connection = repo.getUnisolatedConnection();
+		try {
+			connection.begin();
+			boolean applied = delta.apply(connection, GRAPH);
+			connection.commit();
+			return applied;
+		} finally {
+			connection.close();
+		}
+	}
+
+	private List<Statement> readStored() throws Exception {
+		BigdataSailRepositoryConnection connection = repo.getReadOnlyConnection();
+		try {
+			RepositoryResult<Statement> statements = connection.getStatements(null, null, null, false, GRAPH);
+			return Iterations.asList(statements);
+		} finally {
+			connection.close();
+		}
+	}
+
+	/**
+	 * The stored statements must be the same as a full rendering of the model, up to blank node ids.
+	 */
+	private void assertStoredMatchesModel() throws Exception {
+		assertEquals(canonical(render()), canonical(readStored()));
+	}
+
+	private static List<String> canonical(List<Statement> statements) {
+		List<String> result = new ArrayList<String>();
+		Map<Resource, List<String>> bnodes = new HashMap<Resource, List<String>>();
+		for (Statement s : statements) {
+			String po = s.getPredicate().stringValue() + " " + key(s.getObject());
+			if (s.getSubject() instanceof BNode) {
+				List<String> group = bnodes.get(s.getSubject());
+				if (group == null) {
+					group = new ArrayList<String>();
+					bnodes.put(s.getSubject(), group);
+				}
+				group.add(po);
+			}
+			else {
+				result.add(s.getSubject().stringValue() + " " + po);
+			}
+		}
+		for (List<String> group : bnodes.values()) {
+			Collections.sort(group);
+			result.add("_: " + group);
+		}
+		Collections.sort(result);
+		return result;
+	}
+
+	private static String key(Value value) {
+		if (value instanceof Literal) {
+			Literal literal = (Literal) value;
+			URI datatype = literal.getDatatype() == null ? XMLSchema.STRING : literal.getDatatype();
+			return "\"" + literal.getLabel() + "\"@" + literal.getLanguage() + "^^" + datatype;
+		}
+		return value.stringValue();
+	}
+
+	private void apply(OWLOntologyChange...changes) {
+		List<OWLOntologyChange> list = new ArrayList<OWLOntologyChange>();
+		Collections.addAll(list, changes);
+		model.applyChanges(list);
+	}
+
+	@Test
+	public void testDelta() throws Exception {
+		OWLOntology abox = model.getAboxOntology();
+		OWLAxiom fact = f.getOWLObjectPropertyAssertionAxiom(partOf, i1, i2, annotations("fact"));
+		OWLAxiom updatedFact = f.getOWLObjectPropertyAssertionAxiom(partOf, i1, i2, annotations("updated"));
+		apply(new RemoveAxiom(abox, fact),
+				new AddAxiom(abox, updatedFact),
+				// remove i2 completely
+				new RemoveAxiom(abox, f.getOWLDeclarationAxiom(i2)),
+				new RemoveAxiom(abox, f.getOWLClassAssertionAxiom(c1, i2)),
+				new AddAxiom(abox, f.getOWLDeclarationAxiom(i3)),
+				new AddAxiom(abox, f.getOWLClassAssertionAxiom(c1, i3)),
+				new AddAxiom(abox, f.getOWLObjectPropertyAssertionAxiom(partOf, i1, i3, annotations("new"))),
+				new RemoveOntologyAnnotation(abox, f.getOWLAnnotation(comment, f.getOWLLiteral("model"))),
+				new AddOntologyAnnotation(abox, f.getOWLAnnotation(comment, f.getOWLLiteral("changed model"))));
+		// add and remove cancel out
+		OWLAxiom temporary = f.getOWLClassAssertionAxiom(c1, f.getOWLNamedIndividual(IRI.create(NS + "tmp")));
+		apply(new AddAxiom(abox, temporary));
+		apply(new RemoveAxiom(abox, temporary));
+		assertFalse(model.getDelta().getAddedAxioms().contains(temporary));
+		assertTrue(model.getDelta().isConsistentWith(abox));
+
+		assertTrue(writeDelta());
+		assertStoredMatchesModel();
+	}
+
+	@Test
+	public void testAddAnnotatedAxiomTwice() throws Exception {
+		OWLOntology abox = model.getAboxOntology();
+		// already in the model, not recorded
+		apply(new AddAxiom(abox, f.getOWLObjectPropertyAssertionAxiom(partOf, i1, i2, annotations("fact"))));
+		assertTrue(model.getDelta().isEmpty());
+		// second set of axiom annotations for the same fact
+		apply(new AddAxiom(abox, f.getOWLObjectPropertyAssertionAxiom(partOf, i1, i2, annotations("second"))));
+		assertTrue(writeDelta());
+		assertStoredMatchesModel();
+		// removing one of the annotated facts keeps the main triple
+		model.resetDelta();
+		apply(new RemoveAxiom(abox, f.getOWLObjectPropertyAssertionAxiom(partOf, i1, i2, annotations("fact"))));
+		assertTrue(writeDelta());
+		assertStoredMatchesModel();
+	}
+
+	@Test
+	public void testStoreMismatch() throws Exception {
+		OWLOntology abox = model.getAboxOntology();
+		OWLAxiom type = f.getOWLClassAssertionAxiom(c1, i1);
+		// remove the statement from the store behind the model's back
+		BigdataSailRepositoryConnection connection = repo.getUnisolatedConnection();
+		try {
+			connection.begin();
+			connection.remove(new URIImpl(i1.getIRI().toString()), RDF.TYPE, new URIImpl(c1.getIRI().toString()), GRAPH);
+			connection.commit();
+		} finally {
+			connection.close();
+		}
+		apply(new RemoveAxiom(abox, type));
+		assertFalse("missing statement requires a full write", writeDelta());
+	}
+
+	@Test
+	public void testUnsupportedChanges() throws Exception {
+		OWLOntology abox = model.getAboxOntology();
+		// anonymous class expression
+		apply(new AddAxiom(abox, f.getOWLClassAssertionAxiom(f.getOWLObjectSomeValuesFrom(partOf, c1), i1)));
+		assertTrue(model.getDelta().isConsistentWith(abox));
+		assertNull(StatementDelta.create(abox, model.getDelta()));
+
+		// changes not applied via the model container are not recorded
+		model.resetDelta();
+		m.addAxiom(abox, f.getOWLClassAssertionAxiom(c1, i3));
+		assertFalse(model.getDelta().isConsistentWith(abox));
+
+		// imports
+		model.resetDelta();
+		apply(new AddImport(abox, f.getOWLImportsDeclaration(IRI.create("http://example.org/tbox"))));
+		assertFalse(model.getDelta().isConsistentWith(abox));
+	}
+
+	@Test
+	public void testUntrackedModel() throws Exception {
+		model.clearDelta();
+		apply(new AddAxiom(model.getAboxOntology(), f.getOWLClassAssertionAxiom(c1, i3)));
+		assertNull(model.getDelta());
+	}
+}
@@ -0,0 +1,66 @@
+package org.geneontology.minerva.curie;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.junit.Test;
+import org.semanticweb.owlapi.model.IRI;
+
+public class MappedCurieHandlerTest {
+
+	/**
+	 * Linear scan over all mappings, reference for the trie.
+	 */
+	private static String scan(Map<String, String> curieMap, String iri) {
+		String longPrefix = null;
+		String shortPrefix = null;
+		for (Entry<String, String> e : curieMap.entrySet()) {
+			String current = e.getValue();
+			if (iri.startsWith(current) && iri.length() > current.length()) {
+				if (longPrefix == null || current.length() > longPrefix.length()) {
+					longPrefix = current;
+					shortPrefix = e.getKey();
+				}
+			}
+		}
+		if (longPrefix != null) {
+			return shortPrefix + ":" + iri.substring(longPrefix.length());
+		}
+		return iri;
+	}
+
+	@Test
+	public void testLongestPrefix() {
+		Map<String, String> mappings = new HashMap<String, String>();
+		mappings.put("obo", "http://purl.obolibrary.org/obo/");
+		mappings.put("GO", "http://purl.obolibrary.org/obo/GO_");
+		mappings.put("gomodel", "http://model.geneontology.org/");
+		MappedCurieHandler handler = new MappedCurieHandler(mappings);
+
+		assertEquals("GO:0008150", handler.getCuri(IRI.create("http://purl.obolibrary.org/obo/GO_0008150")));
+		assertEquals("obo:BFO_0000050", handler.getCuri(IRI.create("http://purl.obolibrary.org/obo/BFO_0000050")));
+		// a prefix must not match the whole IRI
+		assertEquals("obo:GO_", handler.getCuri(IRI.create("http://purl.obolibrary.org/obo/GO_")));
+		assertEquals("http://model.geneontology.org/", handler.getCuri(IRI.create("http://model.geneontology.org/")));
+		assertEquals("http://example.org/foo", handler.getCuri(IRI.create("http://example.org/foo")));
+		// repeated lookups are answered from the cache
+		assertEquals("GO:0008150", handler.getCuri(IRI.create("http://purl.obolibrary.org/obo/GO_0008150")));
+	}
+
+	@Test
+	public void testDefaultMappings() {
+		MappedCurieHandler handler = (MappedCurieHandler) DefaultCurieHandler.getDefaultHandler();
+		Map<String, String> mappings = handler.getMappings();
+		for (String longPrefix : mappings.values()) {
+			for (String iri : new String[]{longPrefix, longPrefix + "0000001", longPrefix + "a/b#c",
+					longPrefix.substring(0, longPrefix.length() - 1)}) {
+				assertEquals(iri, scan(mappings, iri), handler.getCuri(IRI.create(iri)));
+			}
+		}
+		String model = "http://model.geneontology.org/5a5fc23a00000008/5a5fc23a00000012";
+		assertEquals(scan(mappings, model), handler.getCuri(IRI.create(model)));
+	}
+}
@@ -0,0 +1,51 @@
+package org.geneontology.minerva.util;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.formats.TurtleDocumentFormat;
+import org.semanticweb.owlapi.io.FileDocumentSource;
+import org.semanticweb.owlapi.model.MissingImportHandlingStrategy;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyLoaderConfiguration;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+
+public class JenaOwlToolTest {
+
+	@Test
+	public void testSameGraphAsTurtle() throws Exception {
+		File[] files = new File("src/test/resources/validation/should_pass").listFiles((dir, name) -> name.endsWith(".ttl"));
+		assertTrue(files.length > 0);
+		for (File file : files) {
+			OWLOntologyManager m = OWLManager.createOWLOntologyManager();
+			OWLOntologyLoaderConfiguration config = new OWLOntologyLoaderConfiguration()
+					.setMissingImportHandlingStrategy(MissingImportHandlingStrategy.SILENT);
+			OWLOntology ontology = m.loadOntologyFromOntologyDocument(new FileDocumentSource(file), config);
+
+			Model model = JenaOwlTool.getJenaModel(ontology);
+			Model expected = viaTurtle(ontology);
+			assertTrue(file.getName(), model.size() > 0);
+			assertEquals(file.getName(), expected.size(), model.size());
+			assertTrue(file.getName(), expected.isIsomorphicWith(model));
+			assertEquals(file.getName(), expected.getNsPrefixMap(), model.getNsPrefixMap());
+		}
+	}
+
+	/**
+	 * The former conversion, write and read Turtle.
+	 */
+	private static Model viaTurtle(OWLOntology ontology) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ontology.getOWLOntologyManager().saveOntology(ontology, new TurtleDocumentFormat(), out);
+		Model model = ModelFactory.createDefaultModel();
+		model.read(new ByteArrayInputStream(out.toByteArray()), null, "TURTLE");
+		return model;
+	}
+}
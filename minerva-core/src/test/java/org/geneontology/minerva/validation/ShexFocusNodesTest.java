@@ -0,0 +1,106 @@
+package org.geneontology.minerva.validation;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.OWL;
+import org.apache.jena.vocabulary.OWL2;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.geneontology.minerva.curie.DefaultCurieHandler;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Selection of the most specific shapes for the focus nodes, without the
+ * ontology journal.
+ */
+public class ShexFocusNodesTest {
+
+	private static final String OBO = "http://purl.obolibrary.org/obo/";
+	private static final String SHAPES = "http://purl.obolibrary.org/obo/go/shapes/";
+
+	private static ShexValidator shex;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		shex = new ShexValidator(ShexValidatorTest.schemaFile, ShexValidatorTest.mainShapemapFile, null, DefaultCurieHandler.getDefaultHandler());
+	}
+
+	@Test
+	public void testMostSpecificShapes() throws Exception {
+		Model model = ModelFactory.createDefaultModel();
+		// transporter activity is a molecular function
+		Resource transporter = addIndividual(model, "transporter", "GO_9999001", "GO_0003674", "GO_0005215");
+		Resource function = addIndividual(model, "function", "GO_9999002", "GO_0003674");
+		Resource process = addIndividual(model, "process", "GO_9999003", "GO_0008150");
+		model.createResource("http://model.geneontology.org/test").addProperty(RDF.type, OWL.Ontology);
+
+		Map<Resource, Set<String>> shapes = shex.getShapesToTestForEachResource(model);
+		assertEquals(Collections.singleton(SHAPES + "TransporterActivity"), shapes.get(transporter));
+		assertEquals(Collections.singleton(SHAPES + "MolecularFunction"), shapes.get(function));
+		assertEquals(Collections.singleton(SHAPES + "BiologicalProcess"), shapes.get(process));
+		assertEquals(Collections.singleton(SHAPES + "GoCamModel"), shapes.get(model.getResource("http://model.geneontology.org/test")));
+		assertEquals(byQueriesForEachPair(model), shapes);
+	}
+
+	@Test
+	public void testSameFocusNodes() throws Exception {
+		// only transporters: the focus nodes of both shapes are the same
+		Model model = ModelFactory.createDefaultModel();
+		addIndividual(model, "transporter1", "GO_9999001", "GO_0003674", "GO_0005215");
+		addIndividual(model, "transporter2", "GO_9999004", "GO_0003674", "GO_0005215");
+		assertEquals(byQueriesForEachPair(model), shex.getShapesToTestForEachResource(model));
+	}
+
+	private static Resource addIndividual(Model model, String id, String type, String...superClasses) {
+		Resource cls = model.createResource(OBO + type);
+		for (String superClass : superClasses) {
+			cls.addProperty(RDFS.subClassOf, model.createResource(OBO + superClass));
+		}
+		return model.createResource("http://model.geneontology.org/test/" + id)
+				.addProperty(RDF.type, OWL2.NamedIndividual)
+				.addProperty(RDF.type, cls);
+	}
+
+	/**
+	 * The former selection, with the focus node queries for each node and
+	 * pair of shapes.
+	 */
+	private static Map<Resource, Set<String>> byQueriesForEachPair(Model model) {
+		Map<Resource, Set<String>> node_shapes = new HashMap<Resource, Set<String>>();
+		for (String shapelabel : shex.GoQueryMap.keySet()) {
+			if (shapelabel.equals(SHAPES + "AnnotatedEdge")) {
+				continue;
+			}
+			for (Resource focus_node : ShexValidator.getFocusNodesBySparql(model, shex.GoQueryMap.get(shapelabel))) {
+				node_shapes.computeIfAbsent(focus_node, (n) -> new HashSet<String>()).add(shapelabel);
+			}
+		}
+		for (Set<String> shapes : node_shapes.values()) {
+			Set<String> shapes_to_remove = new HashSet<String>();
+			for (String shape1 : shapes) {
+				Set<Resource> shape1_nodes = ShexValidator.getFocusNodesBySparql(model, shex.GoQueryMap.get(shape1));
+				for (String shape2 : shapes) {
+					if (shape1.equals(shape2)) {
+						continue;
+					}
+					Set<Resource> shape2_nodes = ShexValidator.getFocusNodesBySparql(model, shex.GoQueryMap.get(shape2));
+					if (shape1_nodes.containsAll(shape2_nodes)) {
+						shapes_to_remove.add(shape1);
+					}
+				}
+			}
+			shapes.removeAll(shapes_to_remove);
+		}
+		return node_shapes;
+	}
+}
@@ -0,0 +1,108 @@
+package org.geneontology.minerva.validation;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.rdf.api.Graph;
+import org.apache.commons.rdf.simple.SimpleRDF;
+import org.geneontology.minerva.validation.ShexValidationExecutor.ValidationTask;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ShexValidationExecutorTest {
+
+	private ShexValidationExecutor executor;
+
+	@Before
+	public void before() {
+		executor = new ShexValidationExecutor(2, 10);
+	}
+
+	@After
+	public void after() {
+		executor.shutdown();
+	}
+
+	@Test
+	public void testInvokeAll() throws Exception {
+		List<ValidationTask<String>> tasks = new ArrayList<ValidationTask<String>>();
+		for (int i = 0; i < 5; i++) {
+			final int n = i;
+			tasks.add((cancellation) -> n + " " + Thread.currentThread().getName());
+		}
+		List<String> results = executor.invokeAll(tasks, 10000);
+		assertEquals(5, results.size());
+		for (int i = 0; i < 5; i++) {
+			assertTrue(results.get(i), results.get(i).startsWith(i + " shex-validation-"));
+		}
+		assertEquals(0, executor.getStats().timeouts);
+	}
+
+	@Test
+	public void testTimeoutCancelsValidation() throws Exception {
+		final Graph graph = new SimpleRDF().createGraph();
+		final CountDownLatch stopped = new CountDownLatch(1);
+		ValidationTask<String> endless = (cancellation) -> {
+			Graph cancellable = ShexValidationExecutor.cancellable(graph, cancellation);
+			try {
+				while (true) {
+					cancellable.stream().count();
+				}
+			} catch (CancellationException e) {
+				stopped.countDown();
+				throw e;
+			}
+		};
+		ValidationTask<String> fast = (cancellation) -> "valid";
+		List<String> results = executor.invokeAll(Arrays.asList(fast, endless), 200);
+		assertEquals("valid", results.get(0));
+		assertNull(results.get(1));
+		// the validation stops with the next access to the graph
+		assertTrue(stopped.await(5, TimeUnit.SECONDS));
+		assertEquals(1, executor.getStats().timeouts);
+	}
+
+	@Test
+	public void testFailure() throws Exception {
+		String result = executor.invoke((cancellation) -> {
+			throw new IllegalStateException("broken shape");
+		}, 1000);
+		assertNull(result);
+		assertEquals(1, executor.getStats().failures);
+		assertEquals(0, executor.getStats().timeouts);
+	}
+
+	@Test
+	public void testRejected() throws Exception {
+		ShexValidationExecutor small = new ShexValidationExecutor(1, 1);
+		try {
+			final CountDownLatch release = new CountDownLatch(1);
+			ValidationTask<String> blocked = (cancellation) -> {
+				release.await();
+				return "done";
+			};
+			List<ValidationTask<String>> tasks = Arrays.asList(blocked, (cancellation) -> "queued", (cancellation) -> "rejected");
+			Thread releaser = new Thread(() -> {
+				try {
+					Thread.sleep(200);
+				} catch (InterruptedException e) {
+					// ignore
+				}
+				release.countDown();
+			});
+			releaser.start();
+			List<String> results = small.invokeAll(tasks, 10000);
+			assertEquals(Arrays.asList("done", "queued", null), results);
+			assertEquals(1, small.getStats().rejected);
+		} finally {
+			small.shutdown();
+		}
+	}
+}
@@ -8,6 +8,7 @@ import org.eclipse.jetty.server.ServerConnector;
 //import org.eclipse.jetty.server.nio.SelectChannelConnector;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
+import org.geneontology.minerva.BlazegraphWriteQueue;
 import org.geneontology.minerva.MinervaOWLGraphWrapper;
 import org.geneontology.minerva.ModelReaderHelper;
 import org.geneontology.minerva.UndoAwareMolecularModelManager;
@@ -36,6 +37,7 @@ import owltools.io.CatalogXmlIRIMapper;
 import owltools.io.ParserWrapper;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URL;
 import java.time.LocalDate;
 import java.time.LocalTime;
@@ -96,7 +98,22 @@ public class StartUpTool {
 
 		public String prefixesFile = null;
 
+		// the SPARQL endpoint is not authenticated and can read the whole journal, off by default
+		public boolean useSparqlEndpoint = false;
 		public int sparqlEndpointTimeout = 100;
+		// results of the SPARQL endpoint are streamed and cut off after this many rows, no limit if <= 0
+		public long sparqlEndpointMaxRows = 100000l;
+
+		// bounds for the in-memory models, unmodified models are evicted beyond these
+		public int modelCacheSize = 1000;
+		public long modelCacheMaxAxioms = 2000000l;
+
+		// group commit window for saves
+		public int writeBatchSize = BlazegraphWriteQueue.DEFAULT_MAX_BATCH_SIZE;
+		public long writeBatchDelay = BlazegraphWriteQueue.DEFAULT_MAX_DELAY_MILLIS;
+
+		// translated Arachne rules, re-used as long as the tbox is unchanged
+		public String ruleSnapshot = null;
 
 		public String shexFileUrl = "https://raw.githubusercontent.com/geneontology/go-shapes/master/shapes/go-cam-shapes.shex";
 		public String goshapemapFileUrl = "https://raw.githubusercontent.com/geneontology/go-shapes/master/shapes/go-cam-shapes.shapeMap";
@@ -206,9 +223,30 @@ public class StartUpTool {
 			else if (opts.nextEq("--prefix-mappings")) {
 				conf.prefixesFile = opts.nextOpt();
 			}
+			else if (opts.nextEq("--use-sparql-endpoint|--sparql-endpoint")) {
+				conf.useSparqlEndpoint = true;
+			}
 			else if (opts.nextEq("--sparql-endpoint-timeout")) {
 				conf.sparqlEndpointTimeout = Integer.parseInt(opts.nextOpt());
 			}
+			else if (opts.nextEq("--sparql-endpoint-max-rows")) {
+				conf.sparqlEndpointMaxRows = Long.parseLong(opts.nextOpt());
+			}
+			else if (opts.nextEq("--model-cache-size")) {
+				conf.modelCacheSize = Integer.parseInt(opts.nextOpt());
+			}
+			else if (opts.nextEq("--model-cache-max-axioms")) {
+				conf.modelCacheMaxAxioms = Long.parseLong(opts.nextOpt());
+			}
+			else if (opts.nextEq("--write-batch-size")) {
+				conf.writeBatchSize = Integer.parseInt(opts.nextOpt());
+			}
+			else if (opts.nextEq("--write-batch-delay")) {
+				conf.writeBatchDelay = Long.parseLong(opts.nextOpt());
+			}
+			else if (opts.nextEq("--rule-snapshot")) {
+				conf.ruleSnapshot = opts.nextOpt();
+			}
 			else if (opts.nextEq("--ontojournal")) {
 				conf.pathToOntologyJournal = opts.nextOpt();
 			}
@@ -375,6 +413,25 @@ public class StartUpTool {
 		LOGGER.info("Start initializing Minerva");
 		UndoAwareMolecularModelManager models = new UndoAwareMolecularModelManager(graph.getSourceOntology(),
 				conf.curieHandler, conf.modelIdPrefix, conf.journalFile, conf.exportFolder, conf.pathToOntologyJournal );
+		LOGGER.info("Model cache size: "+conf.modelCacheSize+" max axioms: "+conf.modelCacheMaxAxioms);
+		models.setModelCacheLimits(conf.modelCacheSize, conf.modelCacheMaxAxioms);
+		models.setWriteBatchLimits(conf.writeBatchSize, conf.writeBatchDelay);
+		if (conf.ruleSnapshot != null) {
+			LOGGER.info("Rule snapshot: "+conf.ruleSnapshot);
+			models.setRuleSnapshot(new File(conf.ruleSnapshot));
+		}
+		// translate or load the rules during the start up, not with the first request
+		models.getRuleEngine();
+		// build the model search index in the background, instead of with the first search
+		Thread searchIndexBuilder = new Thread(() -> {
+			try {
+				models.getModelSearchIndex();
+			} catch (IOException e) {
+				LOGGER.error("Could not build the model search index", e);
+			}
+		}, "model-search-index");
+		searchIndexBuilder.setDaemon(true);
+		searchIndexBuilder.start();
 		// set pre and post file handlers
 		models.addPostLoadOntologyFilter(ModelReaderHelper.INSTANCE);
 	//	conf.shex.tbox_reasoner = models.getTbox_reasoner();
@@ -436,6 +493,7 @@ public class StartUpTool {
 		LOGGER.info("BatchHandler config lookupService: "+conf.lookupService);
 		LOGGER.info("BatchHandler config checkLiteralIds: "+conf.checkLiteralIds);
 		LOGGER.info("BatchHandler config useRequestLogging: "+conf.useRequestLogging);
+		LOGGER.info("SPARQLHandler config useSparqlEndpoint: "+conf.useSparqlEndpoint);
 		if (conf.golrSeedUrl == null) {
 			// default fall back to normal golr URL
 			conf.golrSeedUrl = conf.golrUrl;
@@ -449,14 +507,17 @@ public class StartUpTool {
 
 		SimpleEcoMapper ecoMapper = EcoMapperFactory.createSimple();
 		//		JsonOrJsonpSeedHandler seedHandler = new JsonOrJsonpSeedHandler(models, conf.defaultModelState, conf.golrSeedUrl, ecoMapper );
-	//	SPARQLHandler sparqlHandler = new SPARQLHandler(models, conf.sparqlEndpointTimeout);
 		ModelSearchHandler searchHandler = new ModelSearchHandler(models);
 		LocalDate d = LocalDate.now();
 		LocalTime t = LocalTime.now(); 
 		String startup = d.toString()+" "+t.toString();
-		StatusHandler statusHandler = new StatusHandler(conf, ont_annos, startup); 
+		StatusHandler statusHandler = new StatusHandler(conf, ont_annos, startup, models); 
 		TaxonHandler taxonHandler = new TaxonHandler(models);
 		resourceConfig = resourceConfig.registerInstances(batchHandler, searchHandler, statusHandler, taxonHandler);
+		if (conf.useSparqlEndpoint) {
+			SPARQLHandler sparqlHandler = new SPARQLHandler(models, conf.sparqlEndpointTimeout, conf.sparqlEndpointMaxRows);
+			resourceConfig = resourceConfig.registerInstances(sparqlHandler);
+		}
 
 		// setup jetty server port, buffers and context path
 		Server server = new Server();
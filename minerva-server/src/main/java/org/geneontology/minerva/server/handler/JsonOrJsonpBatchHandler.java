@@ -133,10 +133,19 @@ public class JsonOrJsonpBatchHandler extends OperationsImpl implements M3BatchHa
 	}
 	
 	private M3BatchResponse m3Batch(M3BatchResponse response, M3Request[] requests, String userId, Set<String> providerGroups, boolean useReasoner, boolean isPrivileged) throws InsufficientPermissionsException, Exception {
+		final BatchHandlerValues values = new BatchHandlerValues();
+		try {
+			return m3Batch(response, requests, userId, providerGroups, useReasoner, isPrivileged, values);
+		} finally {
+			// the model of the batch can be evicted again
+			releaseModels(values);
+		}
+	}
+
+	private M3BatchResponse m3Batch(M3BatchResponse response, M3Request[] requests, String userId, Set<String> providerGroups, boolean useReasoner, boolean isPrivileged, BatchHandlerValues values) throws InsufficientPermissionsException, Exception {
 		userId = normalizeUserId(userId);
 		UndoMetadata token = new UndoMetadata(userId);
 		
-		final BatchHandlerValues values = new BatchHandlerValues();
 		for (M3Request request : requests) {
 			requireNotNull(request, "request");
 			requireNotNull(request.entity, "entity");
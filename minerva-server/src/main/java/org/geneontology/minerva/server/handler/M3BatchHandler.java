@@ -133,6 +133,10 @@ public interface M3BatchHandler {
 			@SerializedName("sparql-result")
 			public JsonObject sparqlResult;
 
+			// set, if the sparql result was cut off at the maximum number of rows
+			@SerializedName("sparql-result-truncated")
+			public Boolean sparqlResultTruncated;
+
 			@SerializedName("validation-results")
 			public ValidationResultSet validation_results;
 
@@ -6,6 +6,7 @@ package org.geneontology.minerva.server.handler;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -25,9 +26,11 @@ import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
 import org.geneontology.minerva.BlazegraphMolecularModelManager;
 import org.geneontology.minerva.BlazegraphOntologyManager;
 import org.geneontology.minerva.ModelContainer;
+import org.geneontology.minerva.ModelSearchIndex;
 import org.geneontology.minerva.MolecularModelManager.UnknownIdentifierException;
 import org.geneontology.minerva.curie.CurieHandler;
 import org.openrdf.query.Binding;
@@ -49,6 +52,8 @@ import com.google.gson.annotations.SerializedName;
 @Path("/search/models")
 public class ModelSearchHandler {
 
+	private static final Logger LOGGER = Logger.getLogger(ModelSearchHandler.class);
+
 	private final BlazegraphMolecularModelManager<?> m3;
 	private final BlazegraphOntologyManager go_lego;
 	/**
@@ -61,6 +66,8 @@ public class ModelSearchHandler {
 
 	public class ModelSearchResult {
 		private Integer n;
+		private Integer total;
+		private String cursor;
 		private LinkedHashSet<ModelMeta> models;
 		private String message;
 		private String error;
@@ -71,6 +78,24 @@ public class ModelSearchHandler {
 		public void setN(Integer n) {
 			this.n = n;
 		}
+		/**
+		 * @return number of all matching models, not only of this page
+		 */
+		public Integer getTotal() {
+			return total;
+		}
+		public void setTotal(Integer total) {
+			this.total = total;
+		}
+		/**
+		 * @return cursor for the next page, null for the last page
+		 */
+		public String getCursor() {
+			return cursor;
+		}
+		public void setCursor(String cursor) {
+			this.cursor = cursor;
+		}
 		public LinkedHashSet<ModelMeta> getModels() {
 			return models;
 		}
@@ -215,10 +240,11 @@ public class ModelSearchHandler {
 			@QueryParam("limit") int limit,
 			@QueryParam("count") String count,
 			@QueryParam("debug") String debug,
-			@QueryParam("id") Set<String> id
+			@QueryParam("id") Set<String> id,
+			@QueryParam("cursor") String cursor
 			){
 		ModelSearchResult result = new ModelSearchResult();
-		result = search(taxa, gene_product_class_uris, terms, expand, pmids, title, state, contributor, group, exactdate, date, datend, offset, limit, count, debug, id);
+		result = search(taxa, gene_product_class_uris, terms, expand, pmids, title, state, contributor, group, exactdate, date, datend, offset, limit, count, debug, id, cursor);
 		return result;
 	}
 
@@ -241,6 +267,20 @@ public class ModelSearchHandler {
 			String title_search,Set<String> state_search, Set<String> contributor_search, Set<String> group_search, 
 			String exactdate, String date_search, String datend, 
 			int offset, int limit, String count, String debug, Set<String> id) {
+		return search(taxa, gene_product_ids, terms, expand, pmids, title_search, state_search, contributor_search, group_search, 
+				exactdate, date_search, datend, offset, limit, count, debug, id, null);
+	}
+
+	/**
+	 * Search with a cursor, the models after the last model of the previous
+	 * page are returned, see {@link ModelSearchResult#getCursor()}. Searches 
+	 * with a title don't support cursors.
+	 */
+	public ModelSearchResult search(Set<String> taxa, 
+			Set<String> gene_product_ids, Set<String> terms, String expand, Set<String>pmids, 
+			String title_search,Set<String> state_search, Set<String> contributor_search, Set<String> group_search, 
+			String exactdate, String date_search, String datend, 
+			int offset, int limit, String count, String debug, Set<String> id, String cursor) {
 		ModelSearchResult r = new ModelSearchResult();
 		Set<String> go_type_ids = new HashSet<String>();
 		Set<String> gene_type_ids = new HashSet<String>();
@@ -285,6 +325,18 @@ public class ModelSearchHandler {
 				}
 			}
 		}
+		//the title is a full text search, only the sparql search has it
+		if(title_search==null) {
+			ModelSearchResult indexed = searchIndex(taxa, gene_type_uris, go_type_uris, expand, pmids, state_search, contributor_search, group_search, 
+					exactdate, date_search, datend, offset, limit, count, debug, id, cursor);
+			if(indexed!=null) {
+				return indexed;
+			}
+		}
+		if(cursor!=null) {
+			r.error = "cursor is not supported for this search, use offset";
+			return r;
+		}
 		Map<String, ModelMeta> id_model = new LinkedHashMap<String, ModelMeta>();
 		String sparql="";
 		try {
@@ -333,21 +385,7 @@ public class ModelSearchHandler {
 		if(id!=null&&id.size()>0) {
 			String id_list = "";
 			for(String mid : id) {
-				if(!mid.contains("http")) {
-					String[] curie = mid.split(":");
-					if(curie!=null&&curie.length==2) {
-						mid = "http://model.geneontology.org/"+curie[1];
-					}
-					//TODO figure this out and add it to standard curie collection				
-					//				try {
-					//					IRI iri = curie_handler.getIRI(id);
-					//					id = iri.toString();
-					//				} catch (UnknownIdentifierException e) {
-					//					// TODO Auto-generated catch block
-					//					e.printStackTrace();
-					//				}
-				}
-				id_list += "<"+mid+"> ";
+				id_list += "<"+modelIri(mid)+"> ";
 			}
 			id_constraint = " values ?id { "+id_list+" } ";
 		}
@@ -363,14 +401,7 @@ public class ModelSearchHandler {
 		String taxa_constraint = "";
 		if(taxa!=null&&!taxa.isEmpty()) {
 			for(String taxon : taxa) {
-				if(taxon.startsWith("NCBITaxon:")) {
-					taxon = taxon.replace(":", "_");
-					taxon = "http://purl.obolibrary.org/obo/"+taxon;
-				}
-				else if(!taxon.startsWith("http://purl.obolibrary.org/obo/NCBITaxon_")) {
-					taxon = "http://purl.obolibrary.org/obo/NCBITaxon_"+taxon;
-				} 
-				taxa_constraint += "?id <"+BlazegraphOntologyManager.in_taxon_uri+"> <"+taxon+"> . \n";
+				taxa_constraint += "?id <"+BlazegraphOntologyManager.in_taxon_uri+"> <"+taxonIri(taxon)+"> . \n";
 			}
 		} 
 
@@ -606,6 +637,207 @@ public class ModelSearchHandler {
 	}
 
 
+	private static String modelIri(String mid) {
+		if(!mid.contains("http")) {
+			String[] curie = mid.split(":");
+			if(curie!=null&&curie.length==2) {
+				mid = "http://model.geneontology.org/"+curie[1];
+			}
+			//TODO figure this out and add it to standard curie collection				
+			//				try {
+			//					IRI iri = curie_handler.getIRI(id);
+			//					id = iri.toString();
+			//				} catch (UnknownIdentifierException e) {
+			//					// TODO Auto-generated catch block
+			//					e.printStackTrace();
+			//				}
+		}
+		return mid;
+	}
+
+	private static String taxonIri(String taxon) {
+		if(taxon.startsWith("NCBITaxon:")) {
+			taxon = taxon.replace(":", "_");
+			taxon = "http://purl.obolibrary.org/obo/"+taxon;
+		}
+		else if(!taxon.startsWith("http://purl.obolibrary.org/obo/NCBITaxon_")) {
+			taxon = "http://purl.obolibrary.org/obo/NCBITaxon_"+taxon;
+		} 
+		return taxon;
+	}
+
+	/**
+	 * Search with the in memory index of the models, see {@link ModelSearchIndex}.
+	 * The matching individuals are only queried for the returned models.
+	 * 
+	 * @return result or null, if the index is not available
+	 */
+	private ModelSearchResult searchIndex(Set<String> taxa, Set<String> gene_type_uris, Set<String> go_type_uris, String expand, Set<String> pmids, 
+			Set<String> state_search, Set<String> contributor_search, Set<String> group_search, 
+			String exactdate, String date_search, String datend, 
+			int offset, int limit, String count, String debug, Set<String> id, String cursor) {
+		ModelSearchIndex index;
+		try {
+			index = m3.getModelSearchIndex();
+		} catch (IOException e) {
+			LOGGER.error("Model search index is not available, using sparql", e);
+			return null;
+		}
+		ModelSearchResult r = new ModelSearchResult();
+		ModelSearchIndex.Query query = new ModelSearchIndex.Query();
+		//searched type for each matching type, to report the matching individuals
+		Map<String, Set<String>> type_searched = new HashMap<String, Set<String>>();
+		for(String type_uri : gene_type_uris) {
+			query.types.add(Collections.singleton(type_uri));
+			type_searched.computeIfAbsent(type_uri, (t) -> new HashSet<String>()).add(type_uri);
+		}
+		for(String go_type_uri : go_type_uris) {
+			Set<String> types = Collections.singleton(go_type_uri);
+			if(expand!=null) {
+				try {
+					types = go_lego.getAllSubClasses(go_type_uri);
+				} catch (IOException e) {
+					LOGGER.error("Could not expand "+go_type_uri, e);
+				}
+			}
+			query.types.add(types);
+			for(String type : types) {
+				type_searched.computeIfAbsent(type, (t) -> new HashSet<String>()).add(go_type_uri);
+			}
+		}
+		if(pmids!=null) {
+			query.sources.addAll(pmids);
+		}
+		if(taxa!=null) {
+			for(String taxon : taxa) {
+				query.taxa.add(taxonIri(taxon));
+			}
+		}
+		if(id!=null&&id.size()>0) {
+			query.ids = new HashSet<String>();
+			for(String mid : id) {
+				query.ids.add(modelIri(mid));
+			}
+		}
+		query.states = state_search;
+		query.contributors = contributor_search;
+		query.groups = group_search;
+		if(exactdate!=null&&exactdate.length()==10) {
+			query.exactDate = exactdate;
+		}else if(date_search!=null&&date_search.length()==10) {
+			//e.g. 2019-06-26
+			query.dateAfter = date_search;
+			if(datend!=null&&datend.length()==10) {
+				query.dateBefore = datend;
+			}
+		}
+		if((offset==0||cursor!=null)&&limit==0) {
+			limit = 1000;
+		}
+		ModelSearchIndex.Result found;
+		try {
+			found = index.search(query, cursor, offset, limit);
+		} catch (IllegalArgumentException e) {
+			r.error = e.getMessage();
+			return r;
+		}
+		r.sparql = "answered by the model search index";
+		r.total = found.getTotal();
+		if(count!=null) {
+			r.n = found.getTotal();
+			return r;
+		}
+		r.cursor = found.getNextCursor();
+		CurieHandler curie_handler = m3.getCuriHandler();
+		Map<String, ModelMeta> id_model = new LinkedHashMap<String, ModelMeta>();
+		for(ModelSearchIndex.IndexedModel model : found.getModels()) {
+			IRI model_iri = IRI.create(model.getId());
+			String model_curie = curie_handler.getCuri(model_iri);
+			if(model_curie==null) {
+				model_curie = model.getId();
+			}
+			String state = model.getState();
+			if(state==null) {
+				state = "";
+			}
+			Set<String> groups = new HashSet<String>(model.getGroups());
+			if(groups.isEmpty()) {
+				groups.add("");
+			}
+			//look up model in in-memory cache to check edit state
+			boolean is_modified = m3.isModelModified(model_iri);
+			id_model.put(model.getId(), new ModelMeta(model_curie, model.getDate(), model.getTitle(), state, 
+					new HashSet<String>(model.getContributors()), groups, is_modified));
+		}
+		if(!id_model.isEmpty()&&(!type_searched.isEmpty()||!query.sources.isEmpty())) {
+			String sparql = queryMatchSparql(id_model.keySet(), type_searched.keySet(), query.sources);
+			if(debug!=null) {
+				r.sparql = sparql;
+			}
+			try {
+				TupleQueryResult result = (TupleQueryResult) m3.executeSPARQLQuery(sparql, 1000);
+				try {
+					while(result.hasNext()) {
+						BindingSet bs = result.next();
+						ModelMeta mm = id_model.get(bs.getValue("id").stringValue());
+						String ind = bs.getValue("ind").stringValue();
+						String match = bs.getValue("match").stringValue();
+						Set<String> searched = type_searched.get(match);
+						if(searched==null) {
+							//source
+							searched = Collections.singleton(match);
+						}
+						for(String s : searched) {
+							mm.query_match.computeIfAbsent(s, (k) -> new HashSet<String>()).add(ind);
+						}
+					}
+				} finally {
+					result.close();
+				}
+			} catch (MalformedQueryException | QueryEvaluationException | RepositoryException e) {
+				r.message = "Could not query the matching individuals";
+				r.error = e.getMessage();
+				e.printStackTrace();
+				return r;
+			}
+		}
+		r.n = id_model.size();
+		r.models = new LinkedHashSet<ModelMeta>(id_model.values());
+		return r;
+	}
+
+	private static String queryMatchSparql(Set<String> models, Set<String> types, Set<String> sources) {
+		StringBuilder sparql = new StringBuilder("SELECT ?id ?ind ?match WHERE { \n VALUES ?id { ");
+		for(String model : models) {
+			sparql.append("<"+model+"> ");
+		}
+		sparql.append("} \n GRAPH ?id { ");
+		if(!types.isEmpty()) {
+			sparql.append("{ VALUES ?match { ");
+			for(String type : types) {
+				sparql.append("<"+type+"> ");
+			}
+			sparql.append("} ?ind <http://www.w3.org/1999/02/22-rdf-syntax-ns#type> ?match } ");
+		}
+		if(!types.isEmpty()&&!sources.isEmpty()) {
+			sparql.append("UNION ");
+		}
+		if(!sources.isEmpty()) {
+			sparql.append("{ ?ind <http://purl.org/dc/elements/1.1/source> ?match . FILTER (str(?match) IN (");
+			int c = 0;
+			for(String source : sources) {
+				c++;
+				sparql.append("\""+source.replace("\\", "\\\\").replace("\"", "\\\"")+"\"");
+				if(c<sources.size()) {
+					sparql.append(",");
+				}
+			}
+			sparql.append(")) } ");
+		}
+		sparql.append("} }");
+		return sparql.toString();
+	}
+
 	@POST
 	@Produces(MediaType.APPLICATION_JSON)
 	@Consumes(MediaType.APPLICATION_FORM_URLENCODED)
@@ -626,9 +858,10 @@ public class ModelSearchHandler {
 			@FormParam("limit") int limit,
 			@FormParam("count") String count,
 			@FormParam("debug") String debug,
-			@FormParam("debug") Set<String> id) {
+			@FormParam("debug") Set<String> id,
+			@FormParam("cursor") String cursor) {
 		ModelSearchResult result = new ModelSearchResult();
-		result = search(taxa, gene_product_class_uris, terms, expand, pmids, title, state, contributor, group, exactdate, date, datend, offset, limit, count, debug, id);
+		result = search(taxa, gene_product_class_uris, terms, expand, pmids, title, state, contributor, group, exactdate, date, datend, offset, limit, count, debug, id, cursor);
 		return result;
 	}
 
@@ -1,10 +1,16 @@
 package org.geneontology.minerva.server.handler;
 
-import com.github.jsonldjava.sesame.SesameJSONLDWriterFactory;
+import com.github.jsonldjava.core.JsonLdConsts;
+import com.github.jsonldjava.core.JsonLdError;
+import com.github.jsonldjava.core.JsonLdOptions;
+import com.github.jsonldjava.core.JsonLdProcessor;
+import com.github.jsonldjava.core.RDFDataset;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
+import info.aduna.iteration.Iterations;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.log4j.Logger;
+import org.geneontology.minerva.BlazegraphMolecularModelManager;
 import org.geneontology.minerva.CoreMolecularModelManager.DeleteInformation;
 import org.geneontology.minerva.ModelContainer;
 import org.geneontology.minerva.MolecularModelManager;
@@ -26,17 +32,19 @@ import org.geneontology.owl.differ.Differ;
 import org.geneontology.rules.engine.WorkingMemory;
 import org.obolibrary.robot.DiffOperation;
 import org.obolibrary.robot.IOHelper;
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.Value;
 import org.openrdf.query.*;
 import org.openrdf.repository.RepositoryException;
 import org.openrdf.rio.RDFHandlerException;
-import org.openrdf.rio.RDFWriter;
-import org.openrdf.rio.Rio;
 import org.semanticweb.owlapi.apibinding.OWLManager;
 import org.semanticweb.owlapi.model.*;
 import org.semanticweb.owlapi.model.parameters.OntologyCopy;
 import org.semanticweb.owlapi.reasoner.InconsistentOntologyException;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.util.*;
@@ -58,6 +66,11 @@ abstract class OperationsImpl extends ModelCreator {
 
 	private static final Logger LOG = Logger.getLogger(OperationsImpl.class);
 	public static final int SPARQL_QUERY_TIMEOUT = 20;
+	// the result is part of the JSON response, larger results are cut off
+	public static final long SPARQL_MAX_ROWS = 10000l;
+
+	// relations, data properties and evidence of the meta response, built once from the tbox
+	private volatile TboxMeta tboxMeta = null;
 
 	OperationsImpl(UndoAwareMolecularModelManager models,
 			Set<OWLObjectProperty> importantRelations,
@@ -77,6 +90,8 @@ abstract class OperationsImpl extends ModelCreator {
 		boolean renderBulk = false;
 		boolean nonMeta = false;
 		ModelContainer model = null;
+		// models kept in memory until the end of the batch, see releaseModels
+		final List<ModelContainer> pinned = new ArrayList<>();
 		Map<String, OWLNamedIndividual> individualVariable = new HashMap<>();
 		String diffResult = null;
 		
@@ -131,7 +146,7 @@ abstract class OperationsImpl extends ModelCreator {
 	String handleRequestForIndividual(M3Request request, Operation operation, String userId, Set<String> providerGroups, UndoMetadata token, BatchHandlerValues values) throws Exception {
 		values.nonMeta = true;
 		requireNotNull(request.arguments, "request.arguments");
-		values.model = checkModelId(values.model, request);
+		values.model = checkModelId(values, request);
 
 		// get info, no modification
 		if (Operation.get == operation) {
@@ -326,7 +341,7 @@ abstract class OperationsImpl extends ModelCreator {
 	String handleRequestForEdge(M3Request request, Operation operation, String userId, Set<String> providerGroups, UndoMetadata token, BatchHandlerValues values) throws Exception {
 		values.nonMeta = true;
 		requireNotNull(request.arguments, "request.arguments");
-		values.model = checkModelId(values.model, request);
+		values.model = checkModelId(values, request);
 		// required: subject, predicate, object
 		requireNotNull(request.arguments.subject, "request.arguments.subject");
 		requireNotNull(request.arguments.predicate, "request.arguments.predicate");
@@ -398,13 +413,13 @@ abstract class OperationsImpl extends ModelCreator {
 		if (Operation.get == operation){
 			values.nonMeta = true;
 			requireNotNull(request.arguments, "request.arguments");
-			values.model = checkModelId(values.model, request);			
+			values.model = checkModelId(values, request);			
 			values.renderBulk = true;
 		}
 		else if (Operation.updateImports == operation){
 			values.nonMeta = true;
 			requireNotNull(request.arguments, "request.arguments");
-			values.model = checkModelId(values.model, request);
+			values.model = checkModelId(values, request);
 			values.renderBulk = true;
 		}
 		// add an empty model
@@ -423,7 +438,7 @@ abstract class OperationsImpl extends ModelCreator {
 			values.nonMeta = true;
 			requireNotNull(request.arguments, "request.arguments");
 			requireNotNull(request.arguments.values, "request.arguments.values");
-			values.model = checkModelId(values.model, request);
+			values.model = checkModelId(values, request);
 			Set<OWLAnnotation> annotations = extract(request.arguments.values, userId, providerGroups, values, values.model);
 			if (annotations != null) {
 				m3.addModelAnnotations(values.model, annotations, token);
@@ -434,7 +449,7 @@ abstract class OperationsImpl extends ModelCreator {
 			values.nonMeta = true;
 			requireNotNull(request.arguments, "request.arguments");
 			requireNotNull(request.arguments.values, "request.arguments.values");
-			values.model = checkModelId(values.model, request);
+			values.model = checkModelId(values, request);
 			Set<OWLAnnotation> annotations = extract(request.arguments.values, null, Collections.emptySet(), values, values.model);
 			if (annotations != null) {
 				m3.removeAnnotations(values.model, annotations, token);
@@ -448,7 +463,7 @@ abstract class OperationsImpl extends ModelCreator {
 				return "Export model can only be combined with other meta operations.";
 			}
 			requireNotNull(request.arguments, "request.arguments");
-			values.model = checkModelId(values.model, request);
+			values.model = checkModelId(values, request);
 			export(response, values.model, userId, providerGroups);
 		}
 		else if (Operation.exportModelLegacy == operation) {
@@ -457,7 +472,7 @@ abstract class OperationsImpl extends ModelCreator {
 				return "Export legacy model can only be combined with other meta operations.";
 			}
 			requireNotNull(request.arguments, "request.arguments");
-			values.model = checkModelId(values.model, request);
+			values.model = checkModelId(values, request);
 			exportLegacy(response, values.model, request.arguments.format, userId);
 		}
 		else if (Operation.importModel == operation) {
@@ -477,7 +492,7 @@ abstract class OperationsImpl extends ModelCreator {
 		else if (Operation.storeModel == operation) {
 			values.nonMeta = true;
 			requireNotNull(request.arguments, "request.arguments");
-			values.model = checkModelId(values.model, request);
+			values.model = checkModelId(values, request);
 			Set<OWLAnnotation> annotations = extract(request.arguments.values, userId, providerGroups, values, values.model);
 			if (validateBeforeSave()) {
 				List<String> issues = beforeSaveValidator.validateBeforeSave(values.model);
@@ -500,7 +515,7 @@ abstract class OperationsImpl extends ModelCreator {
 		else if (Operation.resetModel == operation) {
 			values.nonMeta = true;
 			requireNotNull(request.arguments, "request.arguments");
-			values.model = checkModelId(values.model, request);
+			values.model = checkModelId(values, request);
 			//drop in memory model and reload
 			IRI model_iri = values.model.getModelId();
 			boolean drop_cached = true;
@@ -509,19 +524,20 @@ abstract class OperationsImpl extends ModelCreator {
 			//ensure the change queue is gone to avoid downstream confusion.
 			m3.clearUndoHistory(model_iri);
 			//reset model values
-			values.model = checkModelId(null, request);
+			values.model = null;
+			values.model = checkModelId(values, request);
 			values.renderBulk = true;
 		}else if (Operation.diffModel == operation) {
 			values.nonMeta = true;
 			requireNotNull(request.arguments, "request.arguments");
 			//this won't change
-			values.model = checkModelId(values.model, request);
+			values.model = checkModelId(values, request);
 			IRI model_iri = values.model.getModelId();
 			//run diff
 			OWLOntologyManager man1 = OWLManager.createOWLOntologyManager();
 			//do we have an ontology in the datastore with that id?
 			OWLOntology stored_ontology = null;
-			if(m3.getStoredModelIds().contains(model_iri)) {
+			if(m3.isStoredModel(model_iri)) {
 				stored_ontology = m3.loadModelABox(model_iri);
 			}else {
 				//could error out here, but maybe this is more useful
@@ -543,14 +559,14 @@ abstract class OperationsImpl extends ModelCreator {
 		else if (Operation.undo == operation) {
 			values.nonMeta = true;
 			requireNotNull(request.arguments, "request.arguments");
-			values.model = checkModelId(values.model, request);
+			values.model = checkModelId(values, request);
 			m3.undo(values.model, userId);
 			values.renderBulk = true;
 		}
 		else if (Operation.redo == operation) {
 			values.nonMeta = true;
 			requireNotNull(request.arguments, "request.arguments");
-			values.model = checkModelId(values.model, request);
+			values.model = checkModelId(values, request);
 			m3.redo(values.model, userId);
 			values.renderBulk = true;
 		}
@@ -560,7 +576,7 @@ abstract class OperationsImpl extends ModelCreator {
 				return operation+" cannot be combined with other operations.";
 			}
 			requireNotNull(request.arguments, "request.arguments");
-			values.model = checkModelId(values.model, request);
+			values.model = checkModelId(values, request);
 			getCurrentUndoRedoForModel(response, values.model.getModelId(), userId);
 		}
 		else {
@@ -572,30 +588,74 @@ abstract class OperationsImpl extends ModelCreator {
 	void handleSPARQLRequest(M3Request request, M3BatchResponse response) throws IOException, OWLException, QueryEvaluationException, RDFHandlerException, TupleQueryResultHandlerException, RepositoryException, MalformedQueryException {
 		String query = request.arguments.query;
 		if (query != null) {
-			QueryResult result = m3.executeSPARQLQuery(query, SPARQL_QUERY_TIMEOUT);
+			// the read connection is released with the result
+			QueryResult<?> result = m3.openSPARQLQuery(query, SPARQL_QUERY_TIMEOUT, SPARQL_MAX_ROWS);
 
 			final JsonObject jsonObject;
-			if (result instanceof GraphQueryResult) {
-				//RDFWriter writer = new RDFJSONWriterFactory().getWriter(stream);
-				ByteArrayOutputStream stream = new ByteArrayOutputStream();
-				RDFWriter writer = new SesameJSONLDWriterFactory().getWriter(stream);
-				writer.handleNamespace("gomodel", "http://model.geneontology.org/");
-				Rio.write(QueryResults.asModel((GraphQueryResult)result), writer);
-				String json = stream.toString("UTF-8");
-				stream.close();
-				jsonObject = new Gson().fromJson(json, JsonObject.class);
-				//QueryResultIO.write((GraphQueryResult) result, RDFFormat.RDFJSON, stream);
-			} else if (result instanceof TupleQueryResult) {
-				jsonObject = new SPARQLResultJSONRenderer(curieHandler).renderResults((TupleQueryResult) result);
-				//QueryResultIO.write((TupleQueryResult) result, TupleQueryResultFormat.JSON, stream);
-			} else {
-				throw new UnsupportedOperationException("Query type not supported.");
+			try {
+				if (result instanceof GraphQueryResult) {
+					jsonObject = renderJSONLD((GraphQueryResult) result);
+				} else if (result instanceof TupleQueryResult) {
+					jsonObject = new SPARQLResultJSONRenderer(curieHandler).renderResults((TupleQueryResult) result);
+					//QueryResultIO.write((TupleQueryResult) result, TupleQueryResultFormat.JSON, stream);
+				} else {
+					throw new UnsupportedOperationException("Query type not supported.");
+				}
+			} finally {
+				result.close();
 			}
 			initMetaResponse(response);
 			response.data.sparqlResult = jsonObject;
+			if (((BlazegraphMolecularModelManager.LimitedQueryResult) result).isTruncated()) {
+				response.data.sparqlResultTruncated = Boolean.TRUE;
+			}
 		}
 	}
 
+	/**
+	 * Build the compacted JSON-LD object of the statements with jsonld-java
+	 * and convert it to the Gson tree, without writing and parsing the JSON.
+	 */
+	private static JsonObject renderJSONLD(GraphQueryResult result) throws QueryEvaluationException, IOException {
+		final List<Statement> statements = Iterations.asList(result);
+		Map<String, Object> context = new HashMap<String, Object>();
+		context.put("gomodel", "http://model.geneontology.org/");
+		try {
+			JsonLdOptions options = new JsonLdOptions();
+			Object expanded = JsonLdProcessor.fromRDF(statements, options, (input) -> {
+				RDFDataset dataset = new RDFDataset();
+				for (Statement statement : statements) {
+					String subject = jsonLDNode(statement.getSubject());
+					String predicate = statement.getPredicate().stringValue();
+					Value object = statement.getObject();
+					if (object instanceof Literal) {
+						Literal literal = (Literal) object;
+						String datatype = literal.getDatatype() != null ? literal.getDatatype().stringValue() : JsonLdConsts.XSD_STRING;
+						if (literal.getLanguage() != null) {
+							datatype = JsonLdConsts.RDF_LANGSTRING;
+						}
+						dataset.addTriple(subject, predicate, literal.getLabel(), datatype, literal.getLanguage());
+					}
+					else {
+						dataset.addTriple(subject, predicate, jsonLDNode((Resource) object));
+					}
+				}
+				return dataset;
+			});
+			Map<String, Object> compacted = JsonLdProcessor.compact(expanded, Collections.singletonMap("@context", context), options);
+			return new Gson().toJsonTree(compacted).getAsJsonObject();
+		} catch (JsonLdError e) {
+			throw new IOException(e);
+		}
+	}
+
+	private static String jsonLDNode(Resource resource) {
+		if (resource instanceof BNode) {
+			return "_:" + ((BNode) resource).getID();
+		}
+		return resource.stringValue();
+	}
+
 	private void getCurrentUndoRedoForModel(M3BatchResponse response, IRI modelId, String userId) {
 		Pair<List<ChangeEvent>,List<ChangeEvent>> undoRedoEvents = m3.getUndoRedoEvents(modelId);
 		initMetaResponse(response);
@@ -644,31 +704,18 @@ abstract class OperationsImpl extends ModelCreator {
 			response.data.meta = new MetaResponse();
 		}
 
-		// relations
-		Pair<List<JsonRelationInfo>, List<JsonRelationInfo>> propPair = MolecularModelJsonRenderer.renderProperties(m3, importantRelations, curieHandler);
-		final List<JsonRelationInfo> relList = propPair.getLeft();
-		if (relList != null) {
-			response.data.meta.relations = relList.toArray(new JsonRelationInfo[relList.size()]);
-		}
-
-		// data properties
-		final List<JsonRelationInfo> propList = propPair.getRight();
-		if (propList != null) {
-			response.data.meta.dataProperties = propList.toArray(new JsonRelationInfo[propList.size()]);
-		}
-
-		// evidence
-		final List<JsonEvidenceInfo> evidencesList = MolecularModelJsonRenderer.renderEvidences(m3, curieHandler);
-		if (evidencesList != null) {
-			response.data.meta.evidence = evidencesList.toArray(new JsonEvidenceInfo[evidencesList.size()]);
-		}
+		// relations, data properties and evidence
+		final TboxMeta tbox = getTboxMeta();
+		response.data.meta.relations = tbox.relations;
+		response.data.meta.dataProperties = tbox.dataProperties;
+		response.data.meta.evidence = tbox.evidence;
 
 		// model ids
-		// and model annotations
-		final Set<IRI> allModelIds = m3.getAvailableModelIds();
-		final Map<String,List<JsonAnnotation>> allModelAnnotations = new HashMap<>();
-		final Map<String,Map<String,Object>> allModelAnnotationsReadOnly = new HashMap<>();
+		// and model annotations, from the annotation index of the model manager
 		final Map<IRI, Set<OWLAnnotation>> annotationsForAllModels = m3.getAllModelAnnotations();
+		final Set<IRI> allModelIds = m3.getAvailableModelIds();
+		final Map<String,List<JsonAnnotation>> allModelAnnotations = new HashMap<>(allModelIds.size() * 2);
+		final Map<String,Map<String,Object>> allModelAnnotationsReadOnly = new HashMap<>(allModelIds.size() * 2);
 		for (IRI modelId : allModelIds) {
 			String curie = curieHandler.getCuri(modelId);
 			List<JsonAnnotation> modelAnnotations = new ArrayList<>();
@@ -708,6 +755,43 @@ abstract class OperationsImpl extends ModelCreator {
 		response.data.meta.modelsReadOnly = allModelAnnotationsReadOnly;
 	}
 
+	/**
+	 * The parts of the meta response, which only depend on the tbox. The
+	 * arrays are shared by all responses, they must not be modified.
+	 */
+	private static class TboxMeta {
+		final JsonRelationInfo[] relations;
+		final JsonRelationInfo[] dataProperties;
+		final JsonEvidenceInfo[] evidence;
+
+		TboxMeta(JsonRelationInfo[] relations, JsonRelationInfo[] dataProperties, JsonEvidenceInfo[] evidence) {
+			this.relations = relations;
+			this.dataProperties = dataProperties;
+			this.evidence = evidence;
+		}
+	}
+
+	private TboxMeta getTboxMeta() throws IOException, OWLException {
+		TboxMeta meta = tboxMeta;
+		if (meta == null) {
+			synchronized (this) {
+				meta = tboxMeta;
+				if (meta == null) {
+					Pair<List<JsonRelationInfo>, List<JsonRelationInfo>> propPair = MolecularModelJsonRenderer.renderProperties(m3, importantRelations, curieHandler);
+					final List<JsonRelationInfo> relList = propPair.getLeft();
+					final List<JsonRelationInfo> propList = propPair.getRight();
+					final List<JsonEvidenceInfo> evidencesList = MolecularModelJsonRenderer.renderEvidences(m3, curieHandler);
+					meta = new TboxMeta(
+							relList != null ? relList.toArray(new JsonRelationInfo[relList.size()]) : null,
+							propList != null ? propList.toArray(new JsonRelationInfo[propList.size()]) : null,
+							evidencesList != null ? evidencesList.toArray(new JsonEvidenceInfo[evidencesList.size()]) : null);
+					tboxMeta = meta;
+				}
+			}
+		}
+		return meta;
+	}
+
 	void exportAllModels() throws OWLOntologyStorageException, OWLOntologyCreationException, IOException {
 		m3.dumpAllStoredModels();
 	}
@@ -751,20 +835,29 @@ abstract class OperationsImpl extends ModelCreator {
 
 
 	/**
-	 * @param model
+	 * Retrieve the model of the batch. The model is pinned in memory with
+	 * the first request, until {@link #releaseModels(BatchHandlerValues)}.
+	 *
+	 * @param values
 	 * @param request
-	 * @return modelId
+	 * @return model
 	 * @throws MissingParameterException
 	 * @throws MultipleModelIdsParameterException
 	 * @throws UnknownIdentifierException
 	 */
-	public ModelContainer checkModelId(ModelContainer model, M3Request request)
+	public ModelContainer checkModelId(BatchHandlerValues values, M3Request request)
 			throws MissingParameterException, MultipleModelIdsParameterException, UnknownIdentifierException {
 
+		ModelContainer model = values.model;
 		if (model == null) {
 			final String currentModelId = request.arguments.modelId;
 			requireNotNull(currentModelId, "request.arguments.modelId");
-			model = m3.checkModelId(curieHandler.getIRI(currentModelId));
+			IRI modelId = curieHandler.getIRI(currentModelId);
+			model = m3.acquireModel(modelId);
+			if (model == null) {
+				throw new UnknownIdentifierException("Could not find a model for id: "+modelId);
+			}
+			values.pinned.add(model);
 		}
 		else {
 			final String currentModelId = request.arguments.modelId;
@@ -778,6 +871,18 @@ abstract class OperationsImpl extends ModelCreator {
 		return model;
 	}
 
+	/**
+	 * Release the models pinned by the batch, they can be evicted again.
+	 *
+	 * @param values
+	 */
+	void releaseModels(BatchHandlerValues values) {
+		for (ModelContainer model : values.pinned) {
+			m3.releaseModel(model);
+		}
+		values.pinned.clear();
+	}
+
 	private void updateAnnotationsForDelete(DeleteInformation info, ModelContainer model, String userId, Set<String> providerGroups, UndoMetadata token, UndoAwareMolecularModelManager m3) throws UnknownIdentifierException {
 		final OWLDataFactory f = model.getOWLDataFactory();
 		final OWLAnnotation annotation = createDateAnnotation(f);
@@ -50,9 +50,15 @@ public class SPARQLGraphMessageBodyWriter implements MessageBodyWriter<GraphQuer
         try {
             QueryResultIO.write(result, format, entityStream);
             entityStream.flush();
-            result.close();
         } catch (RDFHandlerException | QueryEvaluationException e) {
             throw new WebApplicationException(e);
+        } finally {
+            // releases the read connection of the query
+            try {
+                result.close();
+            } catch (QueryEvaluationException e) {
+                // nothing left to report, the response has been written or failed already
+            }
         }
 
     }
@@ -8,38 +8,65 @@ import org.openrdf.repository.RepositoryException;
 
 import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 
 /**
  * SPARQL query endpoint
  * SPARQL query result will be serialized by either
- * SPARQLResultsMessageBodyWriter or SPARQLGraphMessageBodyWriter
+ * SPARQLResultsMessageBodyWriter or SPARQLGraphMessageBodyWriter.
+ * The results are streamed, the writer consumes them from the open read
+ * connection and closes the result with the response.
+ * A cut off is only known after the last row has been written, so the
+ * row limit is sent with the {@value #MAX_ROWS_HEADER} header: a response
+ * with that many rows may be incomplete.
  */
 @Path("/sparql")
 public class SPARQLHandler {
 
+    public static final String MAX_ROWS_HEADER = "X-SPARQL-Max-Rows";
+
     private final BlazegraphMolecularModelManager m3;
     private final int timeout;
+    private final long maxRows;
 
     public SPARQLHandler(BlazegraphMolecularModelManager m3, int timeout) {
+        this(m3, timeout, 0);
+    }
+
+    /**
+     * @param m3
+     * @param timeout query timeout in seconds
+     * @param maxRows maximum number of solutions or statements in a response, no limit if maxRows &lt;= 0
+     */
+    public SPARQLHandler(BlazegraphMolecularModelManager m3, int timeout, long maxRows) {
         this.m3 = m3;
         this.timeout = timeout;
+        this.maxRows = maxRows;
     }
 
     @GET
-    public QueryResult sparqlQueryGet(@QueryParam("query") String queryText) throws QueryEvaluationException, MalformedQueryException, RepositoryException {
-        return m3.executeSPARQLQuery(queryText, timeout);
+    public Response sparqlQueryGet(@QueryParam("query") String queryText) throws QueryEvaluationException, MalformedQueryException, RepositoryException {
+        return respond(m3.openSPARQLQuery(queryText, timeout, maxRows));
     }
 
     @POST
     @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
-    public QueryResult sparqlQueryPostForm(@FormParam("query") String queryText) throws QueryEvaluationException, MalformedQueryException, RepositoryException {
-        return m3.executeSPARQLQuery(queryText, timeout);
+    public Response sparqlQueryPostForm(@FormParam("query") String queryText) throws QueryEvaluationException, MalformedQueryException, RepositoryException {
+        return respond(m3.openSPARQLQuery(queryText, timeout, maxRows));
     }
 
     @POST
     @Consumes("application/sparql-query")
-    public QueryResult sparqlQueryPostQuery(String query) throws QueryEvaluationException, MalformedQueryException, RepositoryException {
-        return m3.executeSPARQLQuery(query, timeout);
+    public Response sparqlQueryPostQuery(String query) throws QueryEvaluationException, MalformedQueryException, RepositoryException {
+        return respond(m3.openSPARQLQuery(query, timeout, maxRows));
+    }
+
+    private Response respond(QueryResult<?> result) {
+        Response.ResponseBuilder response = Response.ok(result);
+        if (maxRows > 0) {
+            response.header(MAX_ROWS_HEADER, maxRows);
+        }
+        return response.build();
     }
 
 }
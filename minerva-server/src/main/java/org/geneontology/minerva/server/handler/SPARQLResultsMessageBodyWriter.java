@@ -46,9 +46,15 @@ public class SPARQLResultsMessageBodyWriter implements MessageBodyWriter<TupleQu
         try {
             QueryResultIO.write(result, format, entityStream);
             entityStream.flush();
-            result.close();
         } catch (TupleQueryResultHandlerException | QueryEvaluationException e) {
             throw new WebApplicationException(e);
+        } finally {
+            // releases the read connection of the query
+            try {
+                result.close();
+            } catch (QueryEvaluationException e) {
+                // nothing left to report, the response has been written or failed already
+            }
         }
     }
 
@@ -12,7 +12,10 @@ import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
 
+import org.geneontology.minerva.CoreMolecularModelManager;
+import org.geneontology.minerva.ModelCache;
 import org.geneontology.minerva.server.StartUpTool.MinervaStartUpConfig;
+import org.geneontology.minerva.validation.ShexValidationExecutor;
 import org.semanticweb.owlapi.model.IRI;
 import org.semanticweb.owlapi.model.OWLAnnotation;
 import org.semanticweb.owlapi.model.OWLObjectProperty;
@@ -28,6 +31,7 @@ import org.semanticweb.owlapi.model.OWLObjectProperty;
 		private final MinervaStartUpConfig conf;
 		private final Map<IRI, Set<OWLAnnotation>> ont_annosa;
 		private final String started_at;
+		private final CoreMolecularModelManager<?> models;
 		
 		public class Status {
 			public String startup_date = started_at;
@@ -55,9 +59,15 @@ import org.semanticweb.owlapi.model.OWLObjectProperty;
 			public boolean useRequestLogging;
 			public boolean useGolrUrlLogging;
 			public String prefixesFile;
+			public boolean useSparqlEndpoint;
 			public int sparqlEndpointTimeout;
+			public long sparqlEndpointMaxRows;
 			public String shexFileUrl;
 			public String goshapemapFileUrl;
+			public int modelCacheSize;
+			public long modelCacheMaxAxioms;
+			public ModelCache.Stats model_cache;
+			public ShexValidationExecutor.Stats shex_validation;
 			public Map<IRI, Set<OWLAnnotation>> ont_annos = ont_annosa;
 			
 			public Status(MinervaStartUpConfig conf) {
@@ -84,9 +94,19 @@ import org.semanticweb.owlapi.model.OWLObjectProperty;
 				this.useRequestLogging = conf.useRequestLogging;
 				this.useGolrUrlLogging = conf.useGolrUrlLogging;
 				this.prefixesFile = conf.prefixesFile;
+				this.useSparqlEndpoint = conf.useSparqlEndpoint;
 				this.sparqlEndpointTimeout = conf.sparqlEndpointTimeout;
+				this.sparqlEndpointMaxRows = conf.sparqlEndpointMaxRows;
 				this.shexFileUrl = conf.shexFileUrl;
 				this.goshapemapFileUrl = conf.goshapemapFileUrl;
+				this.modelCacheSize = conf.modelCacheSize;
+				this.modelCacheMaxAxioms = conf.modelCacheMaxAxioms;
+				if (models != null) {
+					this.model_cache = models.getModelCacheStats();
+				}
+				if (conf.shex != null) {
+					this.shex_validation = conf.shex.getExecutor().getStats();
+				}
 				
 			}
 		}
@@ -96,9 +116,20 @@ import org.semanticweb.owlapi.model.OWLObjectProperty;
 		 * 
 		 */
 		public StatusHandler(MinervaStartUpConfig conf, Map<IRI, Set<OWLAnnotation>> ont_annos, String started_at) {
+			this(conf, ont_annos, started_at, null);
+		}
+
+		/**
+		 * @param conf
+		 * @param ont_annos 
+		 * @param started_at 
+		 * @param models used to report the model cache statistics, may be null
+		 */
+		public StatusHandler(MinervaStartUpConfig conf, Map<IRI, Set<OWLAnnotation>> ont_annos, String started_at, CoreMolecularModelManager<?> models) {
 			this.ont_annosa = ont_annos;
 			this.conf = conf;
 			this.started_at = started_at;
+			this.models = models;
 		}
 
 		@GET
@@ -12,13 +12,6 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
 
 import org.geneontology.minerva.BlazegraphMolecularModelManager;
-import org.geneontology.minerva.BlazegraphOntologyManager;
-import org.openrdf.query.BindingSet;
-import org.openrdf.query.MalformedQueryException;
-import org.openrdf.query.QueryEvaluationException;
-import org.openrdf.query.TupleQueryResult;
-import org.openrdf.repository.RepositoryException;
-import org.semanticweb.owlapi.model.IRI;
 
 	
 	/**
@@ -63,21 +56,12 @@ import org.semanticweb.owlapi.model.IRI;
 		@Produces(MediaType.APPLICATION_JSON)
 		public Taxa get() {	
 			Map<String, String> id_label =  new HashMap<String, String>();
-			
-			String sparql = "select distinct ?taxon where { ?model <"+BlazegraphOntologyManager.in_taxon_uri+"> ?taxon }";
-			
-			TupleQueryResult result;
 			try {
-				result = (TupleQueryResult) m3.executeSPARQLQuery(sparql, 1000);
-				while(result.hasNext()) {
-					BindingSet bs = result.next();
-					String taxon = bs.getBinding("taxon").getValue().stringValue();
-					String label = m3.getGolego_repo().getLabel(taxon);
-					String tcurie = taxon.replace("http://purl.obolibrary.org/obo/NCBITaxon_", "NCBITaxon:");
-					id_label.put(tcurie, label);
+				// served from the listing of the model manager, which is kept up to date with the saves
+				for(Map.Entry<String, String> taxon_label : m3.getModelTaxonLabels().entrySet()) {
+					String tcurie = taxon_label.getKey().replace("http://purl.obolibrary.org/obo/NCBITaxon_", "NCBITaxon:");
+					id_label.put(tcurie, taxon_label.getValue());
 				}
-			} catch (MalformedQueryException | QueryEvaluationException | RepositoryException e) {				
-				e.printStackTrace();
 			} catch (IOException e) {
 				// TODO Auto-generated catch block
 				e.printStackTrace();
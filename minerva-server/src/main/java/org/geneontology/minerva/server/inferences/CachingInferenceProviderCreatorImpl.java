@@ -48,7 +48,17 @@ public class CachingInferenceProviderCreatorImpl extends InferenceProviderCreato
 //	}
 	
 	public static InferenceProviderCreator createArachne(RuleEngine arachne, MinervaShexValidator shex) {
-		return new CachingInferenceProviderCreatorImpl(new ArachneOWLReasonerFactory(arachne), 1, false, "Caching Arachne", shex);
+		return createArachne(arachne, shex, 1);
+	}
+
+	/**
+	 * @param arachne
+	 * @param shex
+	 * @param maxConcurrent number of models, which are reasoned over at the same time
+	 * @return creator
+	 */
+	public static InferenceProviderCreator createArachne(RuleEngine arachne, MinervaShexValidator shex, int maxConcurrent) {
+		return new CachingInferenceProviderCreatorImpl(new ArachneOWLReasonerFactory(arachne), maxConcurrent, false, "Caching Arachne", shex);
 	}
 
 	@Override
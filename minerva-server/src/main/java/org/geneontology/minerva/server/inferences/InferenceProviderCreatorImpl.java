@@ -15,6 +15,8 @@ import org.geneontology.minerva.json.InferenceProvider;
 import org.geneontology.minerva.lookup.ExternalLookupService;
 import org.geneontology.minerva.lookup.ExternalLookupService.LookupEntry;
 import org.geneontology.minerva.server.validation.MinervaShexValidator;
+import org.geneontology.rules.engine.RuleEngine;
+import org.geneontology.rules.util.ArachneOWLReasonerFactory;
 import org.semanticweb.elk.owlapi.ElkReasonerFactory;
 import org.semanticweb.owlapi.apibinding.OWLManager;
 import org.semanticweb.owlapi.model.IRI;
@@ -73,6 +75,10 @@ public class InferenceProviderCreatorImpl implements InferenceProviderCreator {
 		return new InferenceProviderCreatorImpl(new ElkReasonerFactory(), 1, useSLME, name, shex);
 	}
 
+	public static InferenceProviderCreator createArachne(RuleEngine arachne, MinervaShexValidator shex) {
+		return new InferenceProviderCreatorImpl(new ArachneOWLReasonerFactory(arachne), 1, false, "Arachne", shex);
+	}
+
 	//	public static InferenceProviderCreator createHermiT(MinervaShexValidator shex) {
 	//		int maxConcurrent = Runtime.getRuntime().availableProcessors();
 	//		return createHermiT(maxConcurrent, shex);
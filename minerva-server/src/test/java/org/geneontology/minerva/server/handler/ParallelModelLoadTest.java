@@ -0,0 +1,135 @@
+package org.geneontology.minerva.server.handler;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.geneontology.minerva.CoreMolecularModelManager;
+import org.geneontology.minerva.ModelContainer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+
+/**
+ * Check that a slow model load does not block reads or loads of other models,
+ * and that concurrent requests for the same model share one load.
+ */
+public class ParallelModelLoadTest {
+
+	private static final IRI SLOW = IRI.create("http://model.geneontology.org/slow");
+	private static final IRI RESIDENT = IRI.create("http://model.geneontology.org/resident");
+	private static final IRI OTHER = IRI.create("http://model.geneontology.org/other");
+
+	private SlowLoadingModelManager models;
+	private ExecutorService executor;
+
+	@Before
+	public void before() throws Exception {
+		OWLOntologyManager m = OWLManager.createOWLOntologyManager();
+		OWLOntology tbox = m.createOntology(IRI.create("http://example.org/tbox"));
+		models = new SlowLoadingModelManager(tbox);
+		executor = Executors.newCachedThreadPool();
+	}
+
+	@After
+	public void after() {
+		models.slowLoadGate.countDown();
+		executor.shutdownNow();
+		models.dispose();
+	}
+
+	@Test(timeout = 30000)
+	public void testUnrelatedModelsDoNotBlock() throws Exception {
+		ModelContainer resident = models.getModel(RESIDENT);
+		assertNotNull(resident);
+
+		Future<ModelContainer> slow = executor.submit(() -> models.getModel(SLOW));
+		assertTrue("slow load did not start", models.slowLoadStarted.await(5, TimeUnit.SECONDS));
+
+		// resident model is served while the slow load is running
+		Future<ModelContainer> read = executor.submit(() -> models.getModel(RESIDENT));
+		assertSame(resident, read.get(5, TimeUnit.SECONDS));
+
+		// another model is loaded while the slow load is running
+		Future<ModelContainer> other = executor.submit(() -> models.getModel(OTHER));
+		assertNotNull(other.get(5, TimeUnit.SECONDS));
+		assertFalse(slow.isDone());
+
+		models.slowLoadGate.countDown();
+		assertNotNull(slow.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test(timeout = 30000)
+	public void testConcurrentRequestsShareOneLoad() throws Exception {
+		List<Future<ModelContainer>> requests = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			requests.add(executor.submit(() -> models.getModel(SLOW)));
+		}
+		assertTrue("slow load did not start", models.slowLoadStarted.await(5, TimeUnit.SECONDS));
+		// give the other requests time to queue up behind the running load
+		Thread.sleep(200);
+		models.slowLoadGate.countDown();
+
+		ModelContainer first = requests.get(0).get(5, TimeUnit.SECONDS);
+		assertNotNull(first);
+		for (Future<ModelContainer> request : requests) {
+			assertSame(first, request.get(5, TimeUnit.SECONDS));
+		}
+		assertEquals(1, models.loadCount(SLOW));
+	}
+
+	private static class SlowLoadingModelManager extends CoreMolecularModelManager<Void> {
+
+		final CountDownLatch slowLoadStarted = new CountDownLatch(1);
+		final CountDownLatch slowLoadGate = new CountDownLatch(1);
+		private final Map<IRI, AtomicInteger> loads = new ConcurrentHashMap<>();
+
+		SlowLoadingModelManager(OWLOntology tbox) throws OWLOntologyCreationException, IOException {
+			super(tbox, null);
+		}
+
+		int loadCount(IRI modelId) {
+			AtomicInteger count = loads.get(modelId);
+			return count == null ? 0 : count.get();
+		}
+
+		@Override
+		protected void loadModel(IRI modelId, boolean isOverride) throws OWLOntologyCreationException {
+			loads.computeIfAbsent(modelId, id -> new AtomicInteger()).incrementAndGet();
+			if (SLOW.equals(modelId)) {
+				slowLoadStarted.countDown();
+				try {
+					slowLoadGate.await();
+				} catch (InterruptedException e) {
+					throw new OWLOntologyCreationException(e);
+				}
+			}
+			OWLOntology abox;
+			OWLOntologyManager m = getOntology().getOWLOntologyManager();
+			synchronized (m) {
+				abox = m.createOntology(modelId);
+			}
+			addModel(modelId, abox);
+		}
+
+		@Override
+		protected OWLOntology loadModelABox(IRI modelId) throws OWLOntologyCreationException {
+			return null;
+		}
+	}
+}
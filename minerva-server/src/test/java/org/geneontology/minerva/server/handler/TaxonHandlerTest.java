@@ -189,6 +189,17 @@ public class TaxonHandlerTest {
 		}
 	}
 	
+	@Test
+	public final void testTaxaAfterTaxonInsert() throws Exception {
+		BlazegraphMolecularModelManager<?> m3 = taxonHandler.getM3();
+		assertFalse(m3.getModelTaxonLabels().isEmpty());
+		String taxon = "http://purl.obolibrary.org/obo/NCBITaxon_1";
+		IRI model = m3.getStoredModelIds().iterator().next();
+		m3.addTaxonToDatabaseWithSparql(model, IRI.create(taxon));
+		// the listing is updated without being rebuilt
+		assertTrue(m3.getModelTaxonLabels().containsKey(taxon));
+	}
+
 	private static String makeBlazegraphJournal(String input_folder) throws IOException, OWLOntologyCreationException, RepositoryException, RDFParseException, RDFHandlerException {
 		String inputDB = tmp.newFile().getAbsolutePath(); 
 		File i = new File(input_folder);